@@ -23,10 +23,23 @@ public class AdminPDPConfig {
     private String esdbConsumerGroup;
 
     /**
-     * Snapshot event revision interval (e.g. snapshot every 1000 events)
+     * The number of events applied since the last snapshot after which a snapshot is written (e.g. snapshot every 1000
+     * events)
      */
     private int snapshotInterval;
 
+    /**
+     * The amount of time, in milliseconds, after which a snapshot is written if any events were applied since the last
+     * one. 0 disables the time trigger.
+     */
+    private int snapshotMaxAge;
+
+    /**
+     * The amount of time, in milliseconds, spent applying the events since the last snapshot after which a snapshot is
+     * written, bounding how long a restart spends replaying them. 0 disables the replay cost trigger.
+     */
+    private int snapshotMaxReplayTime;
+
     /**
      * Shutdown the server once the bootstrap process is complete
      */
@@ -42,6 +55,71 @@ public class AdminPDPConfig {
      */
     private int revisionConsistencyTimeout;
 
+    /**
+     * Make requests without an x-pm-min-revision header wait until the local policy is caught up with the latest
+     * revision in the event store. When disabled they are served at the local revision.
+     */
+    private boolean waitForLatestRevision = true;
+
+    /**
+     * The number of revisions the local policy can be behind the event store and still serve a request with bounded
+     * consistency, unless the request sends x-pm-max-revision-lag.
+     */
+    private int boundedMaxRevisionLag;
+
+    /**
+     * The amount of time, in milliseconds, the local policy can have been behind the event store and still serve a
+     * request with bounded consistency, unless the request sends x-pm-max-staleness-ms.
+     */
+    private int boundedMaxStaleness = 500;
+
+    /**
+     * The maximum number of idle NGAC contexts kept for reuse by later requests. 0 builds a new context for every
+     * request.
+     */
+    private int contextPoolSize = 64;
+
+    /**
+     * The maximum number of writes evaluated together and appended to the event store in one call. Writes submitted
+     * while the previous group is appended are grouped, so this only bounds how many. 1 appends each write on its own.
+     */
+    private int writeBatchSize = 64;
+
+    /**
+     * The maximum amount of time, in milliseconds, a write waits to be evaluated and appended to the event store before
+     * the call fails.
+     */
+    private int writeTimeout = 10000;
+
+    /**
+     * The number of times a write is attempted when another writer appends to the event stream first. Each retry waits
+     * for the local policy to apply the conflicting events.
+     */
+    private int writeMaxAttempts = 5;
+
+    /**
+     * The maximum random backoff, in milliseconds, added before retrying a write that conflicted more than once. 0
+     * retries as soon as the local policy has caught up.
+     */
+    private int writeRetryMaxBackoff = 200;
+
+    /**
+     * Commit each group of writes to the local policy once its events are appended to the event store, and skip them
+     * when the subscription delivers them, instead of applying every write a second time from the subscription.
+     */
+    private boolean applyOnAppend;
+
+    /**
+     * The maximum number of consecutive subscription events applied as one transaction and acked together.
+     */
+    private int subscriptionBatchSize = 500;
+
+    /**
+     * The amount of time, in milliseconds, to wait for more subscription events after the first one of a batch before
+     * applying it. 0 applies each event as it arrives.
+     */
+    private int subscriptionBatchDelay = 10;
+
     @PostConstruct
     public void validate() {
         if (neo4jDbPath == null || neo4jDbPath.isEmpty() || neo4jDbPath.equals("null")) {
@@ -60,9 +138,53 @@ public class AdminPDPConfig {
             setSnapshotInterval(1000);
         }
 
+        if (snapshotMaxAge < 0) {
+            setSnapshotMaxAge(0);
+        }
+
+        if (snapshotMaxReplayTime < 0) {
+            setSnapshotMaxReplayTime(0);
+        }
+
         if (revisionConsistencyTimeout <= 0) {
             setRevisionConsistencyTimeout(1000);
         }
+
+        if (boundedMaxRevisionLag < 0) {
+            setBoundedMaxRevisionLag(0);
+        }
+
+        if (boundedMaxStaleness < 0) {
+            setBoundedMaxStaleness(0);
+        }
+
+        if (contextPoolSize < 0) {
+            setContextPoolSize(0);
+        }
+
+        if (writeBatchSize < 1) {
+            setWriteBatchSize(1);
+        }
+
+        if (writeTimeout <= 0) {
+            setWriteTimeout(10000);
+        }
+
+        if (writeMaxAttempts < 1) {
+            setWriteMaxAttempts(1);
+        }
+
+        if (writeRetryMaxBackoff < 0) {
+            setWriteRetryMaxBackoff(0);
+        }
+
+        if (subscriptionBatchSize <= 0) {
+            setSubscriptionBatchSize(500);
+        }
+
+        if (subscriptionBatchDelay < 0) {
+            setSubscriptionBatchDelay(0);
+        }
     }
 
     public String getNeo4jDbPath() {
@@ -97,6 +219,22 @@ public class AdminPDPConfig {
         this.snapshotInterval = snapshotInterval;
     }
 
+    public int getSnapshotMaxAge() {
+        return snapshotMaxAge;
+    }
+
+    public void setSnapshotMaxAge(int snapshotMaxAge) {
+        this.snapshotMaxAge = snapshotMaxAge;
+    }
+
+    public int getSnapshotMaxReplayTime() {
+        return snapshotMaxReplayTime;
+    }
+
+    public void setSnapshotMaxReplayTime(int snapshotMaxReplayTime) {
+        this.snapshotMaxReplayTime = snapshotMaxReplayTime;
+    }
+
     public boolean isShutdownAfterBootstrap() {
         return shutdownAfterBootstrap;
     }
@@ -120,4 +258,92 @@ public class AdminPDPConfig {
     public void setRevisionConsistencyTimeout(int revisionConsistencyTimeout) {
         this.revisionConsistencyTimeout = revisionConsistencyTimeout;
     }
-}
\ No newline at end of file
+
+    public boolean isWaitForLatestRevision() {
+        return waitForLatestRevision;
+    }
+
+    public void setWaitForLatestRevision(boolean waitForLatestRevision) {
+        this.waitForLatestRevision = waitForLatestRevision;
+    }
+
+    public int getBoundedMaxRevisionLag() {
+        return boundedMaxRevisionLag;
+    }
+
+    public void setBoundedMaxRevisionLag(int boundedMaxRevisionLag) {
+        this.boundedMaxRevisionLag = boundedMaxRevisionLag;
+    }
+
+    public int getBoundedMaxStaleness() {
+        return boundedMaxStaleness;
+    }
+
+    public void setBoundedMaxStaleness(int boundedMaxStaleness) {
+        this.boundedMaxStaleness = boundedMaxStaleness;
+    }
+
+    public int getContextPoolSize() {
+        return contextPoolSize;
+    }
+
+    public void setContextPoolSize(int contextPoolSize) {
+        this.contextPoolSize = contextPoolSize;
+    }
+
+    public int getWriteBatchSize() {
+        return writeBatchSize;
+    }
+
+    public void setWriteBatchSize(int writeBatchSize) {
+        this.writeBatchSize = writeBatchSize;
+    }
+
+    public int getWriteTimeout() {
+        return writeTimeout;
+    }
+
+    public void setWriteTimeout(int writeTimeout) {
+        this.writeTimeout = writeTimeout;
+    }
+
+    public int getWriteMaxAttempts() {
+        return writeMaxAttempts;
+    }
+
+    public void setWriteMaxAttempts(int writeMaxAttempts) {
+        this.writeMaxAttempts = writeMaxAttempts;
+    }
+
+    public int getWriteRetryMaxBackoff() {
+        return writeRetryMaxBackoff;
+    }
+
+    public void setWriteRetryMaxBackoff(int writeRetryMaxBackoff) {
+        this.writeRetryMaxBackoff = writeRetryMaxBackoff;
+    }
+
+    public boolean isApplyOnAppend() {
+        return applyOnAppend;
+    }
+
+    public void setApplyOnAppend(boolean applyOnAppend) {
+        this.applyOnAppend = applyOnAppend;
+    }
+
+    public int getSubscriptionBatchSize() {
+        return subscriptionBatchSize;
+    }
+
+    public void setSubscriptionBatchSize(int subscriptionBatchSize) {
+        this.subscriptionBatchSize = subscriptionBatchSize;
+    }
+
+    public int getSubscriptionBatchDelay() {
+        return subscriptionBatchDelay;
+    }
+
+    public void setSubscriptionBatchDelay(int subscriptionBatchDelay) {
+        this.subscriptionBatchDelay = subscriptionBatchDelay;
+    }
+}
@@ -2,6 +2,7 @@ package gov.nist.csd.pm.pdp.admin.config;
 
 import gov.nist.csd.pm.pdp.shared.eventstore.CurrentRevisionService;
 import gov.nist.csd.pm.pdp.shared.eventstore.LatestRevisionTracker;
+import gov.nist.csd.pm.pdp.shared.grpc.GrpcServerExecutorConfigurer;
 import gov.nist.csd.pm.pdp.shared.interceptor.RevisionConsistencyInterceptor;
 import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
 import org.springframework.context.annotation.Bean;
@@ -17,19 +18,25 @@ public class AdminPDPGrpcInterceptorConfig {
     @GrpcGlobalServerInterceptor
     public RevisionConsistencyInterceptor consistencyInterceptor(AdminPDPConfig adminPDPConfig,
                                                                  CurrentRevisionService currentRevisionService,
-                                                                 LatestRevisionTracker latestRevisionTracker) {
+                                                                 LatestRevisionTracker latestRevisionTracker,
+                                                                 GrpcServerExecutorConfigurer grpcServerExecutorConfigurer) {
         Set<String> excluded = new HashSet<>();
 
         // these methods already have revision checks when appending to the event store
         excluded.add("gov.nist.csd.pm.proto.v1.epp.EPPService/processEvent");
+        excluded.add("gov.nist.csd.pm.pdp.proto.epp.BatchEPPService/processEvents");
         excluded.add("gov.nist.csd.pm.proto.v1.pdp.adjudication.AdminAdjudicationService/adjudicateOperation");
         excluded.add("gov.nist.csd.pm.proto.v1.pdp.adjudication.AdminAdjudicationService/adjudicateRoutine");
 
         return new RevisionConsistencyInterceptor(
                 adminPDPConfig.getRevisionConsistencyTimeout(),
                 excluded,
+                adminPDPConfig.isWaitForLatestRevision(),
+                adminPDPConfig.getBoundedMaxRevisionLag(),
+                adminPDPConfig.getBoundedMaxStaleness(),
                 currentRevisionService,
-                latestRevisionTracker
+                latestRevisionTracker,
+                grpcServerExecutorConfigurer.callExecutor()
         );
     }
 }
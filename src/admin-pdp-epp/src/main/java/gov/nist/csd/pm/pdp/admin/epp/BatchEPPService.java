@@ -0,0 +1,75 @@
+package gov.nist.csd.pm.pdp.admin.epp;
+
+import gov.nist.csd.pm.core.common.exception.PMException;
+import gov.nist.csd.pm.core.epp.EventContext;
+import gov.nist.csd.pm.core.impl.grpc.util.FromProtoUtil;
+import gov.nist.csd.pm.pdp.admin.pdp.Adjudicator;
+import gov.nist.csd.pm.pdp.proto.epp.BatchEPPServiceGrpc;
+import gov.nist.csd.pm.pdp.proto.epp.EventContextBatch;
+import gov.nist.csd.pm.pdp.proto.epp.ProcessEventsResponse;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import net.devh.boot.grpc.server.service.GrpcService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@GrpcService
+public class BatchEPPService extends BatchEPPServiceGrpc.BatchEPPServiceImplBase {
+
+	private static final Logger logger = LoggerFactory.getLogger(BatchEPPService.class);
+
+	private final Adjudicator adjudicator;
+
+	public BatchEPPService(Adjudicator adjudicator) {
+		this.adjudicator = adjudicator;
+	}
+
+	@Override
+	public void processEvents(EventContextBatch request, StreamObserver<ProcessEventsResponse> responseObserver) {
+		List<EventContext> eventContexts = new ArrayList<>(request.getEventsCount());
+		try {
+			for (gov.nist.csd.pm.proto.v1.epp.EventContext eventContext : request.getEventsList()) {
+				eventContexts.add(FromProtoUtil.fromEventContextProto(eventContext));
+			}
+		} catch (RuntimeException e) {
+			responseObserver.onError(Status.INVALID_ARGUMENT
+					                         .withDescription(e.getMessage())
+					                         .asRuntimeException());
+			return;
+		}
+
+		logger.debug("processing batch of {} events", eventContexts.size());
+
+		// set when an obligation response fails, the sequencer then drops the batch's events without appending them
+		AtomicBoolean rejected = new AtomicBoolean();
+		try {
+			// one transaction for the whole batch so the obligation responses are appended to the event store together
+			long lastRevision = adjudicator.adjudicateTransaction(ctx -> {
+				for (EventContext eventContext : eventContexts) {
+					try {
+						ctx.epp().processEvent(eventContext);
+					} catch (PMException | RuntimeException e) {
+						rejected.set(true);
+						throw e instanceof RuntimeException r ? r : new RuntimeException(e);
+					}
+				}
+			});
+
+			responseObserver.onNext(ProcessEventsResponse.newBuilder()
+					                        .setLastEventRevision(Math.max(lastRevision, 0))
+					                        .build());
+			responseObserver.onCompleted();
+		} catch (RuntimeException | PMException e) {
+			// the client only resends the events one at a time if it knows nothing was committed
+			Status status = rejected.get() ? Status.FAILED_PRECONDITION : Status.INTERNAL;
+			responseObserver.onError(status
+					                         .withDescription(e.getMessage())
+					                         .withCause(e)
+					                         .asRuntimeException());
+		}
+	}
+}
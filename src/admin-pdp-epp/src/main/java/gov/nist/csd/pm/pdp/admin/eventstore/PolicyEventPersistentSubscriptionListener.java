@@ -5,74 +5,305 @@ import com.google.protobuf.InvalidProtocolBufferException;
 import gov.nist.csd.pm.core.common.exception.PMException;
 import gov.nist.csd.pm.core.impl.neo4j.embedded.pap.Neo4jEmbeddedPAP;
 import gov.nist.csd.pm.pdp.admin.config.AdminPDPConfig;
+import gov.nist.csd.pm.pdp.admin.pap.AppliedRevision;
 import gov.nist.csd.pm.pdp.proto.event.PMEvent;
+import gov.nist.csd.pm.pdp.shared.eventstore.AppliedEventListener;
 import gov.nist.csd.pm.pdp.shared.eventstore.CurrentRevisionService;
 import gov.nist.csd.pm.pdp.shared.eventstore.PolicyEventHandler;
 import gov.nist.csd.pm.pdp.shared.eventstore.SnapshotService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.neo4j.graphdb.GraphDatabaseService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Applies the events delivered by the persistent subscription to the local policy. Consecutive events are collected
+ * until subscription-batch-size events have arrived or subscription-batch-delay milliseconds have passed since the
+ * first one, then applied in one transaction and acked together. If the transaction fails the batch is split in half
+ * and each half applied on its own, down to single events, so only the events that cannot be applied are parked.
+ */
 @Component
-public class PolicyEventPersistentSubscriptionListener extends PersistentSubscriptionListener {
+public class PolicyEventPersistentSubscriptionListener extends PersistentSubscriptionListener implements MeterBinder {
 
     private static final Logger logger = LoggerFactory.getLogger(PolicyEventPersistentSubscriptionListener.class);
 
+    private final Neo4jEmbeddedPAP pap;
+    private final GraphDatabaseService graphDb;
     private final PolicyEventHandler policyEventHandler;
-    private final SnapshotService snapshotService;
     private final CurrentRevisionService currentRevision;
-    private final AdminPDPConfig adminPDPConfig;
+    private final SnapshotScheduler snapshotScheduler;
+    private final List<AppliedEventListener> appliedEventListeners;
+    private final int batchSize;
+    private final long batchDelay;
+    private final ScheduledExecutorService flusher;
+
+    /**
+     * The events waiting to be applied, and the subscription they came from, guarded by batchLock.
+     */
+    private final ReentrantLock batchLock;
+    private final List<ResolvedEvent> batch;
+    private PersistentSubscription batchSubscription;
+    private ScheduledFuture<?> flushTask;
+
+    /**
+     * The last revision committed to the local policy by the write sequencer, guarded by the PAP's monitor.
+     */
+    private long appliedOnAppendRevision;
+
+    private final LongAdder batches;
+    private final LongAdder parked;
 
     public PolicyEventPersistentSubscriptionListener(Neo4jEmbeddedPAP pap,
+                                                     GraphDatabaseService graphDb,
                                                      CurrentRevisionService currentRevision,
                                                      SnapshotService snapshotService,
+                                                     SnapshotScheduler snapshotScheduler,
                                                      AdminPDPConfig adminPDPConfig) {
-        this.policyEventHandler = new PolicyEventHandler(pap, true);
+        this.pap = pap;
+        this.graphDb = graphDb;
+        // the snapshot service tracks the changes applied since its last full snapshot to write deltas
+        this.appliedEventListeners = List.of(snapshotService.deltaTracker());
+        this.policyEventHandler = new PolicyEventHandler(pap, true, appliedEventListeners);
         this.currentRevision = currentRevision;
-        this.snapshotService = snapshotService;
-        this.adminPDPConfig = adminPDPConfig;
+        this.snapshotScheduler = snapshotScheduler;
+        this.batchSize = adminPDPConfig.getSubscriptionBatchSize();
+        this.batchDelay = adminPDPConfig.getSubscriptionBatchDelay();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "subscription-batch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.batchLock = new ReentrantLock();
+        this.batch = new ArrayList<>();
+        this.appliedOnAppendRevision = -1;
+        this.batches = new LongAdder();
+        this.parked = new LongAdder();
+    }
+
+    @PostConstruct
+    public void init() {
+        synchronized (pap) {
+            appliedOnAppendRevision = AppliedRevision.read(graphDb);
+        }
+    }
+
+    /**
+     * Record events the write sequencer committed to the local policy itself after appending them, so they are skipped
+     * when the subscription delivers them. Must be called holding the PAP's monitor, in the same critical section as
+     * the append and the commit, so the subscription cannot apply them in between.
+     *
+     * @param events The committed events.
+     * @param lastRevision The revision of the last event.
+     * @param applyNanos The time it took to evaluate and commit the events.
+     */
+    public void onAppliedOnAppend(List<PMEvent> events, long lastRevision, long applyNanos) {
+        appliedOnAppendRevision = lastRevision;
+        for (PMEvent event : events) {
+            for (AppliedEventListener listener : appliedEventListeners) {
+                listener.onEventApplied(event);
+            }
+        }
+
+        currentRevision.set(lastRevision);
+        for (int i = 0; i < events.size(); i++) {
+            snapshotScheduler.onEventApplied(applyNanos / events.size());
+        }
     }
 
     @Override
     public void onEvent(PersistentSubscription subscription, int retryCount, ResolvedEvent event) {
-        RecordedEvent originalEvent = event.getEvent();
-        long revision = originalEvent.getRevision();
-
+        batchLock.lock();
         try {
-            PMEvent pmEvent = PMEvent.parseFrom(originalEvent.getEventData());
-            policyEventHandler.handleEvent(pmEvent);
-            currentRevision.set(revision);
-
-            subscription.ack(event);
-            snapshot(currentRevision.get());
-        } catch (PMException | InvalidProtocolBufferException e) {
-            logger.error("unexpected error handling event", e);
-            subscription.nack(NackAction.Park, e.getMessage(), event);
+            batchSubscription = subscription;
+            batch.add(event);
+
+            if (batch.size() >= batchSize || batchDelay <= 0) {
+                flush();
+            } else if (batch.size() == 1) {
+                flushTask = flusher.schedule(this::flushIfPending, batchDelay, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            batchLock.unlock();
         }
     }
 
     @Override
     public void onCancelled(PersistentSubscription subscription, Throwable exception) {
         logger.error("subscription cancelled", exception);
+
+        // the events were not acked, the new subscription delivers them again
+        batchLock.lock();
+        try {
+            batch.clear();
+            if (flushTask != null) {
+                flushTask.cancel(false);
+                flushTask = null;
+            }
+        } finally {
+            batchLock.unlock();
+        }
+    }
+
+    /**
+     * Stop the batch timer. Events waiting in the batch were not acked and are delivered again on the next start.
+     */
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+    }
+
+    private void flushIfPending() {
+        batchLock.lock();
+        try {
+            if (!batch.isEmpty()) {
+                flush();
+            }
+        } finally {
+            batchLock.unlock();
+        }
     }
 
-    private void snapshot(long revision) {
-        if (revision % adminPDPConfig.getSnapshotInterval() == 0) {
-            try (ExecutorService executor = Executors.newSingleThreadExecutor()) {
-                executor.submit(() -> {
-                    try {
-                        snapshotService.snapshot();
-                    } catch (PMException | ExecutionException | InterruptedException e) {
-                        throw new RuntimeException(e);
-                    }
-                });
-            } catch (RuntimeException e) {
-                logger.error("snapshot could not be completed", e);
+    /**
+     * Apply and ack the batch. Called holding batchLock so acks from the subscription and timer threads do
+     * not interleave.
+     */
+    private void flush() {
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+
+        List<ResolvedEvent> events = new ArrayList<>(batch);
+        batch.clear();
+
+        List<ResolvedEvent> decoded = new ArrayList<>(events.size());
+        List<PMEvent> pmEvents = new ArrayList<>(events.size());
+        for (ResolvedEvent event : events) {
+            try {
+                pmEvents.add(PMEvent.parseFrom(event.getEvent().getEventData()));
+                decoded.add(event);
+            } catch (InvalidProtocolBufferException e) {
+                logger.error("unexpected error handling event", e);
+                park(batchSubscription, event, e);
             }
         }
+
+        apply(batchSubscription, decoded, pmEvents);
+    }
+
+    /**
+     * Apply the events as one transaction and ack them. If the transaction fails apply each half on its own, and park
+     * a single event that cannot be applied.
+     */
+    private void apply(PersistentSubscription subscription, List<ResolvedEvent> events, List<PMEvent> pmEvents) {
+        if (events.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        int skipped = 0;
+        Exception failure = null;
+
+        // snapshots read the policy and the current revision under the PAP's monitor
+        synchronized (pap) {
+            // events committed by the write sequencer when it appended them come first, it appends in order
+            while (skipped < events.size() && revision(events.get(skipped)) <= appliedOnAppendRevision) {
+                skipped++;
+            }
+
+            if (skipped < events.size()) {
+                try {
+                    policyEventHandler.handleEvents(pmEvents.subList(skipped, pmEvents.size()));
+                    currentRevision.set(revision(events.getLast()));
+                } catch (PMException | RuntimeException e) {
+                    failure = e;
+                    rollback();
+                }
+            }
+        }
+        long applyNanos = System.nanoTime() - start;
+
+        if (failure == null) {
+            subscription.ack(events.iterator());
+
+            int applied = events.size() - skipped;
+            if (applied > 0) {
+                batches.increment();
+                for (int i = 0; i < applied; i++) {
+                    snapshotScheduler.onEventApplied(applyNanos / applied);
+                }
+            }
+
+            return;
+        }
+
+        if (skipped > 0) {
+            subscription.ack(events.subList(0, skipped).iterator());
+        }
+
+        List<ResolvedEvent> failedEvents = events.subList(skipped, events.size());
+        List<PMEvent> failedPmEvents = pmEvents.subList(skipped, pmEvents.size());
+        if (failedEvents.size() == 1) {
+            logger.error("unexpected error handling event", failure);
+            park(subscription, failedEvents.getFirst(), failure);
+            return;
+        }
+
+        logger.warn("failed to apply {} events up to revision {} as one transaction, splitting the batch",
+                    failedEvents.size(), revision(failedEvents.getLast()), failure);
+
+        int mid = failedEvents.size() / 2;
+        apply(subscription, failedEvents.subList(0, mid), failedPmEvents.subList(0, mid));
+        apply(subscription, failedEvents.subList(mid, failedEvents.size()),
+              failedPmEvents.subList(mid, failedPmEvents.size()));
+    }
+
+    private void rollback() {
+        try {
+            pap.rollback();
+        } catch (PMException | RuntimeException e) {
+            logger.error("could not roll back failed batch", e);
+        }
+    }
+
+    private void park(PersistentSubscription subscription, ResolvedEvent event, Exception e) {
+        parked.increment();
+        subscription.nack(NackAction.Park, e.getMessage(), event);
+    }
+
+    private static long revision(ResolvedEvent event) {
+        return event.getEvent().getRevision();
+    }
+
+    public long batchCount() {
+        return batches.sum();
+    }
+
+    public long parkedCount() {
+        return parked.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("pm.admin.subscription.batches", this,
+                                PolicyEventPersistentSubscriptionListener::batchCount)
+                .register(registry);
+        FunctionCounter.builder("pm.admin.subscription.parked", this,
+                                PolicyEventPersistentSubscriptionListener::parkedCount)
+                .register(registry);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,252 @@
+package gov.nist.csd.pm.pdp.admin.eventstore;
+
+import gov.nist.csd.pm.core.common.exception.PMException;
+import gov.nist.csd.pm.core.impl.neo4j.embedded.pap.Neo4jEmbeddedPAP;
+import gov.nist.csd.pm.core.pap.PAP;
+import gov.nist.csd.pm.pdp.admin.config.AdminPDPConfig;
+import gov.nist.csd.pm.pdp.admin.pap.NoCommitNeo4jPolicyStore;
+import gov.nist.csd.pm.pdp.shared.eventstore.SnapshotService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides when the admin PDP writes a snapshot and writes it on a dedicated thread, so the subscription never waits for
+ * a snapshot to be compressed and appended. A snapshot is due once any of these is reached since the last one:
+ * <ul>
+ *     <li>snapshot-interval events were applied</li>
+ *     <li>snapshot-max-age milliseconds have passed and at least one event was applied</li>
+ *     <li>the events applied took snapshot-max-replay-time milliseconds to apply, an estimate of how long a restart
+ *     would spend replaying them</li>
+ * </ul>
+ * Only one snapshot is written at a time. Events applied while it is written count towards the next one. After a
+ * failed snapshot the next attempt waits at least {@link #FAILURE_BACKOFF_NANOS}.
+ *
+ * Full snapshots are captured from a separate PAP over the Neo4j database, in its own read transaction, so events are
+ * only held back while the snapshot service reads and checks the revision, see {@link SnapshotService#snapshot(PAP)}.
+ */
+@Component
+public class SnapshotScheduler implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotScheduler.class);
+
+    private static final long AGE_CHECK_MILLIS = 1000;
+    static final long FAILURE_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final SnapshotService snapshotService;
+    private final GraphDatabaseService graphDb;
+    // only used on the snapshot thread
+    private PAP capturePap;
+    private final long eventThreshold;
+    private final long maxAgeNanos;
+    private final long maxReplayNanos;
+    private final ScheduledExecutorService executor;
+    private final AtomicBoolean inFlight;
+
+    private final AtomicLong pendingEvents;
+    private final AtomicLong pendingReplayNanos;
+    private volatile long lastSnapshotNanos;
+    private volatile long retryAfterNanos;
+
+    private final LongAdder written;
+    private final LongAdder failed;
+    private final LongAdder snapshotNanos;
+    private final LongAdder captureNanos;
+    private volatile long lastSize;
+    private volatile long lastRevision;
+
+    /**
+     * @param graphDb the database full snapshots are captured from, or null to capture them from the snapshot
+     *                service's PAP.
+     */
+    public SnapshotScheduler(SnapshotService snapshotService,
+                             GraphDatabaseService graphDb,
+                             AdminPDPConfig adminPDPConfig) {
+        this.snapshotService = snapshotService;
+        this.graphDb = graphDb;
+        this.eventThreshold = adminPDPConfig.getSnapshotInterval();
+        this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(adminPDPConfig.getSnapshotMaxAge());
+        this.maxReplayNanos = TimeUnit.MILLISECONDS.toNanos(adminPDPConfig.getSnapshotMaxReplayTime());
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "snapshot-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.inFlight = new AtomicBoolean();
+        this.pendingEvents = new AtomicLong();
+        this.pendingReplayNanos = new AtomicLong();
+        this.lastSnapshotNanos = System.nanoTime();
+        this.retryAfterNanos = lastSnapshotNanos;
+        this.written = new LongAdder();
+        this.failed = new LongAdder();
+        this.snapshotNanos = new LongAdder();
+        this.captureNanos = new LongAdder();
+        this.lastRevision = -1;
+
+        if (maxAgeNanos > 0) {
+            executor.scheduleWithFixedDelay(this::snapshotIfDue, AGE_CHECK_MILLIS, AGE_CHECK_MILLIS,
+                                            TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Record an applied event and the time it took to apply, and start a snapshot if one is due. Does not wait for the
+     * snapshot.
+     */
+    public void onEventApplied(long applyNanos) {
+        pendingEvents.incrementAndGet();
+        pendingReplayNanos.addAndGet(applyNanos);
+
+        if (isDue() && inFlight.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::snapshot);
+            } catch (RuntimeException e) {
+                // shutting down
+                inFlight.set(false);
+            }
+        }
+    }
+
+    boolean isDue() {
+        long events = pendingEvents.get();
+        if (events == 0) {
+            return false;
+        }
+
+        long now = System.nanoTime();
+        if (now - retryAfterNanos < 0) {
+            return false;
+        }
+
+        return events >= eventThreshold
+                || (maxReplayNanos > 0 && pendingReplayNanos.get() >= maxReplayNanos)
+                || (maxAgeNanos > 0 && now - lastSnapshotNanos >= maxAgeNanos);
+    }
+
+    private void snapshotIfDue() {
+        if (isDue() && inFlight.compareAndSet(false, true)) {
+            snapshot();
+        }
+    }
+
+    private void snapshot() {
+        // the events applied from here on may not be in the snapshot, they count towards the next one
+        long events = pendingEvents.get();
+        long replayNanos = pendingReplayNanos.get();
+
+        try {
+            SnapshotService.SnapshotResult result = snapshotService.snapshot(capturePap());
+
+            pendingEvents.addAndGet(-events);
+            pendingReplayNanos.addAndGet(-replayNanos);
+            lastSnapshotNanos = System.nanoTime();
+
+            written.increment();
+            snapshotNanos.add(result.totalNanos());
+            captureNanos.add(result.captureNanos());
+            lastSize = result.bytes();
+            lastRevision = result.revision();
+
+            logger.info("snapshot at revision {} written in {}ms, events held for {}ms ({} bytes, {} events since the "
+                                + "last snapshot)", result.revision(), TimeUnit.NANOSECONDS.toMillis(result.totalNanos()),
+                        TimeUnit.NANOSECONDS.toMillis(result.captureNanos()), result.bytes(), events);
+        } catch (PMException | ExecutionException | RuntimeException e) {
+            failed.increment();
+            retryAfterNanos = System.nanoTime() + FAILURE_BACKOFF_NANOS;
+            logger.error("snapshot could not be completed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.set(false);
+        }
+    }
+
+    /**
+     * The PAP full snapshots are captured from. Its store never commits, so its transactions only read.
+     */
+    private PAP capturePap() throws PMException {
+        if (capturePap == null && graphDb != null) {
+            capturePap = new Neo4jEmbeddedPAP(new NoCommitNeo4jPolicyStore(graphDb, getClass().getClassLoader()));
+        }
+
+        return capturePap;
+    }
+
+    /**
+     * Stop scheduling snapshots and wait for the one being written, if any.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warn("snapshot in progress did not complete within 30s");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long pendingEvents() {
+        return pendingEvents.get();
+    }
+
+    public long writtenCount() {
+        return written.sum();
+    }
+
+    public long failedCount() {
+        return failed.sum();
+    }
+
+    public double snapshotSeconds() {
+        return snapshotNanos.sum() / 1e9;
+    }
+
+    public double captureSeconds() {
+        return captureNanos.sum() / 1e9;
+    }
+
+    public long lastSize() {
+        return lastSize;
+    }
+
+    public long lastRevision() {
+        return lastRevision;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("pm.admin.snapshot.pending.events", this, SnapshotScheduler::pendingEvents)
+                .register(registry);
+        Gauge.builder("pm.admin.snapshot.revision", this, SnapshotScheduler::lastRevision)
+                .register(registry);
+        Gauge.builder("pm.admin.snapshot.size", this, SnapshotScheduler::lastSize)
+                .baseUnit("bytes")
+                .register(registry);
+        FunctionCounter.builder("pm.admin.snapshot.written", this, SnapshotScheduler::writtenCount)
+                .register(registry);
+        FunctionCounter.builder("pm.admin.snapshot.failed", this, SnapshotScheduler::failedCount)
+                .register(registry);
+        FunctionCounter.builder("pm.admin.snapshot.time", this, SnapshotScheduler::snapshotSeconds)
+                .baseUnit("seconds")
+                .register(registry);
+        FunctionCounter.builder("pm.admin.snapshot.capture.time", this, SnapshotScheduler::captureSeconds)
+                .baseUnit("seconds")
+                .register(registry);
+    }
+}
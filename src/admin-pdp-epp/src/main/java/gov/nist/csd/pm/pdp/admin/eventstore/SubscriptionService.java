@@ -2,6 +2,7 @@ package gov.nist.csd.pm.pdp.admin.eventstore;
 
 import com.eventstore.dbclient.CreatePersistentSubscriptionToStreamOptions;
 import com.eventstore.dbclient.PersistentSubscriptionToStreamInfo;
+import com.eventstore.dbclient.SubscribePersistentSubscriptionOptions;
 import gov.nist.csd.pm.pdp.admin.config.AdminPDPConfig;
 import gov.nist.csd.pm.pdp.admin.pap.Neo4jBootstrapper;
 import gov.nist.csd.pm.pdp.shared.eventstore.CurrentRevisionService;
@@ -29,6 +30,11 @@ public class SubscriptionService {
 
     private static final Logger logger = LoggerFactory.getLogger(SubscriptionService.class);
 
+    /**
+     * The client's default buffer size.
+     */
+    private static final int MIN_BUFFER_SIZE = 10;
+
     private final PolicyEventPersistentSubscriptionListener policyEventPersistentSubscriptionListener;
     private final EventStoreConnectionManager eventStoreConnectionManager;
     private final EventStoreDBConfig eventStoreDBConfig;
@@ -93,9 +99,13 @@ public class SubscriptionService {
         String eventStream = eventStoreDBConfig.getEventStream();
         String group = adminPDPConfig.getEsdbConsumerGroup();
 
+        // the server sends at most bufferSize unacked events, so a full batch must fit in it
+        SubscribePersistentSubscriptionOptions options = SubscribePersistentSubscriptionOptions.get()
+                .bufferSize(Math.max(MIN_BUFFER_SIZE, adminPDPConfig.getSubscriptionBatchSize()));
+
         // create the persistent subscription
         eventStoreConnectionManager.getOrInitPersistentSubClient()
-                .subscribeToStream(eventStream, group, policyEventPersistentSubscriptionListener)
+                .subscribeToStream(eventStream, group, options, policyEventPersistentSubscriptionListener)
                 .get(5, TimeUnit.SECONDS);
 
         setCurrentRevision(eventStream, group);
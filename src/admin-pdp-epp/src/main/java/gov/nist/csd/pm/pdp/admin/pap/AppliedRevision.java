@@ -0,0 +1,44 @@
+package gov.nist.csd.pm.pdp.admin.pap;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+
+import java.util.Map;
+
+/**
+ * The revision of the last event the admin PDP committed to Neo4j itself after appending it to the event store. It is
+ * stored on a single node outside the policy graph and written in the same transaction as the events, so the stored
+ * revision and the policy never disagree, including across restarts.
+ */
+public class AppliedRevision {
+
+    static final Label LABEL = Label.label("PMAppliedRevision");
+    static final String REVISION_PROPERTY = "revision";
+
+    private AppliedRevision() {
+    }
+
+    /**
+     * Store the revision in the given transaction.
+     */
+    public static void write(Transaction tx, long revision) {
+        tx.execute("MERGE (r:" + LABEL.name() + ") SET r." + REVISION_PROPERTY + " = $revision",
+                   Map.of("revision", revision));
+    }
+
+    /**
+     * @return The stored revision, or -1 if none was stored.
+     */
+    public static long read(GraphDatabaseService graphDb) {
+        try (Transaction tx = graphDb.beginTx()) {
+            Node node = tx.findNodes(LABEL).stream().findFirst().orElse(null);
+            if (node == null) {
+                return -1;
+            }
+
+            return (long) node.getProperty(REVISION_PROPERTY, -1L);
+        }
+    }
+}
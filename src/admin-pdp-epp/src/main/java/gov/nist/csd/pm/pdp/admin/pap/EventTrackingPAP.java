@@ -18,8 +18,11 @@ public class EventTrackingPAP extends Neo4jEmbeddedPAP {
 
     private static final Logger logger = LoggerFactory.getLogger(EventTrackingPAP.class);
 
+    private final NoCommitNeo4jPolicyStore noCommitPolicyStore;
+
     public EventTrackingPAP(NoCommitNeo4jPolicyStore policyStore, List<Operation<?>> plugins) throws PMException {
         super(policyStore);
+        this.noCommitPolicyStore = policyStore;
 
         for (Operation<?> op : plugins) {
             plugins().addOperation(op);
@@ -33,7 +36,24 @@ public class EventTrackingPAP extends Neo4jEmbeddedPAP {
         return (EventTrackingPolicyModifier) super.modify();
     }
 
+    /**
+     * Commit the open transaction instead of rolling it back, recording the revision of its last event. Only for a
+     * transaction whose events were appended to the event store at the expected revision.
+     */
+    public void commitAppended(long revision) throws PMException {
+        noCommitPolicyStore.commitAppended(revision);
+    }
+
     public long publishToEventStore(EventStoreDBClient esClient, String stream, long revision) {
+        return appendToEventStore(esClient, stream, revision, modify().getEvents());
+    }
+
+    /**
+     * Append the events to the stream, expecting it to be at the given revision.
+     *
+     * @return The revision of the last event appended, or -1 if there were no events.
+     */
+    public static long appendToEventStore(EventStoreDBClient esClient, String stream, long revision, List<PMEvent> events) {
         AppendToStreamOptions options = AppendToStreamOptions.get();
 
         if (revision == 0) {
@@ -42,7 +62,6 @@ public class EventTrackingPAP extends Neo4jEmbeddedPAP {
             options.expectedRevision(revision);
         }
 
-        List<PMEvent> events = modify().getEvents();
         if (events.isEmpty()) {
             return -1;
         }
@@ -71,7 +90,7 @@ public class EventTrackingPAP extends Neo4jEmbeddedPAP {
         return events.size() + revision;
     }
 
-    private List<EventData> pmEventsToEventDataList(List<PMEvent> events) {
+    private static List<EventData> pmEventsToEventDataList(List<PMEvent> events) {
         List<EventData> eventDataList = new ArrayList<>();
         for (PMEvent event : events) {
             EventData eventData = EventData.builderAsBinary(
@@ -5,9 +5,20 @@ import gov.nist.csd.pm.core.impl.neo4j.embedded.pap.store.Neo4jEmbeddedPolicySto
 import org.neo4j.graphdb.GraphDatabaseService;
 
 public class NoCommitNeo4jPolicyStore extends Neo4jEmbeddedPolicyStore {
+
+	private final NoCommitTxHandler txHandler;
+
 	public NoCommitNeo4jPolicyStore(GraphDatabaseService graphDb, ClassLoader classLoader) throws PMException {
 		super(graphDb, classLoader);
 
-		setTxHandler(new NoCommitTxHandler(graphDb));
+		txHandler = new NoCommitTxHandler(graphDb);
+		setTxHandler(txHandler);
+	}
+
+	/**
+	 * Commit the open transaction after all, see {@link NoCommitTxHandler#commitAppended(long)}.
+	 */
+	public void commitAppended(long revision) throws PMException {
+		txHandler.commitAppended(revision);
 	}
 }
@@ -25,6 +25,27 @@ public class NoCommitTxHandler extends TxHandler {
         rollback();
     }
 
+    /**
+     * Commit the open transaction after all, with the revision of its last event, once its events have been appended
+     * to the event store.
+     *
+     * @throws PMException If there is no open transaction.
+     */
+    public void commitAppended(long revision) throws PMException {
+        if (tx == null) {
+            throw new PMException("no transaction to commit");
+        }
+
+        try {
+            AppliedRevision.write(tx, revision);
+            tx.commit();
+        } finally {
+            tx.close();
+            tx = null;
+            txCounter = 0;
+        }
+    }
+
     @Override
     public void rollback() {
         txCounter = 0;
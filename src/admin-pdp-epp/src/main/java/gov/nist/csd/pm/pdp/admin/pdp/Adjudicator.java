@@ -5,79 +5,74 @@ import gov.nist.csd.pm.core.common.exception.PMException;
 import gov.nist.csd.pm.core.common.exception.PMRuntimeException;
 import gov.nist.csd.pm.core.impl.grpc.util.FromProtoUtil;
 import gov.nist.csd.pm.core.pap.query.model.context.UserContext;
-import gov.nist.csd.pm.pdp.admin.pap.EventTrackingPAP;
+import gov.nist.csd.pm.pdp.admin.config.AdminPDPConfig;
 import gov.nist.csd.pm.pdp.shared.eventstore.CurrentRevisionService;
-import gov.nist.csd.pm.pdp.shared.eventstore.EventStoreConnectionManager;
-import gov.nist.csd.pm.pdp.shared.eventstore.EventStoreDBConfig;
+import gov.nist.csd.pm.pdp.shared.eventstore.LatestRevisionTracker;
+import gov.nist.csd.pm.pdp.shared.interceptor.RevisionTokenInterceptor;
 import gov.nist.csd.pm.proto.v1.pdp.adjudication.OperationRequest;
-import io.github.resilience4j.retry.Retry;
-import io.github.resilience4j.retry.RetryConfig;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
-import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Supplier;
 
 @Component
-public class Adjudicator {
+public class Adjudicator implements MeterBinder {
 
     private static final Logger logger = LoggerFactory.getLogger(Adjudicator.class);
 
-    private final CurrentRevisionService currentRevision;
-    private final Retry retry;
-    private final EventStoreDBConfig eventStoreDBConfig;
-    private final EventStoreConnectionManager eventStoreConnectionManager;
-    private final ContextFactory contextFactory;
+    private static final long BASE_BACKOFF_MILLIS = 5;
 
-    public Adjudicator(EventStoreDBConfig eventStoreDBConfig,
-                       EventStoreConnectionManager eventStoreConnectionManager,
+    private final ContextFactory contextFactory;
+    private final WriteSequencer writeSequencer;
+    private final CurrentRevisionService currentRevision;
+    private final LatestRevisionTracker latestRevisionTracker;
+    private final int maxAttempts;
+    private final long maxBackoffMillis;
+    private final long catchUpTimeout;
+    private final LongAdder conflicts;
+
+    public Adjudicator(ContextFactory contextFactory,
+                       WriteSequencer writeSequencer,
                        CurrentRevisionService currentRevision,
-                       ContextFactory contextFactory) {
-        this.eventStoreDBConfig = eventStoreDBConfig;
-        this.eventStoreConnectionManager = eventStoreConnectionManager;
-        this.currentRevision = currentRevision;
+                       LatestRevisionTracker latestRevisionTracker,
+                       AdminPDPConfig adminPDPConfig) {
         this.contextFactory = contextFactory;
-        this.retry = Retry.of("Adjudicator", RetryConfig.custom()
-                .retryExceptions(WrongExpectedVersionException.class)
-                .maxAttempts(3)
-                .waitDuration(Duration.ofSeconds(2))
-                .build());
+        this.writeSequencer = writeSequencer;
+        this.currentRevision = currentRevision;
+        this.latestRevisionTracker = latestRevisionTracker;
+        this.maxAttempts = adminPDPConfig.getWriteMaxAttempts();
+        this.maxBackoffMillis = adminPDPConfig.getWriteRetryMaxBackoff();
+        this.catchUpTimeout = adminPDPConfig.getRevisionConsistencyTimeout();
+        this.conflicts = new LongAdder();
     }
 
     public Object adjudicateOperation(String operation, Map<String, Object> args) throws PMException {
-        Supplier<Object> supplier = () -> {
-            try {
-                NGACContext ctx = contextFactory.createContext();
-                UserContext userContext = contextFactory.createUserContext(ctx.pap());
-
-                Object result = ctx.pdp().adjudicateOperation(userContext, operation, args);
-                publishEvents(ctx.pap());
-
-                return result;
-            } catch (Exception e) {
-                throw new PMRuntimeException(e);
-            }
-        };
+        return write(ctx -> {
+            UserContext userContext = contextFactory.createUserContext(ctx.pap());
 
-        return executeWithRetry(supplier);
+            return ctx.pdp().adjudicateOperation(userContext, operation, args);
+        }).result();
     }
 
     public void adjudicateRoutine(List<OperationRequest> adminCommands) throws PMException {
-        adjudicateTransaction(ctx -> {
+        write(ctx -> {
             UserContext userContext = contextFactory.createUserContext(ctx.pap());
 
-            ctx.pdp().runTx(userContext, pdpTx -> {
+            return ctx.pdp().runTx(userContext, pdpTx -> {
                 for (OperationRequest operationRequest : adminCommands) {
                     try {
-                        Object result = ctx.pdp().adjudicateOperation(userContext,
-                                                                      operationRequest.getName(),
-                                                                      FromProtoUtil.fromValueMap(operationRequest.getArgs()));
-                        publishEvents(ctx.pap());
-
-                        return result;
+                        return ctx.pdp().adjudicateOperation(userContext,
+                                                             operationRequest.getName(),
+                                                             FromProtoUtil.fromValueMap(operationRequest.getArgs()));
                     } catch (Exception e) {
                         throw new PMRuntimeException(e);
                     }
@@ -89,15 +84,33 @@ public class Adjudicator {
     }
 
     public <R> R adjudicateQuery(PDPTxFunction<R> consumer) throws PMException {
-        NGACContext ctx = contextFactory.createContext();
+        NGACContext ctx = contextFactory.acquireContext();
+        try {
+            return ctx.pdp().runTx(contextFactory.createUserContext(ctx.pap()), pdpTx -> consumer.apply(ctx.pap(), pdpTx));
+        } finally {
+            contextFactory.releaseContext(ctx);
+        }
+    }
 
-        return ctx.pdp().runTx(contextFactory.createUserContext(ctx.pap()), pdpTx -> consumer.apply(ctx.pap(), pdpTx));
+    /**
+     * Run a query on a read only context. The consumer must not modify the policy, nothing it does is written.
+     */
+    public <R> R adjudicateReadQuery(PDPTxFunction<R> consumer) throws PMException {
+        ReadOnlyContext ctx = contextFactory.acquireReadOnlyContext();
+        try {
+            return ctx.pdp().runTx(contextFactory.createUserContext(ctx.pap()), pdpTx -> consumer.apply(ctx.pap(), pdpTx));
+        } finally {
+            contextFactory.releaseReadOnlyContext(ctx);
+        }
     }
 
     public Object executePML(String pml) throws PMException {
-        NGACContext ctx = contextFactory.createContext();
-
-        return ctx.pdp().runTx(contextFactory.createUserContext(ctx.pap()), pdpTx -> pdpTx.executePML(pml));
+        NGACContext ctx = contextFactory.acquireContext();
+        try {
+            return ctx.pdp().runTx(contextFactory.createUserContext(ctx.pap()), pdpTx -> pdpTx.executePML(pml));
+        } finally {
+            contextFactory.releaseContext(ctx);
+        }
     }
 
     /**
@@ -107,40 +120,119 @@ public class Adjudicator {
      * @return The revision of the last event in the transaction.
      */
     public long adjudicateTransaction(PMConsumer<NGACContext> txConsumer) throws PMException {
-        Supplier<Long> supplier = () -> {
+        return write(ctx -> {
+            txConsumer.accept(ctx);
+            return null;
+        }).revision();
+    }
+
+    /**
+     * Submit the write to the sequencer, which appends its events together with any other writes submitted at the same
+     * time, and retry it if another writer appended to the event stream first.
+     */
+    private <T> WriteSequencer.Written<T> write(WriteSequencer.Write<T> write) throws PMException {
+        Supplier<WriteSequencer.Written<T>> supplier = () -> {
             try {
-                NGACContext ctx = contextFactory.createContext();
-                txConsumer.accept(ctx);
-                return publishEvents(ctx.pap());
+                return writeSequencer.submit(write);
             } catch (PMException e) {
                 throw new PMRuntimeException(e);
             }
         };
 
-        return executeWithRetry(supplier);
+        WriteSequencer.Written<T> written = executeWithRetry(supplier);
+
+        // returned to the client so it can read its own write from any PDP
+        if (written.revision() >= 0) {
+            RevisionTokenInterceptor.recordRevision(written.revision());
+        }
+
+        return written;
     }
 
+    /**
+     * Run the supplier, and if another writer appended to the event stream first, wait for the local policy to apply
+     * what was appended and run it again. The first retry runs as soon as the policy has caught up, later ones also
+     * wait a random backoff of up to write-retry-max-backoff milliseconds so writers that keep conflicting spread out.
+     * Gives up after write-max-attempts attempts.
+     */
     private <T> T executeWithRetry(Supplier<T> supplier) throws PMException {
+        for (int attempt = 1; ; attempt++) {
+            WrongExpectedVersionException conflict;
+            try {
+                return supplier.get();
+            } catch (PMRuntimeException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof PMException p) {
+                    throw p;
+                }
+
+                if (!(cause instanceof WrongExpectedVersionException w)) {
+                    throw e;
+                }
+
+                conflict = w;
+            } catch (WrongExpectedVersionException e) {
+                conflict = e;
+            }
+
+            conflicts.increment();
+            if (attempt >= maxAttempts) {
+                throw new PMException(conflict.getMessage());
+            }
+
+            logger.debug("write conflicted on attempt {}, retrying once caught up", attempt);
+            awaitCatchUp(attempt);
+        }
+    }
+
+    private void awaitCatchUp(int attempt) throws PMException {
+        // the stream is at least one event past the revision the write expected, and at the latest the tracker has seen
+        long target = currentRevision.get() + 1;
         try {
-            return Retry.decorateSupplier(retry, supplier).get();
-        } catch (PMRuntimeException e) {
-            Throwable cause = e.getCause();
-            if (cause instanceof PMException p) {
-                throw p;
-            } else if (cause instanceof WrongExpectedVersionException w) {
-                throw new PMException(w.getMessage());
+            target = Math.max(target, latestRevisionTracker.get(0));
+        } catch (TimeoutException e) {
+            // not subscribed yet, wait for the next event only
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PMException("interrupted waiting to retry write");
+        }
+
+        try {
+            if (!currentRevision.awaitRevision(target, catchUpTimeout)) {
+                logger.warn("local policy did not reach revision {} within {}ms, retrying anyway", target,
+                            catchUpTimeout);
+            }
+
+            long backoff = backoffMillis(attempt, maxBackoffMillis);
+            if (backoff > 0) {
+                Thread.sleep(backoff);
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PMException("interrupted waiting to retry write");
+        }
+    }
 
-            throw e;
+    /**
+     * A random backoff before the retry following the given attempt: none after the first conflict, then up to a
+     * bound that doubles with each attempt and is capped at maxBackoffMillis.
+     */
+    static long backoffMillis(int attempt, long maxBackoffMillis) {
+        if (attempt < 2 || maxBackoffMillis <= 0) {
+            return 0;
         }
+
+        long bound = Math.min(maxBackoffMillis, BASE_BACKOFF_MILLIS << Math.min(attempt - 2, 20));
+        return ThreadLocalRandom.current().nextLong(bound + 1);
+    }
+
+    public long conflictCount() {
+        return conflicts.sum();
     }
 
-    private long publishEvents(EventTrackingPAP pap) throws PMException {
-        long revision = currentRevision.get();
-        return pap.publishToEventStore(
-                eventStoreConnectionManager.getOrInitClient(),
-                eventStoreDBConfig.getEventStream(),
-                revision
-        );
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("pm.admin.write.conflicts", this, Adjudicator::conflictCount)
+                .register(registry);
     }
-}
\ No newline at end of file
+}
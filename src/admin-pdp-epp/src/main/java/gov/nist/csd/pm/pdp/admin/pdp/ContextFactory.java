@@ -2,30 +2,53 @@ package gov.nist.csd.pm.pdp.admin.pdp;
 
 import gov.nist.csd.pm.core.common.exception.PMException;
 import gov.nist.csd.pm.core.epp.EPP;
+import gov.nist.csd.pm.core.impl.neo4j.embedded.pap.Neo4jEmbeddedPAP;
 import gov.nist.csd.pm.core.pap.PAP;
 import gov.nist.csd.pm.core.pap.operation.Operation;
 import gov.nist.csd.pm.core.pap.query.model.context.UserContext;
 import gov.nist.csd.pm.core.pdp.PDP;
+import gov.nist.csd.pm.pdp.admin.config.AdminPDPConfig;
 import gov.nist.csd.pm.pdp.admin.pap.EventTrackingPAP;
 import gov.nist.csd.pm.pdp.admin.pap.NoCommitNeo4jPolicyStore;
 import gov.nist.csd.pm.pdp.shared.auth.UserContextFromHeader;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
 
 /**
- * Factory for creating NGACContext instances.
+ * Factory for creating NGACContext instances. Building a context registers every plugin operation and creates a policy
+ * store, PAP, PDP and EPP, so contexts are pooled: {@link #acquireContext()} takes an idle context or builds one, and
+ * {@link #releaseContext(NGACContext)} resets it, clearing its tracked events and rolling back any open transaction,
+ * and keeps it for the next request. At most context-pool-size idle contexts are kept. A context is only ever used by
+ * one request at a time.
+ *
+ * Queries use {@link ReadOnlyContext}s from a separate pool of the same size, which skip event tracking, the EPP and
+ * plugin registration. Their transactions are not read mode transactions, the embedded Neo4j API only opens write
+ * capable ones. They are read only because they are always rolled back: the store never commits, and nothing calls
+ * {@link NoCommitNeo4jPolicyStore#commitAppended(long)} on it. A write made through one would take Neo4j write locks
+ * until the context is released, so queries must only read through it.
  */
 @Component
-public class ContextFactory {
+public class ContextFactory implements MeterBinder {
 
     private final GraphDatabaseService graphDb;
     private final List<Operation<?>> plugins;
+    private final ContextPool<NGACContext> contexts;
+    private final ContextPool<ReadOnlyContext> readOnlyContexts;
 
-    public ContextFactory(GraphDatabaseService graphDb, List<Operation<?>> plugins) {
+    public ContextFactory(GraphDatabaseService graphDb, List<Operation<?>> plugins, AdminPDPConfig adminPDPConfig) {
         this.graphDb = graphDb;
         this.plugins = plugins;
+        this.contexts = new ContextPool<>(adminPDPConfig.getContextPoolSize(), this::createContext, ctx -> {
+            ctx.pap().modify().getEvents().clear();
+            // a no-op unless the request left a transaction open
+            ctx.pap().rollback();
+        });
+        this.readOnlyContexts = new ContextPool<>(adminPDPConfig.getContextPoolSize(), this::createReadOnlyContext,
+                                                  ctx -> ctx.pap().rollback());
     }
 
     /**
@@ -46,7 +69,66 @@ public class ContextFactory {
         return new NGACContext(pdp, epp, pap);
     }
 
+    /**
+     * Creates a new ReadOnlyContext. Its transactions are ordinary Neo4j transactions that are always rolled back, its
+     * store never commits, so nothing written through it reaches the policy.
+     *
+     * @return The created context.
+     * @throws PMException If an error occurs during context creation
+     */
+    public ReadOnlyContext createReadOnlyContext() throws PMException {
+        NoCommitNeo4jPolicyStore noCommitNeo4jPolicyStore = new NoCommitNeo4jPolicyStore(graphDb, getClass().getClassLoader());
+        Neo4jEmbeddedPAP pap = new Neo4jEmbeddedPAP(noCommitNeo4jPolicyStore);
+
+        return new ReadOnlyContext(new PDP(pap), pap);
+    }
+
+    /**
+     * Takes an idle context from the pool, or creates one if there is none. The context must be passed to
+     * {@link #releaseContext(NGACContext)} once the request is done with it.
+     *
+     * @return A context with no tracked events and no open transaction.
+     * @throws PMException If an error occurs during context creation
+     */
+    public NGACContext acquireContext() throws PMException {
+        return contexts.acquire();
+    }
+
+    /**
+     * Resets the context and returns it to the pool. A context that cannot be reset, or does not fit in the pool, is
+     * discarded.
+     */
+    public void releaseContext(NGACContext ctx) {
+        contexts.release(ctx);
+    }
+
+    /**
+     * Takes an idle read only context from the pool, or creates one if there is none. The context must be passed to
+     * {@link #releaseReadOnlyContext(ReadOnlyContext)} once the query is done with it.
+     */
+    public ReadOnlyContext acquireReadOnlyContext() throws PMException {
+        return readOnlyContexts.acquire();
+    }
+
+    public void releaseReadOnlyContext(ReadOnlyContext ctx) {
+        readOnlyContexts.release(ctx);
+    }
+
     public UserContext createUserContext(PAP pap) throws PMException {
         return UserContextFromHeader.get(pap);
     }
-}
\ No newline at end of file
+
+    ContextPool<NGACContext> contextPool() {
+        return contexts;
+    }
+
+    ContextPool<ReadOnlyContext> readOnlyContextPool() {
+        return readOnlyContexts;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        contexts.bindTo(registry, "pm.admin.context");
+        readOnlyContexts.bindTo(registry, "pm.admin.context.readonly");
+    }
+}
@@ -0,0 +1,114 @@
+package gov.nist.csd.pm.pdp.admin.pdp;
+
+import gov.nist.csd.pm.core.common.exception.PMException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps up to size idle contexts for reuse. A released context is reset before it is kept, one that cannot be reset or
+ * does not fit is discarded. A size of 0 creates a context on every acquire and keeps none.
+ */
+class ContextPool<C> {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContextPool.class);
+
+    private final Factory<C> factory;
+    private final Reset<C> reset;
+    private final BlockingQueue<C> idle;
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder acquireNanos = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+
+    ContextPool(int size, Factory<C> factory, Reset<C> reset) {
+        this.factory = factory;
+        this.reset = reset;
+        this.idle = size > 0 ? new ArrayBlockingQueue<>(size) : null;
+    }
+
+    C acquire() throws PMException {
+        long start = System.nanoTime();
+        try {
+            C ctx = idle == null ? null : idle.poll();
+            if (ctx == null) {
+                ctx = factory.create();
+                created.increment();
+            }
+
+            return ctx;
+        } finally {
+            acquired.increment();
+            acquireNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    void release(C ctx) {
+        if (idle == null) {
+            return;
+        }
+
+        try {
+            reset.reset(ctx);
+        } catch (PMException | RuntimeException e) {
+            logger.warn("could not reset context, discarding it", e);
+            discarded.increment();
+            return;
+        }
+
+        if (!idle.offer(ctx)) {
+            discarded.increment();
+        }
+    }
+
+    int idleCount() {
+        return idle == null ? 0 : idle.size();
+    }
+
+    long acquiredCount() {
+        return acquired.sum();
+    }
+
+    double acquireSeconds() {
+        return acquireNanos.sum() / 1e9;
+    }
+
+    long createdCount() {
+        return created.sum();
+    }
+
+    long discardedCount() {
+        return discarded.sum();
+    }
+
+    void bindTo(MeterRegistry registry, String prefix) {
+        Gauge.builder(prefix + ".idle", this, ContextPool::idleCount)
+                .register(registry);
+        FunctionCounter.builder(prefix + ".acquired", this, ContextPool::acquiredCount)
+                .register(registry);
+        FunctionCounter.builder(prefix + ".acquire.time", this, ContextPool::acquireSeconds)
+                .baseUnit("seconds")
+                .register(registry);
+        FunctionCounter.builder(prefix + ".created", this, ContextPool::createdCount)
+                .register(registry);
+        FunctionCounter.builder(prefix + ".discarded", this, ContextPool::discardedCount)
+                .register(registry);
+    }
+
+    @FunctionalInterface
+    interface Factory<C> {
+        C create() throws PMException;
+    }
+
+    @FunctionalInterface
+    interface Reset<C> {
+        void reset(C ctx) throws PMException;
+    }
+}
@@ -50,7 +50,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	@Override
 	public void nodeExists(NodeExistsRequest request, StreamObserver<NodeExistsResponse> responseObserver) {
 		try {
-			boolean exists = adjudicator.adjudicateQuery((pap, pdpTx) -> pdpTx.query().graph().nodeExists(FromProtoUtil.resolveNodeRefId(pap, request.getNode())));
+			boolean exists = adjudicator.adjudicateReadQuery((pap, pdpTx) -> pdpTx.query().graph().nodeExists(FromProtoUtil.resolveNodeRefId(pap, request.getNode())));
 
 			responseObserver.onNext(NodeExistsResponse.newBuilder().setExists(exists).build());
 			responseObserver.onCompleted();
@@ -65,7 +65,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	@Override
 	public void getNode(GetNodeRequest request, StreamObserver<GetNodeResponse> responseObserver) {
 		try {
-			Node node =  adjudicator.adjudicateQuery((pap, pdpTx) -> pdpTx.query().graph().getNodeById(FromProtoUtil.resolveNodeRefId(pap, request.getNode())));
+			Node node =  adjudicator.adjudicateReadQuery((pap, pdpTx) -> pdpTx.query().graph().getNodeById(FromProtoUtil.resolveNodeRefId(pap, request.getNode())));
 
 			responseObserver.onNext(GetNodeResponse.newBuilder().setNode(ToProtoUtil.toNodeProto(node)).build());
 			responseObserver.onCompleted();
@@ -80,7 +80,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	@Override
 	public void getNodeId(GetNodeIdRequest request, StreamObserver<GetNodeIdResponse> responseObserver) {
 		try {
-			long id = adjudicator.adjudicateQuery((pap, pdpTx) -> pdpTx.query().graph().getNodeId(request.getName()));
+			long id = adjudicator.adjudicateReadQuery((pap, pdpTx) -> pdpTx.query().graph().getNodeId(request.getName()));
 
 			responseObserver.onNext(GetNodeIdResponse.newBuilder().setId(id).build());
 			responseObserver.onCompleted();
@@ -95,7 +95,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	@Override
 	public void searchNodes(SearchNodesRequest request, StreamObserver<SearchNodesResponse> responseObserver) {
 		try {
-			Collection<Node> nodes = adjudicator.adjudicateQuery((pap, pdpTx) -> pdpTx.query().graph().search(
+			Collection<Node> nodes = adjudicator.adjudicateReadQuery((pap, pdpTx) -> pdpTx.query().graph().search(
 					NodeType.toNodeType(request.getType().name()),
 					request.getPropertiesMap()
 			));
@@ -118,7 +118,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	@Override
 	public void getPolicyClasses(GetPolicyClassesRequest request, StreamObserver<GetPolicyClassesResponse> responseObserver) {
 		try {
-			List<gov.nist.csd.pm.proto.v1.model.Node> nodeProtos = adjudicator.adjudicateQuery((pap, pdpTx) -> {
+			List<gov.nist.csd.pm.proto.v1.model.Node> nodeProtos = adjudicator.adjudicateReadQuery((pap, pdpTx) -> {
 				Collection<Long> policyClasses = pdpTx.query().graph().getPolicyClasses();
 				return nodeIdsToNodeProtoList(pap, policyClasses);
 			});
@@ -137,7 +137,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	public void getAdjacentDescendants(GetAdjacentDescendantsRequest request,
 	                                   StreamObserver<GetAdjacentDescendantsResponse> responseObserver) {
 		try {
-			Collection<gov.nist.csd.pm.proto.v1.model.Node> descs = adjudicator.adjudicateQuery((pap, pdpTx) -> {
+			Collection<gov.nist.csd.pm.proto.v1.model.Node> descs = adjudicator.adjudicateReadQuery((pap, pdpTx) -> {
 				Collection<Long> adjacentDescendants = pdpTx.query().graph().getAdjacentDescendants(FromProtoUtil.resolveNodeRefId(pap, request.getNode()));
 				return nodeIdsToNodeProtoList(pap, adjacentDescendants);
 			});
@@ -156,7 +156,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	public void getAdjacentAscendants(GetAdjacentAscendantsRequest request,
 	                                  StreamObserver<GetAdjacentAscendantsResponse> responseObserver) {
 		try {
-			Collection<gov.nist.csd.pm.proto.v1.model.Node> ascs = adjudicator.adjudicateQuery((pap, pdpTx) -> {
+			Collection<gov.nist.csd.pm.proto.v1.model.Node> ascs = adjudicator.adjudicateReadQuery((pap, pdpTx) -> {
 				Collection<Long> adjacentAscendants = pdpTx.query().graph().getAdjacentAscendants(FromProtoUtil.resolveNodeRefId(pap, request.getNode()));
 				return nodeIdsToNodeProtoList(pap, adjacentAscendants);
 			});
@@ -175,7 +175,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	public void getAssociationsWithSource(GetAssociationsWithSourceRequest request,
 	                                      StreamObserver<GetAssociationsWithSourceResponse> responseObserver) {
 		try {
-			List<gov.nist.csd.pm.proto.v1.model.Association> associations = adjudicator.adjudicateQuery((pap, pdpTx) -> {
+			List<gov.nist.csd.pm.proto.v1.model.Association> associations = adjudicator.adjudicateReadQuery((pap, pdpTx) -> {
 				Collection<Association> associationsWithSource = pdpTx.query().graph().getAssociationsWithSource(FromProtoUtil.resolveNodeRefId(pap, request.getNode()));
 				return toAssociationProtoList(pap, associationsWithSource);
 			});
@@ -194,7 +194,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	public void getAssociationsWithTarget(GetAssociationsWithTargetRequest request,
 	                                      StreamObserver<GetAssociationsWithTargetResponse> responseObserver) {
 		try {
-			List<gov.nist.csd.pm.proto.v1.model.Association> associations = adjudicator.adjudicateQuery((pap, pdpTx) -> {
+			List<gov.nist.csd.pm.proto.v1.model.Association> associations = adjudicator.adjudicateReadQuery((pap, pdpTx) -> {
 				Collection<Association> associationsWithTarget = pdpTx.query().graph().getAssociationsWithTarget(FromProtoUtil.resolveNodeRefId(pap, request.getNode()));
 				return toAssociationProtoList(pap, associationsWithTarget);
 			});
@@ -212,7 +212,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	@Override
 	public void getAscendantSubgraph(GetAscendantSubgraphRequest request, StreamObserver<GetAscendantSubgraphResponse> responseObserver) {
 		try {
-			Subgraph subgraph = adjudicator.adjudicateQuery((pap, pdpTx) -> {
+			Subgraph subgraph = adjudicator.adjudicateReadQuery((pap, pdpTx) -> {
 				return pdpTx.query().graph().getAscendantSubgraph(FromProtoUtil.resolveNodeRefId(pap, request.getNode()));
 			});
 
@@ -229,7 +229,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	@Override
 	public void getDescendantSubgraph(GetDescendantSubgraphRequest request, StreamObserver<GetDescendantSubgraphResponse> responseObserver) {
 		try {
-			Subgraph subgraph = adjudicator.adjudicateQuery((pap, pdpTx) -> {
+			Subgraph subgraph = adjudicator.adjudicateReadQuery((pap, pdpTx) -> {
 				return pdpTx.query().graph().getDescendantSubgraph(FromProtoUtil.resolveNodeRefId(pap, request.getNode()));
 			});
 
@@ -247,7 +247,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	public void getAttributeDescendants(GetAttributeDescendantsRequest request,
 	                                    StreamObserver<GetAttributeDescendantsResponse> responseObserver) {
 		try {
-			List<gov.nist.csd.pm.proto.v1.model.Node> nodes = adjudicator.adjudicateQuery((pap, pdpTx) -> {
+			List<gov.nist.csd.pm.proto.v1.model.Node> nodes = adjudicator.adjudicateReadQuery((pap, pdpTx) -> {
 				Collection<Long> descs = pdpTx.query().graph().getAttributeDescendants(FromProtoUtil.resolveNodeRefId(pap, request.getNode()));
 				return nodeIdsToNodeProtoList(pap, descs);
 			});
@@ -266,7 +266,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	public void getPolicyClassDescendants(GetPolicyClassDescendantsRequest request,
 	                                      StreamObserver<GetPolicyClassDescendantsResponse> responseObserver) {
 		try {
-			Collection<gov.nist.csd.pm.proto.v1.model.Node> descs = adjudicator.adjudicateQuery((pap, pdpTx) -> {
+			Collection<gov.nist.csd.pm.proto.v1.model.Node> descs = adjudicator.adjudicateReadQuery((pap, pdpTx) -> {
 				Collection<Long> policyClassDescendants = pdpTx.query().graph().getPolicyClassDescendants(FromProtoUtil.resolveNodeRefId(pap, request.getNode()));
 				return nodeIdsToNodeProtoList(pap, policyClassDescendants);
 			});
@@ -284,7 +284,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	@Override
 	public void isAscendant(IsAscendantRequest request, StreamObserver<IsAscendantResponse> responseObserver) {
 		try {
-			boolean isAscendant = adjudicator.adjudicateQuery((pap, pdpTx) -> {
+			boolean isAscendant = adjudicator.adjudicateReadQuery((pap, pdpTx) -> {
 				return pdpTx.query().graph().isAscendant(
 						FromProtoUtil.resolveNodeRefId(pap, request.getAscendant()),
 						FromProtoUtil.resolveNodeRefId(pap, request.getDescendant())
@@ -304,7 +304,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	@Override
 	public void isDescendant(IsDescendantRequest request, StreamObserver<IsDescendantResponse> responseObserver) {
 		try {
-			boolean isDescendant = adjudicator.adjudicateQuery((pap, pdpTx) -> {
+			boolean isDescendant = adjudicator.adjudicateReadQuery((pap, pdpTx) -> {
 				return pdpTx.query().graph().isDescendant(
 						FromProtoUtil.resolveNodeRefId(pap, request.getAscendant()),
 						FromProtoUtil.resolveNodeRefId(pap, request.getDescendant())
@@ -324,7 +324,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	@Override
 	public void getProhibitions(GetProhibitionsRequest request, StreamObserver<GetProhibitionsResponse> responseObserver) {
 		try {
-			Collection<gov.nist.csd.pm.proto.v1.model.Prohibition> prohibitions = adjudicator.adjudicateQuery((pap, pdpTx) -> {
+			Collection<gov.nist.csd.pm.proto.v1.model.Prohibition> prohibitions = adjudicator.adjudicateReadQuery((pap, pdpTx) -> {
 				List<gov.nist.csd.pm.proto.v1.model.Prohibition> prohibitionProtos = new ArrayList<>();
 				for (Prohibition prohibition : pdpTx.query().prohibitions().getProhibitions()) {
 					prohibitionProtos.add(ToProtoUtil.toProhibitionProto(prohibition, pap.query()));
@@ -347,7 +347,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	public void getProhibitionsBySubject(GetProhibitionsBySubjectRequest request,
 	                                     StreamObserver<GetProhibitionsBySubjectResponse> responseObserver) {
 		try {
-			Collection<gov.nist.csd.pm.proto.v1.model.Prohibition> prohibitions = adjudicator.adjudicateQuery((pap, pdpTx) -> {
+			Collection<gov.nist.csd.pm.proto.v1.model.Prohibition> prohibitions = adjudicator.adjudicateReadQuery((pap, pdpTx) -> {
 				Collection<Prohibition> prohibitionsWithSubject = pdpTx.query().prohibitions().getNodeProhibitions(FromProtoUtil.resolveNodeRefId(pap, request.getNode()));
 				List<gov.nist.csd.pm.proto.v1.model.Prohibition> prohibitionProtos = new ArrayList<>();
 				for (Prohibition prohibition : prohibitionsWithSubject) {
@@ -377,7 +377,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	@Override
 	public void getProhibition(GetProhibitionRequest request, StreamObserver<GetProhibitionResponse> responseObserver) {
 		try {
-			gov.nist.csd.pm.proto.v1.model.Prohibition prohibition = adjudicator.adjudicateQuery((pap, pdpTx) -> {
+			gov.nist.csd.pm.proto.v1.model.Prohibition prohibition = adjudicator.adjudicateReadQuery((pap, pdpTx) -> {
 				Prohibition p = pdpTx.query().prohibitions().getProhibition(request.getName());
 				return ToProtoUtil.toProhibitionProto(p, pap.query());
 			});
@@ -396,7 +396,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	public void getInheritedProhibitions(GetInheritedProhibitionsRequest request,
 	                                     StreamObserver<GetInheritedProhibitionsResponse> responseObserver) {
 		try {
-			Collection<gov.nist.csd.pm.proto.v1.model.Prohibition> prohibitionProtos = adjudicator.adjudicateQuery((pap, pdpTx) -> {
+			Collection<gov.nist.csd.pm.proto.v1.model.Prohibition> prohibitionProtos = adjudicator.adjudicateReadQuery((pap, pdpTx) -> {
 				Collection<Prohibition> inheritedProhibitionsFor = pdpTx.query().prohibitions().getInheritedProhibitionsFor(
 						FromProtoUtil.resolveNodeRefId(pap, request.getSubject())
 				);
@@ -423,7 +423,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	public void getProhibitionsWithContainer(GetProhibitionsWithContainerRequest request,
 	                                         StreamObserver<GetProhibitionsWithContainerResponse> responseObserver) {
 		try {
-			Collection<gov.nist.csd.pm.proto.v1.model.Prohibition> prohibitionProtos = adjudicator.adjudicateQuery((pap, pdpTx) -> {
+			Collection<gov.nist.csd.pm.proto.v1.model.Prohibition> prohibitionProtos = adjudicator.adjudicateReadQuery((pap, pdpTx) -> {
 				Collection<Prohibition> prohibitionsWithContainer = pdpTx.query().prohibitions().getProhibitionsWithContainer(
 						FromProtoUtil.resolveNodeRefId(pap, request.getContainer())
 				);
@@ -449,7 +449,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	@Override
 	public void getObligations(GetObligationsRequest request, StreamObserver<GetObligationsResponse> responseObserver) {
 		try {
-			List<gov.nist.csd.pm.proto.v1.model.Obligation> obligationProtos = adjudicator.adjudicateQuery((pap, pdpTx) -> {
+			List<gov.nist.csd.pm.proto.v1.model.Obligation> obligationProtos = adjudicator.adjudicateReadQuery((pap, pdpTx) -> {
 				Collection<Obligation> obligations = pdpTx.query().obligations().getObligations();
 				return toObligationProtoList(pap, obligations);
 			});
@@ -467,7 +467,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	@Override
 	public void getObligation(GetObligationRequest request, StreamObserver<GetObligationResponse> responseObserver) {
 		try {
-			gov.nist.csd.pm.proto.v1.model.Obligation obligation = adjudicator.adjudicateQuery((pap, pdpTx) -> {
+			gov.nist.csd.pm.proto.v1.model.Obligation obligation = adjudicator.adjudicateReadQuery((pap, pdpTx) -> {
 				Obligation o = pdpTx.query().obligations().getObligation(request.getName());
 				return ToProtoUtil.toObligationProto(o, pap);
 			});
@@ -486,7 +486,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	public void getObligationsByAuthor(GetObligationsByAuthorRequest request,
 	                                   StreamObserver<GetObligationsByAuthorResponse> responseObserver) {
 		try {
-			Collection<gov.nist.csd.pm.proto.v1.model.Obligation> obligations = adjudicator.adjudicateQuery((pap, pdpTx) -> {
+			Collection<gov.nist.csd.pm.proto.v1.model.Obligation> obligations = adjudicator.adjudicateReadQuery((pap, pdpTx) -> {
 				Collection<Obligation> obligationsWithAuthor = pdpTx.query().obligations().getObligationsWithAuthor(
 						FromProtoUtil.resolveNodeRefId(pap, request.getAuthor())
 				);
@@ -506,7 +506,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	@Override
 	public void getResourceAccessRights(GetResourceAccessRightsRequest request, StreamObserver<GetResourceAccessRightsResponse> responseObserver) {
 		try {
-			AccessRightSet resourceOps = adjudicator.adjudicateQuery((pap, pdpTx) -> {
+			AccessRightSet resourceOps = adjudicator.adjudicateReadQuery((pap, pdpTx) -> {
 				return pdpTx.query().operations().getResourceAccessRights();
 			});
 
@@ -573,7 +573,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	public void computePrivileges(ComputePrivilegesRequest request,
 	                              StreamObserver<ComputePrivilegesResponse> responseObserver) {
 		try {
-			AccessRightSet privs = adjudicator.adjudicateQuery((pap, pdpTx) -> {
+			AccessRightSet privs = adjudicator.adjudicateReadQuery((pap, pdpTx) -> {
 				return pdpTx.query().access().computePrivileges(
 						FromProtoUtil.fromUserContextProto(pap, request.getUserCtx()),
 						FromProtoUtil.fromTargetContextProto(pap, request.getTargetCtx())
@@ -594,7 +594,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	public void computeDeniedPrivileges(ComputeDeniedPrivilegesRequest request,
 	                                    StreamObserver<ComputeDeniedPrivilegesResponse> responseObserver) {
 		try {
-			AccessRightSet denied = adjudicator.adjudicateQuery((pap, pdpTx) -> {
+			AccessRightSet denied = adjudicator.adjudicateReadQuery((pap, pdpTx) -> {
 				return pdpTx.query().access().computeDeniedPrivileges(
 						FromProtoUtil.fromUserContextProto(pap, request.getUserCtx()),
 						FromProtoUtil.fromTargetContextProto(pap, request.getTargetCtx())
@@ -615,7 +615,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	public void computeCapabilityList(ComputeCapabilityListRequest request,
 	                                  StreamObserver<ComputeCapabilityListResponse> responseObserver) {
 		try {
-			List<NodePrivileges> nodePrivilegesList = adjudicator.adjudicateQuery((pap, pdpTx) -> {
+			List<NodePrivileges> nodePrivilegesList = adjudicator.adjudicateReadQuery((pap, pdpTx) -> {
 				Map<Long, AccessRightSet> map = pdpTx.query().access().computeCapabilityList(
 						FromProtoUtil.fromUserContextProto(pap, request.getUserCtx())
 				);
@@ -636,7 +636,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	@Override
 	public void computeACL(ComputeACLRequest request, StreamObserver<ComputeACLResponse> responseObserver) {
 		try {
-			List<NodePrivileges> nodePrivileges = adjudicator.adjudicateQuery((pap, pdpTx) -> {
+			List<NodePrivileges> nodePrivileges = adjudicator.adjudicateReadQuery((pap, pdpTx) -> {
 				Map<Long, AccessRightSet> acl = pdpTx.query().access().computeACL(
 						FromProtoUtil.fromTargetContextProto(pap, request.getTargetCtx())
 				);
@@ -658,7 +658,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	public void computeDestinationAttributes(ComputeDestinationAttributesRequest request,
 	                                         StreamObserver<ComputeDestinationAttributesResponse> responseObserver) {
 		try {
-			List<NodePrivileges> nodePrivilegesList = adjudicator.adjudicateQuery((pap, pdpTx) -> {
+			List<NodePrivileges> nodePrivilegesList = adjudicator.adjudicateReadQuery((pap, pdpTx) -> {
 				Map<Long, AccessRightSet> destAttrs = pdpTx.query().access().computeDestinationAttributes(
 						FromProtoUtil.fromUserContextProto(pap, request.getUserCtx())
 				);
@@ -680,7 +680,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	public void computeSubgraphPrivileges(ComputeSubgraphPrivilegesRequest request,
 	                                      StreamObserver<ComputeSubgraphPrivilegesResponse> responseObserver) {
 		try {
-			SubgraphPrivileges subgraphPrivileges = adjudicator.adjudicateQuery((pap, pdpTx) -> {
+			SubgraphPrivileges subgraphPrivileges = adjudicator.adjudicateReadQuery((pap, pdpTx) -> {
 				return pdpTx.query().access().computeSubgraphPrivileges(
 						FromProtoUtil.fromUserContextProto(pap, request.getUserCtx()),
 						FromProtoUtil.resolveNodeRefId(pap, request.getRoot())
@@ -701,7 +701,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	public void computeAdjacentAscendantPrivileges(ComputeAdjacentAscendantPrivilegesRequest request,
 	                                               StreamObserver<ComputeAdjacentAscendantPrivilegesResponse> responseObserver) {
 		try {
-			Map<Node, AccessRightSet> map = adjudicator.adjudicateQuery((pap, pdpTx) -> {
+			Map<Node, AccessRightSet> map = adjudicator.adjudicateReadQuery((pap, pdpTx) -> {
 				return pdpTx.query().access().computeAdjacentAscendantPrivileges(
 						FromProtoUtil.fromUserContextProto(pap, request.getUserCtx()),
 						FromProtoUtil.resolveNodeRefId(pap, request.getRoot())
@@ -722,7 +722,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	public void computeAdjacentDescendantPrivileges(ComputeAdjacentDescendantPrivilegesRequest request,
 	                                                StreamObserver<ComputeAdjacentDescendantPrivilegesResponse> responseObserver) {
 		try {
-			Map<Node, AccessRightSet> map = adjudicator.adjudicateQuery((pap, pdpTx) -> {
+			Map<Node, AccessRightSet> map = adjudicator.adjudicateReadQuery((pap, pdpTx) -> {
 				return pdpTx.query().access().computeAdjacentDescendantPrivileges(
 						FromProtoUtil.fromUserContextProto(pap, request.getUserCtx()),
 						FromProtoUtil.resolveNodeRefId(pap, request.getRoot())
@@ -742,7 +742,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	@Override
 	public void explain(ExplainRequest request, StreamObserver<ExplainResponse> responseObserver) {
 		try {
-			ExplainResponse explainProto = adjudicator.adjudicateQuery((pap, pdpTx) -> {
+			ExplainResponse explainProto = adjudicator.adjudicateReadQuery((pap, pdpTx) -> {
 				Explain explain = pdpTx.query().access().explain(
 						FromProtoUtil.fromUserContextProto(pap, request.getUserCtx()),
 						FromProtoUtil.fromTargetContextProto(pap, request.getTargetCtx())
@@ -765,7 +765,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	public void computePersonalObjectSystem(ComputePersonalObjectSystemRequest request,
 	                                        StreamObserver<ComputePersonalObjectSystemResponse> responseObserver) {
 		try {
-			Map<Node, AccessRightSet> map = adjudicator.adjudicateQuery((pap, pdpTx) -> {
+			Map<Node, AccessRightSet> map = adjudicator.adjudicateReadQuery((pap, pdpTx) -> {
 				return pdpTx.query().access().computePersonalObjectSystem(
 						FromProtoUtil.fromUserContextProto(pap, request.getUserCtx())
 				);
@@ -785,7 +785,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	public void selfComputePrivileges(SelfComputePrivilegesRequest request,
 	                                  StreamObserver<SelfComputePrivilegesResponse> responseObserver) {
 		try {
-			AccessRightSet privs = adjudicator.adjudicateQuery((pap, pdpTx) -> {
+			AccessRightSet privs = adjudicator.adjudicateReadQuery((pap, pdpTx) -> {
 				return pdpTx.query().selfAccess().computePrivileges(
 						FromProtoUtil.fromTargetContextProto(pap, request.getTargetCtx())
 				);
@@ -805,7 +805,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	public void selfComputeSubgraphPrivileges(SelfComputeSubgraphPrivilegesRequest request,
 	                                          StreamObserver<SelfComputeSubgraphPrivilegesResponse> responseObserver) {
 		try {
-			SubgraphPrivileges subgraphPrivileges = adjudicator.adjudicateQuery((pap, pdpTx) -> {
+			SubgraphPrivileges subgraphPrivileges = adjudicator.adjudicateReadQuery((pap, pdpTx) -> {
 				return pdpTx.query().selfAccess().computeSubgraphPrivileges(FromProtoUtil.resolveNodeRefId(pap, request.getRoot()));
 			});
 
@@ -823,7 +823,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	public void selfComputeAdjacentAscendantPrivileges(SelfComputeAdjacentAscendantPrivilegesRequest request,
 	                                                   StreamObserver<SelfComputeAdjacentAscendantPrivilegesResponse> responseObserver) {
 		try {
-			Map<Node, AccessRightSet> map = adjudicator.adjudicateQuery((pap, pdpTx) -> {
+			Map<Node, AccessRightSet> map = adjudicator.adjudicateReadQuery((pap, pdpTx) -> {
 				return pdpTx.query().selfAccess().computeAdjacentAscendantPrivileges(FromProtoUtil.resolveNodeRefId(pap, request.getRoot()));
 			});
 
@@ -842,7 +842,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	public void selfComputeAdjacentDescendantPrivileges(SelfComputeAdjacentDescendantPrivilegesRequest request,
 	                                                    StreamObserver<SelfComputeAdjacentDescendantPrivilegesResponse> responseObserver) {
 		try {
-			Map<Node, AccessRightSet> map = adjudicator.adjudicateQuery((pap, pdpTx) -> {
+			Map<Node, AccessRightSet> map = adjudicator.adjudicateReadQuery((pap, pdpTx) -> {
 				return pdpTx.query().selfAccess().computeAdjacentDescendantPrivileges(FromProtoUtil.resolveNodeRefId(pap, request.getRoot()));
 			});
 
@@ -860,7 +860,7 @@ public class PolicyQueryService extends PolicyQueryServiceGrpc.PolicyQueryServic
 	@Override
 	public void selfComputePersonalObjectSystem(SelfComputePersonalObjectSystemRequest request, StreamObserver<SelfComputePersonalObjectSystemResponse> responseObserver) {
 		try {
-			Map<Node, AccessRightSet> map = adjudicator.adjudicateQuery((pap, pdpTx) -> {
+			Map<Node, AccessRightSet> map = adjudicator.adjudicateReadQuery((pap, pdpTx) -> {
 				return pdpTx.query().selfAccess().computePersonalObjectSystem();
 			});
 
@@ -0,0 +1,11 @@
+package gov.nist.csd.pm.pdp.admin.pdp;
+
+import gov.nist.csd.pm.core.impl.neo4j.embedded.pap.Neo4jEmbeddedPAP;
+import gov.nist.csd.pm.core.pdp.PDP;
+
+/**
+ * A context for queries. The PAP does not track events and has no EPP or plugin operations, and its transactions are
+ * always rolled back, so nothing done through it is ever written.
+ */
+public record ReadOnlyContext(PDP pdp, Neo4jEmbeddedPAP pap) {
+}
@@ -0,0 +1,493 @@
+package gov.nist.csd.pm.pdp.admin.pdp;
+
+import com.eventstore.dbclient.WrongExpectedVersionException;
+import gov.nist.csd.pm.core.common.exception.PMException;
+import gov.nist.csd.pm.core.impl.neo4j.embedded.pap.Neo4jEmbeddedPAP;
+import gov.nist.csd.pm.pdp.admin.config.AdminPDPConfig;
+import gov.nist.csd.pm.pdp.admin.eventstore.PolicyEventPersistentSubscriptionListener;
+import gov.nist.csd.pm.pdp.admin.pap.EventTrackingPAP;
+import gov.nist.csd.pm.pdp.proto.event.PMEvent;
+import gov.nist.csd.pm.pdp.shared.eventstore.CurrentRevisionService;
+import gov.nist.csd.pm.pdp.shared.eventstore.EventStoreConnectionManager;
+import gov.nist.csd.pm.pdp.shared.eventstore.EventStoreDBConfig;
+import io.grpc.Context;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Applies admin writes one at a time on a single thread so they no longer race each other for the event stream's
+ * expected revision. Writes submitted while the previous group is being appended are taken together, up to
+ * write-batch-size, and evaluated in order in one transaction, so each write sees the changes of the writes before it.
+ * The events of every accepted write are then appended to the event store in one call, and each caller gets its own
+ * result and the revision of its last event.
+ *
+ * Each write is evaluated once. A write that fails splits the group: the writes before it are appended without the
+ * failed write's events, and the writes after it are evaluated as the next group. Before the next group is evaluated
+ * the sequencer waits for the local policy to apply the group it just appended, so it is evaluated against the latest
+ * state and appended at the expected revision. If the local policy does not catch up within revision-consistency-timeout
+ * the writes still to be evaluated and the writes queued behind them fail without being applied, instead of being
+ * evaluated against a policy that is behind.
+ *
+ * With apply-on-append the group's transaction is committed to the local policy once the append succeeds, instead of
+ * being rolled back and applied again when the subscription delivers the events, which then skips them. The group is
+ * evaluated, appended and committed holding the PAP's monitor, so the subscription cannot apply events in between. A
+ * group split by a failed write has already been rolled back, so its events are left to the subscription.
+ *
+ * The append is a round trip to the event store, and holding the monitor for it blocks the subscription and anything
+ * else that synchronizes on the PAP until the event store responds. It cannot be moved outside the monitor: the
+ * subscription could then apply the group's own events before the commit marks them as applied, and they would be
+ * applied twice. The time spent appending while holding the monitor is reported as pm.admin.write.append.held.time.
+ */
+@Component
+public class WriteSequencer implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteSequencer.class);
+
+    private final ContextFactory contextFactory;
+    private final Neo4jEmbeddedPAP pap;
+    private final PolicyEventPersistentSubscriptionListener subscriptionListener;
+    private final CurrentRevisionService currentRevision;
+    private final EventStoreConnectionManager eventStoreConnectionManager;
+    private final EventStoreDBConfig eventStoreDBConfig;
+    private final int batchSize;
+    private final long catchUpTimeout;
+    private final long writeTimeout;
+    private final boolean applyOnAppend;
+    private final BlockingQueue<Pending<?>> queue;
+    private final Thread thread;
+    private volatile boolean running;
+
+    private final LongAdder writes;
+    private final LongAdder groups;
+    private final LongAdder splits;
+    private final LongAdder appliedOnAppend;
+    private final LongAdder catchUpTimeouts;
+    private final LongAdder appendHeldNanos;
+
+    public WriteSequencer(ContextFactory contextFactory,
+                          Neo4jEmbeddedPAP pap,
+                          PolicyEventPersistentSubscriptionListener subscriptionListener,
+                          CurrentRevisionService currentRevision,
+                          EventStoreConnectionManager eventStoreConnectionManager,
+                          EventStoreDBConfig eventStoreDBConfig,
+                          AdminPDPConfig adminPDPConfig) {
+        this.contextFactory = contextFactory;
+        this.pap = pap;
+        this.subscriptionListener = subscriptionListener;
+        this.currentRevision = currentRevision;
+        this.eventStoreConnectionManager = eventStoreConnectionManager;
+        this.eventStoreDBConfig = eventStoreDBConfig;
+        this.batchSize = adminPDPConfig.getWriteBatchSize();
+        this.catchUpTimeout = adminPDPConfig.getRevisionConsistencyTimeout();
+        this.writeTimeout = adminPDPConfig.getWriteTimeout();
+        this.applyOnAppend = adminPDPConfig.isApplyOnAppend();
+        this.queue = new LinkedBlockingQueue<>();
+        this.writes = new LongAdder();
+        this.groups = new LongAdder();
+        this.splits = new LongAdder();
+        this.appliedOnAppend = new LongAdder();
+        this.catchUpTimeouts = new LongAdder();
+        this.appendHeldNanos = new LongAdder();
+
+        this.running = true;
+        this.thread = new Thread(this::run, "write-sequencer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Submit a write and block until its group is appended to the event store, for at most write-timeout. The write
+     * runs on the sequencer thread with the caller's gRPC Context attached, and must make its changes through the given
+     * context.
+     *
+     * @return The write's result and the revision of its last event, or -1 if it did not change the policy.
+     * @throws PMException If the write failed, in which case none of its events were appended, or it timed out.
+     * @throws WrongExpectedVersionException If another writer appended to the event stream first.
+     */
+    public <T> Written<T> submit(Write<T> write) throws PMException {
+        Pending<T> pending = new Pending<>(write, Context.current(), new CompletableFuture<>());
+        if (!running) {
+            throw new PMException("write sequencer is shut down");
+        }
+
+        queue.add(pending);
+
+        try {
+            return pending.future().get(writeTimeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (queue.remove(pending)) {
+                throw new PMException("write timed out after " + writeTimeout + "ms before it was evaluated, it was " +
+                                              "not applied");
+            }
+
+            throw new PMException("write timed out after " + writeTimeout + "ms waiting to be appended, it may " +
+                                          "still be applied");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PMException("interrupted waiting for write to be appended");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof PMException p) {
+                throw p;
+            } else if (cause instanceof RuntimeException r) {
+                throw r;
+            }
+
+            throw new PMException(cause.getMessage());
+        }
+    }
+
+    private void run() {
+        List<Pending<?>> group = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                group.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+
+            queue.drainTo(group, batchSize - 1);
+
+            try {
+                process(group);
+            } catch (RuntimeException e) {
+                logger.error("unexpected error processing writes", e);
+                for (Pending<?> pending : group) {
+                    pending.future().completeExceptionally(e);
+                }
+            }
+
+            group.clear();
+        }
+
+        // fail whatever was submitted after shutdown started
+        List<Pending<?>> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (Pending<?> pending : remaining) {
+            pending.future().completeExceptionally(new PMException("write sequencer is shut down"));
+        }
+    }
+
+    private void process(List<Pending<?>> group) {
+        List<Pending<?>> next = group;
+        while (!next.isEmpty()) {
+            next = processGroup(next);
+        }
+    }
+
+    /**
+     * Evaluate and append the group, then wait for the local policy to apply it.
+     *
+     * @return The writes after the first failed write, still to be evaluated.
+     */
+    private List<Pending<?>> processGroup(List<Pending<?>> group) {
+        NGACContext ctx;
+        try {
+            ctx = contextFactory.acquireContext();
+        } catch (PMException e) {
+            for (Pending<?> pending : group) {
+                pending.future().completeExceptionally(e);
+            }
+
+            return List.of();
+        }
+
+        long start = System.nanoTime();
+        Evaluated evaluated;
+        long catchUpRevision;
+        try {
+            if (applyOnAppend) {
+                // the append is held under the monitor too, see the class doc
+                synchronized (pap) {
+                    evaluated = evaluate(ctx, group);
+                    catchUpRevision = append(ctx, evaluated, start);
+                }
+            } else {
+                evaluated = evaluate(ctx, group);
+                catchUpRevision = append(ctx, evaluated, start);
+            }
+        } finally {
+            // rolls back the transaction if it was not committed
+            contextFactory.releaseContext(ctx);
+        }
+
+        // the next group must be evaluated against the policy this group produced
+        if (catchUpRevision < 0) {
+            return evaluated.remaining();
+        }
+
+        try {
+            if (!currentRevision.awaitRevision(catchUpRevision, catchUpTimeout)) {
+                catchUpTimeouts.increment();
+                logger.warn("local policy did not reach revision {} within {}ms, failing the queued writes",
+                            catchUpRevision, catchUpTimeout);
+                failQueued(evaluated.remaining(), new PMException("local policy did not reach revision " +
+                        catchUpRevision + " within " + catchUpTimeout + "ms, the write was not applied"));
+                return List.of();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failQueued(evaluated.remaining(), new PMException("interrupted waiting for the local policy to reach " +
+                    "revision " + catchUpRevision + ", the write was not applied"));
+            return List.of();
+        }
+
+        return evaluated.remaining();
+    }
+
+    /**
+     * Fail the writes still to be evaluated and the writes queued behind them, none of them were applied.
+     */
+    private void failQueued(List<Pending<?>> remaining, PMException e) {
+        List<Pending<?>> failed = new ArrayList<>(remaining);
+        queue.drainTo(failed);
+        for (Pending<?> pending : failed) {
+            pending.future().completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Evaluate the writes in order in one transaction, each of them once. The first write that fails is completed with
+     * its error and the transaction is rolled back, keeping the events of the writes before it; the writes after it
+     * are returned as remaining. The transaction is left open if every write succeeded.
+     */
+    private Evaluated evaluate(NGACContext ctx, List<Pending<?>> group) {
+        List<PMEvent> events = ctx.pap().modify().getEvents();
+        events.clear();
+
+        try {
+            ctx.pap().beginTx();
+        } catch (PMException e) {
+            for (Pending<?> pending : group) {
+                pending.future().completeExceptionally(e);
+            }
+
+            return new Evaluated(List.of(), List.of(), List.of(), false);
+        }
+
+        int end = 0;
+        for (int i = 0; i < group.size(); i++) {
+            Pending<?> pending = group.get(i);
+            try {
+                pending.evaluate(ctx);
+                end = pending.end();
+            } catch (Exception e) {
+                pending.future().completeExceptionally(e);
+
+                // the failed write's events are dropped with the transaction
+                List<PMEvent> accepted = new ArrayList<>(events.subList(0, end));
+                ctx.pap().rollback();
+
+                List<Pending<?>> remaining = new ArrayList<>(group.subList(i + 1, group.size()));
+                if (!remaining.isEmpty()) {
+                    splits.increment();
+                }
+
+                return new Evaluated(group.subList(0, i), accepted, remaining, false);
+            }
+        }
+
+        return new Evaluated(group, events, List.of(), true);
+    }
+
+    /**
+     * Append the events of the accepted writes and complete them. With apply-on-append the transaction is committed if
+     * it is still open, otherwise it is rolled back.
+     *
+     * @return The revision the local policy must reach before the next group is evaluated, or -1 if it already has.
+     */
+    private long append(NGACContext ctx, Evaluated evaluated, long start) {
+        List<Pending<?>> accepted = evaluated.accepted();
+        List<PMEvent> events = evaluated.events();
+        if (events.isEmpty()) {
+            for (Pending<?> pending : accepted) {
+                pending.complete(-1);
+            }
+
+            return -1;
+        }
+
+        boolean commit = applyOnAppend && evaluated.open();
+        if (evaluated.open() && !commit) {
+            ctx.pap().rollback();
+        }
+
+        long revision = currentRevision.get();
+        long lastRevision;
+        long appendStart = System.nanoTime();
+        try {
+            lastRevision = EventTrackingPAP.appendToEventStore(
+                    eventStoreConnectionManager.getOrInitClient(),
+                    eventStoreDBConfig.getEventStream(),
+                    revision,
+                    events
+            );
+        } catch (RuntimeException e) {
+            for (Pending<?> pending : accepted) {
+                pending.future().completeExceptionally(e);
+            }
+
+            return -1;
+        } finally {
+            if (applyOnAppend) {
+                appendHeldNanos.add(System.nanoTime() - appendStart);
+            }
+        }
+
+        groups.increment();
+        writes.add(accepted.size());
+
+        boolean applied = commit && commitAppended(ctx, events, lastRevision, start);
+
+        int from = 0;
+        for (Pending<?> pending : accepted) {
+            // the revision of the write's last event, or -1 if it had none
+            pending.complete(pending.end() > from ? revision + pending.end() : -1);
+            from = pending.end();
+        }
+
+        return applied ? -1 : lastRevision;
+    }
+
+    /**
+     * Commit the group's transaction now that its events are appended at the expected revision, and have the
+     * subscription skip them. If the commit fails the subscription applies them as usual.
+     */
+    private boolean commitAppended(NGACContext ctx, List<PMEvent> events, long lastRevision, long start) {
+        try {
+            ctx.pap().commitAppended(lastRevision);
+        } catch (PMException | RuntimeException e) {
+            logger.warn("could not commit appended events up to revision {}, leaving them to the subscription",
+                        lastRevision, e);
+            return false;
+        }
+
+        subscriptionListener.onAppliedOnAppend(events, lastRevision, System.nanoTime() - start);
+        appliedOnAppend.add(events.size());
+        return true;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        thread.interrupt();
+    }
+
+    public int queuedCount() {
+        return queue.size();
+    }
+
+    public long writtenCount() {
+        return writes.sum();
+    }
+
+    public long groupCount() {
+        return groups.sum();
+    }
+
+    public long splitCount() {
+        return splits.sum();
+    }
+
+    public long appliedOnAppendCount() {
+        return appliedOnAppend.sum();
+    }
+
+    public long catchUpTimeoutCount() {
+        return catchUpTimeouts.sum();
+    }
+
+    public double appendHeldSeconds() {
+        return appendHeldNanos.sum() / 1e9;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("pm.admin.write.queued", this, WriteSequencer::queuedCount)
+                .register(registry);
+        FunctionCounter.builder("pm.admin.write.written", this, WriteSequencer::writtenCount)
+                .register(registry);
+        FunctionCounter.builder("pm.admin.write.groups", this, WriteSequencer::groupCount)
+                .register(registry);
+        FunctionCounter.builder("pm.admin.write.splits", this, WriteSequencer::splitCount)
+                .register(registry);
+        FunctionCounter.builder("pm.admin.write.applied.on.append", this, WriteSequencer::appliedOnAppendCount)
+                .register(registry);
+        FunctionCounter.builder("pm.admin.write.catchup.timeouts", this, WriteSequencer::catchUpTimeoutCount)
+                .register(registry);
+        FunctionCounter.builder("pm.admin.write.append.held.time", this, WriteSequencer::appendHeldSeconds)
+                .baseUnit("seconds")
+                .register(registry);
+    }
+
+    /**
+     * A write to evaluate against the policy. It must make its changes through the context it is given.
+     */
+    @FunctionalInterface
+    public interface Write<T> {
+        T apply(NGACContext ctx) throws PMException;
+    }
+
+    /**
+     * The result of an appended write and the revision of its last event, -1 if it did not change the policy.
+     */
+    public record Written<T>(T result, long revision) {
+    }
+
+    /**
+     * The writes of a group that were accepted and their events, and the writes after a failed one, still to be
+     * evaluated. The transaction is open only if no write failed.
+     */
+    private record Evaluated(List<Pending<?>> accepted, List<PMEvent> events, List<Pending<?>> remaining,
+                             boolean open) {
+    }
+
+    private static final class Pending<T> {
+
+        private final Write<T> write;
+        private final Context grpcContext;
+        private final CompletableFuture<Written<T>> future;
+        private T result;
+        private int end;
+
+        Pending(Write<T> write, Context grpcContext, CompletableFuture<Written<T>> future) {
+            this.write = write;
+            this.grpcContext = grpcContext;
+            this.future = future;
+        }
+
+        CompletableFuture<Written<T>> future() {
+            return future;
+        }
+
+        int end() {
+            return end;
+        }
+
+        void evaluate(NGACContext ctx) throws Exception {
+            result = grpcContext.call(() -> write.apply(ctx));
+            end = ctx.pap().modify().getEvents().size();
+        }
+
+        void complete(long revision) {
+            future.complete(new Written<>(result, revision));
+        }
+    }
+}
@@ -2,11 +2,16 @@ package gov.nist.csd.pm.pdp.admin.config;
 
 import gov.nist.csd.pm.pdp.shared.eventstore.CurrentRevisionService;
 import gov.nist.csd.pm.pdp.shared.eventstore.LatestRevisionTracker;
+import gov.nist.csd.pm.pdp.shared.grpc.GrpcServerConfig;
+import gov.nist.csd.pm.pdp.shared.grpc.GrpcServerExecutorConfigurer;
 import gov.nist.csd.pm.pdp.shared.interceptor.RevisionConsistencyInterceptor;
 import io.grpc.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -20,6 +25,7 @@ class AdminPDPGrpcInterceptorConfigTest {
     private AdminPDPConfig adminPDPConfig;
     private CurrentRevisionService currentRevisionService;
     private LatestRevisionTracker latestRevisionTracker;
+    private GrpcServerExecutorConfigurer grpcServerExecutorConfigurer;
 
     @BeforeEach
     void setUp() throws InterruptedException, TimeoutException {
@@ -28,7 +34,8 @@ class AdminPDPGrpcInterceptorConfigTest {
         adminPDPConfig.setRevisionConsistencyTimeout(1000);
         currentRevisionService = new CurrentRevisionService();
         latestRevisionTracker = mock(LatestRevisionTracker.class);
-        when(latestRevisionTracker.get(anyLong())).thenReturn(-1L);
+        grpcServerExecutorConfigurer = new GrpcServerExecutorConfigurer(new GrpcServerConfig(false));
+        when(latestRevisionTracker.latestRevisionFuture(anyLong())).thenReturn(CompletableFuture.completedFuture(-1L));
     }
 
     @Test
@@ -36,7 +43,8 @@ class AdminPDPGrpcInterceptorConfigTest {
         RevisionConsistencyInterceptor interceptor = configBean.consistencyInterceptor(
                 adminPDPConfig,
                 currentRevisionService,
-                latestRevisionTracker
+                latestRevisionTracker,
+                grpcServerExecutorConfigurer
         );
 
         assertNotNull(interceptor, "Interceptor should not be null");
@@ -47,7 +55,8 @@ class AdminPDPGrpcInterceptorConfigTest {
         RevisionConsistencyInterceptor interceptor = configBean.consistencyInterceptor(
                 adminPDPConfig,
                 currentRevisionService,
-                latestRevisionTracker
+                latestRevisionTracker,
+                grpcServerExecutorConfigurer
         );
 
         AtomicBoolean handlerCalled = new AtomicBoolean(false);
@@ -70,7 +79,8 @@ class AdminPDPGrpcInterceptorConfigTest {
         RevisionConsistencyInterceptor interceptor = configBean.consistencyInterceptor(
                 adminPDPConfig,
                 currentRevisionService,
-                latestRevisionTracker
+                latestRevisionTracker,
+                grpcServerExecutorConfigurer
         );
 
         AtomicBoolean handlerCalled = new AtomicBoolean(false);
@@ -93,7 +103,8 @@ class AdminPDPGrpcInterceptorConfigTest {
         RevisionConsistencyInterceptor interceptor = configBean.consistencyInterceptor(
                 adminPDPConfig,
                 currentRevisionService,
-                latestRevisionTracker
+                latestRevisionTracker,
+                grpcServerExecutorConfigurer
         );
 
         AtomicBoolean handlerCalled = new AtomicBoolean(false);
@@ -114,12 +125,13 @@ class AdminPDPGrpcInterceptorConfigTest {
     @Test
     void consistencyInterceptor_nonExcludedMethod_performsCheck() throws InterruptedException, TimeoutException {
         currentRevisionService.set(10);
-        when(latestRevisionTracker.get(anyLong())).thenReturn(10L);
+        when(latestRevisionTracker.latestRevisionFuture(anyLong())).thenReturn(CompletableFuture.completedFuture(10L));
 
         RevisionConsistencyInterceptor interceptor = configBean.consistencyInterceptor(
                 adminPDPConfig,
                 currentRevisionService,
-                latestRevisionTracker
+                latestRevisionTracker,
+                grpcServerExecutorConfigurer
         );
 
         AtomicBoolean handlerCalled = new AtomicBoolean(false);
@@ -134,19 +146,20 @@ class AdminPDPGrpcInterceptorConfigTest {
         interceptor.interceptCall(call, new Metadata(), handler);
 
         assertTrue(handlerCalled.get(), "Handler should be called for non-excluded method when caught up");
-        verify(latestRevisionTracker).get(anyLong());
+        verify(latestRevisionTracker).latestRevisionFuture(anyLong());
     }
 
     @Test
     void consistencyInterceptor_nonExcludedMethod_blocksWhenNotCaughtUp() throws InterruptedException, TimeoutException {
         currentRevisionService.set(5);
-        when(latestRevisionTracker.get(anyLong())).thenReturn(100L);
+        when(latestRevisionTracker.latestRevisionFuture(anyLong())).thenReturn(CompletableFuture.completedFuture(100L));
         adminPDPConfig.setRevisionConsistencyTimeout(50);
 
         RevisionConsistencyInterceptor interceptor = configBean.consistencyInterceptor(
                 adminPDPConfig,
                 currentRevisionService,
-                latestRevisionTracker
+                latestRevisionTracker,
+                grpcServerExecutorConfigurer
         );
 
         AtomicBoolean handlerCalled = new AtomicBoolean(false);
@@ -161,6 +174,7 @@ class AdminPDPGrpcInterceptorConfigTest {
         interceptor.interceptCall(call, new Metadata(), handler);
 
         assertFalse(handlerCalled.get(), "Handler should not be called when not caught up");
+        call.awaitClosed();
         assertNotNull(call.closedStatus, "Call should be closed with error");
         assertEquals(Status.Code.UNAVAILABLE, call.closedStatus.getCode());
     }
@@ -169,17 +183,18 @@ class AdminPDPGrpcInterceptorConfigTest {
     void consistencyInterceptor_usesConfiguredTimeout() throws InterruptedException, TimeoutException {
         adminPDPConfig.setRevisionConsistencyTimeout(100);
         currentRevisionService.set(5);
-        when(latestRevisionTracker.get(anyLong())).thenReturn(10L);
+        when(latestRevisionTracker.latestRevisionFuture(anyLong())).thenReturn(CompletableFuture.completedFuture(10L));
 
         RevisionConsistencyInterceptor interceptor = configBean.consistencyInterceptor(
                 adminPDPConfig,
                 currentRevisionService,
-                latestRevisionTracker
+                latestRevisionTracker,
+                grpcServerExecutorConfigurer
         );
 
-        AtomicBoolean handlerCalled = new AtomicBoolean(false);
+        CountDownLatch handlerCalled = new CountDownLatch(1);
         ServerCallHandler<String, String> handler = (call, headers) -> {
-            handlerCalled.set(true);
+            handlerCalled.countDown();
             return new ServerCall.Listener<>() {};
         };
 
@@ -203,12 +218,13 @@ class AdminPDPGrpcInterceptorConfigTest {
             Thread.currentThread().interrupt();
         }
 
-        assertTrue(handlerCalled.get(), "Handler should be called after catching up within timeout");
+        assertTrue(handlerCalled.await(1, TimeUnit.SECONDS), "Handler should be called after catching up within timeout");
     }
 
     private static class TestServerCall<ReqT, RespT> extends ServerCall<ReqT, RespT> {
         private final String fullMethodName;
-        Status closedStatus;
+        private final CountDownLatch closed = new CountDownLatch(1);
+        volatile Status closedStatus;
 
         TestServerCall(String fullMethodName) {
             this.fullMethodName = fullMethodName;
@@ -226,6 +242,11 @@ class AdminPDPGrpcInterceptorConfigTest {
         @Override
         public void close(Status status, Metadata trailers) {
             this.closedStatus = status;
+            closed.countDown();
+        }
+
+        void awaitClosed() throws InterruptedException {
+            assertTrue(closed.await(1, TimeUnit.SECONDS), "Call should be closed");
         }
 
         @Override
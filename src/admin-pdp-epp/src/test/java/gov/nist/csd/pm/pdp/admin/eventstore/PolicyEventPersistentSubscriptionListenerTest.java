@@ -0,0 +1,158 @@
+package gov.nist.csd.pm.pdp.admin.eventstore;
+
+import com.eventstore.dbclient.NackAction;
+import com.eventstore.dbclient.PersistentSubscription;
+import com.eventstore.dbclient.RecordedEvent;
+import com.eventstore.dbclient.ResolvedEvent;
+import gov.nist.csd.pm.core.common.exception.PMException;
+import gov.nist.csd.pm.core.common.graph.node.NodeType;
+import gov.nist.csd.pm.core.impl.neo4j.embedded.pap.Neo4jEmbeddedPAP;
+import gov.nist.csd.pm.core.pap.store.GraphStore;
+import gov.nist.csd.pm.core.pap.store.PolicyStore;
+import gov.nist.csd.pm.pdp.admin.config.AdminPDPConfig;
+import gov.nist.csd.pm.pdp.proto.event.PMEvent;
+import gov.nist.csd.pm.pdp.proto.event.PolicyClassCreated;
+import gov.nist.csd.pm.pdp.shared.eventstore.AppliedEventListener;
+import gov.nist.csd.pm.pdp.shared.eventstore.CurrentRevisionService;
+import gov.nist.csd.pm.pdp.shared.eventstore.SnapshotService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class PolicyEventPersistentSubscriptionListenerTest {
+
+    private final Neo4jEmbeddedPAP pap = mock(Neo4jEmbeddedPAP.class);
+    private final GraphStore graph = mock(GraphStore.class);
+    private final SnapshotScheduler snapshotScheduler = mock(SnapshotScheduler.class);
+    private final PersistentSubscription subscription = mock(PersistentSubscription.class);
+    private final CurrentRevisionService currentRevision = new CurrentRevisionService();
+    private final List<List<ResolvedEvent>> acked = new ArrayList<>();
+    private PolicyEventPersistentSubscriptionListener listener;
+
+    @BeforeEach
+    void setUp() {
+        PolicyStore policyStore = mock(PolicyStore.class);
+        when(pap.policyStore()).thenReturn(policyStore);
+        when(policyStore.graph()).thenReturn(graph);
+
+        doAnswer(invocation -> {
+            Iterator<ResolvedEvent> events = invocation.getArgument(0);
+            List<ResolvedEvent> list = new ArrayList<>();
+            events.forEachRemaining(list::add);
+            acked.add(list);
+            return null;
+        }).when(subscription).ack(any(Iterator.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        listener.shutdown();
+    }
+
+    @Test
+    void onEvent_fullBatch_appliedInOneTransactionAndAckedTogether() throws PMException {
+        listener = listener(3, 10_000);
+        List<ResolvedEvent> events = List.of(event(0, 1), event(1, 2), event(2, 3));
+
+        listener.onEvent(subscription, 0, events.get(0));
+        listener.onEvent(subscription, 0, events.get(1));
+        assertTrue(acked.isEmpty());
+        listener.onEvent(subscription, 0, events.get(2));
+
+        verify(pap, times(1)).beginTx();
+        verify(pap, times(1)).commit();
+        verify(graph, times(3)).createNode(anyLong(), anyString(), eq(NodeType.PC));
+        assertEquals(List.of(events), acked);
+        assertEquals(2, currentRevision.get());
+        assertEquals(1, listener.batchCount());
+        verify(snapshotScheduler, times(3)).onEventApplied(anyLong());
+    }
+
+    @Test
+    void onEvent_partialBatch_appliedAfterDelay() {
+        listener = listener(100, 50);
+        ResolvedEvent event = event(0, 1);
+
+        listener.onEvent(subscription, 0, event);
+
+        verify(subscription, timeout(1000)).ack(any(Iterator.class));
+        assertEquals(List.of(List.of(event)), acked);
+        assertEquals(0, currentRevision.get());
+    }
+
+    @Test
+    void onEvent_batchFails_onlyFailingEventParked() throws PMException {
+        listener = listener(3, 10_000);
+        doThrow(new PMException("node 2 already exists")).when(graph).createNode(eq(2L), anyString(), any());
+        List<ResolvedEvent> events = List.of(event(0, 1), event(1, 2), event(2, 3));
+
+        events.forEach(event -> listener.onEvent(subscription, 0, event));
+
+        // the batch is rolled back and split until the failing event is found
+        verify(pap, atLeastOnce()).rollback();
+        verify(subscription).nack(eq(NackAction.Park), anyString(), eq(events.get(1)));
+        assertEquals(List.of(List.of(events.get(0)), List.of(events.get(2))), acked);
+        assertEquals(1, listener.parkedCount());
+        assertEquals(2, currentRevision.get());
+    }
+
+    @Test
+    void onEvent_appliedOnAppend_skippedAndAcked() throws PMException {
+        listener = listener(2, 10_000);
+        listener.onAppliedOnAppend(List.of(pmEvent(1)), 0, 1);
+        List<ResolvedEvent> events = List.of(event(0, 1), event(1, 2));
+
+        events.forEach(event -> listener.onEvent(subscription, 0, event));
+
+        verify(graph, never()).createNode(eq(1L), anyString(), any());
+        verify(graph).createNode(eq(2L), anyString(), any());
+        assertEquals(List.of(events), acked);
+        assertEquals(1, currentRevision.get());
+    }
+
+    private PolicyEventPersistentSubscriptionListener listener(int batchSize, int batchDelay) {
+        AdminPDPConfig config = new AdminPDPConfig();
+        config.setSubscriptionBatchSize(batchSize);
+        config.setSubscriptionBatchDelay(batchDelay);
+
+        SnapshotService snapshotService = mock(SnapshotService.class);
+        when(snapshotService.deltaTracker()).thenReturn(mock(AppliedEventListener.class));
+
+        return new PolicyEventPersistentSubscriptionListener(
+                pap,
+                mock(GraphDatabaseService.class),
+                currentRevision,
+                snapshotService,
+                snapshotScheduler,
+                config
+        );
+    }
+
+    private static ResolvedEvent event(long revision, long id) {
+        RecordedEvent recordedEvent = mock(RecordedEvent.class);
+        when(recordedEvent.getRevision()).thenReturn(revision);
+        when(recordedEvent.getEventData()).thenReturn(pmEvent(id).toByteArray());
+
+        ResolvedEvent event = mock(ResolvedEvent.class);
+        when(event.getEvent()).thenReturn(recordedEvent);
+        return event;
+    }
+
+    private static PMEvent pmEvent(long id) {
+        return PMEvent.newBuilder()
+                .setPolicyClassCreated(PolicyClassCreated.newBuilder().setId(id).setName("pc" + id).build())
+                .build();
+    }
+}
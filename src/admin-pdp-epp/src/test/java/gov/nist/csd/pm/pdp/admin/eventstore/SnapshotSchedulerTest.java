@@ -0,0 +1,117 @@
+package gov.nist.csd.pm.pdp.admin.eventstore;
+
+import gov.nist.csd.pm.pdp.admin.config.AdminPDPConfig;
+import gov.nist.csd.pm.pdp.shared.eventstore.SnapshotService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class SnapshotSchedulerTest {
+
+    private final SnapshotService snapshotService = mock(SnapshotService.class);
+    private SnapshotScheduler scheduler;
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void onEventApplied_eventThresholdReached_writesSnapshot() throws Exception {
+        when(snapshotService.snapshot(any())).thenReturn(new SnapshotService.SnapshotResult(2, false, 100, 10, 20));
+        scheduler = new SnapshotScheduler(snapshotService, null, config(3, 0, 0));
+
+        scheduler.onEventApplied(1);
+        scheduler.onEventApplied(1);
+        verify(snapshotService, after(200).never()).snapshot(any());
+
+        scheduler.onEventApplied(1);
+        verify(snapshotService, timeout(1000).times(1)).snapshot(any());
+        waitFor(() -> scheduler.writtenCount() == 1);
+        assertEquals(0, scheduler.pendingEvents());
+        assertEquals(100, scheduler.lastSize());
+    }
+
+    @Test
+    void onEventApplied_replayCostReached_writesSnapshot() throws Exception {
+        when(snapshotService.snapshot(any())).thenReturn(new SnapshotService.SnapshotResult(0, false, 100, 10, 20));
+        scheduler = new SnapshotScheduler(snapshotService, null, config(1000, 0, 10));
+
+        scheduler.onEventApplied(TimeUnit.MILLISECONDS.toNanos(4));
+        scheduler.onEventApplied(TimeUnit.MILLISECONDS.toNanos(4));
+        verify(snapshotService, after(200).never()).snapshot(any());
+
+        scheduler.onEventApplied(TimeUnit.MILLISECONDS.toNanos(4));
+        verify(snapshotService, timeout(1000).times(1)).snapshot(any());
+    }
+
+    @Test
+    void maxAgeReached_writesSnapshotWithoutNewEvents() throws Exception {
+        when(snapshotService.snapshot(any())).thenReturn(new SnapshotService.SnapshotResult(0, false, 100, 10, 20));
+        scheduler = new SnapshotScheduler(snapshotService, null, config(1000, 500, 0));
+
+        scheduler.onEventApplied(1);
+        verify(snapshotService, never()).snapshot(any());
+
+        verify(snapshotService, timeout(3000).times(1)).snapshot(any());
+    }
+
+    @Test
+    void onEventApplied_snapshotInFlight_doesNotStartAnother() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(snapshotService.snapshot(any())).thenAnswer(invocation -> {
+            release.await();
+            return new SnapshotService.SnapshotResult(0, false, 100, 10, 20);
+        });
+        scheduler = new SnapshotScheduler(snapshotService, null, config(1, 0, 0));
+
+        scheduler.onEventApplied(1);
+        verify(snapshotService, timeout(1000).times(1)).snapshot(any());
+
+        // applying events is not held back by the snapshot being written
+        for (int i = 0; i < 10; i++) {
+            scheduler.onEventApplied(1);
+        }
+        release.countDown();
+
+        // the events applied while it was written are left for the next snapshot
+        waitFor(() -> scheduler.writtenCount() == 1);
+        assertEquals(10, scheduler.pendingEvents());
+    }
+
+    @Test
+    void snapshotFailed_backsOff() throws Exception {
+        when(snapshotService.snapshot(any())).thenThrow(new ExecutionException(new RuntimeException("unavailable")));
+        scheduler = new SnapshotScheduler(snapshotService, null, config(1, 0, 0));
+
+        scheduler.onEventApplied(1);
+        waitFor(() -> scheduler.failedCount() == 1);
+
+        scheduler.onEventApplied(1);
+        assertFalse(scheduler.isDue());
+        verify(snapshotService, after(200).times(1)).snapshot(any());
+    }
+
+    private static AdminPDPConfig config(int snapshotInterval, int snapshotMaxAge, int snapshotMaxReplayTime) {
+        AdminPDPConfig config = new AdminPDPConfig();
+        config.setSnapshotInterval(snapshotInterval);
+        config.setSnapshotMaxAge(snapshotMaxAge);
+        config.setSnapshotMaxReplayTime(snapshotMaxReplayTime);
+        return config;
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not reached");
+            Thread.sleep(10);
+        }
+    }
+}
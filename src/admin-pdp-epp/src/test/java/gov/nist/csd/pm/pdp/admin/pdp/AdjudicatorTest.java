@@ -0,0 +1,83 @@
+package gov.nist.csd.pm.pdp.admin.pdp;
+
+import com.eventstore.dbclient.WrongExpectedVersionException;
+import gov.nist.csd.pm.core.common.exception.PMException;
+import gov.nist.csd.pm.pdp.admin.config.AdminPDPConfig;
+import gov.nist.csd.pm.pdp.shared.eventstore.CurrentRevisionService;
+import gov.nist.csd.pm.pdp.shared.eventstore.LatestRevisionTracker;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class AdjudicatorTest {
+
+	private final WriteSequencer writeSequencer = mock(WriteSequencer.class);
+	private final LatestRevisionTracker latestRevisionTracker = mock(LatestRevisionTracker.class);
+	private final CurrentRevisionService currentRevision = new CurrentRevisionService();
+
+	@Test
+	void adjudicateTransaction_conflict_retriesOnceCaughtUp() throws Exception {
+		currentRevision.set(5);
+		when(latestRevisionTracker.get(anyLong())).thenReturn(7L);
+		doThrow(mock(WrongExpectedVersionException.class))
+				.doReturn(new WriteSequencer.Written<>(null, 8L))
+				.when(writeSequencer).submit(any());
+		Adjudicator adjudicator = adjudicator(3, 1000);
+
+		// the subscription applies the conflicting events shortly after
+		CompletableFuture.delayedExecutor(100, TimeUnit.MILLISECONDS).execute(() -> currentRevision.set(7));
+
+		long start = System.nanoTime();
+		assertEquals(8, adjudicator.adjudicateTransaction(ctx -> {}));
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		// retried as soon as the policy caught up, not after a fixed wait
+		assertTrue(elapsedMillis >= 90 && elapsedMillis < 1000, "retried after " + elapsedMillis + "ms");
+		verify(writeSequencer, times(2)).submit(any());
+		assertEquals(1, adjudicator.conflictCount());
+	}
+
+	@Test
+	void adjudicateTransaction_conflictsExhaustAttempts_throws() throws Exception {
+		when(latestRevisionTracker.get(anyLong())).thenReturn(0L);
+		doThrow(mock(WrongExpectedVersionException.class)).when(writeSequencer).submit(any());
+		Adjudicator adjudicator = adjudicator(2, 50);
+
+		assertThrows(PMException.class, () -> adjudicator.adjudicateTransaction(ctx -> {}));
+		verify(writeSequencer, times(2)).submit(any());
+		assertEquals(2, adjudicator.conflictCount());
+	}
+
+	@Test
+	void adjudicateTransaction_writeFails_notRetried() throws Exception {
+		doThrow(new PMException("denied")).when(writeSequencer).submit(any());
+		Adjudicator adjudicator = adjudicator(3, 50);
+
+		PMException e = assertThrows(PMException.class, () -> adjudicator.adjudicateTransaction(ctx -> {}));
+		assertEquals("denied", e.getMessage());
+		verify(writeSequencer, times(1)).submit(any());
+	}
+
+	@Test
+	void backoffMillis_noneAfterFirstConflictThenBounded() {
+		assertEquals(0, Adjudicator.backoffMillis(1, 200));
+		assertEquals(0, Adjudicator.backoffMillis(5, 0));
+		for (int i = 0; i < 100; i++) {
+			assertTrue(Adjudicator.backoffMillis(2, 200) <= 5);
+			assertTrue(Adjudicator.backoffMillis(30, 200) <= 200);
+		}
+	}
+
+	private Adjudicator adjudicator(int writeMaxAttempts, int revisionConsistencyTimeout) {
+		AdminPDPConfig config = new AdminPDPConfig();
+		config.setWriteMaxAttempts(writeMaxAttempts);
+		config.setRevisionConsistencyTimeout(revisionConsistencyTimeout);
+		return new Adjudicator(mock(ContextFactory.class), writeSequencer, currentRevision, latestRevisionTracker, config);
+	}
+}
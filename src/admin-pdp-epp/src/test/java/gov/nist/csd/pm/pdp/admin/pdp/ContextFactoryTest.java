@@ -0,0 +1,106 @@
+package gov.nist.csd.pm.pdp.admin.pdp;
+
+import gov.nist.csd.pm.core.common.exception.PMException;
+import gov.nist.csd.pm.pdp.admin.config.AdminPDPConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.dbms.api.DatabaseManagementServiceBuilder;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.neo4j.configuration.GraphDatabaseSettings.DEFAULT_DATABASE_NAME;
+
+class ContextFactoryTest {
+
+	private DatabaseManagementService managementService;
+	private GraphDatabaseService graphDb;
+
+	@BeforeEach
+	void setUp() {
+		managementService = new DatabaseManagementServiceBuilder(
+				new File("/tmp/context-factory-test").toPath()).build();
+		graphDb = managementService.database(DEFAULT_DATABASE_NAME);
+		try (Transaction tx = graphDb.beginTx()) {
+			tx.execute("match (n) detach delete n");
+			tx.commit();
+		}
+	}
+
+	@AfterEach
+	void tearDown() {
+		managementService.shutdown();
+	}
+
+	@Test
+	void releaseContext_reusedAndReset() throws PMException {
+		ContextFactory contextFactory = new ContextFactory(graphDb, List.of(), config(4));
+
+		NGACContext ctx = contextFactory.acquireContext();
+		ctx.pap().beginTx();
+		ctx.pap().modify().graph().createPolicyClass("pc1");
+		assertEquals(1, ctx.pap().modify().getEvents().size());
+		contextFactory.releaseContext(ctx);
+
+		NGACContext reused = contextFactory.acquireContext();
+		assertSame(ctx, reused);
+		assertTrue(reused.pap().modify().getEvents().isEmpty());
+		// the open transaction was rolled back, nothing was written
+		assertFalse(reused.pap().query().graph().nodeExists("pc1"));
+		assertEquals(1, contextFactory.contextPool().createdCount());
+		assertEquals(2, contextFactory.contextPool().acquiredCount());
+	}
+
+	@Test
+	void acquireContext_poolEmpty_createsContext() throws PMException {
+		ContextFactory contextFactory = new ContextFactory(graphDb, List.of(), config(1));
+
+		NGACContext first = contextFactory.acquireContext();
+		NGACContext second = contextFactory.acquireContext();
+		assertNotSame(first, second);
+
+		// only one idle context is kept
+		contextFactory.releaseContext(first);
+		contextFactory.releaseContext(second);
+		assertEquals(1, contextFactory.contextPool().idleCount());
+		assertEquals(1, contextFactory.contextPool().discardedCount());
+	}
+
+	@Test
+	void acquireContext_poolDisabled_createsContextEachTime() throws PMException {
+		ContextFactory contextFactory = new ContextFactory(graphDb, List.of(), config(0));
+
+		NGACContext ctx = contextFactory.acquireContext();
+		contextFactory.releaseContext(ctx);
+
+		assertNotSame(ctx, contextFactory.acquireContext());
+		assertEquals(2, contextFactory.contextPool().createdCount());
+	}
+
+	@Test
+	void releaseReadOnlyContext_reusedAndNothingWritten() throws PMException {
+		ContextFactory contextFactory = new ContextFactory(graphDb, List.of(), config(4));
+
+		ReadOnlyContext ctx = contextFactory.acquireReadOnlyContext();
+		ctx.pap().beginTx();
+		ctx.pap().modify().graph().createPolicyClass("pc1");
+		ctx.pap().commit();
+		contextFactory.releaseReadOnlyContext(ctx);
+
+		assertSame(ctx, contextFactory.acquireReadOnlyContext());
+		assertFalse(ctx.pap().query().graph().nodeExists("pc1"));
+		assertEquals(1, contextFactory.readOnlyContextPool().createdCount());
+		assertEquals(0, contextFactory.contextPool().createdCount());
+	}
+
+	private static AdminPDPConfig config(int contextPoolSize) {
+		AdminPDPConfig config = new AdminPDPConfig();
+		config.setContextPoolSize(contextPoolSize);
+		return config;
+	}
+}
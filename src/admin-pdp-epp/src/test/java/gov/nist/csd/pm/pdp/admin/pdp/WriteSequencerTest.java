@@ -0,0 +1,317 @@
+package gov.nist.csd.pm.pdp.admin.pdp;
+
+import com.eventstore.dbclient.AppendToStreamOptions;
+import com.eventstore.dbclient.EventData;
+import com.eventstore.dbclient.EventStoreDBClient;
+import com.eventstore.dbclient.WriteResult;
+import gov.nist.csd.pm.core.common.exception.PMException;
+import gov.nist.csd.pm.core.impl.neo4j.embedded.pap.Neo4jEmbeddedPAP;
+import gov.nist.csd.pm.pdp.admin.config.AdminPDPConfig;
+import gov.nist.csd.pm.pdp.admin.eventstore.PolicyEventPersistentSubscriptionListener;
+import gov.nist.csd.pm.pdp.admin.pap.AppliedRevision;
+import gov.nist.csd.pm.pdp.shared.eventstore.CurrentRevisionService;
+import gov.nist.csd.pm.pdp.shared.eventstore.EventStoreConnectionManager;
+import gov.nist.csd.pm.pdp.shared.eventstore.EventStoreDBConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.dbms.api.DatabaseManagementServiceBuilder;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.neo4j.configuration.GraphDatabaseSettings.DEFAULT_DATABASE_NAME;
+
+class WriteSequencerTest {
+
+	private DatabaseManagementService managementService;
+	private GraphDatabaseService graphDb;
+	private CurrentRevisionService currentRevision;
+	private List<Integer> appended;
+	private volatile boolean subscriptionStalled;
+	private EventStoreConnectionManager eventStoreConnectionManager;
+	private PolicyEventPersistentSubscriptionListener subscriptionListener;
+	private WriteSequencer writeSequencer;
+
+	@BeforeEach
+	void setUp() throws PMException {
+		managementService = new DatabaseManagementServiceBuilder(
+				new File("/tmp/write-sequencer-test").toPath()).build();
+		graphDb = managementService.database(DEFAULT_DATABASE_NAME);
+		try (Transaction tx = graphDb.beginTx()) {
+			tx.execute("match (n) detach delete n");
+			tx.commit();
+		}
+
+		currentRevision = new CurrentRevisionService();
+		currentRevision.set(10);
+		appended = new ArrayList<>();
+
+		// the mocked append stands in for the subscription and moves the current revision past the appended events,
+		// unless the subscription is stalled
+		EventStoreDBClient client = mock(EventStoreDBClient.class);
+		when(client.appendToStream(anyString(), any(AppendToStreamOptions.class), any(Iterator.class)))
+				.thenAnswer(invocation -> {
+					Iterator<EventData> events = invocation.getArgument(2);
+					int count = 0;
+					while (events.hasNext()) {
+						events.next();
+						count++;
+					}
+
+					appended.add(count);
+					if (!subscriptionStalled) {
+						currentRevision.set(currentRevision.get() + count);
+					}
+					return CompletableFuture.completedFuture(mock(WriteResult.class));
+				});
+		eventStoreConnectionManager = mock(EventStoreConnectionManager.class);
+		when(eventStoreConnectionManager.getOrInitClient()).thenReturn(client);
+		subscriptionListener = mock(PolicyEventPersistentSubscriptionListener.class);
+
+		writeSequencer = writeSequencer(false);
+	}
+
+	@AfterEach
+	void tearDown() {
+		writeSequencer.shutdown();
+		managementService.shutdown();
+	}
+
+	@Test
+	void submit_writesQueuedTogether_appendedInOneCallWithOwnRevisions() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<WriteSequencer.Written<String>> first = submitAsync(ctx -> {
+			started.countDown();
+			await(release);
+			ctx.pap().modify().graph().createPolicyClass("pc1");
+			return "first";
+		});
+		// the blocking write is being evaluated, the next ones queue behind it
+		assertTrue(started.await(2, TimeUnit.SECONDS));
+
+		CompletableFuture<WriteSequencer.Written<String>> second = submitAsync(ctx -> {
+			ctx.pap().modify().graph().createPolicyClass("pc2");
+			return "second";
+		});
+		waitForQueued(1);
+		CompletableFuture<WriteSequencer.Written<Boolean>> third = submitAsync(ctx -> {
+			// evaluated after the second write, in the same transaction
+			boolean sawSecond = ctx.pap().query().graph().nodeExists("pc2");
+			ctx.pap().modify().graph().createPolicyClass("pc3");
+			return sawSecond;
+		});
+		waitForQueued(2);
+		release.countDown();
+
+		assertEquals(new WriteSequencer.Written<>("first", 11), first.get(5, TimeUnit.SECONDS));
+		assertEquals(new WriteSequencer.Written<>("second", 12), second.get(5, TimeUnit.SECONDS));
+		assertEquals(new WriteSequencer.Written<>(true, 13), third.get(5, TimeUnit.SECONDS));
+		assertEquals(List.of(1, 2), appended);
+		assertEquals(2, writeSequencer.groupCount());
+		assertEquals(3, writeSequencer.writtenCount());
+	}
+
+	@Test
+	void submit_writeFails_groupSplitAndEachWriteEvaluatedOnce() throws Exception {
+		AtomicInteger evaluations = new AtomicInteger();
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<WriteSequencer.Written<Object>> blocker = submitAsync(ctx -> {
+			started.countDown();
+			await(release);
+			return null;
+		});
+		// the blocking write is being evaluated, the next ones queue behind it
+		assertTrue(started.await(2, TimeUnit.SECONDS));
+
+		CompletableFuture<WriteSequencer.Written<Object>> ok = submitAsync(ctx -> {
+			evaluations.incrementAndGet();
+			ctx.pap().modify().graph().createPolicyClass("pc1");
+			return null;
+		});
+		waitForQueued(1);
+		CompletableFuture<WriteSequencer.Written<Object>> failing = submitAsync(ctx -> {
+			ctx.pap().modify().graph().createPolicyClass("pc2");
+			throw new PMException("denied");
+		});
+		waitForQueued(2);
+		CompletableFuture<WriteSequencer.Written<Boolean>> after = submitAsync(ctx -> {
+			evaluations.incrementAndGet();
+			boolean sawFailed = ctx.pap().query().graph().nodeExists("pc2");
+			ctx.pap().modify().graph().createPolicyClass("pc3");
+			return sawFailed;
+		});
+		waitForQueued(3);
+		release.countDown();
+
+		// a write without events is not appended
+		assertEquals(-1, blocker.get(5, TimeUnit.SECONDS).revision());
+		assertEquals(11, ok.get(5, TimeUnit.SECONDS).revision());
+		Exception e = assertThrows(Exception.class, () -> failing.get(5, TimeUnit.SECONDS));
+		assertInstanceOf(PMException.class, e.getCause().getCause());
+		assertEquals(new WriteSequencer.Written<>(false, 12), after.get(5, TimeUnit.SECONDS));
+
+		// the writes before the failed one are appended without its events, the write after it on its own
+		assertEquals(List.of(1, 1), appended);
+		assertEquals(2, evaluations.get());
+		assertEquals(1, writeSequencer.splitCount());
+	}
+
+	@Test
+	void submit_timesOutBeforeEvaluated_failedAndNotApplied() throws Exception {
+		writeSequencer.shutdown();
+		writeSequencer = writeSequencer(false, 200);
+
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<WriteSequencer.Written<Object>> blocker = submitAsync(ctx -> {
+			started.countDown();
+			await(release);
+			return null;
+		});
+		assertTrue(started.await(2, TimeUnit.SECONDS));
+
+		PMException e = assertThrows(PMException.class, () -> writeSequencer.submit(ctx -> {
+			ctx.pap().modify().graph().createPolicyClass("pc1");
+			return null;
+		}));
+		assertTrue(e.getMessage().contains("not applied"));
+		assertEquals(0, writeSequencer.queuedCount());
+
+		release.countDown();
+		blocker.get(5, TimeUnit.SECONDS);
+		assertTrue(appended.isEmpty());
+	}
+
+	@Test
+	void submit_catchUpTimesOut_queuedWritesFailedAndNotApplied() throws Exception {
+		subscriptionStalled = true;
+
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<WriteSequencer.Written<Object>> first = submitAsync(ctx -> {
+			started.countDown();
+			await(release);
+			ctx.pap().modify().graph().createPolicyClass("pc1");
+			return null;
+		});
+		assertTrue(started.await(2, TimeUnit.SECONDS));
+
+		CompletableFuture<WriteSequencer.Written<Object>> second = submitAsync(ctx -> {
+			ctx.pap().modify().graph().createPolicyClass("pc2");
+			return null;
+		});
+		waitForQueued(1);
+		release.countDown();
+
+		// the first write is appended, the local policy never reaches its revision
+		assertEquals(11, first.get(5, TimeUnit.SECONDS).revision());
+		Exception e = assertThrows(Exception.class, () -> second.get(5, TimeUnit.SECONDS));
+		assertInstanceOf(PMException.class, e.getCause().getCause());
+		assertTrue(e.getCause().getCause().getMessage().contains("not applied"));
+
+		assertEquals(List.of(1), appended);
+		assertEquals(1, writeSequencer.catchUpTimeoutCount());
+		assertEquals(0, writeSequencer.queuedCount());
+	}
+
+	@Test
+	void submit_applyOnAppend_committedWithRevision() throws Exception {
+		writeSequencer.shutdown();
+		writeSequencer = writeSequencer(true);
+
+		WriteSequencer.Written<Object> written = writeSequencer.submit(ctx -> {
+			ctx.pap().modify().graph().createPolicyClass("pc1");
+			return null;
+		});
+
+		assertEquals(11, written.revision());
+		assertTrue(nodeExists("pc1"));
+		assertEquals(11, AppliedRevision.read(graphDb));
+		verify(subscriptionListener).onAppliedOnAppend(argThat(events -> events.size() == 1), eq(11L), anyLong());
+		assertEquals(1, writeSequencer.appliedOnAppendCount());
+		assertTrue(writeSequencer.appendHeldSeconds() > 0);
+	}
+
+	@Test
+	void submit_notApplyOnAppend_nothingCommitted() throws Exception {
+		writeSequencer.submit(ctx -> {
+			ctx.pap().modify().graph().createPolicyClass("pc1");
+			return null;
+		});
+
+		assertFalse(nodeExists("pc1"));
+		assertEquals(-1, AppliedRevision.read(graphDb));
+		verifyNoInteractions(subscriptionListener);
+		assertEquals(0, writeSequencer.appendHeldSeconds());
+	}
+
+	private <T> CompletableFuture<WriteSequencer.Written<T>> submitAsync(WriteSequencer.Write<T> write) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return writeSequencer.submit(write);
+			} catch (PMException e) {
+				throw new RuntimeException(e);
+			}
+		});
+	}
+
+	private boolean nodeExists(String name) throws PMException {
+		ReadOnlyContext ctx = new ContextFactory(graphDb, List.of(), new AdminPDPConfig()).createReadOnlyContext();
+		return ctx.pap().query().graph().nodeExists(name);
+	}
+
+	private void waitForQueued(int queued) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+		while (writeSequencer.queuedCount() != queued) {
+			assertTrue(System.nanoTime() < deadline, "writes not queued");
+			Thread.sleep(10);
+		}
+	}
+
+	private static void await(CountDownLatch latch) throws PMException {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			throw new PMException(e.getMessage());
+		}
+	}
+
+	private WriteSequencer writeSequencer(boolean applyOnAppend) {
+		return writeSequencer(applyOnAppend, 10000);
+	}
+
+	private WriteSequencer writeSequencer(boolean applyOnAppend, int writeTimeout) {
+		AdminPDPConfig adminPDPConfig = new AdminPDPConfig();
+		adminPDPConfig.setRevisionConsistencyTimeout(1000);
+		adminPDPConfig.setWriteTimeout(writeTimeout);
+		adminPDPConfig.setApplyOnAppend(applyOnAppend);
+		return new WriteSequencer(
+				new ContextFactory(graphDb, List.of(), adminPDPConfig),
+				mock(Neo4jEmbeddedPAP.class),
+				subscriptionListener,
+				currentRevision,
+				eventStoreConnectionManager,
+				new EventStoreDBConfig("test-events", "test-snapshots", "localhost", 2113),
+				adminPDPConfig
+		);
+	}
+}
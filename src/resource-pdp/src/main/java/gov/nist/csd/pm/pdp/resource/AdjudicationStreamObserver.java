@@ -0,0 +1,161 @@
+package gov.nist.csd.pm.pdp.resource;
+
+import gov.nist.csd.pm.pdp.proto.adjudication.StreamOperationRequest;
+import gov.nist.csd.pm.pdp.proto.adjudication.StreamOperationResponse;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Server side of an adjudication stream. Up to maxInFlight requests are adjudicated concurrently on the executor and
+ * responses are written as they complete. Inbound flow control is manual: a new request is only pulled from the
+ * client once a response has been written and the outbound transport is ready, so a slow reader stops the client from
+ * sending more work instead of buffering it on the server.
+ */
+class AdjudicationStreamObserver implements StreamObserver<StreamOperationRequest> {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdjudicationStreamObserver.class);
+
+    private final ServerCallStreamObserver<StreamOperationResponse> responseObserver;
+    private final Executor executor;
+    private final Function<StreamOperationRequest, StreamOperationResponse> handler;
+
+    // a lock rather than a monitor, the stream callbacks can run on the gRPC server's virtual threads
+    private final ReentrantLock lock = new ReentrantLock();
+    private int inFlight;
+    // number of requests owed to the client that were held back because the outbound transport was not ready
+    private int pendingRequests;
+    private boolean halfClosed;
+    private boolean done;
+
+    AdjudicationStreamObserver(ServerCallStreamObserver<StreamOperationResponse> responseObserver,
+                               Executor executor,
+                               int maxInFlight,
+                               Function<StreamOperationRequest, StreamOperationResponse> handler) {
+        this.responseObserver = responseObserver;
+        this.executor = executor;
+        this.handler = handler;
+
+        responseObserver.disableAutoRequest();
+        responseObserver.setOnReadyHandler(this::onReady);
+        responseObserver.setOnCancelHandler(() -> {
+            lock.lock();
+            try {
+                done = true;
+            } finally {
+                lock.unlock();
+            }
+        });
+        responseObserver.request(maxInFlight);
+    }
+
+    @Override
+    public void onNext(StreamOperationRequest request) {
+        lock.lock();
+        try {
+            if (done) {
+                return;
+            }
+
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            executor.execute(() -> {
+                StreamOperationResponse response = handler.apply(request);
+                onResponse(response);
+            });
+        } catch (RejectedExecutionException e) {
+            // the request will never be answered, release its slot and end the stream
+            lock.lock();
+            try {
+                inFlight--;
+                if (done) {
+                    return;
+                }
+
+                done = true;
+                responseObserver.onError(Status.UNAVAILABLE
+                                                 .withDescription("adjudication executor is not accepting requests")
+                                                 .withCause(e)
+                                                 .asRuntimeException());
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        logger.debug("adjudication stream closed by client", t);
+        lock.lock();
+        try {
+            done = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onCompleted() {
+        lock.lock();
+        try {
+            halfClosed = true;
+            completeIfDrained();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void onResponse(StreamOperationResponse response) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (done) {
+                return;
+            }
+
+            responseObserver.onNext(response);
+
+            if (halfClosed) {
+                completeIfDrained();
+            } else if (responseObserver.isReady()) {
+                responseObserver.request(1);
+            } else {
+                pendingRequests++;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void onReady() {
+        lock.lock();
+        try {
+            if (done || halfClosed || pendingRequests == 0) {
+                return;
+            }
+
+            responseObserver.request(pendingRequests);
+            pendingRequests = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void completeIfDrained() {
+        if (!done && inFlight == 0) {
+            done = true;
+            responseObserver.onCompleted();
+        }
+    }
+}
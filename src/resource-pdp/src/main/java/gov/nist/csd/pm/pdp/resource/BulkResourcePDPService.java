@@ -0,0 +1,199 @@
+package gov.nist.csd.pm.pdp.resource;
+
+import gov.nist.csd.pm.pdp.proto.adjudication.BatchOperationRequest;
+import gov.nist.csd.pm.pdp.proto.adjudication.BatchOperationResponse;
+import gov.nist.csd.pm.pdp.proto.adjudication.BulkResourceAdjudicationServiceGrpc;
+import gov.nist.csd.pm.pdp.proto.adjudication.Decision;
+import gov.nist.csd.pm.pdp.proto.adjudication.OperationResult;
+import gov.nist.csd.pm.pdp.proto.adjudication.StreamOperationRequest;
+import gov.nist.csd.pm.pdp.proto.adjudication.StreamOperationResponse;
+import gov.nist.csd.pm.pdp.resource.cache.DecisionCache;
+import gov.nist.csd.pm.pdp.resource.config.ResourcePDPConfig;
+import gov.nist.csd.pm.pdp.resource.policy.VersionedPolicy;
+import gov.nist.csd.pm.proto.v1.pdp.adjudication.OperationRequest;
+import io.grpc.Context;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import net.devh.boot.grpc.server.service.GrpcService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Adjudicates many resource operations for one user, either as a single batch or over a long-lived bidirectional
+ * stream. The user is resolved once for a whole batch and every operation in a batch is evaluated against the same
+ * local revision. Batches at or above the configured threshold, and pipelined stream requests, are evaluated in
+ * parallel.
+ */
+@GrpcService
+public class BulkResourcePDPService extends BulkResourceAdjudicationServiceGrpc.BulkResourceAdjudicationServiceImplBase {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkResourcePDPService.class);
+
+    private final ResourceAdjudicator adjudicator;
+    private final int parallelThreshold;
+    private final int streamMaxInFlight;
+    private final ExecutorService executor;
+
+    public BulkResourcePDPService(ResourceAdjudicator adjudicator, ResourcePDPConfig resourcePDPConfig) {
+        this.adjudicator = adjudicator;
+        this.parallelThreshold = resourcePDPConfig.getBatchParallelThreshold();
+        this.streamMaxInFlight = resourcePDPConfig.getStreamMaxInFlight();
+        this.executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+            Thread t = new Thread(r, "bulk-adjudication");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void adjudicateResourceOperations(BatchOperationRequest request,
+                                             StreamObserver<BatchOperationResponse> responseObserver) {
+        List<OperationRequest> operations = request.getRequestsList();
+
+        // every operation in the batch is adjudicated against this version, events applied in the meantime are not
+        // visible to the batch
+        try (VersionedPolicy.PolicyVersion version = adjudicator.acquirePolicy()) {
+            RequestUser user = RequestUser.fromHeaders();
+
+            List<OperationResult> results;
+            if (operations.size() >= parallelThreshold) {
+                results = adjudicateParallel(version, user, operations);
+            } else {
+                results = new ArrayList<>(operations.size());
+                for (OperationRequest operation : operations) {
+                    results.add(adjudicate(version, user, operation));
+                }
+            }
+
+            responseObserver.onNext(BatchOperationResponse.newBuilder()
+                                            .setRevision(version.revision())
+                                            .addAllResults(results)
+                                            .build());
+            responseObserver.onCompleted();
+        } catch (Exception e) {
+            logger.error("batch adjudication FAILED", e);
+            responseObserver.onError(Status.INTERNAL
+                                             .withDescription(e.getMessage())
+                                             .withCause(e)
+                                             .asRuntimeException());
+        }
+    }
+
+    @Override
+    public StreamObserver<StreamOperationRequest> adjudicateResourceOperationStream(
+            StreamObserver<StreamOperationResponse> responseObserver) {
+        // requests are handled on the executor with the stream's gRPC context so the headers parsed when the stream
+        // was opened are visible to every request
+        Executor contextExecutor = Context.current().fixedContextExecutor(executor);
+
+        return new AdjudicationStreamObserver(
+                (ServerCallStreamObserver<StreamOperationResponse>) responseObserver,
+                contextExecutor,
+                streamMaxInFlight,
+                this::adjudicate
+        );
+    }
+
+    private StreamOperationResponse adjudicate(StreamOperationRequest request) {
+        StreamOperationResponse.Builder response = StreamOperationResponse.newBuilder()
+                .setRequestId(request.getRequestId());
+
+        try (VersionedPolicy.PolicyVersion version = adjudicator.acquirePolicy()) {
+            // a request that fails has no decision and reports the version it was adjudicated against
+            response.setRevision(version.revision());
+
+            try {
+                DecisionCache.Decision decision =
+                        adjudicator.adjudicate(version, RequestUser.fromHeaders(), request.getRequest());
+                response.setRevision(decision.revision())
+                        .setResult(result(decision));
+            } catch (Exception e) {
+                response.setResult(error(request.getRequest(), e));
+            }
+        }
+
+        return response.build();
+    }
+
+    private List<OperationResult> adjudicateParallel(VersionedPolicy.PolicyVersion version,
+                                                     RequestUser user,
+                                                     List<OperationRequest> operations) {
+        // propagate the gRPC context so the user context headers are visible on the worker threads
+        Executor contextExecutor = Context.current().fixedContextExecutor(executor);
+
+        List<CompletableFuture<OperationResult>> futures = new ArrayList<>(operations.size());
+        for (OperationRequest operation : operations) {
+            futures.add(CompletableFuture.supplyAsync(() -> adjudicate(version, user, operation), contextExecutor));
+        }
+
+        List<OperationResult> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<OperationResult> future : futures) {
+            results.add(future.join());
+        }
+
+        return results;
+    }
+
+    private OperationResult adjudicate(VersionedPolicy.PolicyVersion version,
+                                       RequestUser user,
+                                       OperationRequest operation) {
+        try {
+            return result(adjudicator.adjudicate(version, user, operation));
+        } catch (Exception e) {
+            return error(operation, e);
+        }
+    }
+
+    private static OperationResult result(DecisionCache.Decision decision) {
+        if (!decision.isPermitted()) {
+            return OperationResult.newBuilder()
+                    .setDecision(Decision.DENY)
+                    .setMessage(decision.deniedReason())
+                    .setStatusCode(Status.Code.PERMISSION_DENIED.value())
+                    .build();
+        }
+
+        OperationResult.Builder b = OperationResult.newBuilder()
+                .setDecision(Decision.PERMIT)
+                .setStatusCode(Status.Code.OK.value());
+        if (decision.response().hasValue()) {
+            b.setValue(decision.response().getValue());
+        }
+
+        return b.build();
+    }
+
+    private static OperationResult error(OperationRequest operation, Exception e) {
+        if (e instanceof ResourceAdjudicator.OperationIsNotResourceOperationException) {
+            return error(Status.Code.INVALID_ARGUMENT, e);
+        }
+
+        logger.error("adjudication of {} FAILED", operation.getName(), e);
+        return error(Status.Code.INTERNAL, e);
+    }
+
+    private static OperationResult error(Status.Code code, Exception e) {
+        OperationResult.Builder b = OperationResult.newBuilder()
+                .setDecision(Decision.ERROR)
+                .setStatusCode(code.value());
+        if (e.getMessage() != null) {
+            b.setMessage(e.getMessage());
+        }
+
+        return b.build();
+    }
+}
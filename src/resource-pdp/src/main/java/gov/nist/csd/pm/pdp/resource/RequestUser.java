@@ -0,0 +1,58 @@
+package gov.nist.csd.pm.pdp.resource;
+
+import gov.nist.csd.pm.core.common.exception.PMException;
+import gov.nist.csd.pm.core.pap.PAP;
+import gov.nist.csd.pm.pdp.resource.cache.DecisionCache;
+import gov.nist.csd.pm.pdp.shared.auth.UserContextCache;
+import gov.nist.csd.pm.pdp.shared.auth.UserContextFromHeader;
+import gov.nist.csd.pm.pdp.shared.auth.UserContextInterceptor;
+import gov.nist.csd.pm.proto.v1.pdp.adjudication.OperationRequest;
+
+import java.util.List;
+
+/**
+ * The user context headers of a single gRPC call. The headers are resolved to a UserContext at most once per policy
+ * revision, so a call that adjudicates many operations against one version only looks the user up in the policy once.
+ * Must be created on the thread handling the call or on a thread the call's gRPC Context has been propagated to.
+ */
+public class RequestUser {
+
+    private final String user;
+    private final List<String> attrs;
+    private final String process;
+    private UserContextFromHeader.ResolvedUser resolved;
+    private long resolvedAt;
+
+    private RequestUser(String user, List<String> attrs, String process) {
+        this.user = user;
+        this.attrs = attrs;
+        this.process = process;
+    }
+
+    public static RequestUser fromHeaders() {
+        return new RequestUser(
+                UserContextInterceptor.getPmUserHeaderValue(),
+                UserContextInterceptor.getPmUserAttrsHeaderValue(),
+                UserContextInterceptor.getPmProcessHeaderValue()
+        );
+    }
+
+    /**
+     * Resolve the headers against the given policy, which is at the given revision.
+     */
+    public synchronized UserContextFromHeader.ResolvedUser resolve(PAP pap,
+                                                                   long revision,
+                                                                   UserContextCache userContextCache)
+            throws PMException {
+        if (resolved == null || resolvedAt != revision) {
+            resolved = userContextCache.resolve(pap, revision, user, attrs, process);
+            resolvedAt = revision;
+        }
+
+        return resolved;
+    }
+
+    public DecisionCache.Key decisionKey(OperationRequest request) {
+        return new DecisionCache.Key(user, attrs, process, request.getName(), request.getArgs());
+    }
+}
@@ -0,0 +1,208 @@
+package gov.nist.csd.pm.pdp.resource;
+
+import gov.nist.csd.pm.core.common.exception.PMException;
+import gov.nist.csd.pm.core.epp.EventContext;
+import gov.nist.csd.pm.core.impl.grpc.util.ToProtoUtil;
+import gov.nist.csd.pm.core.pap.PAP;
+import gov.nist.csd.pm.core.pap.operation.Operation;
+import gov.nist.csd.pm.core.pdp.UnauthorizedException;
+import gov.nist.csd.pm.pdp.resource.cache.DecisionCache;
+import gov.nist.csd.pm.pdp.resource.dispatch.OperationDispatchTable;
+import gov.nist.csd.pm.pdp.resource.epp.EPPClient;
+import gov.nist.csd.pm.pdp.resource.policy.VersionedPolicy;
+import gov.nist.csd.pm.pdp.resource.privilege.PrivilegeIndex;
+import gov.nist.csd.pm.pdp.resource.privilege.RequiredCapabilityCheck;
+import gov.nist.csd.pm.pdp.shared.auth.UserContextCache;
+import gov.nist.csd.pm.pdp.shared.auth.UserContextFromHeader;
+import gov.nist.csd.pm.pdp.shared.eventstore.CurrentRevisionService;
+import gov.nist.csd.pm.pdp.shared.interceptor.RevisionTokenInterceptor;
+import gov.nist.csd.pm.proto.v1.pdp.adjudication.AdjudicateOperationResponse;
+import gov.nist.csd.pm.proto.v1.pdp.adjudication.OperationRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Adjudicates a single resource operation request, consulting and populating the decision cache. Shared by the
+ * unary, batch, and streaming adjudication services. Each request is adjudicated against one version of the local
+ * policy, acquired from the VersionedPolicy, and the decision is tagged with that version's revision. A decision
+ * served from the cache publishes the EPP events recorded when it was computed, the same as a PDP adjudication would.
+ */
+@Component
+public class ResourceAdjudicator {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResourceAdjudicator.class);
+
+    private final VersionedPolicy policy;
+    private final CurrentRevisionService currentRevision;
+    private final DecisionCache decisionCache;
+    private final UserContextCache userContextCache;
+    private final PrivilegeIndex privilegeIndex;
+    private final OperationDispatchTable dispatchTable;
+    private final EPPClient eppClient;
+
+    public ResourceAdjudicator(VersionedPolicy policy,
+                               CurrentRevisionService currentRevision,
+                               DecisionCache decisionCache,
+                               UserContextCache userContextCache,
+                               PrivilegeIndex privilegeIndex,
+                               OperationDispatchTable dispatchTable,
+                               EPPClient eppClient) {
+        this.policy = policy;
+        this.currentRevision = currentRevision;
+        this.decisionCache = decisionCache;
+        this.userContextCache = userContextCache;
+        this.privilegeIndex = privilegeIndex;
+        this.dispatchTable = dispatchTable;
+        this.eppClient = eppClient;
+    }
+
+    public CurrentRevisionService getCurrentRevision() {
+        return currentRevision;
+    }
+
+    /**
+     * Acquire the published version of the local policy, for callers that adjudicate several requests against one
+     * revision. The version must be closed by the caller.
+     */
+    public VersionedPolicy.PolicyVersion acquirePolicy() {
+        return policy.acquire();
+    }
+
+    /**
+     * Adjudicate the request for the given user against the published version of the local policy. An authorization
+     * failure is returned as a denied decision rather than thrown, any other failure is thrown.
+     */
+    public DecisionCache.Decision adjudicate(RequestUser user, OperationRequest request)
+            throws PMException, OperationIsNotResourceOperationException {
+        try (VersionedPolicy.PolicyVersion version = policy.acquire()) {
+            return adjudicate(version, user, request);
+        }
+    }
+
+    /**
+     * Adjudicate the request for the given user against the given version of the local policy. A cached decision is
+     * only returned if it was computed at the version's revision.
+     */
+    public DecisionCache.Decision adjudicate(VersionedPolicy.PolicyVersion version,
+                                             RequestUser user,
+                                             OperationRequest request)
+            throws PMException, OperationIsNotResourceOperationException {
+        DecisionCache.Key key = null;
+        if (decisionCache.isEnabled()) {
+            key = user.decisionKey(request);
+
+            DecisionCache.Decision decision = decisionCache.get(key);
+            if (decision != null && decision.revision() == version.revision()) {
+                // the PDP is not called, publish the events it published for this decision so obligations still fire
+                for (EventContext event : decision.events()) {
+                    eppClient.processEvent(event);
+                }
+
+                RevisionTokenInterceptor.recordRevision(decision.revision());
+                return decision;
+            }
+        }
+
+        DecisionCache.Decision decision = adjudicate(version, user, request, key != null);
+        if (key != null) {
+            decisionCache.put(key, decision);
+        }
+
+        RevisionTokenInterceptor.recordRevision(decision.revision());
+        return decision;
+    }
+
+    private DecisionCache.Decision adjudicate(VersionedPolicy.PolicyVersion version,
+                                              RequestUser user,
+                                              OperationRequest request,
+                                              boolean recordEvents)
+            throws PMException, OperationIsNotResourceOperationException {
+        long revision = version.revision();
+        PAP pap = version.pap();
+
+        UserContextFromHeader.ResolvedUser resolvedUser = user.resolve(pap, revision, userContextCache);
+
+        // only allow resource operations to be adjudicated
+        OperationDispatchTable.CompiledOperation compiled = dispatchTable.lookup(pap, revision, request.getName());
+        if (compiled == null) {
+            throw new OperationIsNotResourceOperationException();
+        }
+
+        Map<String, Object> args = compiled.decodeArgs(request.getArgs());
+
+        boolean indexDenies = indexDenies(pap, revision, resolvedUser, compiled.operation(), args);
+        if (indexDenies && !privilegeIndex.isVerify()) {
+            return DecisionCache.Decision.deny(
+                    revision,
+                    "user does not have the privileges required by " + request.getName()
+            );
+        }
+
+        try {
+            Object result;
+            List<EventContext> events = List.of();
+            if (recordEvents) {
+                eppClient.beginRecording();
+            }
+            try {
+                result = version.pdp().adjudicateOperation(resolvedUser.userContext(), request.getName(), args);
+            } finally {
+                if (recordEvents) {
+                    events = eppClient.endRecording();
+                }
+            }
+
+            if (indexDenies) {
+                privilegeIndex.recordDecisionMismatch();
+                logger.warn("privilege index denied {} but the PDP permitted it", request.getName());
+            }
+
+            AdjudicateOperationResponse.Builder b = AdjudicateOperationResponse.newBuilder();
+            if (result != null) {
+                b.setValue(ToProtoUtil.toValueProto(result));
+            }
+
+            return DecisionCache.Decision.permit(revision, b.build(), events);
+        } catch (UnauthorizedException e) {
+            return DecisionCache.Decision.deny(revision, e.getMessage());
+        }
+    }
+
+    /**
+     * Use the privilege index to find requests whose required capabilities cannot be satisfied without running the
+     * operation through the PDP. Any failure to evaluate the check leaves the decision to the PDP.
+     */
+    private boolean indexDenies(PAP pap,
+                                long revision,
+                                UserContextFromHeader.ResolvedUser user,
+                                Operation<?> operation,
+                                Map<String, Object> args) {
+        if (!privilegeIndex.isEnabled()) {
+            return false;
+        }
+
+        try {
+            return RequiredCapabilityCheck.isUnsatisfiable(
+                    privilegeIndex,
+                    pap,
+                    revision,
+                    user,
+                    operation,
+                    args
+            );
+        } catch (PMException e) {
+            logger.debug("privilege index check for {} failed, deferring to the PDP", operation.getName(), e);
+            return false;
+        }
+    }
+
+    public static class OperationIsNotResourceOperationException extends Exception {
+        public OperationIsNotResourceOperationException() {
+            super("only subclasses of ResourceOperation are allowed to be invoked in the resource-pdp");
+        }
+    }
+}
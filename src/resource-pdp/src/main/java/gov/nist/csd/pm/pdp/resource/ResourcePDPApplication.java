@@ -4,8 +4,17 @@ import gov.nist.csd.pm.core.common.exception.PMException;
 import gov.nist.csd.pm.core.impl.memory.pap.MemoryPAP;
 import gov.nist.csd.pm.core.pap.PAP;
 import gov.nist.csd.pm.core.pdp.PDP;
+import gov.nist.csd.pm.pdp.resource.cache.DecisionCache;
 import gov.nist.csd.pm.pdp.resource.config.ResourcePDPConfig;
+import gov.nist.csd.pm.pdp.resource.dispatch.OperationDispatchTable;
+import gov.nist.csd.pm.pdp.resource.policy.PolicyCheckpoint;
+import gov.nist.csd.pm.pdp.resource.policy.VersionedPolicy;
+import gov.nist.csd.pm.pdp.resource.privilege.PrivilegeIndex;
+import gov.nist.csd.pm.pdp.shared.auth.UserContextCache;
+import gov.nist.csd.pm.pdp.shared.eventstore.AppliedEventListener;
+import gov.nist.csd.pm.pdp.shared.eventstore.CurrentRevisionService;
 import gov.nist.csd.pm.pdp.shared.eventstore.EventStoreDBConfig;
+import gov.nist.csd.pm.pdp.shared.grpc.GrpcServerConfig;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
@@ -13,12 +22,14 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.EnableAspectJAutoProxy;
 
+import java.util.List;
+
 @SpringBootApplication
 @EnableAspectJAutoProxy
 @ComponentScan(
     basePackages = {"gov.nist.csd.pm.pdp"}
 )
-@EnableConfigurationProperties({EventStoreDBConfig.class, ResourcePDPConfig.class,})
+@EnableConfigurationProperties({EventStoreDBConfig.class, ResourcePDPConfig.class, GrpcServerConfig.class})
 public class ResourcePDPApplication {
 
     public static void main(String[] args) {
@@ -31,7 +42,45 @@ public class ResourcePDPApplication {
     }
 
     @Bean
-    public PDP pdp(PAP pap) {
-        return new PDP(pap);
+    public VersionedPolicy versionedPolicy(PAP pap, List<AppliedEventListener> appliedEventListeners) throws PMException {
+        MemoryPAP secondary = new MemoryPAP();
+
+        return new VersionedPolicy(
+                new VersionedPolicy.Replica(pap, new PDP(pap)),
+                new VersionedPolicy.Replica(secondary, new PDP(secondary)),
+                appliedEventListeners
+        );
+    }
+
+    @Bean
+    public PolicyCheckpoint policyCheckpoint(VersionedPolicy versionedPolicy, ResourcePDPConfig resourcePDPConfig) {
+        return new PolicyCheckpoint(
+                versionedPolicy,
+                resourcePDPConfig.getCheckpointPath(),
+                resourcePDPConfig.getCheckpointInterval()
+        );
+    }
+
+    @Bean
+    public DecisionCache decisionCache(ResourcePDPConfig resourcePDPConfig, CurrentRevisionService currentRevisionService) {
+        return new DecisionCache(resourcePDPConfig.getDecisionCacheSize(), currentRevisionService);
+    }
+
+    @Bean
+    public UserContextCache userContextCache(ResourcePDPConfig resourcePDPConfig) {
+        return new UserContextCache(resourcePDPConfig.getUserContextCacheSize());
+    }
+
+    @Bean
+    public PrivilegeIndex privilegeIndex(ResourcePDPConfig resourcePDPConfig) {
+        return new PrivilegeIndex(
+                resourcePDPConfig.getPrivilegeIndexSize(),
+                resourcePDPConfig.isPrivilegeIndexVerify()
+        );
+    }
+
+    @Bean
+    public OperationDispatchTable operationDispatchTable() {
+        return new OperationDispatchTable();
     }
 }
@@ -1,14 +1,6 @@
 package gov.nist.csd.pm.pdp.resource;
 
-import gov.nist.csd.pm.core.impl.grpc.util.FromProtoUtil;
-import gov.nist.csd.pm.core.impl.grpc.util.ToProtoUtil;
-import gov.nist.csd.pm.core.pap.PAP;
-import gov.nist.csd.pm.core.pap.operation.Operation;
-import gov.nist.csd.pm.core.pap.operation.ResourceOperation;
-import gov.nist.csd.pm.core.pap.query.model.context.UserContext;
-import gov.nist.csd.pm.core.pdp.PDP;
-import gov.nist.csd.pm.core.pdp.UnauthorizedException;
-import gov.nist.csd.pm.pdp.shared.auth.UserContextFromHeader;
+import gov.nist.csd.pm.pdp.resource.cache.DecisionCache;
 import gov.nist.csd.pm.proto.v1.pdp.adjudication.AdjudicateOperationResponse;
 import gov.nist.csd.pm.proto.v1.pdp.adjudication.OperationRequest;
 import gov.nist.csd.pm.proto.v1.pdp.adjudication.ResourceAdjudicationServiceGrpc;
@@ -23,45 +15,28 @@ public class ResourcePDPService extends ResourceAdjudicationServiceGrpc.Resource
 
     private static final Logger logger = LoggerFactory.getLogger(ResourcePDPService.class);
 
-    private final PDP pdp;
-    private final PAP pap;
+    private final ResourceAdjudicator adjudicator;
 
-    public ResourcePDPService(PDP pdp, PAP pap) {
-        this.pdp = pdp;
-        this.pap = pap;
+    public ResourcePDPService(ResourceAdjudicator adjudicator) {
+        this.adjudicator = adjudicator;
     }
 
     @Override
     public void adjudicateResourceOperation(OperationRequest request,
                                             StreamObserver<AdjudicateOperationResponse> responseObserver) {
         try {
-            UserContext userCtx = UserContextFromHeader.get(pap);
-
-            // only allow resource operations to be adjudicated
-            Operation<?> operation = pap.query().operations().getOperation(request.getName());
-            if (!(operation instanceof ResourceOperation<?>)) {
-                throw new OperationIsNotResourceOperationException();
+            DecisionCache.Decision decision = adjudicator.adjudicate(RequestUser.fromHeaders(), request);
+            if (!decision.isPermitted()) {
+                logger.error("adjudication UNAUTHORIZED: {}", decision.deniedReason());
+                responseObserver.onError(Status.PERMISSION_DENIED
+                                                 .withDescription(decision.deniedReason())
+                                                 .asRuntimeException());
+                return;
             }
 
-            Object result = pdp.adjudicateOperation(
-                    userCtx,
-                    request.getName(),
-                    FromProtoUtil.fromValueMap(request.getArgs())
-            );
-
-            AdjudicateOperationResponse.Builder b = AdjudicateOperationResponse.newBuilder();
-            if (result != null) {
-                b.setValue(ToProtoUtil.toValueProto(result));
-            }
-            responseObserver.onNext(b.build());
+            responseObserver.onNext(decision.response());
             responseObserver.onCompleted();
-        } catch (UnauthorizedException e) {
-            logger.error("adjudication UNAUTHORIZED: {}", e.getMessage());
-            responseObserver.onError(Status.PERMISSION_DENIED
-                                             .withDescription(e.getMessage())
-                                             .withCause(e)
-                                             .asRuntimeException());
-        } catch (OperationIsNotResourceOperationException e) {
+        } catch (ResourceAdjudicator.OperationIsNotResourceOperationException e) {
             logger.error("adjudication FAILED", e);
             responseObserver.onError(Status.INVALID_ARGUMENT
                                              .withDescription(e.getMessage())
@@ -75,10 +50,4 @@ public class ResourcePDPService extends ResourceAdjudicationServiceGrpc.Resource
                                              .asRuntimeException());
         }
     }
-
-    static class OperationIsNotResourceOperationException extends Exception {
-        public OperationIsNotResourceOperationException() {
-            super("only subclasses of ResourceOperation are allowed to be invoked in the resource-pdp");
-        }
-    }
 }
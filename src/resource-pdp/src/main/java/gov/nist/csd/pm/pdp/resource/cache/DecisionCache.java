@@ -0,0 +1,185 @@
+package gov.nist.csd.pm.pdp.resource.cache;
+
+import gov.nist.csd.pm.core.epp.EventContext;
+import gov.nist.csd.pm.pdp.shared.eventstore.CurrentRevisionService;
+import gov.nist.csd.pm.proto.v1.model.ValueMap;
+import gov.nist.csd.pm.proto.v1.pdp.adjudication.AdjudicateOperationResponse;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded LRU cache of resource operation decisions. Every entry is tagged with the policy revision it was computed
+ * at and is only served while the local policy is still at that revision, so a cached decision is never older than
+ * the policy a non-cached adjudication would see.
+ */
+public class DecisionCache implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(DecisionCache.class);
+
+    private final int maxSize;
+    private final CurrentRevisionService currentRevision;
+    private final LinkedHashMap<Key, Decision> entries;
+
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+    private final LongAdder invalidations;
+
+    /**
+     * @param maxSize the maximum number of decisions to hold. A value less than 1 disables the cache.
+     * @param currentRevision the service tracking the revision of the local policy.
+     */
+    public DecisionCache(int maxSize, CurrentRevisionService currentRevision) {
+        this.maxSize = maxSize;
+        this.currentRevision = currentRevision;
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+        this.invalidations = new LongAdder();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Decision> eldest) {
+                if (size() > DecisionCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+
+                return false;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    /**
+     * Returns the cached decision for the key if it was computed at the current local revision, otherwise null.
+     */
+    public synchronized Decision get(Key key) {
+        if (!isEnabled()) {
+            return null;
+        }
+
+        Decision decision = entries.get(key);
+        if (decision == null) {
+            misses.increment();
+            return null;
+        }
+
+        if (decision.revision() != currentRevision.get()) {
+            entries.remove(key);
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        return decision;
+    }
+
+    /**
+     * Cache the decision if the local revision has not moved since the decision was computed.
+     */
+    public synchronized void put(Key key, Decision decision) {
+        if (!isEnabled() || decision.revision() != currentRevision.get()) {
+            return;
+        }
+
+        entries.put(key, decision);
+    }
+
+    /**
+     * Drop every decision computed before the given revision. Called when the local policy advances.
+     */
+    public synchronized void invalidate(long revision) {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        int size = entries.size();
+        entries.values().removeIf(decision -> decision.revision() < revision);
+        int removed = size - entries.size();
+        invalidations.add(removed);
+
+        logger.debug("invalidated {} cached decisions at revision {}", removed, revision);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    public long invalidationCount() {
+        return invalidations.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("pm.resource.decision.cache.requests", this, DecisionCache::hitCount)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("pm.resource.decision.cache.requests", this, DecisionCache::missCount)
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("pm.resource.decision.cache.evictions", this, DecisionCache::evictionCount)
+                .register(registry);
+        FunctionCounter.builder("pm.resource.decision.cache.invalidations", this, DecisionCache::invalidationCount)
+                .register(registry);
+        Gauge.builder("pm.resource.decision.cache.size", this, DecisionCache::size)
+                .register(registry);
+    }
+
+    /**
+     * Identifies a decision by the raw user context headers, the operation name, and the operation args. Protobuf maps
+     * compare by content, so two requests with the same args in a different order map to the same key.
+     */
+    public record Key(String user, List<String> attrs, String process, String operation, ValueMap args) {
+    }
+
+    /**
+     * A permitted response, or the reason the request was denied, computed at a given revision. A permitted decision
+     * also holds the events the PDP published to the EPP when it was computed, so a cache hit can publish them again
+     * and obligations still respond to operations served from the cache.
+     */
+    public record Decision(long revision,
+                           AdjudicateOperationResponse response,
+                           String deniedReason,
+                           List<EventContext> events) {
+
+        public static Decision permit(long revision, AdjudicateOperationResponse response) {
+            return permit(revision, response, List.of());
+        }
+
+        public static Decision permit(long revision, AdjudicateOperationResponse response, List<EventContext> events) {
+            return new Decision(revision, response, null, List.copyOf(events));
+        }
+
+        public static Decision deny(long revision, String reason) {
+            return new Decision(revision, null, reason, List.of());
+        }
+
+        public boolean isPermitted() {
+            return response != null;
+        }
+    }
+}
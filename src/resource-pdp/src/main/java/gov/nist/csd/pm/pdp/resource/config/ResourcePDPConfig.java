@@ -22,6 +22,119 @@ public class ResourcePDPConfig {
      */
     private int revisionConsistencyTimeout;
 
+    /**
+     * Make requests without an x-pm-min-revision header wait until the local policy is caught up with the latest
+     * revision in the event store. When disabled they are served at the local revision.
+     */
+    private boolean waitForLatestRevision = true;
+
+    /**
+     * The number of revisions the local policy can be behind the event store and still serve a request with bounded
+     * consistency, unless the request sends x-pm-max-revision-lag.
+     */
+    private int boundedMaxRevisionLag;
+
+    /**
+     * The amount of time, in milliseconds, the local policy can have been behind the event store and still serve a
+     * request with bounded consistency, unless the request sends x-pm-max-staleness-ms.
+     */
+    private int boundedMaxStaleness = 500;
+
+    /**
+     * The maximum number of resource operation decisions to cache. 0 disables the decision cache.
+     */
+    private int decisionCacheSize;
+
+    /**
+     * The maximum number of UserContexts resolved from request headers to cache. 0 disables the cache.
+     */
+    private int userContextCacheSize = 1000;
+
+    /**
+     * The maximum number of (user, target) entries in the privilege index. 0 disables the index.
+     */
+    private int privilegeIndexSize;
+
+    /**
+     * Compare privilege index results with privileges computed from the graph, and with the PDP's decision, logging
+     * any mismatch. Index denials are not short circuited while enabled.
+     */
+    private boolean privilegeIndexVerify;
+
+    /**
+     * The minimum number of operations in a batch adjudication request for the operations to be evaluated in parallel.
+     */
+    private int batchParallelThreshold;
+
+    /**
+     * The maximum number of requests on a single adjudication stream that are adjudicated concurrently.
+     */
+    private int streamMaxInFlight;
+
+    /**
+     * Send event contexts to the admin PDP EPP from a background dispatcher instead of on the adjudicating thread.
+     */
+    private boolean eppAsync;
+
+    /**
+     * The maximum number of event contexts waiting to be sent to the EPP in async mode.
+     */
+    private int eppQueueCapacity;
+
+    /**
+     * The maximum number of event contexts sent to the EPP in one call in async mode.
+     */
+    private int eppBatchSize;
+
+    /**
+     * The amount of time, in milliseconds, the async dispatcher waits for more events before sending a partial batch.
+     */
+    private int eppBatchWindow;
+
+    /**
+     * The amount of time, in milliseconds, to wait for space in a full EPP queue before failing the event. 0 waits
+     * until there is space.
+     */
+    private int eppEnqueueTimeout;
+
+    /**
+     * The number of events read from the event store, and applied to the policy as one transaction, per page when
+     * catching up after restoring a snapshot.
+     */
+    private int catchUpPageSize = 1000;
+
+    /**
+     * Decode subscription events in parallel and apply consecutive events as one transaction on a separate thread
+     * instead of decoding and applying each event on the subscription callback thread.
+     */
+    private boolean subscriptionPipeline;
+
+    /**
+     * The number of threads decoding subscription events in pipeline mode.
+     */
+    private int subscriptionDecodeThreads;
+
+    /**
+     * The maximum number of subscription events waiting to be applied in pipeline mode.
+     */
+    private int subscriptionQueueCapacity;
+
+    /**
+     * The maximum number of subscription events applied as one transaction in pipeline mode.
+     */
+    private int subscriptionBatchSize;
+
+    /**
+     * The local file the policy and its revision are checkpointed to, and loaded from on startup instead of the latest
+     * snapshot. Empty disables checkpoints.
+     */
+    private String checkpointPath;
+
+    /**
+     * The amount of time, in milliseconds, between policy checkpoints.
+     */
+    private int checkpointInterval;
+
     public ResourcePDPConfig() {
     }
 
@@ -44,6 +157,70 @@ public class ResourcePDPConfig {
         if (revisionConsistencyTimeout <= 0) {
             setRevisionConsistencyTimeout(1000);
         }
+
+        if (boundedMaxRevisionLag < 0) {
+            setBoundedMaxRevisionLag(0);
+        }
+
+        if (boundedMaxStaleness < 0) {
+            setBoundedMaxStaleness(0);
+        }
+
+        if (decisionCacheSize < 0) {
+            setDecisionCacheSize(0);
+        }
+
+        if (userContextCacheSize < 0) {
+            setUserContextCacheSize(0);
+        }
+
+        if (privilegeIndexSize < 0) {
+            setPrivilegeIndexSize(0);
+        }
+
+        if (batchParallelThreshold <= 0) {
+            setBatchParallelThreshold(32);
+        }
+
+        if (streamMaxInFlight <= 0) {
+            setStreamMaxInFlight(16);
+        }
+
+        if (eppQueueCapacity <= 0) {
+            setEppQueueCapacity(10000);
+        }
+
+        if (eppBatchSize <= 0) {
+            setEppBatchSize(100);
+        }
+
+        if (eppBatchWindow < 0) {
+            setEppBatchWindow(0);
+        }
+
+        if (eppEnqueueTimeout < 0) {
+            setEppEnqueueTimeout(0);
+        }
+
+        if (catchUpPageSize <= 0) {
+            setCatchUpPageSize(1000);
+        }
+
+        if (subscriptionDecodeThreads <= 0) {
+            setSubscriptionDecodeThreads(2);
+        }
+
+        if (subscriptionQueueCapacity <= 0) {
+            setSubscriptionQueueCapacity(10000);
+        }
+
+        if (subscriptionBatchSize <= 0) {
+            setSubscriptionBatchSize(500);
+        }
+
+        if (checkpointInterval <= 0) {
+            setCheckpointInterval(60000);
+        }
     }
 
     public String getAdminHostname() {
@@ -69,4 +246,172 @@ public class ResourcePDPConfig {
     public void setRevisionConsistencyTimeout(int revisionConsistencyTimeout) {
         this.revisionConsistencyTimeout = revisionConsistencyTimeout;
     }
+
+    public boolean isWaitForLatestRevision() {
+        return waitForLatestRevision;
+    }
+
+    public void setWaitForLatestRevision(boolean waitForLatestRevision) {
+        this.waitForLatestRevision = waitForLatestRevision;
+    }
+
+    public int getBoundedMaxRevisionLag() {
+        return boundedMaxRevisionLag;
+    }
+
+    public void setBoundedMaxRevisionLag(int boundedMaxRevisionLag) {
+        this.boundedMaxRevisionLag = boundedMaxRevisionLag;
+    }
+
+    public int getBoundedMaxStaleness() {
+        return boundedMaxStaleness;
+    }
+
+    public void setBoundedMaxStaleness(int boundedMaxStaleness) {
+        this.boundedMaxStaleness = boundedMaxStaleness;
+    }
+
+    public int getDecisionCacheSize() {
+        return decisionCacheSize;
+    }
+
+    public void setDecisionCacheSize(int decisionCacheSize) {
+        this.decisionCacheSize = decisionCacheSize;
+    }
+
+    public int getUserContextCacheSize() {
+        return userContextCacheSize;
+    }
+
+    public void setUserContextCacheSize(int userContextCacheSize) {
+        this.userContextCacheSize = userContextCacheSize;
+    }
+
+    public int getPrivilegeIndexSize() {
+        return privilegeIndexSize;
+    }
+
+    public void setPrivilegeIndexSize(int privilegeIndexSize) {
+        this.privilegeIndexSize = privilegeIndexSize;
+    }
+
+    public boolean isPrivilegeIndexVerify() {
+        return privilegeIndexVerify;
+    }
+
+    public void setPrivilegeIndexVerify(boolean privilegeIndexVerify) {
+        this.privilegeIndexVerify = privilegeIndexVerify;
+    }
+
+    public int getBatchParallelThreshold() {
+        return batchParallelThreshold;
+    }
+
+    public void setBatchParallelThreshold(int batchParallelThreshold) {
+        this.batchParallelThreshold = batchParallelThreshold;
+    }
+
+    public int getStreamMaxInFlight() {
+        return streamMaxInFlight;
+    }
+
+    public void setStreamMaxInFlight(int streamMaxInFlight) {
+        this.streamMaxInFlight = streamMaxInFlight;
+    }
+
+    public boolean isEppAsync() {
+        return eppAsync;
+    }
+
+    public void setEppAsync(boolean eppAsync) {
+        this.eppAsync = eppAsync;
+    }
+
+    public int getEppQueueCapacity() {
+        return eppQueueCapacity;
+    }
+
+    public void setEppQueueCapacity(int eppQueueCapacity) {
+        this.eppQueueCapacity = eppQueueCapacity;
+    }
+
+    public int getEppBatchSize() {
+        return eppBatchSize;
+    }
+
+    public void setEppBatchSize(int eppBatchSize) {
+        this.eppBatchSize = eppBatchSize;
+    }
+
+    public int getEppBatchWindow() {
+        return eppBatchWindow;
+    }
+
+    public void setEppBatchWindow(int eppBatchWindow) {
+        this.eppBatchWindow = eppBatchWindow;
+    }
+
+    public int getEppEnqueueTimeout() {
+        return eppEnqueueTimeout;
+    }
+
+    public void setEppEnqueueTimeout(int eppEnqueueTimeout) {
+        this.eppEnqueueTimeout = eppEnqueueTimeout;
+    }
+
+    public int getCatchUpPageSize() {
+        return catchUpPageSize;
+    }
+
+    public void setCatchUpPageSize(int catchUpPageSize) {
+        this.catchUpPageSize = catchUpPageSize;
+    }
+
+    public boolean isSubscriptionPipeline() {
+        return subscriptionPipeline;
+    }
+
+    public void setSubscriptionPipeline(boolean subscriptionPipeline) {
+        this.subscriptionPipeline = subscriptionPipeline;
+    }
+
+    public int getSubscriptionDecodeThreads() {
+        return subscriptionDecodeThreads;
+    }
+
+    public void setSubscriptionDecodeThreads(int subscriptionDecodeThreads) {
+        this.subscriptionDecodeThreads = subscriptionDecodeThreads;
+    }
+
+    public int getSubscriptionQueueCapacity() {
+        return subscriptionQueueCapacity;
+    }
+
+    public void setSubscriptionQueueCapacity(int subscriptionQueueCapacity) {
+        this.subscriptionQueueCapacity = subscriptionQueueCapacity;
+    }
+
+    public int getSubscriptionBatchSize() {
+        return subscriptionBatchSize;
+    }
+
+    public void setSubscriptionBatchSize(int subscriptionBatchSize) {
+        this.subscriptionBatchSize = subscriptionBatchSize;
+    }
+
+    public String getCheckpointPath() {
+        return checkpointPath;
+    }
+
+    public void setCheckpointPath(String checkpointPath) {
+        this.checkpointPath = checkpointPath;
+    }
+
+    public int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    public void setCheckpointInterval(int checkpointInterval) {
+        this.checkpointInterval = checkpointInterval;
+    }
 }
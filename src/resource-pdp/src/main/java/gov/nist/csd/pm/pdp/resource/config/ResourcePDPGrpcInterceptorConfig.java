@@ -2,11 +2,14 @@ package gov.nist.csd.pm.pdp.resource.config;
 
 import gov.nist.csd.pm.pdp.shared.eventstore.CurrentRevisionService;
 import gov.nist.csd.pm.pdp.shared.eventstore.LatestRevisionTracker;
+import gov.nist.csd.pm.pdp.shared.grpc.GrpcServerExecutorConfigurer;
 import gov.nist.csd.pm.pdp.shared.interceptor.RevisionConsistencyInterceptor;
 import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.HashSet;
+
 @Configuration
 public class ResourcePDPGrpcInterceptorConfig {
 
@@ -14,11 +17,17 @@ public class ResourcePDPGrpcInterceptorConfig {
     @GrpcGlobalServerInterceptor
     public RevisionConsistencyInterceptor consistencyInterceptor(ResourcePDPConfig resourcePDPConfig,
                                                                  CurrentRevisionService currentRevisionService,
-                                                                 LatestRevisionTracker latestRevisionTracker) {
+                                                                 LatestRevisionTracker latestRevisionTracker,
+                                                                 GrpcServerExecutorConfigurer grpcServerExecutorConfigurer) {
         return new RevisionConsistencyInterceptor(
                 resourcePDPConfig.getRevisionConsistencyTimeout(),
+                new HashSet<>(),
+                resourcePDPConfig.isWaitForLatestRevision(),
+                resourcePDPConfig.getBoundedMaxRevisionLag(),
+                resourcePDPConfig.getBoundedMaxStaleness(),
                 currentRevisionService,
-                latestRevisionTracker
+                latestRevisionTracker,
+                grpcServerExecutorConfigurer.callExecutor()
         );
     }
 }
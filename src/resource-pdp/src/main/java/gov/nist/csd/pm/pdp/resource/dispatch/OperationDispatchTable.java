@@ -0,0 +1,187 @@
+package gov.nist.csd.pm.pdp.resource.dispatch;
+
+import gov.nist.csd.pm.core.common.exception.PMException;
+import gov.nist.csd.pm.core.impl.grpc.util.FromProtoUtil;
+import gov.nist.csd.pm.core.pap.PAP;
+import gov.nist.csd.pm.core.pap.operation.Operation;
+import gov.nist.csd.pm.core.pap.operation.ResourceOperation;
+import gov.nist.csd.pm.core.pap.operation.arg.type.StringType;
+import gov.nist.csd.pm.core.pap.operation.param.FormalParameter;
+import gov.nist.csd.pm.pdp.proto.event.PMEvent;
+import gov.nist.csd.pm.pdp.shared.eventstore.AppliedEventListener;
+import gov.nist.csd.pm.proto.v1.model.Value;
+import gov.nist.csd.pm.proto.v1.model.ValueMap;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The local policy's operations compiled into a name-keyed table. An entry holds the resource operation, its formal
+ * parameters and an arg decoder chosen for their types, so the adjudication path neither queries the operations store
+ * nor converts the request args generically on every request. An operation is compiled the first time it is requested
+ * and the whole table is dropped when an OPERATION_CREATED, OPERATION_DELETED or RESOURCE_ACCESS_RIGHTS_SET event is
+ * applied.
+ *
+ * Entries are compiled from the version of the local policy being adjudicated against and record its revision. Events
+ * reach the table before their revision is published, so an entry is used for its revision and any later one, and an
+ * entry compiled at a revision older than the last operation change is not stored. A version older than an entry
+ * compiles the operation from its own policy without storing it.
+ */
+public class OperationDispatchTable implements AppliedEventListener, MeterBinder {
+
+    private final Map<String, Entry> entries;
+    // incremented on every invalidation so an entry compiled from a policy that changed underneath it is not stored
+    private long generation;
+    // the latest revision an operation change was applied at
+    private long changedAt;
+
+    private final LongAdder hits;
+    private final LongAdder misses;
+
+    public OperationDispatchTable() {
+        this.entries = new HashMap<>();
+        this.changedAt = -1;
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+    }
+
+    /**
+     * Returns the compiled resource operation with the given name in the given policy, which is at the given revision,
+     * or null if the operation with that name is not a resource operation. Throws, as the operations store does, if
+     * there is no operation with the name.
+     */
+    public CompiledOperation lookup(PAP pap, long revision, String name) throws PMException {
+        long gen;
+        synchronized (this) {
+            Entry entry = entries.get(name);
+            if (entry != null && entry.revision() <= revision) {
+                hits.increment();
+                return entry.compiled();
+            }
+
+            misses.increment();
+            gen = generation;
+        }
+
+        Operation<?> operation = pap.query().operations().getOperation(name);
+        CompiledOperation compiled = operation instanceof ResourceOperation<?> resourceOperation
+                ? compile(resourceOperation)
+                : null;
+
+        synchronized (this) {
+            Entry entry = entries.get(name);
+            if (gen == generation && changedAt <= revision && (entry == null || entry.revision() < revision)) {
+                entries.put(name, new Entry(compiled, revision));
+            }
+        }
+
+        return compiled;
+    }
+
+    @Override
+    public void onEventApplied(PMEvent event) {
+        onEventApplied(event, -1);
+    }
+
+    @Override
+    public void onEventApplied(PMEvent event, long revision) {
+        switch (event.getEventCase()) {
+            case OPERATION_CREATED, OPERATION_DELETED, RESOURCE_ACCESS_RIGHTS_SET -> invalidate(revision);
+            default -> {}
+        }
+    }
+
+    private synchronized void invalidate(long revision) {
+        generation++;
+        changedAt = Math.max(changedAt, revision);
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("pm.resource.operation.dispatch.requests", this, OperationDispatchTable::hitCount)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("pm.resource.operation.dispatch.requests", this, OperationDispatchTable::missCount)
+                .tag("result", "miss")
+                .register(registry);
+    }
+
+    private static CompiledOperation compile(ResourceOperation<?> operation) {
+        List<FormalParameter<?>> formalParameters = operation.getFormalParameters() == null
+                ? List.of()
+                : List.copyOf(operation.getFormalParameters());
+
+        return new CompiledOperation(operation, formalParameters, decoderFor(formalParameters));
+    }
+
+    /**
+     * Operations whose parameters are all strings read the string values straight out of the request. Any other
+     * signature, or a request that does not match it, uses the generic proto conversion.
+     */
+    private static ArgDecoder decoderFor(List<FormalParameter<?>> formalParameters) {
+        if (formalParameters.isEmpty()) {
+            return FromProtoUtil::fromValueMap;
+        }
+
+        for (FormalParameter<?> formalParameter : formalParameters) {
+            if (!(formalParameter.getType() instanceof StringType)) {
+                return FromProtoUtil::fromValueMap;
+            }
+        }
+
+        Set<String> names = Set.copyOf(formalParameters.stream().map(FormalParameter::getName).toList());
+
+        return args -> {
+            Map<String, Value> values = args.getValuesMap();
+            Map<String, Object> decoded = new HashMap<>(values.size());
+            for (Map.Entry<String, Value> value : values.entrySet()) {
+                if (!names.contains(value.getKey()) || !value.getValue().hasStringValue()) {
+                    return FromProtoUtil.fromValueMap(args);
+                }
+
+                decoded.put(value.getKey(), value.getValue().getStringValue());
+            }
+
+            return decoded;
+        };
+    }
+
+    @FunctionalInterface
+    public interface ArgDecoder {
+        Map<String, Object> decode(ValueMap args) throws PMException;
+    }
+
+    /**
+     * A resource operation, its formal parameters, and the decoder for its args.
+     */
+    public record CompiledOperation(ResourceOperation<?> operation,
+                                    List<FormalParameter<?>> formalParameters,
+                                    ArgDecoder argDecoder) {
+
+        public Map<String, Object> decodeArgs(ValueMap args) throws PMException {
+            return argDecoder.decode(args);
+        }
+    }
+
+    private record Entry(CompiledOperation compiled, long revision) {
+    }
+}
@@ -3,42 +3,94 @@ package gov.nist.csd.pm.pdp.resource.epp;
 import gov.nist.csd.pm.core.epp.EPP;
 import gov.nist.csd.pm.core.epp.EventContext;
 import gov.nist.csd.pm.core.impl.grpc.util.ToProtoUtil;
-import gov.nist.csd.pm.core.pap.PAP;
 import gov.nist.csd.pm.core.pdp.PDP;
+import gov.nist.csd.pm.pdp.proto.epp.BatchEPPServiceGrpc;
+import gov.nist.csd.pm.pdp.proto.epp.EventContextBatch;
 import gov.nist.csd.pm.pdp.resource.config.ResourcePDPConfig;
+import gov.nist.csd.pm.pdp.resource.policy.VersionedPolicy;
 import gov.nist.csd.pm.proto.v1.epp.EPPServiceGrpc;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Sends event contexts from resource operations to the admin PDP EPP. By default each event is sent with a blocking
+ * call on the adjudicating thread. In async mode events are put on a bounded queue and a single dispatcher thread sends
+ * them, in order, in batches of up to epp-batch-size events or whatever arrived within epp-batch-window. When the queue
+ * is full the adjudicating thread waits for space, so a slow EPP slows resource adjudication down instead of growing
+ * the queue. With an epp-enqueue-timeout the wait is bounded and the event fails with RESOURCE_EXHAUSTED when it
+ * expires. Events are never sent ahead of events that are already queued.
+ */
 @Service
-public class EPPClient extends EPP {
+public class EPPClient extends EPP implements MeterBinder {
 
     private static final Logger logger = LoggerFactory.getLogger(EPPClient.class);
 
-    private final PDP pdp;
+    private static final long DISPATCHER_POLL_MILLIS = 100;
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 10_000;
+
+    // codes the admin PDP returns for a batch it rejected without committing anything, see epp.proto
+    private static final Set<Status.Code> BATCH_NOT_COMMITTED = Set.of(
+            Status.Code.INVALID_ARGUMENT,
+            Status.Code.FAILED_PRECONDITION,
+            Status.Code.UNIMPLEMENTED
+    );
+
+    private final VersionedPolicy policy;
     private final ResourcePDPConfig resourcePDPConfig;
     private EPPServiceGrpc.EPPServiceBlockingStub blockingStub;
 
-    public EPPClient(PDP pdp,
-                     PAP pap,
+    private BatchEPPServiceGrpc.BatchEPPServiceBlockingStub batchStub;
+    private BlockingQueue<gov.nist.csd.pm.proto.v1.epp.EventContext> queue;
+    private Thread dispatcher;
+    private volatile boolean running;
+    private int batchSize;
+    private long batchWindowNanos;
+    private long enqueueTimeoutMillis;
+
+    // events published on the current thread while a decision is recorded, see beginRecording
+    private final ThreadLocal<List<EventContext>> recording = new ThreadLocal<>();
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder backpressured = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    public EPPClient(VersionedPolicy policy,
                      ResourcePDPConfig resourcePDPConfig) {
-        super(pdp, pap);
-        this.pdp = pdp;
+        super(policy.primary().pdp(), policy.primary().pap());
+        this.policy = policy;
         this.resourcePDPConfig = resourcePDPConfig;
     }
 
     @PostConstruct
     public void subscribeToPDP() {
-        // subscribe to the PDP bean
-        this.pdp.addEventSubscriber(this);
+        // subscribe to the PDPs of both copies of the policy
+        for (PDP pdp : policy.pdps()) {
+            pdp.addEventSubscriber(this);
+        }
 
         // init epp client to admin pdp epp service
         ManagedChannel channel = ManagedChannelBuilder
@@ -49,15 +101,275 @@ public class EPPClient extends EPP {
                 .build();
 
         this.blockingStub = EPPServiceGrpc.newBlockingStub(channel);
+
+        if (resourcePDPConfig.isEppAsync()) {
+            startAsyncDispatch(BatchEPPServiceGrpc.newBlockingStub(channel));
+        }
+    }
+
+    /**
+     * Start the dispatcher thread that drains the event queue. Events processed after this call are queued instead of
+     * being sent on the calling thread.
+     */
+    void startAsyncDispatch(BatchEPPServiceGrpc.BatchEPPServiceBlockingStub batchStub) {
+        this.batchStub = batchStub;
+        this.batchSize = resourcePDPConfig.getEppBatchSize();
+        this.batchWindowNanos = TimeUnit.MILLISECONDS.toNanos(resourcePDPConfig.getEppBatchWindow());
+        this.enqueueTimeoutMillis = resourcePDPConfig.getEppEnqueueTimeout();
+        this.queue = new ArrayBlockingQueue<>(resourcePDPConfig.getEppQueueCapacity());
+        this.running = true;
+
+        this.dispatcher = new Thread(this::dispatchLoop, "epp-dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+
+        logger.info("EPP async dispatch started (queue capacity={}, batch size={}, batch window={}ms)",
+                    queue.remainingCapacity(), batchSize, TimeUnit.NANOSECONDS.toMillis(batchWindowNanos));
+    }
+
+    /**
+     * Stop accepting queued events and wait for the dispatcher to send the events already in the queue.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (dispatcher == null) {
+            return;
+        }
+
+        running = false;
+        try {
+            dispatcher.join(SHUTDOWN_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (dispatcher.isAlive()) {
+            logger.warn("EPP dispatcher did not stop within {}ms, {} events still queued",
+                        SHUTDOWN_TIMEOUT_MILLIS, queue.size());
+            return;
+        }
+
+        // events enqueued while the dispatcher was exiting
+        List<gov.nist.csd.pm.proto.v1.epp.EventContext> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        remaining.forEach(this::sendOrLog);
+    }
+
+    /**
+     * Start recording the events the PDP publishes on the calling thread, in addition to sending them. Used to keep
+     * the events of a decision that is going to be cached, so they can be published again when it is served from the
+     * cache.
+     */
+    public void beginRecording() {
+        recording.set(new ArrayList<>());
+    }
+
+    /**
+     * Stop recording on the calling thread and return the events published since beginRecording.
+     */
+    public List<EventContext> endRecording() {
+        List<EventContext> events = recording.get();
+        recording.remove();
+        return events == null ? List.of() : events;
     }
 
     @Override
     public void processEvent(EventContext eventCtx) {
+        List<EventContext> recorded = recording.get();
+        if (recorded != null) {
+            recorded.add(eventCtx);
+        }
+
         logger.info("sending to EPP {}", eventCtx);
 
         gov.nist.csd.pm.proto.v1.epp.EventContext eventCtxProto = ToProtoUtil.toEventContextProto(eventCtx);
 
+        if (!running) {
+            send(eventCtxProto);
+            return;
+        }
+
+        enqueue(eventCtxProto);
+        enqueued.increment();
+    }
+
+    private void enqueue(gov.nist.csd.pm.proto.v1.epp.EventContext eventCtxProto) {
+        if (queue.offer(eventCtxProto)) {
+            return;
+        }
+
+        // the queue is full, apply backpressure by waiting for the dispatcher to make space
+        backpressured.increment();
+        try {
+            if (enqueueTimeoutMillis == 0) {
+                queue.put(eventCtxProto);
+                return;
+            }
+
+            if (queue.offer(eventCtxProto, enqueueTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejected.increment();
+            throw Status.CANCELLED
+                    .withDescription("interrupted waiting for space in the EPP queue")
+                    .asRuntimeException();
+        }
+
+        rejected.increment();
+        logger.warn("EPP queue full after waiting {}ms, rejecting event", enqueueTimeoutMillis);
+        throw Status.RESOURCE_EXHAUSTED
+                .withDescription("EPP queue full after waiting " + enqueueTimeoutMillis + "ms")
+                .asRuntimeException();
+    }
+
+    private void send(gov.nist.csd.pm.proto.v1.epp.EventContext eventCtxProto) {
         blockingStub.processEvent(eventCtxProto);
+        sent.increment();
+    }
+
+    private void dispatchLoop() {
+        List<gov.nist.csd.pm.proto.v1.epp.EventContext> batch = new ArrayList<>(batchSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                gov.nist.csd.pm.proto.v1.epp.EventContext first = queue.poll(DISPATCHER_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+
+                // keep collecting until the batch is full or the window that opened with the first event closes
+                long deadline = System.nanoTime() + batchWindowNanos;
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0 && queue.drainTo(batch, batchSize - batch.size()) == 0) {
+                        break;
+                    }
+
+                    gov.nist.csd.pm.proto.v1.epp.EventContext next = queue.poll(Math.max(remaining, 0), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+
+                    batch.add(next);
+                }
+
+                dispatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void dispatch(List<gov.nist.csd.pm.proto.v1.epp.EventContext> batch) {
+        batches.increment();
+
+        if (batch.size() == 1) {
+            sendOrLog(batch.getFirst());
+            return;
+        }
+
+        EventContextBatch.Builder request = EventContextBatch.newBuilder();
+        for (gov.nist.csd.pm.proto.v1.epp.EventContext eventCtxProto : batch) {
+            request.addEvents(eventCtxProto);
+        }
+
+        try {
+            batchStub.processEvents(request.build());
+            sent.add(batch.size());
+        } catch (StatusRuntimeException e) {
+            if (!BATCH_NOT_COMMITTED.contains(e.getStatus().getCode())) {
+                // the batch may have been committed before the error (e.g. DEADLINE_EXCEEDED or UNAVAILABLE after the
+                // admin PDP appended it), resending could run the obligation responses twice
+                failed.add(batch.size());
+                logger.error("EPP batch of {} events failed and may have been committed, not resending",
+                             batch.size(), e);
+                return;
+            }
+
+            // the admin PDP rejected the batch without committing it, send the events one at a time so a single
+            // failing event does not drop the rest
+            logger.warn("EPP batch of {} events rejected, sending individually: {}", batch.size(), e.getMessage());
+            for (gov.nist.csd.pm.proto.v1.epp.EventContext eventCtxProto : batch) {
+                sendOrLog(eventCtxProto);
+            }
+        } catch (RuntimeException e) {
+            failed.add(batch.size());
+            logger.error("EPP batch of {} events failed and may have been committed, not resending",
+                         batch.size(), e);
+        }
+    }
+
+    private void sendOrLog(gov.nist.csd.pm.proto.v1.epp.EventContext eventCtxProto) {
+        try {
+            send(eventCtxProto);
+        } catch (RuntimeException e) {
+            failed.increment();
+            logger.error("error sending event to EPP", e);
+        }
+    }
+
+    public int queueDepth() {
+        return queue == null ? 0 : queue.size();
+    }
+
+    public int queueRemainingCapacity() {
+        return queue == null ? 0 : queue.remainingCapacity();
+    }
+
+    public long enqueuedCount() {
+        return enqueued.sum();
+    }
+
+    public long backpressureCount() {
+        return backpressured.sum();
+    }
+
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    public long sentCount() {
+        return sent.sum();
+    }
+
+    public long failedCount() {
+        return failed.sum();
+    }
+
+    public long batchCount() {
+        return batches.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("pm.resource.epp.queue.depth", this, EPPClient::queueDepth)
+                .register(registry);
+        Gauge.builder("pm.resource.epp.queue.remaining", this, EPPClient::queueRemainingCapacity)
+                .register(registry);
+        FunctionCounter.builder("pm.resource.epp.events", this, EPPClient::enqueuedCount)
+                .tag("result", "enqueued")
+                .register(registry);
+        FunctionCounter.builder("pm.resource.epp.events", this, EPPClient::backpressureCount)
+                .tag("result", "backpressure")
+                .register(registry);
+        FunctionCounter.builder("pm.resource.epp.events", this, EPPClient::rejectedCount)
+                .tag("result", "rejected")
+                .register(registry);
+        FunctionCounter.builder("pm.resource.epp.events", this, EPPClient::sentCount)
+                .tag("result", "sent")
+                .register(registry);
+        FunctionCounter.builder("pm.resource.epp.events", this, EPPClient::failedCount)
+                .tag("result", "failed")
+                .register(registry);
+        FunctionCounter.builder("pm.resource.epp.batches", this, EPPClient::batchCount)
+                .register(registry);
     }
 
     private Map<String, Object> buildGrpcConfigMap() {
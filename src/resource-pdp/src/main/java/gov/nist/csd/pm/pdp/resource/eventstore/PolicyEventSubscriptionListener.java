@@ -6,32 +6,69 @@ import com.eventstore.dbclient.Subscription;
 import com.eventstore.dbclient.SubscriptionListener;
 import com.google.protobuf.InvalidProtocolBufferException;
 import gov.nist.csd.pm.core.common.exception.PMException;
-import gov.nist.csd.pm.core.pap.PAP;
 import gov.nist.csd.pm.pdp.proto.event.PMEvent;
+import gov.nist.csd.pm.pdp.resource.cache.DecisionCache;
+import gov.nist.csd.pm.pdp.resource.config.ResourcePDPConfig;
+import gov.nist.csd.pm.pdp.resource.policy.VersionedPolicy;
 import gov.nist.csd.pm.pdp.shared.eventstore.CurrentRevisionService;
-import gov.nist.csd.pm.pdp.shared.eventstore.PolicyEventHandler;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Applies policy events from the event stream subscription. By default each event is decoded and applied as its own
+ * transaction on the subscription callback thread. With subscription-pipeline enabled the callback hands events to a
+ * {@link SubscriptionPipeline} that decodes them in parallel and applies consecutive events as one transaction.
+ */
 @Component
-public class PolicyEventSubscriptionListener extends SubscriptionListener {
+public class PolicyEventSubscriptionListener extends SubscriptionListener implements MeterBinder {
 
 	private static final Logger logger = LoggerFactory.getLogger(PolicyEventSubscriptionListener.class);
 
-	private final PolicyEventHandler policyEventHandler;
+	private final VersionedPolicy policy;
 	private final CurrentRevisionService currentRevision;
+	private final DecisionCache decisionCache;
+	private final SubscriptionPipeline pipeline;
+	private final AtomicLong lastSubmittedRevision;
 
-	public PolicyEventSubscriptionListener(PAP pap,
-	                                       CurrentRevisionService currentRevision) {
-		this.policyEventHandler = new PolicyEventHandler(pap, false);
+	public PolicyEventSubscriptionListener(VersionedPolicy policy,
+	                                       CurrentRevisionService currentRevision,
+	                                       DecisionCache decisionCache,
+	                                       ResourcePDPConfig resourcePDPConfig) {
+		this.policy = policy;
 		this.currentRevision = currentRevision;
+		this.decisionCache = decisionCache;
+		this.lastSubmittedRevision = new AtomicLong(-1);
+		this.pipeline = resourcePDPConfig.isSubscriptionPipeline()
+				? new SubscriptionPipeline(
+						resourcePDPConfig.getSubscriptionDecodeThreads(),
+						resourcePDPConfig.getSubscriptionQueueCapacity(),
+						resourcePDPConfig.getSubscriptionBatchSize(),
+						this::applyEvents,
+						this::publish
+				)
+				: null;
 	}
 
 	@Override
 	public void onEvent(Subscription subscription, ResolvedEvent event) {
 		RecordedEvent recordedEvent = event.getEvent();
 		long eventRevision = recordedEvent.getRevision();
+
+		if (pipeline != null) {
+			submit(eventRevision, recordedEvent.getEventData());
+			return;
+		}
+
 		long curRev = currentRevision.get();
 		logger.info("onEvent: eventRevision={} type={}", eventRevision, recordedEvent.getEventType());
 
@@ -48,13 +85,143 @@ public class PolicyEventSubscriptionListener extends SubscriptionListener {
 		logger.error("Subscription cancelled", exception);
 	}
 
+	private void submit(long eventRevision, byte[] eventData) {
+		// events in the pipeline are not applied yet, a resubscription from the local revision can deliver them again
+		long submitted = Math.max(lastSubmittedRevision.get(), currentRevision.get());
+		if (eventRevision <= submitted) {
+			logger.debug("already submitted revision {}, last submitted revision {}", eventRevision, submitted);
+			return;
+		}
+
+		try {
+			pipeline.submit(eventRevision, eventData);
+			lastSubmittedRevision.set(eventRevision);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			logger.error("interrupted submitting event at revision {}", eventRevision);
+		}
+	}
+
+	/**
+	 * Apply a page of events read from the stream as one transaction. Events at or before the local revision are
+	 * skipped. If the transaction fails the events are applied one at a time, so a single bad event is skipped as it
+	 * would be on the subscription.
+	 */
+	public void handleEvents(List<ResolvedEvent> events) {
+		long curRev = currentRevision.get();
+		List<Long> revisions = new ArrayList<>(events.size());
+		List<PMEvent> pmEvents = new ArrayList<>(events.size());
+		for (ResolvedEvent event : events) {
+			RecordedEvent recordedEvent = event.getEvent();
+			long eventRevision = recordedEvent.getRevision();
+			if (eventRevision <= curRev) {
+				continue;
+			}
+
+			try {
+				pmEvents.add(PMEvent.parseFrom(recordedEvent.getEventData()));
+				revisions.add(eventRevision);
+			} catch (InvalidProtocolBufferException e) {
+				logger.error("unexpected error handling event at revision {}", eventRevision, e);
+			}
+		}
+
+		long lastRevision = applyEvents(revisions, pmEvents).revision();
+		if (lastRevision >= 0) {
+			publish(lastRevision);
+		}
+	}
+
 	private void handleEvent(long revision, byte[] eventData) {
+		PMEvent pmEvent;
 		try {
-			PMEvent pmEvent = PMEvent.parseFrom(eventData);
-			policyEventHandler.handleEvent(pmEvent);
-			currentRevision.set(revision);
-		} catch (PMException | InvalidProtocolBufferException e) {
+			pmEvent = PMEvent.parseFrom(eventData);
+		} catch (InvalidProtocolBufferException e) {
 			logger.error("unexpected error handling event", e);
+			return;
+		}
+
+		if (applyEvents(List.of(revision), List.of(pmEvent)).revision() >= 0) {
+			publish(revision);
 		}
 	}
+
+	/**
+	 * Apply the events to the policy as one transaction, or one at a time if the transaction fails.
+	 *
+	 * @return the number of events applied and the last revision applied, or -1 if no events were applied.
+	 */
+	private SubscriptionPipeline.Applied applyEvents(List<Long> revisions, List<PMEvent> pmEvents) {
+		if (pmEvents.isEmpty()) {
+			return SubscriptionPipeline.Applied.NONE;
+		}
+
+		long lastRevision = revisions.getLast();
+		try {
+			policy.apply(pmEvents, lastRevision);
+			return new SubscriptionPipeline.Applied(pmEvents.size(), lastRevision);
+		} catch (PMException | RuntimeException e) {
+			if (pmEvents.size() == 1) {
+				logger.error("unexpected error handling event", e);
+				return SubscriptionPipeline.Applied.NONE;
+			}
+
+			logger.warn("failed to apply {} events up to revision {} as one transaction, applying them individually",
+					pmEvents.size(), lastRevision, e);
+		}
+
+		int count = 0;
+		long applied = -1;
+		for (int i = 0; i < pmEvents.size(); i++) {
+			try {
+				policy.apply(List.of(pmEvents.get(i)), revisions.get(i));
+				count++;
+				applied = revisions.get(i);
+			} catch (PMException | RuntimeException e) {
+				logger.error("unexpected error handling event", e);
+			}
+		}
+
+		return new SubscriptionPipeline.Applied(count, applied);
+	}
+
+	private void publish(long revision) {
+		currentRevision.set(revision);
+		decisionCache.invalidate(revision);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (pipeline != null) {
+			pipeline.shutdown();
+		}
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		if (pipeline == null) {
+			return;
+		}
+
+		Gauge.builder("pm.resource.subscription.queue.depth", pipeline, SubscriptionPipeline::decodeDepth)
+				.tag("stage", "decode")
+				.register(registry);
+		Gauge.builder("pm.resource.subscription.queue.depth", pipeline, SubscriptionPipeline::applyDepth)
+				.tag("stage", "apply")
+				.register(registry);
+		Gauge.builder("pm.resource.subscription.queue.depth", pipeline, SubscriptionPipeline::publishDepth)
+				.tag("stage", "publish")
+				.register(registry);
+		FunctionCounter.builder("pm.resource.subscription.events", pipeline, SubscriptionPipeline::appliedCount)
+				.tag("result", "applied")
+				.register(registry);
+		FunctionCounter.builder("pm.resource.subscription.events", pipeline, SubscriptionPipeline::applyFailureCount)
+				.tag("result", "apply_failed")
+				.register(registry);
+		FunctionCounter.builder("pm.resource.subscription.events", pipeline, SubscriptionPipeline::decodeFailureCount)
+				.tag("result", "decode_failed")
+				.register(registry);
+		FunctionCounter.builder("pm.resource.subscription.batches", pipeline, SubscriptionPipeline::batchCount)
+				.register(registry);
+	}
 }
@@ -0,0 +1,234 @@
+package gov.nist.csd.pm.pdp.resource.eventstore;
+
+import gov.nist.csd.pm.pdp.proto.event.PMEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+
+/**
+ * Consumes live subscription events in three stages so the subscription callback thread only hands events off:
+ * <ol>
+ *     <li>decode: events are parsed on a pool of decoder threads, in parallel.</li>
+ *     <li>apply: a single thread takes the events in stream order and applies each run of consecutive decoded events,
+ *     up to the batch size, as one transaction.</li>
+ *     <li>publish: a single thread publishes the highest applied revision, so requests waiting on it are released
+ *     without holding up the next transaction.</li>
+ * </ol>
+ * The apply queue is bounded, when it is full the subscription callback blocks, which stops the subscription reading
+ * ahead of the policy.
+ */
+class SubscriptionPipeline {
+
+	private static final Logger logger = LoggerFactory.getLogger(SubscriptionPipeline.class);
+
+	private static final long POLL_MILLIS = 100;
+	private static final long SHUTDOWN_TIMEOUT_MILLIS = 10_000;
+
+	/**
+	 * Applies decoded events, in order, as one transaction and returns how many of them were applied.
+	 */
+	interface BatchApplier {
+		Applied apply(List<Long> revisions, List<PMEvent> events);
+	}
+
+	/**
+	 * The number of events applied and the last revision applied, or -1 if none were.
+	 */
+	record Applied(int count, long revision) {
+
+		static final Applied NONE = new Applied(0, -1);
+	}
+
+	private final BatchApplier applier;
+	private final LongConsumer publisher;
+	private final int batchSize;
+
+	private final ExecutorService decoders;
+	private final BlockingQueue<Pending> applyQueue;
+	private final BlockingQueue<Long> publishQueue;
+	private final Thread applyThread;
+	private final Thread publishThread;
+	private volatile boolean running;
+
+	private final AtomicInteger decoding = new AtomicInteger();
+	private final LongAdder applied = new LongAdder();
+	private final LongAdder applyFailures = new LongAdder();
+	private final LongAdder decodeFailures = new LongAdder();
+	private final LongAdder batches = new LongAdder();
+
+	SubscriptionPipeline(int decodeThreads, int capacity, int batchSize, BatchApplier applier, LongConsumer publisher) {
+		this.applier = applier;
+		this.publisher = publisher;
+		this.batchSize = batchSize;
+
+		AtomicInteger decoderId = new AtomicInteger();
+		this.decoders = Executors.newFixedThreadPool(decodeThreads, r -> {
+			Thread thread = new Thread(r, "subscription-decode-" + decoderId.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.applyQueue = new ArrayBlockingQueue<>(capacity);
+		this.publishQueue = new LinkedBlockingQueue<>();
+		this.running = true;
+
+		this.applyThread = new Thread(this::applyLoop, "subscription-apply");
+		this.applyThread.setDaemon(true);
+		this.publishThread = new Thread(this::publishLoop, "subscription-publish");
+		this.publishThread.setDaemon(true);
+
+		applyThread.start();
+		publishThread.start();
+	}
+
+	/**
+	 * Hand an event off to be decoded and applied. Blocks while the apply queue is full.
+	 */
+	void submit(long revision, byte[] eventData) throws InterruptedException {
+		decoding.incrementAndGet();
+		CompletableFuture<PMEvent> decoded = CompletableFuture.supplyAsync(() -> {
+			try {
+				return PMEvent.parseFrom(eventData);
+			} catch (Exception e) {
+				throw new CompletionException(e);
+			} finally {
+				decoding.decrementAndGet();
+			}
+		}, decoders);
+
+		applyQueue.put(new Pending(revision, decoded));
+	}
+
+	private void applyLoop() {
+		List<Long> revisions = new ArrayList<>(batchSize);
+		List<PMEvent> events = new ArrayList<>(batchSize);
+
+		while (running || !applyQueue.isEmpty()) {
+			Pending first;
+			try {
+				first = applyQueue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+
+			if (first == null) {
+				continue;
+			}
+
+			add(first, revisions, events);
+
+			// group the events behind it that are already decoded, waiting for more would only add latency
+			while (revisions.size() < batchSize) {
+				Pending next = applyQueue.peek();
+				if (next == null || !next.decoded().isDone()) {
+					break;
+				}
+
+				add(applyQueue.poll(), revisions, events);
+			}
+
+			if (!events.isEmpty()) {
+				Applied result = applier.apply(revisions, events);
+				applied.add(result.count());
+				applyFailures.add(events.size() - result.count());
+				batches.increment();
+				if (result.revision() >= 0) {
+					publishQueue.add(result.revision());
+				}
+			}
+
+			revisions.clear();
+			events.clear();
+		}
+	}
+
+	private void add(Pending pending, List<Long> revisions, List<PMEvent> events) {
+		try {
+			events.add(pending.decoded().join());
+			revisions.add(pending.revision());
+		} catch (CompletionException | CancellationException e) {
+			decodeFailures.increment();
+			logger.error("unexpected error decoding event at revision {}", pending.revision(), e.getCause());
+		}
+	}
+
+	private void publishLoop() {
+		while (running || !publishQueue.isEmpty()) {
+			Long revision;
+			try {
+				revision = publishQueue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+
+			if (revision == null) {
+				continue;
+			}
+
+			// only the highest applied revision needs to be published
+			Long next;
+			while ((next = publishQueue.poll()) != null) {
+				revision = Math.max(revision, next);
+			}
+
+			publisher.accept(revision);
+		}
+	}
+
+	/**
+	 * Stop accepting events, and wait for the events already submitted to be applied and published.
+	 */
+	void shutdown() {
+		running = false;
+		decoders.shutdown();
+
+		try {
+			applyThread.join(SHUTDOWN_TIMEOUT_MILLIS);
+			publishThread.join(SHUTDOWN_TIMEOUT_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		if (applyThread.isAlive() || publishThread.isAlive()) {
+			logger.warn("subscription pipeline did not drain within {}ms", SHUTDOWN_TIMEOUT_MILLIS);
+		}
+	}
+
+	int decodeDepth() {
+		return decoding.get();
+	}
+
+	int applyDepth() {
+		return applyQueue.size();
+	}
+
+	int publishDepth() {
+		return publishQueue.size();
+	}
+
+	long appliedCount() {
+		return applied.sum();
+	}
+
+	long applyFailureCount() {
+		return applyFailures.sum();
+	}
+
+	long decodeFailureCount() {
+		return decodeFailures.sum();
+	}
+
+	long batchCount() {
+		return batches.sum();
+	}
+
+	private record Pending(long revision, CompletableFuture<PMEvent> decoded) {
+	}
+}
@@ -3,6 +3,10 @@ package gov.nist.csd.pm.pdp.resource.eventstore;
 import com.eventstore.dbclient.*;
 import com.google.protobuf.InvalidProtocolBufferException;
 import gov.nist.csd.pm.core.common.exception.PMException;
+import gov.nist.csd.pm.pdp.resource.config.ResourcePDPConfig;
+import gov.nist.csd.pm.pdp.resource.policy.PolicyCheckpoint;
+import gov.nist.csd.pm.pdp.resource.policy.VersionedPolicy;
+import gov.nist.csd.pm.pdp.resource.privilege.PrivilegeIndex;
 import gov.nist.csd.pm.pdp.shared.eventstore.CurrentRevisionService;
 import gov.nist.csd.pm.pdp.shared.eventstore.EventStoreConnectionManager;
 import gov.nist.csd.pm.pdp.shared.eventstore.EventStoreDBConfig;
@@ -19,6 +23,7 @@ import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -29,23 +34,37 @@ public class SubscriptionService {
 
 	private static final Logger logger = LoggerFactory.getLogger(SubscriptionService.class);
 
+	private static final long CATCH_UP_PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
 	private final PolicyEventSubscriptionListener policyEventSubscriptionListener;
 	private final EventStoreConnectionManager eventStoreConnectionManager;
 	private final EventStoreDBConfig eventStoreDBConfig;
 	private final SnapshotService snapshotService;
 	private final CurrentRevisionService currentRevisionService;
+	private final PrivilegeIndex privilegeIndex;
+	private final VersionedPolicy policy;
+	private final PolicyCheckpoint checkpoint;
+	private final int catchUpPageSize;
 	private final Retry retry;
 
 	public SubscriptionService(EventStoreConnectionManager eventStoreConnectionManager,
 	                           PolicyEventSubscriptionListener policyEventSubscriptionListener,
 	                           EventStoreDBConfig eventStoreDBConfig,
 	                           SnapshotService snapshotService,
-	                           CurrentRevisionService currentRevisionService) {
+	                           CurrentRevisionService currentRevisionService,
+	                           PrivilegeIndex privilegeIndex,
+	                           VersionedPolicy policy,
+	                           PolicyCheckpoint checkpoint,
+	                           ResourcePDPConfig resourcePDPConfig) {
 		this.eventStoreConnectionManager = eventStoreConnectionManager;
 		this.policyEventSubscriptionListener = policyEventSubscriptionListener;
 		this.eventStoreDBConfig = eventStoreDBConfig;
 		this.snapshotService = snapshotService;
 		this.currentRevisionService = currentRevisionService;
+		this.privilegeIndex = privilegeIndex;
+		this.policy = policy;
+		this.checkpoint = checkpoint;
+		this.catchUpPageSize = resourcePDPConfig.getCatchUpPageSize();
 
 		this.retry = Retry.of("subscriptionRetry", RetryConfig.custom()
 				.maxAttempts(Integer.MAX_VALUE)
@@ -59,9 +78,26 @@ public class SubscriptionService {
 
 	@PostConstruct
 	public void initSubscription() throws ExecutionException, InterruptedException, PMException, InvalidProtocolBufferException, TimeoutException {
-		long snapshotRevision = restoreLatestSnapshot();
-		catchUpEvents(snapshotRevision);
+		// the snapshot replaces the whole policy, so the privilege index is rebuilt from scratch
+		privilegeIndex.beginRebuild();
+		try {
+			// a local checkpoint is usually more recent than the latest snapshot and is not read over the network, it
+			// is loaded into both copies of the policy
+			long snapshotRevision = restoreCheckpoint();
+			if (snapshotRevision < 0) {
+				snapshotRevision = restoreLatestSnapshot();
+
+				// the snapshot is restored into the primary copy of the policy only
+				policy.resync(currentRevisionService.get());
+			}
+
+			catchUpEvents(snapshotRevision);
+		} finally {
+			privilegeIndex.endRebuild();
+		}
+
 		startSubscription();
+		checkpoint.start();
 	}
 
 	@Pointcut("execution(* gov.nist.csd.pm.pdp.resource.eventstore.PolicyEventSubscriptionListener.onCancelled(..))")
@@ -107,6 +143,24 @@ public class SubscriptionService {
 		logger.info("Subscribed to {} with id {}", stream, subscription.getSubscriptionId());
 	}
 
+	/**
+	 * Load the local checkpoint into both copies of the policy and publish it. Returns -1 if checkpoints are disabled
+	 * or the checkpoint could not be loaded, the latest snapshot is restored instead.
+	 */
+	private long restoreCheckpoint() throws ExecutionException, InterruptedException {
+		if (!checkpoint.isEnabled()) {
+			return -1;
+		}
+
+		long revision = checkpoint.load(policy.paps(), lastRevision(eventStoreDBConfig.getEventStream()));
+		if (revision >= 0) {
+			currentRevisionService.set(revision);
+			policy.restored(revision);
+		}
+
+		return revision;
+	}
+
 	private long restoreLatestSnapshot() throws PMException, InvalidProtocolBufferException, ExecutionException, InterruptedException {
 		try {
 			return snapshotService.restoreLatestSnapshot();
@@ -120,19 +174,85 @@ public class SubscriptionService {
 		}
 	}
 
+	/**
+	 * Replay the events after the snapshot a page at a time. The next page is read while the current one is applied,
+	 * so at most two pages are held in memory, and each page is applied to the policy as one transaction.
+	 */
 	private void catchUpEvents(long snapshotRevision) throws ExecutionException, InterruptedException {
 		String eventStream = eventStoreDBConfig.getEventStream();
+		long targetRevision = lastRevision(eventStream);
+		if (targetRevision < snapshotRevision) {
+			logger.info("no events to replay after snapshot revision {}", snapshotRevision);
+			return;
+		}
+
+		logger.info("replaying events {} to {} from {} in pages of {}", snapshotRevision, targetRevision, eventStream,
+				catchUpPageSize);
+
+		long start = System.nanoTime();
+		long lastProgress = start;
+		long replayed = 0;
+		long lastRevision = snapshotRevision - 1;
+
+		CompletableFuture<ReadResult> nextPage = readPage(eventStream, snapshotRevision);
+		while (nextPage != null) {
+			List<ResolvedEvent> events = nextPage.get().getEvents();
+			if (events.isEmpty()) {
+				break;
+			}
+
+			lastRevision = events.getLast().getEvent().getRevision();
+			nextPage = events.size() < catchUpPageSize ? null : readPage(eventStream, lastRevision + 1);
+
+			policyEventSubscriptionListener.handleEvents(events);
+			replayed += events.size();
+
+			long now = System.nanoTime();
+			if (now - lastProgress >= CATCH_UP_PROGRESS_INTERVAL_NANOS) {
+				lastProgress = now;
+				logger.info("replayed {} events, at revision {} of {} ({} events/s)",
+						replayed, lastRevision, targetRevision, eventsPerSecond(replayed, now - start));
+			}
+		}
+
+		long elapsed = System.nanoTime() - start;
+		logger.info("replayed {} events up to revision {} in {}ms ({} events/s)",
+				replayed, lastRevision, TimeUnit.NANOSECONDS.toMillis(elapsed), eventsPerSecond(replayed, elapsed));
+	}
+
+	private CompletableFuture<ReadResult> readPage(String eventStream, long fromRevision) {
+		ReadStreamOptions readStreamOptions = ReadStreamOptions.get()
+				.fromRevision(fromRevision)
+				.forwards()
+				.maxCount(catchUpPageSize);
+
+		return eventStoreConnectionManager.getOrInitClient()
+				.readStream(eventStream, readStreamOptions);
+	}
+
+	private long lastRevision(String eventStream) throws ExecutionException, InterruptedException {
 		ReadStreamOptions readStreamOptions = ReadStreamOptions.get()
-				.fromRevision(snapshotRevision)
-				.forwards();
+				.fromEnd()
+				.backwards()
+				.maxCount(1);
 
-		ReadResult readResult = eventStoreConnectionManager.getOrInitClient()
-				.readStream(eventStream, readStreamOptions)
-				.get();
+		try {
+			List<ResolvedEvent> events = eventStoreConnectionManager.getOrInitClient()
+					.readStream(eventStream, readStreamOptions)
+					.get()
+					.getEvents();
 
-		List<ResolvedEvent> events = readResult.getEvents();
-		for (ResolvedEvent event : events) {
-			policyEventSubscriptionListener.onEvent(null, event);
+			return events.isEmpty() ? -1 : events.getFirst().getEvent().getRevision();
+		} catch (ExecutionException e) {
+			if (!(e.getCause() instanceof StreamNotFoundException)) {
+				throw e;
+			}
+
+			return -1;
 		}
 	}
+
+	private static long eventsPerSecond(long events, long nanos) {
+		return nanos == 0 ? events : events * TimeUnit.SECONDS.toNanos(1) / nanos;
+	}
 }
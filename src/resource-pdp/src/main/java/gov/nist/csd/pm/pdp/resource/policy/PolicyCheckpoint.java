@@ -0,0 +1,333 @@
+package gov.nist.csd.pm.pdp.resource.policy;
+
+import gov.nist.csd.pm.core.common.exception.PMException;
+import gov.nist.csd.pm.core.pap.PAP;
+import gov.nist.csd.pm.pdp.shared.eventstore.PolicySnapshotCodec;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * A local file holding the policy and the revision it is at, so a restarting resource PDP can load the policy from disk
+ * instead of restoring the latest snapshot from the event store and replaying every event after it.
+ *
+ * The file is a fixed size header followed by the policy as a serialized {@code PolicySnapshot}:
+ * <pre>
+ *   int  magic
+ *   int  format version
+ *   long revision
+ *   long policy length in bytes
+ *   long CRC32C of the policy bytes
+ * </pre>
+ * It is loaded by memory mapping it and decoding the policy in place, into every copy of the policy so none of them
+ * has to be copied from another afterwards. The checkpoint is written every interval if the
+ * revision has moved on, to a temporary file that is then moved over the previous one, so a crash while writing leaves
+ * the previous checkpoint intact. The published version of the policy is held only while it is encoded into memory,
+ * the subscription can apply one more transaction in that time and waits for the encode before applying the next. The
+ * file is written and forced to disk after the version is released, so the encoded policy is held in memory once
+ * while it is written.
+ */
+public class PolicyCheckpoint implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(PolicyCheckpoint.class);
+
+    static final int MAGIC = 0x504D4350;
+    static final int FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 32;
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final VersionedPolicy policy;
+    private final Path path;
+    private final long intervalMillis;
+    private ScheduledExecutorService scheduler;
+    private volatile long revision;
+    private volatile long size;
+
+    private final LongAdder written;
+    private final LongAdder failed;
+    private final LongAdder writeNanos;
+    private final LongAdder encodeNanos;
+
+    /**
+     * @param path the checkpoint file, null or empty disables checkpoints.
+     * @param intervalMillis the time between checkpoints.
+     */
+    public PolicyCheckpoint(VersionedPolicy policy, String path, long intervalMillis) {
+        this.policy = policy;
+        this.path = path == null || path.isEmpty() ? null : Path.of(path);
+        this.intervalMillis = intervalMillis;
+        this.revision = -1;
+        this.written = new LongAdder();
+        this.failed = new LongAdder();
+        this.writeNanos = new LongAdder();
+        this.encodeNanos = new LongAdder();
+    }
+
+    public boolean isEnabled() {
+        return path != null;
+    }
+
+    /**
+     * Load the checkpoint into the PAP, replacing the policy in it. A checkpoint that is missing, damaged, or at a
+     * revision after maxRevision is not loaded. A checkpoint ahead of the event stream was written against a different
+     * stream.
+     *
+     * @return the revision of the loaded checkpoint, or -1 if it was not loaded.
+     */
+    public long load(PAP pap, long maxRevision) {
+        return load(List.of(pap), maxRevision);
+    }
+
+    /**
+     * Load the checkpoint into each of the PAPs, replacing the policy in them. The mapped file is decoded in place once
+     * per PAP. If it cannot be loaded into all of them, every PAP is left empty.
+     *
+     * @return the revision of the loaded checkpoint, or -1 if it was not loaded.
+     */
+    public long load(List<PAP> paps, long maxRevision) {
+        if (path == null || !Files.exists(path)) {
+            return -1;
+        }
+
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE || fileSize - HEADER_SIZE > Integer.MAX_VALUE) {
+                throw new IOException("unexpected checkpoint size " + fileSize);
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            int magic = buffer.getInt();
+            int formatVersion = buffer.getInt();
+            long checkpointRevision = buffer.getLong();
+            long length = buffer.getLong();
+            long checksum = buffer.getLong();
+
+            if (magic != MAGIC || formatVersion != FORMAT_VERSION) {
+                throw new IOException("not a version " + FORMAT_VERSION + " policy checkpoint");
+            }
+            if (length != fileSize - HEADER_SIZE) {
+                throw new IOException("checkpoint is " + fileSize + " bytes, expected " + (length + HEADER_SIZE));
+            }
+            if (checkpointRevision > maxRevision) {
+                logger.warn("checkpoint {} is at revision {}, after the last event store revision {}, ignoring it",
+                            path, checkpointRevision, maxRevision);
+                return -1;
+            }
+
+            ByteBuffer policyBytes = buffer.slice(HEADER_SIZE, (int) length);
+            CRC32C crc = new CRC32C();
+            crc.update(policyBytes.duplicate());
+            if (crc.getValue() != checksum) {
+                throw new IOException("checkpoint checksum mismatch");
+            }
+
+            for (PAP pap : paps) {
+                pap.reset();
+                PolicySnapshotCodec.decode(policyBytes.duplicate(), pap);
+            }
+
+            revision = checkpointRevision;
+            size = fileSize;
+            logger.info("loaded checkpoint {} at revision {} ({} bytes) into {} policy copies in {}ms", path,
+                        checkpointRevision, fileSize, paps.size(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+            return checkpointRevision;
+        } catch (IOException | PMException | RuntimeException e) {
+            logger.warn("could not load checkpoint {}", path, e);
+            for (PAP pap : paps) {
+                reset(pap);
+            }
+
+            return -1;
+        }
+    }
+
+    /**
+     * Start writing checkpoints every interval. Called once the policy has been restored.
+     */
+    public void start() {
+        if (path == null || scheduler != null) {
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "policy-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::writeOrLog, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+
+        logger.info("writing policy checkpoints to {} every {}ms", path, intervalMillis);
+    }
+
+    /**
+     * Stop writing checkpoints and write a last one so the next start has nothing to replay.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler == null) {
+            return;
+        }
+
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(intervalMillis, TimeUnit.MILLISECONDS)) {
+                logger.warn("checkpoint writer did not stop within {}ms", intervalMillis);
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        writeOrLog();
+    }
+
+    /**
+     * Write the published version of the policy to the checkpoint file.
+     *
+     * @return false if the checkpoint is already at the published revision.
+     */
+    public boolean write() throws IOException, PMException {
+        long start = System.nanoTime();
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+
+        // encode into memory holding the version, sized from the last checkpoint, and write it after releasing it
+        long checkpointRevision;
+        CRC32C crc = new CRC32C();
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream(
+                (int) Math.min(Math.max(size - HEADER_SIZE, WRITE_BUFFER_SIZE), Integer.MAX_VALUE - 8));
+        try (VersionedPolicy.PolicyVersion version = policy.acquire()) {
+            checkpointRevision = version.revision();
+            if (checkpointRevision < 0 || checkpointRevision == revision) {
+                return false;
+            }
+
+            OutputStream out = new CheckedOutputStream(encoded, crc);
+            PolicySnapshotCodec.encode(version.pap(), out);
+            out.flush();
+        }
+        encodeNanos.add(System.nanoTime() - start);
+
+        long fileSize = HEADER_SIZE + (long) encoded.size();
+        try (FileChannel channel = FileChannel.open(temp, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                    .putInt(MAGIC)
+                    .putInt(FORMAT_VERSION)
+                    .putLong(checkpointRevision)
+                    .putLong(encoded.size())
+                    .putLong(crc.getValue())
+                    .flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+
+            encoded.writeTo(Channels.newOutputStream(channel));
+            channel.force(true);
+        }
+
+        Files.move(temp, path, ATOMIC_MOVE, REPLACE_EXISTING);
+
+        long elapsed = System.nanoTime() - start;
+        revision = checkpointRevision;
+        size = fileSize;
+        written.increment();
+        writeNanos.add(elapsed);
+        logger.debug("wrote checkpoint at revision {} ({} bytes) in {}ms", checkpointRevision, fileSize,
+                     TimeUnit.NANOSECONDS.toMillis(elapsed));
+
+        return true;
+    }
+
+    private void writeOrLog() {
+        try {
+            write();
+        } catch (IOException | PMException | RuntimeException e) {
+            failed.increment();
+            logger.error("could not write checkpoint {}", path, e);
+        }
+    }
+
+    private static void reset(PAP pap) {
+        try {
+            pap.reset();
+        } catch (PMException | RuntimeException e) {
+            logger.debug("reset failed", e);
+        }
+    }
+
+    public long revision() {
+        return revision;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public long writtenCount() {
+        return written.sum();
+    }
+
+    public long failedCount() {
+        return failed.sum();
+    }
+
+    public double writeSeconds() {
+        return writeNanos.sum() / 1e9;
+    }
+
+    public double encodeSeconds() {
+        return encodeNanos.sum() / 1e9;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("pm.resource.checkpoint.revision", this, PolicyCheckpoint::revision)
+                .register(registry);
+        Gauge.builder("pm.resource.checkpoint.size", this, PolicyCheckpoint::size)
+                .baseUnit("bytes")
+                .register(registry);
+        FunctionCounter.builder("pm.resource.checkpoint.written", this, PolicyCheckpoint::writtenCount)
+                .register(registry);
+        FunctionCounter.builder("pm.resource.checkpoint.failed", this, PolicyCheckpoint::failedCount)
+                .register(registry);
+        FunctionCounter.builder("pm.resource.checkpoint.write.time", this, PolicyCheckpoint::writeSeconds)
+                .baseUnit("seconds")
+                .register(registry);
+        // the part of the write time the published version was held for
+        FunctionCounter.builder("pm.resource.checkpoint.encode.time", this, PolicyCheckpoint::encodeSeconds)
+                .baseUnit("seconds")
+                .register(registry);
+    }
+}
@@ -0,0 +1,377 @@
+package gov.nist.csd.pm.pdp.resource.policy;
+
+import com.google.protobuf.ByteString;
+import gov.nist.csd.pm.core.common.exception.PMException;
+import gov.nist.csd.pm.core.pap.PAP;
+import gov.nist.csd.pm.core.pdp.PDP;
+import gov.nist.csd.pm.pdp.proto.event.PMEvent;
+import gov.nist.csd.pm.pdp.shared.eventstore.AppliedEventListener;
+import gov.nist.csd.pm.pdp.shared.eventstore.PolicyEventHandler;
+import gov.nist.csd.pm.pdp.shared.eventstore.PolicySnapshotCodec;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Two copies of the local policy kept in step so that adjudications never see a transaction half applied and never
+ * wait for one to be applied. Readers acquire the published copy, which is only a counter increment, and hold it for
+ * the whole adjudication. The writer applies a transaction to the standby copy, publishes it together with its
+ * revision, waits for the readers still holding the previous copy to release it, and then applies the same transaction
+ * to that copy so it can be the standby for the next one. Applied event listeners are notified with the revision once
+ * the standby copy is at it and before it is published, so state derived from the policy is never behind a version
+ * readers can acquire.
+ *
+ * The wait for readers to release the previous copy is not bounded: a reader that holds a version for long, a batch or
+ * stream request or a checkpoint encode, holds up the next transaction for as long. The time spent waiting is counted
+ * by pm.resource.policy.drain.wait, the longest wait is reported by pm.resource.policy.drain.max, and a wait longer
+ * than a second is logged with the number of readers still holding the copy.
+ *
+ * The primary replica is the one the snapshot is restored into on startup, {@link #resync(long)} copies it to the
+ * secondary replica before events are applied. A copy that a transaction could not be applied to is marked stale and
+ * copied from the published one before the next transaction is applied to it.
+ */
+public class VersionedPolicy implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(VersionedPolicy.class);
+
+    private static final int DRAIN_SPINS = 100;
+    private static final long DRAIN_PARK_NANOS = 50_000;
+    private static final long DRAIN_WARN_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Slot primary;
+    private final Slot secondary;
+    private final List<AppliedEventListener> appliedEventListeners;
+    // a lock rather than a monitor, the writer holds it while it waits for readers and must not pin a virtual thread
+    private final ReentrantLock writeLock;
+    private volatile Slot published;
+
+    private final LongAdder versionsPublished;
+    private final LongAdder drainWaitNanos;
+    private final LongAccumulator drainMaxNanos;
+    private final LongAdder slowDrains;
+
+    public VersionedPolicy(Replica primary, Replica secondary, List<AppliedEventListener> appliedEventListeners) {
+        this.primary = new Slot(primary);
+        this.secondary = new Slot(secondary);
+        this.appliedEventListeners = appliedEventListeners;
+        this.writeLock = new ReentrantLock();
+        this.published = this.primary;
+        this.versionsPublished = new LongAdder();
+        this.drainWaitNanos = new LongAdder();
+        this.drainMaxNanos = new LongAccumulator(Math::max, 0);
+        this.slowDrains = new LongAdder();
+    }
+
+    public Replica primary() {
+        return primary.replica;
+    }
+
+    /**
+     * Both PAPs, primary first, for restoring the same policy into each of them.
+     */
+    public List<PAP> paps() {
+        return List.of(primary.replica.pap(), secondary.replica.pap());
+    }
+
+    /**
+     * Both PDPs, for registering event subscribers. Operations are adjudicated by whichever PDP is published.
+     */
+    public List<PDP> pdps() {
+        return List.of(primary.replica.pdp(), secondary.replica.pdp());
+    }
+
+    /**
+     * Acquire the published version of the policy. The version is stable until it is closed and must be closed by the
+     * caller, the writer cannot apply the next transaction to it until then.
+     */
+    public PolicyVersion acquire() {
+        while (true) {
+            Slot slot = published;
+            slot.readers.incrementAndGet();
+
+            // the writer may have swapped the slots and started draining this one between the read and the increment
+            if (slot == published) {
+                return new PolicyVersion(slot);
+            }
+
+            slot.readers.decrementAndGet();
+        }
+    }
+
+    public long revision() {
+        return published.revision;
+    }
+
+    /**
+     * Apply the events as one transaction at the given revision. Readers see either the policy before the transaction
+     * or after it, never in between. The transaction is either published or fails, a failure to apply it to the
+     * drained copy after it was published is not reported to the caller. Listeners are notified before it is published.
+     */
+    public void apply(List<PMEvent> events, long revision) throws PMException {
+        writeLock.lock();
+        try {
+            Slot current = published;
+            Slot standby = current == primary ? secondary : primary;
+
+            if (standby.stale) {
+                copy(current, standby);
+            }
+
+            try {
+                standby.handler.handleEvents(events);
+            } catch (PMException | RuntimeException e) {
+                // nothing was published, the standby is copied from the published state before the next transaction
+                rollback(standby);
+                standby.stale = true;
+                throw e;
+            }
+
+            standby.revision = revision;
+            notifyApplied(events, revision);
+            published = standby;
+            versionsPublished.increment();
+
+            awaitReaders(current);
+
+            try {
+                current.handler.handleEvents(events);
+                current.revision = revision;
+            } catch (PMException | RuntimeException e) {
+                logger.error("failed to apply revision {} to the drained policy copy, copying it instead", revision, e);
+                rollback(current);
+                copyOrMarkStale(standby, current);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void notifyApplied(List<PMEvent> events, long revision) {
+        for (PMEvent event : events) {
+            for (AppliedEventListener listener : appliedEventListeners) {
+                try {
+                    listener.onEventApplied(event, revision);
+                } catch (RuntimeException e) {
+                    // the transaction is applied to the standby and is published regardless
+                    logger.error("applied event listener failed at revision {}", revision, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Publish the primary replica at the given revision and copy it to the secondary. Called after the primary has been
+     * replaced wholesale, e.g. by restoring a snapshot into it.
+     */
+    public void resync(long revision) throws PMException {
+        writeLock.lock();
+        try {
+            primary.revision = revision;
+            primary.stale = false;
+            published = primary;
+            awaitReaders(secondary);
+            secondary.stale = true;
+            copy(primary, secondary);
+        } finally {
+            writeLock.unlock();
+        }
+
+        logger.info("policy copies synchronized at revision {}", revision);
+    }
+
+    /**
+     * Publish the primary replica at the given revision without copying it. Called after the same policy has been
+     * restored into both replicas, e.g. from a checkpoint. Use {@link #resync(long)} if only the primary was replaced.
+     */
+    public void restored(long revision) {
+        writeLock.lock();
+        try {
+            awaitReaders(primary);
+            awaitReaders(secondary);
+            for (Slot slot : List.of(primary, secondary)) {
+                slot.revision = revision;
+                slot.stale = false;
+            }
+            published = primary;
+        } finally {
+            writeLock.unlock();
+        }
+
+        logger.info("policy copies restored at revision {}", revision);
+    }
+
+    private void awaitReaders(Slot slot) {
+        long start = System.nanoTime();
+        boolean warned = false;
+        int spins = 0;
+        long readers;
+        while ((readers = slot.readers.get()) != 0) {
+            if (spins++ < DRAIN_SPINS) {
+                Thread.onSpinWait();
+                continue;
+            }
+
+            LockSupport.parkNanos(DRAIN_PARK_NANOS);
+            if (!warned && System.nanoTime() - start > DRAIN_WARN_NANOS) {
+                warned = true;
+                slowDrains.increment();
+                logger.warn("event application waiting for {} readers to release policy revision {}",
+                            readers, slot.revision);
+            }
+        }
+
+        long waited = System.nanoTime() - start;
+        drainWaitNanos.add(waited);
+        drainMaxNanos.accumulate(waited);
+        if (warned) {
+            logger.warn("event application waited {}ms for readers to release policy revision {}",
+                        TimeUnit.NANOSECONDS.toMillis(waited), slot.revision);
+        }
+    }
+
+    private static void rollback(Slot slot) {
+        try {
+            slot.replica.pap().rollback();
+        } catch (PMException | RuntimeException e) {
+            logger.debug("rollback failed", e);
+        }
+    }
+
+    private static void copyOrMarkStale(Slot from, Slot to) {
+        try {
+            copy(from, to);
+        } catch (PMException | RuntimeException e) {
+            logger.error("failed to copy the policy at revision {}, copying it again before the next transaction",
+                         from.revision, e);
+            to.stale = true;
+        }
+    }
+
+    /**
+     * Replace the policy in to with the policy in from, encoded with the binary snapshot codec.
+     */
+    private static void copy(Slot from, Slot to) throws PMException {
+        to.stale = true;
+
+        ByteString.Output out = ByteString.newOutput();
+        try {
+            PolicySnapshotCodec.encode(from.replica.pap(), out);
+            to.replica.pap().reset();
+            PolicySnapshotCodec.decode(out.toByteString().asReadOnlyByteBuffer(), to.replica.pap());
+        } catch (IOException e) {
+            // not thrown reading and writing memory
+            throw new IllegalStateException(e);
+        }
+
+        to.revision = from.revision;
+        to.stale = false;
+    }
+
+    public int activeReaders() {
+        return (int) (primary.readers.get() + secondary.readers.get());
+    }
+
+    public long versionsPublishedCount() {
+        return versionsPublished.sum();
+    }
+
+    public double drainWaitSeconds() {
+        return drainWaitNanos.sum() / 1e9;
+    }
+
+    public double drainMaxSeconds() {
+        return drainMaxNanos.get() / 1e9;
+    }
+
+    public long slowDrainCount() {
+        return slowDrains.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("pm.resource.policy.revision", this, VersionedPolicy::revision)
+                .register(registry);
+        Gauge.builder("pm.resource.policy.readers", this, VersionedPolicy::activeReaders)
+                .register(registry);
+        FunctionCounter.builder("pm.resource.policy.versions.published", this, VersionedPolicy::versionsPublishedCount)
+                .register(registry);
+        FunctionCounter.builder("pm.resource.policy.drain.wait", this, VersionedPolicy::drainWaitSeconds)
+                .baseUnit("seconds")
+                .register(registry);
+        Gauge.builder("pm.resource.policy.drain.max", this, VersionedPolicy::drainMaxSeconds)
+                .baseUnit("seconds")
+                .register(registry);
+        FunctionCounter.builder("pm.resource.policy.drain.slow", this, VersionedPolicy::slowDrainCount)
+                .register(registry);
+    }
+
+    /**
+     * A copy of the local policy and the PDP that adjudicates against it.
+     */
+    public record Replica(PAP pap, PDP pdp) {
+    }
+
+    /**
+     * A stable version of the local policy at a committed revision.
+     */
+    public static final class PolicyVersion implements AutoCloseable {
+
+        private final Slot slot;
+        private final long revision;
+        private boolean closed;
+
+        private PolicyVersion(Slot slot) {
+            this.slot = slot;
+            this.revision = slot.revision;
+        }
+
+        public PAP pap() {
+            return slot.replica.pap();
+        }
+
+        public PDP pdp() {
+            return slot.replica.pdp();
+        }
+
+        public long revision() {
+            return revision;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                slot.readers.decrementAndGet();
+            }
+        }
+    }
+
+    private static final class Slot {
+
+        private final Replica replica;
+        private final PolicyEventHandler handler;
+        private final AtomicLong readers;
+        private volatile long revision;
+        private boolean stale;
+
+        private Slot(Replica replica) {
+            this.replica = replica;
+            // listeners are notified by the VersionedPolicy before the transaction is published
+            this.handler = new PolicyEventHandler(replica.pap(), false);
+            this.readers = new AtomicLong();
+            this.revision = -1;
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package gov.nist.csd.pm.pdp.resource.privilege;
+
+import gov.nist.csd.pm.core.common.exception.PMException;
+import gov.nist.csd.pm.core.pap.PAP;
+import gov.nist.csd.pm.core.pap.operation.accessright.AccessRightSet;
+import gov.nist.csd.pm.core.pap.query.model.context.TargetContext;
+import gov.nist.csd.pm.pdp.proto.event.*;
+import gov.nist.csd.pm.pdp.shared.auth.UserContextFromHeader;
+import gov.nist.csd.pm.pdp.shared.eventstore.AppliedEventListener;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Materialized effective privileges of a user (or set of user attributes) on a target node. An entry depends only on
+ * the descendant closure of the user and the descendant closure of the target: the associations and prohibitions that
+ * can apply are the ones whose nodes are in those closures. Entries are therefore maintained incrementally from the
+ * applied policy events, dropping only the entries whose closures contain the nodes an event touches.
+ *
+ * Each entry records the revision of the policy it was computed from. Events are applied to the index before their
+ * revision is published, so an entry still in the index was not affected by any event up to the published revision.
+ * An entry is only used for a version at its revision or a later one, and a computation is not stored if any event was
+ * applied after the revision it was computed at. A version older than an entry is not answered from the index at all,
+ * the decision is left to the PDP.
+ *
+ * While the index is being rebuilt, e.g. while a snapshot is restored and events are replayed on startup, privileges
+ * are computed from the graph and nothing is stored. With verify enabled the adjudicator does not act on the index's
+ * answer, it also asks the PDP and counts the requests the index would have denied that the PDP permitted.
+ */
+public class PrivilegeIndex implements AppliedEventListener, MeterBinder {
+
+    private final int maxSize;
+    private final boolean verify;
+
+    private final LinkedHashMap<Key, Entry> entries;
+    // node id -> keys of the entries that have the node in one of their closures
+    private final Map<Long, Set<Key>> dependents;
+    // prohibition name -> subject, needed to scope PROHIBITION_DELETED which only carries the name
+    private final Map<String, ProhibitionSubject> prohibitionSubjects;
+    // incremented on every invalidation so a computation that raced with a policy change is not stored
+    private long generation;
+    // the latest revision an invalidating event was applied at
+    private long invalidatedAt;
+    private boolean rebuilding;
+
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder fallbacks;
+    private final LongAdder stale;
+    private final LongAdder invalidations;
+    private final LongAdder mismatches;
+
+    /**
+     * @param maxSize the maximum number of (user, target) entries. A value less than 1 disables the index.
+     * @param verify have the adjudicator compare every index denial with the PDP decision.
+     */
+    public PrivilegeIndex(int maxSize, boolean verify) {
+        this.maxSize = maxSize;
+        this.verify = verify;
+        this.dependents = new HashMap<>();
+        this.prohibitionSubjects = new HashMap<>();
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.fallbacks = new LongAdder();
+        this.stale = new LongAdder();
+        this.invalidations = new LongAdder();
+        this.mismatches = new LongAdder();
+        this.invalidatedAt = -1;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > PrivilegeIndex.this.maxSize) {
+                    unlink(eldest.getKey(), eldest.getValue());
+                    return true;
+                }
+
+                return false;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    public boolean isVerify() {
+        return verify;
+    }
+
+    /**
+     * Drop every entry and compute privileges from the graph until endRebuild is called.
+     */
+    public synchronized void beginRebuild() {
+        rebuilding = true;
+        clear();
+    }
+
+    public synchronized void endRebuild() {
+        rebuilding = false;
+        generation++;
+    }
+
+    /**
+     * Returns the privileges of the user on the target. Entries are computed from, and on a miss stored from, the given
+     * policy, which must be the version of the local policy the caller is adjudicating against, at the given revision.
+     *
+     * @return The privileges, or null if the index holds an entry computed at a later revision than the given one and
+     * the caller should leave the decision to the PDP.
+     */
+    public AccessRightSet privileges(PAP pap, long revision, UserContextFromHeader.ResolvedUser user, long target)
+            throws PMException {
+        Key key = new Key(new TreeSet<>(user.nodeIds()), user.process(), target);
+
+        long gen;
+        synchronized (this) {
+            if (rebuilding || !isEnabled()) {
+                fallbacks.increment();
+                gen = -1;
+            } else {
+                Entry entry = entries.get(key);
+                if (entry != null && entry.revision() <= revision) {
+                    hits.increment();
+                    return entry.privileges();
+                } else if (entry != null) {
+                    stale.increment();
+                    return null;
+                }
+
+                misses.increment();
+                gen = generation;
+            }
+        }
+
+        if (gen == -1) {
+            return computeFromGraph(pap, user, target);
+        }
+
+        Set<Long> userClosure = closure(pap, user.nodeIds());
+        Set<Long> targetClosure = closure(pap, List.of(target));
+        AccessRightSet privileges = computeFromGraph(pap, user, target);
+
+        synchronized (this) {
+            if (gen == generation && invalidatedAt <= revision && !rebuilding && !entries.containsKey(key)) {
+                Entry entry = new Entry(privileges, userClosure, targetClosure, revision);
+                entries.put(key, entry);
+                link(key, entry);
+            }
+        }
+
+        return privileges;
+    }
+
+    /**
+     * Record that, in verify mode, the index predicted a denial that the PDP did not make.
+     */
+    public void recordDecisionMismatch() {
+        mismatches.increment();
+    }
+
+    private static AccessRightSet computeFromGraph(PAP pap, UserContextFromHeader.ResolvedUser user, long target)
+            throws PMException {
+        return pap.query().access().computePrivileges(user.userContext(), new TargetContext(target));
+    }
+
+    private static Set<Long> closure(PAP pap, Collection<Long> start) throws PMException {
+        Set<Long> visited = new HashSet<>(start);
+        Deque<Long> queue = new ArrayDeque<>(start);
+        while (!queue.isEmpty()) {
+            long node = queue.poll();
+            for (long descendant : pap.query().graph().getAdjacentDescendants(node)) {
+                if (visited.add(descendant)) {
+                    queue.add(descendant);
+                }
+            }
+        }
+
+        return visited;
+    }
+
+    @Override
+    public void onEventApplied(PMEvent event) {
+        onEventApplied(event, -1);
+    }
+
+    @Override
+    public void onEventApplied(PMEvent event, long revision) {
+        synchronized (this) {
+            invalidatedAt = Math.max(invalidatedAt, revision);
+        }
+
+        switch (event.getEventCase()) {
+            case ASSIGNMENT_CREATED -> invalidateDependents(event.getAssignmentCreated().getAscendant(), e -> true);
+            case ASSIGNMENT_DELETED -> invalidateDependents(event.getAssignmentDeleted().getAscendant(), e -> true);
+            case ASSOCIATION_CREATED -> {
+                AssociationCreated association = event.getAssociationCreated();
+                invalidateAssociation(association.getUa(), association.getTarget());
+            }
+            case ASSOCIATION_DELETED -> {
+                AssociationDeleted association = event.getAssociationDeleted();
+                invalidateAssociation(association.getUa(), association.getTarget());
+            }
+            case NODE_DELETED -> invalidateDependents(event.getNodeDeleted().getId(), e -> true);
+            case PROHIBITION_CREATED -> {
+                ProhibitionCreated prohibition = event.getProhibitionCreated();
+                ProhibitionSubject subject = new ProhibitionSubject(
+                        prohibition.getNode(),
+                        prohibition.hasProcess() ? prohibition.getProcess() : null
+                );
+                synchronized (this) {
+                    prohibitionSubjects.put(prohibition.getName(), subject);
+                }
+                invalidateProhibition(subject);
+            }
+            case PROHIBITION_DELETED -> {
+                ProhibitionSubject subject;
+                synchronized (this) {
+                    subject = prohibitionSubjects.remove(event.getProhibitionDeleted().getName());
+                }
+
+                if (subject == null) {
+                    // created before this index was tracking, the affected entries are unknown
+                    invalidateAll();
+                } else {
+                    invalidateProhibition(subject);
+                }
+            }
+            // these change the set of access rights privileges are expressed in
+            case RESOURCE_ACCESS_RIGHTS_SET, OPERATION_CREATED, OPERATION_DELETED -> invalidateAll();
+            default -> {}
+        }
+    }
+
+    private void invalidateAssociation(long ua, long target) {
+        invalidateDependents(ua, e -> e.userClosure().contains(ua) && e.targetClosure().contains(target));
+    }
+
+    private void invalidateProhibition(ProhibitionSubject subject) {
+        invalidateDependents(subject.node(), e -> e.userClosure().contains(subject.node()));
+        if (subject.process() != null) {
+            invalidateMatching(key -> subject.process().equals(key.process()));
+        }
+    }
+
+    private synchronized void invalidateDependents(long node, Predicate<Entry> predicate) {
+        generation++;
+
+        Set<Key> keys = dependents.get(node);
+        if (keys == null) {
+            return;
+        }
+
+        for (Key key : new ArrayList<>(keys)) {
+            Entry entry = entries.get(key);
+            if (entry != null && predicate.test(entry)) {
+                remove(key);
+            }
+        }
+    }
+
+    private synchronized void invalidateMatching(Predicate<Key> predicate) {
+        generation++;
+
+        for (Key key : new ArrayList<>(entries.keySet())) {
+            if (predicate.test(key)) {
+                remove(key);
+            }
+        }
+    }
+
+    private synchronized void invalidateAll() {
+        generation++;
+        invalidations.add(entries.size());
+        clear();
+    }
+
+    private void clear() {
+        entries.clear();
+        dependents.clear();
+    }
+
+    private void remove(Key key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            unlink(key, entry);
+            invalidations.increment();
+        }
+    }
+
+    private void link(Key key, Entry entry) {
+        for (long node : entry.userClosure()) {
+            dependents.computeIfAbsent(node, k -> new HashSet<>()).add(key);
+        }
+        for (long node : entry.targetClosure()) {
+            dependents.computeIfAbsent(node, k -> new HashSet<>()).add(key);
+        }
+    }
+
+    private void unlink(Key key, Entry entry) {
+        unlink(key, entry.userClosure());
+        unlink(key, entry.targetClosure());
+    }
+
+    private void unlink(Key key, Set<Long> nodes) {
+        for (long node : nodes) {
+            Set<Key> keys = dependents.get(node);
+            if (keys == null) {
+                continue;
+            }
+
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                dependents.remove(node);
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long fallbackCount() {
+        return fallbacks.sum();
+    }
+
+    public long staleCount() {
+        return stale.sum();
+    }
+
+    public long invalidationCount() {
+        return invalidations.sum();
+    }
+
+    public long mismatchCount() {
+        return mismatches.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("pm.resource.privilege.index.requests", this, PrivilegeIndex::hitCount)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("pm.resource.privilege.index.requests", this, PrivilegeIndex::missCount)
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("pm.resource.privilege.index.requests", this, PrivilegeIndex::fallbackCount)
+                .tag("result", "fallback")
+                .register(registry);
+        FunctionCounter.builder("pm.resource.privilege.index.requests", this, PrivilegeIndex::staleCount)
+                .tag("result", "stale")
+                .register(registry);
+        FunctionCounter.builder("pm.resource.privilege.index.invalidations", this, PrivilegeIndex::invalidationCount)
+                .register(registry);
+        FunctionCounter.builder("pm.resource.privilege.index.mismatches", this, PrivilegeIndex::mismatchCount)
+                .register(registry);
+        Gauge.builder("pm.resource.privilege.index.size", this, PrivilegeIndex::size)
+                .register(registry);
+    }
+
+    private record Key(SortedSet<Long> subjects, String process, long target) {
+    }
+
+    private record Entry(AccessRightSet privileges, Set<Long> userClosure, Set<Long> targetClosure, long revision) {
+    }
+
+    private record ProhibitionSubject(long node, String process) {
+    }
+}
@@ -0,0 +1,140 @@
+package gov.nist.csd.pm.pdp.resource.privilege;
+
+import gov.nist.csd.pm.core.common.exception.PMException;
+import gov.nist.csd.pm.core.pap.PAP;
+import gov.nist.csd.pm.core.pap.operation.Operation;
+import gov.nist.csd.pm.core.pap.operation.accessright.AccessRightSet;
+import gov.nist.csd.pm.core.pap.operation.param.FormalParameter;
+import gov.nist.csd.pm.core.pap.operation.param.NodeIdFormalParameter;
+import gov.nist.csd.pm.core.pap.operation.param.NodeIdListFormalParameter;
+import gov.nist.csd.pm.core.pap.operation.param.NodeNameFormalParameter;
+import gov.nist.csd.pm.core.pap.operation.param.NodeNameListFormalParameter;
+import gov.nist.csd.pm.core.pap.operation.reqcap.RequiredCapability;
+import gov.nist.csd.pm.core.pap.operation.reqcap.RequiredPrivilege;
+import gov.nist.csd.pm.core.pap.operation.reqcap.RequiredPrivilegeOnNode;
+import gov.nist.csd.pm.core.pap.operation.reqcap.RequiredPrivilegeOnParameter;
+import gov.nist.csd.pm.pdp.shared.auth.UserContextFromHeader;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluates an operation's required capabilities against the privilege index. Only a definite answer is given: a
+ * request is reported as unsatisfiable when every required capability is missing a privilege on a node that could be
+ * resolved. Anything the check cannot resolve, such as a parameter that is not a node reference or privileges the index
+ * cannot answer for the given revision, counts as satisfied and is left to the PDP.
+ */
+public class RequiredCapabilityCheck {
+
+    private RequiredCapabilityCheck() {
+    }
+
+    public static boolean isUnsatisfiable(PrivilegeIndex index,
+                                          PAP pap,
+                                          long revision,
+                                          UserContextFromHeader.ResolvedUser user,
+                                          Operation<?> operation,
+                                          Map<String, Object> args) throws PMException {
+        List<RequiredCapability> requiredCapabilities = operation.getRequiredCapabilities();
+        if (requiredCapabilities == null || requiredCapabilities.isEmpty()) {
+            return false;
+        }
+
+        for (RequiredCapability requiredCapability : requiredCapabilities) {
+            if (isSatisfiable(index, pap, revision, user, requiredCapability, args)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isSatisfiable(PrivilegeIndex index,
+                                         PAP pap,
+                                         long revision,
+                                         UserContextFromHeader.ResolvedUser user,
+                                         RequiredCapability requiredCapability,
+                                         Map<String, Object> args) throws PMException {
+        for (RequiredPrivilege requiredPrivilege : requiredCapability.getRequiredPrivileges()) {
+            Collection<Long> targets;
+            Iterable<String> required;
+            switch (requiredPrivilege) {
+                case RequiredPrivilegeOnNode onNode -> {
+                    targets = List.of(pap.query().graph().getNodeId(onNode.getName()));
+                    required = onNode.getRequired();
+                }
+                case RequiredPrivilegeOnParameter onParameter -> {
+                    targets = targets(pap, onParameter.param(), args);
+                    required = onParameter.getRequired();
+                }
+                default -> {
+                    continue;
+                }
+            }
+
+            if (targets == null) {
+                continue;
+            }
+
+            for (long target : targets) {
+                AccessRightSet privileges = index.privileges(pap, revision, user, target);
+                if (privileges == null) {
+                    continue;
+                }
+
+                for (String accessRight : required) {
+                    if (!privileges.contains(accessRight)) {
+                        return false;
+                    }
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * The node ids referenced by the parameter's arg, or null if the parameter is not a node reference.
+     */
+    static Collection<Long> targets(PAP pap, FormalParameter<?> param, Map<String, Object> args) throws PMException {
+        Object value = args.get(param.getName());
+        if (value == null) {
+            return null;
+        }
+
+        return switch (param) {
+            case NodeIdFormalParameter p -> value instanceof Long id ? List.of(id) : null;
+            case NodeIdListFormalParameter p -> value instanceof Collection<?> ids ? longs(ids) : null;
+            case NodeNameFormalParameter p -> value instanceof String name ? List.of(pap.query().graph().getNodeId(name)) : null;
+            case NodeNameListFormalParameter p -> {
+                if (!(value instanceof Collection<?> names)) {
+                    yield null;
+                }
+
+                List<Long> ids = new ArrayList<>();
+                for (Object name : names) {
+                    if (!(name instanceof String s)) {
+                        yield null;
+                    }
+                    ids.add(pap.query().graph().getNodeId(s));
+                }
+                yield ids;
+            }
+            default -> null;
+        };
+    }
+
+    private static List<Long> longs(Collection<?> values) {
+        List<Long> ids = new ArrayList<>();
+        for (Object value : values) {
+            if (!(value instanceof Long id)) {
+                return null;
+            }
+            ids.add(id);
+        }
+
+        return ids;
+    }
+}
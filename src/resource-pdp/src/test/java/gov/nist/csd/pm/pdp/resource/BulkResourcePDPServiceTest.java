@@ -0,0 +1,273 @@
+package gov.nist.csd.pm.pdp.resource;
+
+import gov.nist.csd.pm.core.common.exception.PMException;
+import gov.nist.csd.pm.core.pap.PAP;
+import gov.nist.csd.pm.core.pdp.PDP;
+import gov.nist.csd.pm.pdp.proto.adjudication.BatchOperationRequest;
+import gov.nist.csd.pm.pdp.proto.adjudication.BatchOperationResponse;
+import gov.nist.csd.pm.pdp.proto.adjudication.Decision;
+import gov.nist.csd.pm.pdp.proto.adjudication.OperationResult;
+import gov.nist.csd.pm.pdp.proto.adjudication.StreamOperationRequest;
+import gov.nist.csd.pm.pdp.proto.adjudication.StreamOperationResponse;
+import gov.nist.csd.pm.pdp.resource.cache.DecisionCache;
+import gov.nist.csd.pm.pdp.resource.config.ResourcePDPConfig;
+import gov.nist.csd.pm.pdp.resource.policy.VersionedPolicy;
+import gov.nist.csd.pm.pdp.shared.eventstore.CurrentRevisionService;
+import gov.nist.csd.pm.proto.v1.model.Value;
+import gov.nist.csd.pm.proto.v1.pdp.adjudication.AdjudicateOperationResponse;
+import gov.nist.csd.pm.proto.v1.pdp.adjudication.OperationRequest;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BulkResourcePDPServiceTest {
+
+	@Mock private ResourceAdjudicator adjudicator;
+	@Mock private StreamObserver<BatchOperationResponse> responseObserver;
+
+	private CurrentRevisionService currentRevisionService;
+	private VersionedPolicy policy;
+	private BulkResourcePDPService service;
+
+	@BeforeEach
+	void setUp() throws PMException {
+		currentRevisionService = new CurrentRevisionService();
+		currentRevisionService.set(7);
+		lenient().when(adjudicator.getCurrentRevision()).thenReturn(currentRevisionService);
+
+		policy = new VersionedPolicy(
+				new VersionedPolicy.Replica(mock(PAP.class), mock(PDP.class)),
+				new VersionedPolicy.Replica(mock(PAP.class), mock(PDP.class)),
+				List.of()
+		);
+		policy.apply(List.of(), 7);
+		lenient().when(adjudicator.acquirePolicy()).thenAnswer(invocation -> policy.acquire());
+
+		service = new BulkResourcePDPService(adjudicator, config(4));
+	}
+
+	@AfterEach
+	void tearDown() {
+		service.shutdown();
+	}
+
+	@Test
+	void adjudicateResourceOperations_mixedResults_returnsResultPerRequestInOrder() throws Exception {
+		Value value = Value.newBuilder().setStringValue("test").build();
+		when(adjudicator.adjudicate(any(), any(), eq(op("permit"))))
+				.thenReturn(DecisionCache.Decision.permit(7, AdjudicateOperationResponse.newBuilder().setValue(value).build()));
+		when(adjudicator.adjudicate(any(), any(), eq(op("deny"))))
+				.thenReturn(DecisionCache.Decision.deny(7, "denied"));
+		when(adjudicator.adjudicate(any(), any(), eq(op("notResource"))))
+				.thenThrow(new ResourceAdjudicator.OperationIsNotResourceOperationException());
+
+		service.adjudicateResourceOperations(batch("permit", "deny", "notResource"), responseObserver);
+
+		BatchOperationResponse response = captureResponse();
+		assertEquals(7, response.getRevision());
+		assertEquals(3, response.getResultsCount());
+
+		OperationResult permit = response.getResults(0);
+		assertEquals(Decision.PERMIT, permit.getDecision());
+		assertEquals(value, permit.getValue());
+
+		OperationResult deny = response.getResults(1);
+		assertEquals(Decision.DENY, deny.getDecision());
+		assertEquals("denied", deny.getMessage());
+		assertEquals(Status.Code.PERMISSION_DENIED.value(), deny.getStatusCode());
+
+		OperationResult error = response.getResults(2);
+		assertEquals(Decision.ERROR, error.getDecision());
+		assertEquals(Status.Code.INVALID_ARGUMENT.value(), error.getStatusCode());
+	}
+
+	@Test
+	void adjudicateResourceOperations_aboveThreshold_adjudicatesInParallelAndPreservesOrder() throws Exception {
+		String[] names = new String[20];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = "op" + i;
+		}
+
+		when(adjudicator.adjudicate(any(), any(), any())).thenAnswer(invocation -> {
+			OperationRequest request = invocation.getArgument(2);
+			return DecisionCache.Decision.deny(7, request.getName());
+		});
+
+		service.adjudicateResourceOperations(batch(names), responseObserver);
+
+		BatchOperationResponse response = captureResponse();
+		assertEquals(names.length, response.getResultsCount());
+		for (int i = 0; i < names.length; i++) {
+			assertEquals(names[i], response.getResults(i).getMessage());
+		}
+		verify(adjudicator, times(names.length)).adjudicate(any(), any(), any());
+	}
+
+	@Test
+	void adjudicateResourceOperations_eventAppliedMidBatch_wholeBatchAtOneRevision() throws Exception {
+		List<Long> revisions = new CopyOnWriteArrayList<>();
+		CompletableFuture<Void> apply = new CompletableFuture<>();
+		when(adjudicator.adjudicate(any(), any(), any())).thenAnswer(invocation -> {
+			VersionedPolicy.PolicyVersion version = invocation.getArgument(0);
+			OperationRequest request = invocation.getArgument(2);
+			if (request.getName().equals("op0")) {
+				// the next revision is published while the batch is being adjudicated
+				CompletableFuture.runAsync(() -> {
+					try {
+						policy.apply(List.of(), 8);
+						apply.complete(null);
+					} catch (PMException e) {
+						apply.completeExceptionally(e);
+					}
+				});
+				while (policy.revision() != 8) {
+					Thread.onSpinWait();
+				}
+			}
+
+			revisions.add(version.revision());
+			return DecisionCache.Decision.deny(version.revision(), request.getName());
+		});
+
+		service.adjudicateResourceOperations(batch("op0", "op1", "op2"), responseObserver);
+
+		BatchOperationResponse response = captureResponse();
+		assertEquals(7, response.getRevision());
+		assertEquals(List.of(7L, 7L, 7L), revisions);
+
+		// the batch released its version so the writer could finish applying the new revision
+		apply.get(5, TimeUnit.SECONDS);
+		assertEquals(8, policy.revision());
+	}
+
+	@Test
+	void adjudicateResourceOperationStream_pipelinedRequests_responsesCorrelatedById() throws Exception {
+		// responses report the revision the decisions were made at, not the latest one
+		currentRevisionService.set(9);
+		when(adjudicator.adjudicate(any(), any(), any())).thenAnswer(invocation -> {
+			OperationRequest request = invocation.getArgument(2);
+			if (request.getName().equals("notResource")) {
+				throw new ResourceAdjudicator.OperationIsNotResourceOperationException();
+			}
+
+			return DecisionCache.Decision.deny(7, request.getName());
+		});
+
+		@SuppressWarnings("unchecked")
+		ServerCallStreamObserver<StreamOperationResponse> streamObserver = mock(ServerCallStreamObserver.class);
+		when(streamObserver.isReady()).thenReturn(true);
+
+		StreamObserver<StreamOperationRequest> requestObserver = service.adjudicateResourceOperationStream(streamObserver);
+		verify(streamObserver).disableAutoRequest();
+
+		requestObserver.onNext(streamRequest("1", "op1"));
+		requestObserver.onNext(streamRequest("2", "op2"));
+		requestObserver.onNext(streamRequest("3", "notResource"));
+		requestObserver.onCompleted();
+
+		ArgumentCaptor<StreamOperationResponse> captor = ArgumentCaptor.forClass(StreamOperationResponse.class);
+		verify(streamObserver, timeout(5000)).onCompleted();
+		verify(streamObserver, times(3)).onNext(captor.capture());
+		verify(streamObserver, never()).onError(any());
+
+		Map<String, OperationResult> results = captor.getAllValues().stream()
+				.collect(Collectors.toMap(StreamOperationResponse::getRequestId, StreamOperationResponse::getResult));
+		assertEquals("op1", results.get("1").getMessage());
+		assertEquals("op2", results.get("2").getMessage());
+		assertEquals(Decision.ERROR, results.get("3").getDecision());
+		assertEquals(Status.Code.INVALID_ARGUMENT.value(), results.get("3").getStatusCode());
+		captor.getAllValues().forEach(r -> assertEquals(7, r.getRevision()));
+	}
+
+	@Test
+	void adjudicateResourceOperationStream_transportNotReady_holdsBackRequests() throws Exception {
+		when(adjudicator.adjudicate(any(), any(), any())).thenReturn(DecisionCache.Decision.deny(7, "denied"));
+
+		@SuppressWarnings("unchecked")
+		ServerCallStreamObserver<StreamOperationResponse> streamObserver = mock(ServerCallStreamObserver.class);
+		when(streamObserver.isReady()).thenReturn(false);
+		ArgumentCaptor<Runnable> onReady = ArgumentCaptor.forClass(Runnable.class);
+
+		StreamObserver<StreamOperationRequest> requestObserver = service.adjudicateResourceOperationStream(streamObserver);
+		verify(streamObserver).setOnReadyHandler(onReady.capture());
+		verify(streamObserver).request(16);
+
+		requestObserver.onNext(streamRequest("1", "op1"));
+		verify(streamObserver, timeout(5000)).isReady();
+		verify(streamObserver).onNext(any());
+		verify(streamObserver, never()).request(1);
+
+		when(streamObserver.isReady()).thenReturn(true);
+		onReady.getValue().run();
+		verify(streamObserver).request(1);
+	}
+
+	@Test
+	void adjudicateResourceOperationStream_executorRejects_streamFailedAndSlotReleased() {
+		@SuppressWarnings("unchecked")
+		ServerCallStreamObserver<StreamOperationResponse> streamObserver = mock(ServerCallStreamObserver.class);
+		StreamObserver<StreamOperationRequest> requestObserver = service.adjudicateResourceOperationStream(streamObserver);
+		service.shutdown();
+
+		requestObserver.onNext(streamRequest("1", "op1"));
+		requestObserver.onCompleted();
+
+		ArgumentCaptor<Throwable> errCaptor = ArgumentCaptor.forClass(Throwable.class);
+		verify(streamObserver).onError(errCaptor.capture());
+		assertEquals(Status.Code.UNAVAILABLE, Status.fromThrowable(errCaptor.getValue()).getCode());
+		verify(streamObserver, never()).onCompleted();
+	}
+
+	private static StreamOperationRequest streamRequest(String id, String name) {
+		return StreamOperationRequest.newBuilder()
+				.setRequestId(id)
+				.setRequest(op(name))
+				.build();
+	}
+
+	private BatchOperationResponse captureResponse() {
+		ArgumentCaptor<BatchOperationResponse> captor = ArgumentCaptor.forClass(BatchOperationResponse.class);
+		verify(responseObserver).onNext(captor.capture());
+		verify(responseObserver).onCompleted();
+		verify(responseObserver, never()).onError(any());
+		return captor.getValue();
+	}
+
+	private static OperationRequest op(String name) {
+		return OperationRequest.newBuilder().setName(name).build();
+	}
+
+	private static BatchOperationRequest batch(String... names) {
+		BatchOperationRequest.Builder b = BatchOperationRequest.newBuilder();
+		for (String name : names) {
+			b.addRequests(op(name));
+		}
+		return b.build();
+	}
+
+	private static ResourcePDPConfig config(int parallelThreshold) {
+		ResourcePDPConfig config = new ResourcePDPConfig();
+		config.setBatchParallelThreshold(parallelThreshold);
+		config.setStreamMaxInFlight(16);
+		return config;
+	}
+}
@@ -1,6 +1,7 @@
 package gov.nist.csd.pm.pdp.resource;
 
 import gov.nist.csd.pm.core.common.exception.PMException;
+import gov.nist.csd.pm.core.epp.EventContext;
 import gov.nist.csd.pm.core.impl.grpc.util.FromProtoUtil;
 import gov.nist.csd.pm.core.impl.grpc.util.ToProtoUtil;
 import gov.nist.csd.pm.core.pap.PAP;
@@ -10,7 +11,16 @@ import gov.nist.csd.pm.core.pap.query.OperationsQuery;
 import gov.nist.csd.pm.core.pap.query.model.context.UserContext;
 import gov.nist.csd.pm.core.pdp.PDP;
 import gov.nist.csd.pm.core.pdp.UnauthorizedException;
+import gov.nist.csd.pm.pdp.resource.cache.DecisionCache;
+import gov.nist.csd.pm.pdp.resource.config.ResourcePDPConfig;
+import gov.nist.csd.pm.pdp.resource.dispatch.OperationDispatchTable;
+import gov.nist.csd.pm.pdp.resource.epp.EPPClient;
+import gov.nist.csd.pm.pdp.resource.policy.VersionedPolicy;
+import gov.nist.csd.pm.pdp.resource.privilege.PrivilegeIndex;
+import gov.nist.csd.pm.pdp.shared.auth.UserContextCache;
 import gov.nist.csd.pm.pdp.shared.auth.UserContextFromHeader;
+import gov.nist.csd.pm.pdp.shared.eventstore.CurrentRevisionService;
+import gov.nist.csd.pm.proto.v1.epp.EPPServiceGrpc;
 import gov.nist.csd.pm.proto.v1.model.Value;
 import gov.nist.csd.pm.proto.v1.model.ValueMap;
 import gov.nist.csd.pm.proto.v1.pdp.adjudication.AdjudicateOperationResponse;
@@ -27,12 +37,17 @@ import org.mockito.Mock;
 import org.mockito.MockedStatic;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.lang.reflect.Field;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -40,6 +55,8 @@ class ResourcePDPServiceTest {
 
 	@Mock private PDP pdp;
 	@Mock(answer = Answers.RETURNS_DEEP_STUBS) private PAP pap;
+	@Mock private UserContextCache userContextCache;
+	@Mock private EPPClient eppClient;
 
 	@Mock private StreamObserver<AdjudicateOperationResponse> responseObserver;
 
@@ -47,7 +64,18 @@ class ResourcePDPServiceTest {
 
 	@BeforeEach
 	void setUp() {
-		service = new ResourcePDPService(pdp, pap);
+		CurrentRevisionService currentRevisionService = new CurrentRevisionService();
+		service = new ResourcePDPService(
+				new ResourceAdjudicator(
+						versionedPolicy(),
+						currentRevisionService,
+						new DecisionCache(0, currentRevisionService),
+						userContextCache,
+						new PrivilegeIndex(0, false),
+						new OperationDispatchTable(),
+						eppClient
+				)
+		);
 	}
 
 	@Test
@@ -64,11 +92,10 @@ class ResourcePDPServiceTest {
 		Object pdpResult = "test";
 		Value resultValue = Value.newBuilder().setStringValue("test").build();
 
-		try (MockedStatic<UserContextFromHeader> header = mockStatic(UserContextFromHeader.class);
-		     MockedStatic<FromProtoUtil> fromUtil = mockStatic(FromProtoUtil.class);
+		try (MockedStatic<FromProtoUtil> fromUtil = mockStatic(FromProtoUtil.class);
 		     MockedStatic<ToProtoUtil> toUtil = mockStatic(ToProtoUtil.class)) {
 
-			header.when(() -> UserContextFromHeader.get(pap)).thenReturn(userCtx);
+			when(userContextCache.resolve(eq(pap), anyLong(), isNull(), isNull(), isNull())).thenReturn(resolved(userCtx));
 
 			var ops = pap.query().operations();
 			doReturn(resourceOp)
@@ -114,10 +141,9 @@ class ResourcePDPServiceTest {
 		UnauthorizedException unauth = mock(UnauthorizedException.class);
 		when(unauth.getMessage()).thenReturn("test exception");
 
-		try (MockedStatic<UserContextFromHeader> header = mockStatic(UserContextFromHeader.class);
-		     MockedStatic<FromProtoUtil> protoUtil = mockStatic(FromProtoUtil.class)) {
+		try (MockedStatic<FromProtoUtil> protoUtil = mockStatic(FromProtoUtil.class)) {
 
-			header.when(() -> UserContextFromHeader.get(pap)).thenReturn(userCtx);
+			when(userContextCache.resolve(eq(pap), anyLong(), isNull(), isNull(), isNull())).thenReturn(resolved(userCtx));
 
 			var ops = pap.query().operations();
 			doReturn(resourceOp)
@@ -160,10 +186,9 @@ class ResourcePDPServiceTest {
 
 		RuntimeException failure = new RuntimeException("test exception");
 
-		try (MockedStatic<UserContextFromHeader> header = mockStatic(UserContextFromHeader.class);
-		     MockedStatic<FromProtoUtil> protoUtil = mockStatic(FromProtoUtil.class)) {
+		try (MockedStatic<FromProtoUtil> protoUtil = mockStatic(FromProtoUtil.class)) {
 
-			header.when(() -> UserContextFromHeader.get(pap)).thenReturn(userCtx);
+			when(userContextCache.resolve(eq(pap), anyLong(), isNull(), isNull(), isNull())).thenReturn(resolved(userCtx));
 
 			OperationsQuery ops = pap.query().operations();
 			doReturn(resourceOp)
@@ -201,29 +226,166 @@ class ResourcePDPServiceTest {
 
 		AdminOperation<?> nonResourceOp = mock(AdminOperation.class);
 
-		try (MockedStatic<UserContextFromHeader> header = mockStatic(UserContextFromHeader.class)) {
+		when(userContextCache.resolve(eq(pap), anyLong(), isNull(), isNull(), isNull())).thenReturn(resolved(userCtx));
 
-			header.when(() -> UserContextFromHeader.get(pap)).thenReturn(userCtx);
+		OperationsQuery ops = pap.query().operations();
+		doReturn(nonResourceOp)
+				.when(ops)
+				.getOperation("op1");
 
-			OperationsQuery ops = pap.query().operations();
-			doReturn(nonResourceOp)
+		service.adjudicateResourceOperation(request, responseObserver);
+
+		ArgumentCaptor<Throwable> errCaptor = ArgumentCaptor.forClass(Throwable.class);
+		verify(responseObserver).onError(errCaptor.capture());
+
+		Status status = Status.fromThrowable(errCaptor.getValue());
+		assertEquals(Status.Code.INVALID_ARGUMENT, status.getCode());
+		assertEquals(
+				"only subclasses of ResourceOperation are allowed to be invoked in the resource-pdp",
+				status.getDescription()
+		);
+
+		verify(responseObserver, never()).onNext(any());
+		verify(responseObserver, never()).onCompleted();
+	}
+
+	@Test
+	void adjudicateResourceOperation_decisionCacheEnabled_secondCallServedFromCache() throws PMException {
+		CurrentRevisionService currentRevisionService = new CurrentRevisionService();
+		currentRevisionService.set(3);
+		DecisionCache decisionCache = new DecisionCache(10, currentRevisionService);
+		VersionedPolicy policy = versionedPolicy();
+		policy.resync(3);
+		service = new ResourcePDPService(new ResourceAdjudicator(
+				policy,
+				currentRevisionService,
+				decisionCache,
+				userContextCache,
+				new PrivilegeIndex(0, false),
+				new OperationDispatchTable(),
+				eppClient
+		));
+
+		OperationRequest request = OperationRequest.newBuilder()
+				.setName("op1")
+				.setArgs(ValueMap.newBuilder().build())
+				.build();
+
+		UserContext userCtx = mock(UserContext.class);
+		ResourceOperation<?> resourceOp = mock(ResourceOperation.class);
+		Map<String, Object> argsObj = Map.of("a", "test");
+		Value resultValue = Value.newBuilder().setStringValue("test").build();
+
+		try (MockedStatic<FromProtoUtil> fromUtil = mockStatic(FromProtoUtil.class);
+		     MockedStatic<ToProtoUtil> toUtil = mockStatic(ToProtoUtil.class)) {
+
+			when(userContextCache.resolve(eq(pap), anyLong(), isNull(), isNull(), isNull())).thenReturn(resolved(userCtx));
+
+			var ops = pap.query().operations();
+			doReturn(resourceOp)
 					.when(ops)
 					.getOperation("op1");
 
+			fromUtil.when(() -> FromProtoUtil.fromValueMap(any(ValueMap.class)))
+					.thenReturn(argsObj);
+
+			when(pdp.adjudicateOperation(eq(userCtx), eq("op1"), eq(argsObj)))
+					.thenReturn("test");
+
+			toUtil.when(() -> ToProtoUtil.toValueProto("test"))
+					.thenReturn(resultValue);
+
+			service.adjudicateResourceOperation(request, responseObserver);
 			service.adjudicateResourceOperation(request, responseObserver);
 
-			ArgumentCaptor<Throwable> errCaptor = ArgumentCaptor.forClass(Throwable.class);
-			verify(responseObserver).onError(errCaptor.capture());
+			verify(pdp, times(1)).adjudicateOperation(userCtx, "op1", argsObj);
+			verify(responseObserver, times(2)).onNext(any());
+			verify(responseObserver, times(2)).onCompleted();
+			assertEquals(1, decisionCache.hitCount());
 
-			Status status = Status.fromThrowable(errCaptor.getValue());
-			assertEquals(Status.Code.INVALID_ARGUMENT, status.getCode());
-			assertEquals(
-					"only subclasses of ResourceOperation are allowed to be invoked in the resource-pdp",
-					status.getDescription()
-			);
+			// a new revision invalidates the cached decision
+			currentRevisionService.set(4);
+			service.adjudicateResourceOperation(request, responseObserver);
+			verify(pdp, times(2)).adjudicateOperation(userCtx, "op1", argsObj);
+		}
+	}
 
-			verify(responseObserver, never()).onNext(any());
-			verify(responseObserver, never()).onCompleted();
+	@Test
+	void adjudicateResourceOperation_cachedDecision_sendsEventToEPP() throws Exception {
+		CurrentRevisionService currentRevisionService = new CurrentRevisionService();
+		currentRevisionService.set(3);
+		VersionedPolicy policy = versionedPolicy();
+		policy.resync(3);
+		EPPServiceGrpc.EPPServiceBlockingStub blockingStub = mock(EPPServiceGrpc.EPPServiceBlockingStub.class);
+		EPPClient eppClient = new EPPClient(policy, mock(ResourcePDPConfig.class));
+		Field stub = EPPClient.class.getDeclaredField("blockingStub");
+		stub.setAccessible(true);
+		stub.set(eppClient, blockingStub);
+		DecisionCache decisionCache = new DecisionCache(10, currentRevisionService);
+		service = new ResourcePDPService(new ResourceAdjudicator(
+				policy,
+				currentRevisionService,
+				decisionCache,
+				userContextCache,
+				new PrivilegeIndex(0, false),
+				new OperationDispatchTable(),
+				eppClient
+		));
+
+		OperationRequest request = OperationRequest.newBuilder()
+				.setName("op1")
+				.setArgs(ValueMap.newBuilder().build())
+				.build();
+
+		UserContext userCtx = mock(UserContext.class);
+		ResourceOperation<?> resourceOp = mock(ResourceOperation.class);
+		Map<String, Object> argsObj = Map.of("a", "test");
+		EventContext eventCtx = mock(EventContext.class);
+		gov.nist.csd.pm.proto.v1.epp.EventContext eventCtxProto =
+				gov.nist.csd.pm.proto.v1.epp.EventContext.getDefaultInstance();
+
+		try (MockedStatic<FromProtoUtil> fromUtil = mockStatic(FromProtoUtil.class);
+		     MockedStatic<ToProtoUtil> toUtil = mockStatic(ToProtoUtil.class)) {
+
+			when(userContextCache.resolve(eq(pap), anyLong(), isNull(), isNull(), isNull())).thenReturn(resolved(userCtx));
+
+			var ops = pap.query().operations();
+			doReturn(resourceOp)
+					.when(ops)
+					.getOperation("op1");
+
+			fromUtil.when(() -> FromProtoUtil.fromValueMap(any(ValueMap.class)))
+					.thenReturn(argsObj);
+
+			// the PDP publishes the operation's event to its subscribers, which is how obligations are triggered
+			when(pdp.adjudicateOperation(eq(userCtx), eq("op1"), eq(argsObj)))
+					.thenAnswer(invocation -> {
+						eppClient.processEvent(eventCtx);
+						return null;
+					});
+
+			toUtil.when(() -> ToProtoUtil.toEventContextProto(eventCtx))
+					.thenReturn(eventCtxProto);
+
+			service.adjudicateResourceOperation(request, responseObserver);
+			service.adjudicateResourceOperation(request, responseObserver);
+
+			verify(pdp, times(1)).adjudicateOperation(userCtx, "op1", argsObj);
+			assertEquals(1, decisionCache.hitCount());
+			verify(blockingStub, times(2)).processEvent(eventCtxProto);
 		}
 	}
-}
\ No newline at end of file
+
+	private static UserContextFromHeader.ResolvedUser resolved(UserContext userCtx) {
+		return new UserContextFromHeader.ResolvedUser(userCtx, null, Set.of(), Set.of());
+	}
+
+	private VersionedPolicy versionedPolicy() {
+		// both copies share the mocks, only the published one is used by the adjudicator
+		return new VersionedPolicy(
+				new VersionedPolicy.Replica(pap, pdp),
+				new VersionedPolicy.Replica(pap, pdp),
+				List.of()
+		);
+	}
+}
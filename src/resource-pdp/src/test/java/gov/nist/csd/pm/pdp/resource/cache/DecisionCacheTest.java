@@ -0,0 +1,141 @@
+package gov.nist.csd.pm.pdp.resource.cache;
+
+import gov.nist.csd.pm.pdp.shared.eventstore.CurrentRevisionService;
+import gov.nist.csd.pm.proto.v1.model.Value;
+import gov.nist.csd.pm.proto.v1.model.ValueMap;
+import gov.nist.csd.pm.proto.v1.pdp.adjudication.AdjudicateOperationResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DecisionCacheTest {
+
+    private CurrentRevisionService currentRevisionService;
+
+    @BeforeEach
+    void setUp() {
+        currentRevisionService = new CurrentRevisionService();
+        currentRevisionService.set(5);
+    }
+
+    @Test
+    void get_afterPutAtCurrentRevision_returnsDecision() {
+        DecisionCache cache = new DecisionCache(10, currentRevisionService);
+        DecisionCache.Key key = key("u1", "read", "o1");
+        DecisionCache.Decision decision = DecisionCache.Decision.permit(5, response("o1"));
+
+        cache.put(key, decision);
+
+        assertEquals(decision, cache.get(key));
+        assertEquals(1, cache.hitCount());
+        assertEquals(0, cache.missCount());
+    }
+
+    @Test
+    void get_argsInDifferentOrder_sameKey() {
+        DecisionCache cache = new DecisionCache(10, currentRevisionService);
+        ValueMap a = ValueMap.newBuilder()
+                .putValues("a", Value.newBuilder().setStringValue("1").build())
+                .putValues("b", Value.newBuilder().setStringValue("2").build())
+                .build();
+        ValueMap b = ValueMap.newBuilder()
+                .putValues("b", Value.newBuilder().setStringValue("2").build())
+                .putValues("a", Value.newBuilder().setStringValue("1").build())
+                .build();
+
+        cache.put(new DecisionCache.Key("u1", null, null, "read", a), DecisionCache.Decision.deny(5, "denied"));
+
+        DecisionCache.Decision decision = cache.get(new DecisionCache.Key("u1", null, null, "read", b));
+        assertNotNull(decision);
+        assertFalse(decision.isPermitted());
+        assertEquals("denied", decision.deniedReason());
+    }
+
+    @Test
+    void put_revisionMovedDuringAdjudication_doesNotCache() {
+        DecisionCache cache = new DecisionCache(10, currentRevisionService);
+        DecisionCache.Key key = key("u1", "read", "o1");
+
+        cache.put(key, DecisionCache.Decision.permit(4, response("o1")));
+
+        assertNull(cache.get(key));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void get_afterRevisionAdvances_missesAndInvalidates() {
+        DecisionCache cache = new DecisionCache(10, currentRevisionService);
+        DecisionCache.Key key = key("u1", "read", "o1");
+        cache.put(key, DecisionCache.Decision.permit(5, response("o1")));
+
+        currentRevisionService.set(6);
+
+        assertNull(cache.get(key));
+        assertEquals(1, cache.missCount());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void invalidate_removesEntriesBeforeRevision() {
+        DecisionCache cache = new DecisionCache(10, currentRevisionService);
+        cache.put(key("u1", "read", "o1"), DecisionCache.Decision.permit(5, response("o1")));
+        cache.put(key("u1", "read", "o2"), DecisionCache.Decision.permit(5, response("o2")));
+
+        cache.invalidate(6);
+
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.invalidationCount());
+    }
+
+    @Test
+    void put_overMaxSize_evictsLeastRecentlyUsed() {
+        DecisionCache cache = new DecisionCache(2, currentRevisionService);
+        DecisionCache.Key k1 = key("u1", "read", "o1");
+        DecisionCache.Key k2 = key("u1", "read", "o2");
+        DecisionCache.Key k3 = key("u1", "read", "o3");
+
+        cache.put(k1, DecisionCache.Decision.permit(5, response("o1")));
+        cache.put(k2, DecisionCache.Decision.permit(5, response("o2")));
+
+        // touch k1 so k2 is the least recently used
+        cache.get(k1);
+        cache.put(k3, DecisionCache.Decision.permit(5, response("o3")));
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.evictionCount());
+        assertNotNull(cache.get(k1));
+        assertNull(cache.get(k2));
+        assertNotNull(cache.get(k3));
+    }
+
+    @Test
+    void disabled_neverCaches() {
+        DecisionCache cache = new DecisionCache(0, currentRevisionService);
+        DecisionCache.Key key = key("u1", "read", "o1");
+
+        cache.put(key, DecisionCache.Decision.permit(5, response("o1")));
+
+        assertFalse(cache.isEnabled());
+        assertNull(cache.get(key));
+        assertEquals(0, cache.size());
+    }
+
+    private static DecisionCache.Key key(String user, String op, String target) {
+        return new DecisionCache.Key(
+                user,
+                null,
+                null,
+                op,
+                ValueMap.newBuilder()
+                        .putValues("target", Value.newBuilder().setStringValue(target).build())
+                        .build()
+        );
+    }
+
+    private static AdjudicateOperationResponse response(String value) {
+        return AdjudicateOperationResponse.newBuilder()
+                .setValue(Value.newBuilder().setStringValue(value).build())
+                .build();
+    }
+}
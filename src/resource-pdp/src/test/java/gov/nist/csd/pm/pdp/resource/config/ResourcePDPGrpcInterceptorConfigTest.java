@@ -2,11 +2,16 @@ package gov.nist.csd.pm.pdp.resource.config;
 
 import gov.nist.csd.pm.pdp.shared.eventstore.CurrentRevisionService;
 import gov.nist.csd.pm.pdp.shared.eventstore.LatestRevisionTracker;
+import gov.nist.csd.pm.pdp.shared.grpc.GrpcServerConfig;
+import gov.nist.csd.pm.pdp.shared.grpc.GrpcServerExecutorConfigurer;
 import gov.nist.csd.pm.pdp.shared.interceptor.RevisionConsistencyInterceptor;
 import io.grpc.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -20,6 +25,7 @@ class ResourcePDPGrpcInterceptorConfigTest {
     private ResourcePDPConfig resourcePDPConfig;
     private CurrentRevisionService currentRevisionService;
     private LatestRevisionTracker latestRevisionTracker;
+    private GrpcServerExecutorConfigurer grpcServerExecutorConfigurer;
 
     @BeforeEach
     void setUp() throws InterruptedException, TimeoutException {
@@ -27,7 +33,8 @@ class ResourcePDPGrpcInterceptorConfigTest {
         resourcePDPConfig = new ResourcePDPConfig("localhost", 9090, 1000);
         currentRevisionService = new CurrentRevisionService();
         latestRevisionTracker = mock(LatestRevisionTracker.class);
-        when(latestRevisionTracker.get(anyLong())).thenReturn(-1L);
+        grpcServerExecutorConfigurer = new GrpcServerExecutorConfigurer(new GrpcServerConfig(false));
+        when(latestRevisionTracker.latestRevisionFuture(anyLong())).thenReturn(CompletableFuture.completedFuture(-1L));
     }
 
     @Test
@@ -35,7 +42,8 @@ class ResourcePDPGrpcInterceptorConfigTest {
         RevisionConsistencyInterceptor interceptor = configBean.consistencyInterceptor(
                 resourcePDPConfig,
                 currentRevisionService,
-                latestRevisionTracker
+                latestRevisionTracker,
+                grpcServerExecutorConfigurer
         );
 
         assertNotNull(interceptor, "Interceptor should not be null");
@@ -44,12 +52,13 @@ class ResourcePDPGrpcInterceptorConfigTest {
     @Test
     void consistencyInterceptor_hasNoExcludedMethods() throws InterruptedException, TimeoutException {
         currentRevisionService.set(10);
-        when(latestRevisionTracker.get(anyLong())).thenReturn(10L);
+        when(latestRevisionTracker.latestRevisionFuture(anyLong())).thenReturn(CompletableFuture.completedFuture(10L));
 
         RevisionConsistencyInterceptor interceptor = configBean.consistencyInterceptor(
                 resourcePDPConfig,
                 currentRevisionService,
-                latestRevisionTracker
+                latestRevisionTracker,
+                grpcServerExecutorConfigurer
         );
 
         AtomicBoolean handlerCalled = new AtomicBoolean(false);
@@ -64,18 +73,19 @@ class ResourcePDPGrpcInterceptorConfigTest {
         interceptor.interceptCall(call, new Metadata(), handler);
 
         assertTrue(handlerCalled.get(), "Handler should be called");
-        verify(latestRevisionTracker).get(anyLong());
+        verify(latestRevisionTracker).latestRevisionFuture(anyLong());
     }
 
     @Test
     void consistencyInterceptor_checksConsistencyForAllMethods() throws InterruptedException, TimeoutException {
         currentRevisionService.set(10);
-        when(latestRevisionTracker.get(anyLong())).thenReturn(10L);
+        when(latestRevisionTracker.latestRevisionFuture(anyLong())).thenReturn(CompletableFuture.completedFuture(10L));
 
         RevisionConsistencyInterceptor interceptor = configBean.consistencyInterceptor(
                 resourcePDPConfig,
                 currentRevisionService,
-                latestRevisionTracker
+                latestRevisionTracker,
+                grpcServerExecutorConfigurer
         );
 
         String[] methodNames = {
@@ -86,7 +96,7 @@ class ResourcePDPGrpcInterceptorConfigTest {
 
         for (String methodName : methodNames) {
             reset(latestRevisionTracker);
-            when(latestRevisionTracker.get(anyLong())).thenReturn(10L);
+            when(latestRevisionTracker.latestRevisionFuture(anyLong())).thenReturn(CompletableFuture.completedFuture(10L));
 
             AtomicBoolean handlerCalled = new AtomicBoolean(false);
             ServerCallHandler<String, String> handler = (call, headers) -> {
@@ -98,20 +108,21 @@ class ResourcePDPGrpcInterceptorConfigTest {
             interceptor.interceptCall(call, new Metadata(), handler);
 
             assertTrue(handlerCalled.get(), "Handler should be called for: " + methodName);
-            verify(latestRevisionTracker).get(anyLong());
+            verify(latestRevisionTracker).latestRevisionFuture(anyLong());
         }
     }
 
     @Test
     void consistencyInterceptor_blocksWhenNotCaughtUp() throws InterruptedException, TimeoutException {
         currentRevisionService.set(5);
-        when(latestRevisionTracker.get(anyLong())).thenReturn(100L);
+        when(latestRevisionTracker.latestRevisionFuture(anyLong())).thenReturn(CompletableFuture.completedFuture(100L));
         resourcePDPConfig = new ResourcePDPConfig("localhost", 9090, 50);
 
         RevisionConsistencyInterceptor interceptor = configBean.consistencyInterceptor(
                 resourcePDPConfig,
                 currentRevisionService,
-                latestRevisionTracker
+                latestRevisionTracker,
+                grpcServerExecutorConfigurer
         );
 
         AtomicBoolean handlerCalled = new AtomicBoolean(false);
@@ -124,6 +135,7 @@ class ResourcePDPGrpcInterceptorConfigTest {
         interceptor.interceptCall(call, new Metadata(), handler);
 
         assertFalse(handlerCalled.get(), "Handler should not be called when not caught up");
+        call.awaitClosed();
         assertNotNull(call.closedStatus, "Call should be closed with error");
         assertEquals(Status.Code.UNAVAILABLE, call.closedStatus.getCode());
     }
@@ -131,12 +143,13 @@ class ResourcePDPGrpcInterceptorConfigTest {
     @Test
     void consistencyInterceptor_proceedsWhenCaughtUp() throws InterruptedException, TimeoutException {
         currentRevisionService.set(15);
-        when(latestRevisionTracker.get(anyLong())).thenReturn(10L);
+        when(latestRevisionTracker.latestRevisionFuture(anyLong())).thenReturn(CompletableFuture.completedFuture(10L));
 
         RevisionConsistencyInterceptor interceptor = configBean.consistencyInterceptor(
                 resourcePDPConfig,
                 currentRevisionService,
-                latestRevisionTracker
+                latestRevisionTracker,
+                grpcServerExecutorConfigurer
         );
 
         AtomicBoolean handlerCalled = new AtomicBoolean(false);
@@ -156,17 +169,18 @@ class ResourcePDPGrpcInterceptorConfigTest {
     void consistencyInterceptor_usesConfiguredTimeout() throws InterruptedException, TimeoutException {
         resourcePDPConfig = new ResourcePDPConfig("localhost", 9090, 200);
         currentRevisionService.set(5);
-        when(latestRevisionTracker.get(anyLong())).thenReturn(10L);
+        when(latestRevisionTracker.latestRevisionFuture(anyLong())).thenReturn(CompletableFuture.completedFuture(10L));
 
         RevisionConsistencyInterceptor interceptor = configBean.consistencyInterceptor(
                 resourcePDPConfig,
                 currentRevisionService,
-                latestRevisionTracker
+                latestRevisionTracker,
+                grpcServerExecutorConfigurer
         );
 
-        AtomicBoolean handlerCalled = new AtomicBoolean(false);
+        CountDownLatch handlerCalled = new CountDownLatch(1);
         ServerCallHandler<String, String> handler = (call, headers) -> {
-            handlerCalled.set(true);
+            handlerCalled.countDown();
             return new ServerCall.Listener<>() {};
         };
 
@@ -190,12 +204,13 @@ class ResourcePDPGrpcInterceptorConfigTest {
             Thread.currentThread().interrupt();
         }
 
-        assertTrue(handlerCalled.get(), "Handler should be called after catching up within timeout");
+        assertTrue(handlerCalled.await(1, TimeUnit.SECONDS), "Handler should be called after catching up within timeout");
     }
 
     private static class TestServerCall<ReqT, RespT> extends ServerCall<ReqT, RespT> {
         private final String fullMethodName;
-        Status closedStatus;
+        private final CountDownLatch closed = new CountDownLatch(1);
+        volatile Status closedStatus;
 
         TestServerCall(String fullMethodName) {
             this.fullMethodName = fullMethodName;
@@ -213,6 +228,11 @@ class ResourcePDPGrpcInterceptorConfigTest {
         @Override
         public void close(Status status, Metadata trailers) {
             this.closedStatus = status;
+            closed.countDown();
+        }
+
+        void awaitClosed() throws InterruptedException {
+            assertTrue(closed.await(1, TimeUnit.SECONDS), "Call should be closed");
         }
 
         @Override
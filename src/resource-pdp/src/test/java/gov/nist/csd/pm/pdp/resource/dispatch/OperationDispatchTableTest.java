@@ -0,0 +1,117 @@
+package gov.nist.csd.pm.pdp.resource.dispatch;
+
+import gov.nist.csd.pm.core.pap.PAP;
+import gov.nist.csd.pm.core.pap.operation.AdminOperation;
+import gov.nist.csd.pm.core.pap.operation.ResourceOperation;
+import gov.nist.csd.pm.core.pap.operation.arg.type.StringType;
+import gov.nist.csd.pm.core.pap.operation.param.FormalParameter;
+import gov.nist.csd.pm.pdp.proto.event.NodeDeleted;
+import gov.nist.csd.pm.pdp.proto.event.OperationDeleted;
+import gov.nist.csd.pm.pdp.proto.event.PMEvent;
+import gov.nist.csd.pm.proto.v1.model.Value;
+import gov.nist.csd.pm.proto.v1.model.ValueMap;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OperationDispatchTableTest {
+
+	@Mock(answer = Answers.RETURNS_DEEP_STUBS) private PAP pap;
+
+	private ResourceOperation<?> resourceOp;
+	private OperationDispatchTable table;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		FormalParameter<?> path = mock(FormalParameter.class);
+		lenient().when(path.getName()).thenReturn("path");
+		lenient().doReturn(mock(StringType.class)).when(path).getType();
+
+		resourceOp = mock(ResourceOperation.class);
+		lenient().doReturn(List.of(path)).when(resourceOp).getFormalParameters();
+		AdminOperation<?> adminOp = mock(AdminOperation.class);
+
+		lenient().doReturn(resourceOp).when(pap.query().operations()).getOperation("read_file");
+		lenient().doReturn(adminOp).when(pap.query().operations()).getOperation("create_file");
+
+		table = new OperationDispatchTable();
+	}
+
+	@Test
+	void lookup_compilesOnceAndServesFromTable() throws Exception {
+		OperationDispatchTable.CompiledOperation first = table.lookup(pap, 1, "read_file");
+		OperationDispatchTable.CompiledOperation second = table.lookup(pap, 2, "read_file");
+
+		assertSame(resourceOp, first.operation());
+		assertSame(first, second);
+		assertEquals(1, table.hitCount());
+		verify(pap.query().operations(), times(1)).getOperation("read_file");
+	}
+
+	@Test
+	void lookup_nonResourceOperation_returnsNullAndIsCached() throws Exception {
+		assertNull(table.lookup(pap, 1, "create_file"));
+		assertNull(table.lookup(pap, 1, "create_file"));
+
+		verify(pap.query().operations(), times(1)).getOperation("create_file");
+	}
+
+	@Test
+	void decodeArgs_stringSignature_readsStringsFromTheRequest() throws Exception {
+		OperationDispatchTable.CompiledOperation compiled = table.lookup(pap, 1, "read_file");
+
+		Map<String, Object> args = compiled.decodeArgs(ValueMap.newBuilder()
+				                                              .putValues("path", Value.newBuilder().setStringValue("/a").build())
+				                                              .build());
+
+		assertEquals(Map.of("path", "/a"), args);
+	}
+
+	@Test
+	void operationEvents_rebuildTable_otherEventsDoNot() throws Exception {
+		table.lookup(pap, 1, "read_file");
+
+		table.onEventApplied(PMEvent.newBuilder()
+				                     .setNodeDeleted(NodeDeleted.newBuilder().setId(1).build())
+				                     .build(), 2);
+		table.lookup(pap, 2, "read_file");
+		verify(pap.query().operations(), times(1)).getOperation("read_file");
+
+		table.onEventApplied(PMEvent.newBuilder()
+				                     .setOperationDeleted(OperationDeleted.newBuilder().setName("other").build())
+				                     .build(), 3);
+		assertEquals(0, table.size());
+		table.lookup(pap, 3, "read_file");
+		verify(pap.query().operations(), times(2)).getOperation("read_file");
+	}
+
+	@Test
+	void compiledAtOldRevisionAfterOperationChange_notStored() throws Exception {
+		table.onEventApplied(PMEvent.newBuilder()
+				                     .setOperationDeleted(OperationDeleted.newBuilder().setName("read_file").build())
+				                     .build(), 2);
+
+		table.lookup(pap, 1, "read_file");
+
+		assertEquals(0, table.size());
+	}
+
+	@Test
+	void entryCompiledAtLaterRevision_notUsedForEarlierRevision() throws Exception {
+		table.lookup(pap, 5, "read_file");
+		table.lookup(pap, 4, "read_file");
+
+		assertEquals(0, table.hitCount());
+		verify(pap.query().operations(), times(2)).getOperation("read_file");
+	}
+}
@@ -4,16 +4,23 @@ import gov.nist.csd.pm.core.epp.EventContext;
 import gov.nist.csd.pm.core.impl.grpc.util.ToProtoUtil;
 import gov.nist.csd.pm.core.pap.PAP;
 import gov.nist.csd.pm.core.pdp.PDP;
+import gov.nist.csd.pm.pdp.proto.epp.BatchEPPServiceGrpc;
+import gov.nist.csd.pm.pdp.proto.epp.EventContextBatch;
+import gov.nist.csd.pm.pdp.proto.epp.ProcessEventsResponse;
 import gov.nist.csd.pm.pdp.resource.config.ResourcePDPConfig;
+import gov.nist.csd.pm.pdp.resource.policy.VersionedPolicy;
 import gov.nist.csd.pm.proto.v1.epp.EPPServiceGrpc;
 import gov.nist.csd.pm.proto.v1.epp.ProcessEventResponse;
 import gov.nist.csd.pm.proto.v1.model.Value;
 import gov.nist.csd.pm.proto.v1.model.ValueMap;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.MockedStatic;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -22,8 +29,11 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.Mockito.*;
 
@@ -32,15 +42,23 @@ class EPPClientTest {
 
 	@Mock private PDP pdp;
 	@Mock private PAP pap;
+	@Mock private PDP secondaryPdp;
+	@Mock private PAP secondaryPap;
 	@Mock private ResourcePDPConfig resourcePDPConfig;
 
 	@Mock private EPPServiceGrpc.EPPServiceBlockingStub blockingStub;
+	@Mock private BatchEPPServiceGrpc.BatchEPPServiceBlockingStub batchStub;
 
 	private EPPClient client;
 
 	@BeforeEach
 	void setUp() {
-		client = new EPPClient(pdp, pap, resourcePDPConfig);
+		VersionedPolicy policy = new VersionedPolicy(
+				new VersionedPolicy.Replica(pap, pdp),
+				new VersionedPolicy.Replica(secondaryPap, secondaryPdp),
+				List.of()
+		);
+		client = new EPPClient(policy, resourcePDPConfig);
 	}
 
 	@Test
@@ -65,6 +83,7 @@ class EPPClientTest {
 			client.subscribeToPDP();
 
 			verify(pdp).addEventSubscriber(client);
+			verify(secondaryPdp).addEventSubscriber(client);
 			grpc.verify(() -> EPPServiceGrpc.newBlockingStub(channel));
 
 			assertNotNull(readField(client, "blockingStub"));
@@ -108,6 +127,203 @@ class EPPClientTest {
 		}
 	}
 
+	@Test
+	void processEvent_whenAsync_sendsQueuedEventsAsOneBatch() throws Exception {
+		writeField(client, "blockingStub", blockingStub);
+		asyncConfig(10, 3, 5000, 0);
+		when(batchStub.processEvents(any())).thenReturn(ProcessEventsResponse.getDefaultInstance());
+
+		EventContext eventCtx = mock(EventContext.class);
+		gov.nist.csd.pm.proto.v1.epp.EventContext protoCtx = gov.nist.csd.pm.proto.v1.epp.EventContext.getDefaultInstance();
+
+		try (MockedStatic<ToProtoUtil> protoUtil = mockStatic(ToProtoUtil.class)) {
+			protoUtil.when(() -> ToProtoUtil.toEventContextProto(eventCtx)).thenReturn(protoCtx);
+
+			client.startAsyncDispatch(batchStub);
+			client.processEvent(eventCtx);
+			client.processEvent(eventCtx);
+			client.processEvent(eventCtx);
+
+			// the batch is full before the window closes
+			verify(batchStub, timeout(2000)).processEvents(argThat((EventContextBatch b) -> b.getEventsCount() == 3));
+			verify(blockingStub, never()).processEvent(any());
+			assertEquals(3, client.enqueuedCount());
+		} finally {
+			client.shutdown();
+		}
+
+		assertEquals(3, client.sentCount());
+		assertEquals(1, client.batchCount());
+	}
+
+	@Test
+	void processEvent_whenAsync_andBatchRejected_sendsEventsIndividually() throws Exception {
+		writeField(client, "blockingStub", blockingStub);
+		asyncConfig(10, 2, 5000, 0);
+		when(batchStub.processEvents(any())).thenThrow(Status.FAILED_PRECONDITION.asRuntimeException());
+		when(blockingStub.processEvent(any())).thenReturn(ProcessEventResponse.getDefaultInstance());
+
+		EventContext eventCtx = mock(EventContext.class);
+		gov.nist.csd.pm.proto.v1.epp.EventContext protoCtx = gov.nist.csd.pm.proto.v1.epp.EventContext.getDefaultInstance();
+
+		try (MockedStatic<ToProtoUtil> protoUtil = mockStatic(ToProtoUtil.class)) {
+			protoUtil.when(() -> ToProtoUtil.toEventContextProto(eventCtx)).thenReturn(protoCtx);
+
+			client.startAsyncDispatch(batchStub);
+			client.processEvent(eventCtx);
+			client.processEvent(eventCtx);
+
+			verify(blockingStub, timeout(2000).times(2)).processEvent(protoCtx);
+		} finally {
+			client.shutdown();
+		}
+
+		assertEquals(2, client.sentCount());
+		assertEquals(0, client.failedCount());
+	}
+
+	@Test
+	void processEvent_whenAsync_andBatchMayHaveCommitted_doesNotResend() throws Exception {
+		writeField(client, "blockingStub", blockingStub);
+		asyncConfig(10, 2, 5000, 0);
+		when(batchStub.processEvents(any())).thenThrow(Status.DEADLINE_EXCEEDED.asRuntimeException());
+
+		EventContext eventCtx = mock(EventContext.class);
+		gov.nist.csd.pm.proto.v1.epp.EventContext protoCtx = gov.nist.csd.pm.proto.v1.epp.EventContext.getDefaultInstance();
+
+		try (MockedStatic<ToProtoUtil> protoUtil = mockStatic(ToProtoUtil.class)) {
+			protoUtil.when(() -> ToProtoUtil.toEventContextProto(eventCtx)).thenReturn(protoCtx);
+
+			client.startAsyncDispatch(batchStub);
+			client.processEvent(eventCtx);
+			client.processEvent(eventCtx);
+
+			verify(batchStub, timeout(2000)).processEvents(any());
+		} finally {
+			client.shutdown();
+		}
+
+		verify(blockingStub, never()).processEvent(any());
+		assertEquals(0, client.sentCount());
+		assertEquals(2, client.failedCount());
+	}
+
+	@Test
+	void processEvent_whenAsync_andQueueFullPastTimeout_failsWithoutSending() throws Exception {
+		writeField(client, "blockingStub", blockingStub);
+		asyncConfig(1, 1, 0, 10);
+
+		EventContext e1 = mock(EventContext.class);
+		EventContext e2 = mock(EventContext.class);
+		EventContext e3 = mock(EventContext.class);
+		gov.nist.csd.pm.proto.v1.epp.EventContext p1 = mock(gov.nist.csd.pm.proto.v1.epp.EventContext.class);
+		gov.nist.csd.pm.proto.v1.epp.EventContext p2 = mock(gov.nist.csd.pm.proto.v1.epp.EventContext.class);
+		gov.nist.csd.pm.proto.v1.epp.EventContext p3 = mock(gov.nist.csd.pm.proto.v1.epp.EventContext.class);
+
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		when(blockingStub.processEvent(any())).thenAnswer(invocation -> {
+			if (invocation.getArgument(0) == p1) {
+				started.countDown();
+				release.await(5, TimeUnit.SECONDS);
+			}
+
+			return ProcessEventResponse.getDefaultInstance();
+		});
+
+		try (MockedStatic<ToProtoUtil> protoUtil = mockStatic(ToProtoUtil.class)) {
+			protoUtil.when(() -> ToProtoUtil.toEventContextProto(e1)).thenReturn(p1);
+			protoUtil.when(() -> ToProtoUtil.toEventContextProto(e2)).thenReturn(p2);
+			protoUtil.when(() -> ToProtoUtil.toEventContextProto(e3)).thenReturn(p3);
+
+			client.startAsyncDispatch(batchStub);
+
+			// the dispatcher blocks sending e1, e2 fills the queue, and e3 is rejected after the enqueue timeout
+			client.processEvent(e1);
+			assertTrue(started.await(2, TimeUnit.SECONDS));
+			client.processEvent(e2);
+			StatusRuntimeException e = assertThrows(StatusRuntimeException.class, () -> client.processEvent(e3));
+
+			assertEquals(Status.Code.RESOURCE_EXHAUSTED, e.getStatus().getCode());
+			assertEquals(1, client.backpressureCount());
+			assertEquals(1, client.rejectedCount());
+			assertEquals(1, client.queueDepth());
+
+			release.countDown();
+			verify(blockingStub, timeout(2000)).processEvent(p2);
+		} finally {
+			release.countDown();
+			client.shutdown();
+		}
+
+		verify(blockingStub, never()).processEvent(p3);
+		assertEquals(2, client.sentCount());
+		verifyNoInteractions(batchStub);
+	}
+
+	@Test
+	void processEvent_whenAsync_andQueueFull_waitsForSpaceAndKeepsOrder() throws Exception {
+		writeField(client, "blockingStub", blockingStub);
+		asyncConfig(1, 1, 0, 0);
+
+		EventContext e1 = mock(EventContext.class);
+		EventContext e2 = mock(EventContext.class);
+		EventContext e3 = mock(EventContext.class);
+		gov.nist.csd.pm.proto.v1.epp.EventContext p1 = mock(gov.nist.csd.pm.proto.v1.epp.EventContext.class);
+		gov.nist.csd.pm.proto.v1.epp.EventContext p2 = mock(gov.nist.csd.pm.proto.v1.epp.EventContext.class);
+		gov.nist.csd.pm.proto.v1.epp.EventContext p3 = mock(gov.nist.csd.pm.proto.v1.epp.EventContext.class);
+
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		when(blockingStub.processEvent(any())).thenAnswer(invocation -> {
+			if (invocation.getArgument(0) == p1) {
+				started.countDown();
+				release.await(5, TimeUnit.SECONDS);
+			}
+
+			return ProcessEventResponse.getDefaultInstance();
+		});
+
+		try (MockedStatic<ToProtoUtil> protoUtil = mockStatic(ToProtoUtil.class)) {
+			protoUtil.when(() -> ToProtoUtil.toEventContextProto(e1)).thenReturn(p1);
+			protoUtil.when(() -> ToProtoUtil.toEventContextProto(e2)).thenReturn(p2);
+			protoUtil.when(() -> ToProtoUtil.toEventContextProto(e3)).thenReturn(p3);
+
+			client.startAsyncDispatch(batchStub);
+
+			client.processEvent(e1);
+			assertTrue(started.await(2, TimeUnit.SECONDS));
+			client.processEvent(e2);
+
+			// release the dispatcher after a while, e3 waits for it to take e2 off the queue instead of being sent
+			// ahead of it
+			Thread releaser = new Thread(() -> {
+				try {
+					Thread.sleep(200);
+				} catch (InterruptedException ignored) {
+					Thread.currentThread().interrupt();
+				}
+				release.countDown();
+			});
+			releaser.start();
+			client.processEvent(e3);
+			releaser.join();
+
+			verify(blockingStub, timeout(2000)).processEvent(p3);
+		} finally {
+			release.countDown();
+			client.shutdown();
+		}
+
+		InOrder inOrder = inOrder(blockingStub);
+		inOrder.verify(blockingStub).processEvent(p1);
+		inOrder.verify(blockingStub).processEvent(p2);
+		inOrder.verify(blockingStub).processEvent(p3);
+		assertEquals(1, client.backpressureCount());
+		assertEquals(0, client.rejectedCount());
+		assertEquals(3, client.sentCount());
+	}
+
 	@Test
 	void grpcConfigMap_containsRetryPolicyBasics() throws Exception {
 		Map<String, Object> cfg = callBuildGrpcConfigMap(client);
@@ -131,6 +347,13 @@ class EPPClientTest {
 		assertEquals(List.of("UNAVAILABLE"), retryPolicy.get("retryableStatusCodes"));
 	}
 
+	private void asyncConfig(int queueCapacity, int batchSize, int batchWindow, int enqueueTimeout) {
+		when(resourcePDPConfig.getEppQueueCapacity()).thenReturn(queueCapacity);
+		when(resourcePDPConfig.getEppBatchSize()).thenReturn(batchSize);
+		when(resourcePDPConfig.getEppBatchWindow()).thenReturn(batchWindow);
+		when(resourcePDPConfig.getEppEnqueueTimeout()).thenReturn(enqueueTimeout);
+	}
+
 	private static ProcessEventResponse responseWithLastRevision(long revision) {
 		ValueMap resultMap = ValueMap.newBuilder()
 				.putValues("last_event_revision", Value.newBuilder().setInt64Value(revision).build())
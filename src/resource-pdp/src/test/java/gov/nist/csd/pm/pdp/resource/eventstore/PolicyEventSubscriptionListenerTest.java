@@ -3,16 +3,28 @@ package gov.nist.csd.pm.pdp.resource.eventstore;
 import gov.nist.csd.pm.core.common.exception.PMException;
 import gov.nist.csd.pm.core.impl.memory.pap.MemoryPAP;
 import gov.nist.csd.pm.core.pap.query.model.context.UserContext;
+import gov.nist.csd.pm.core.pdp.PDP;
 import gov.nist.csd.pm.pdp.proto.event.ObjectCreated;
 import gov.nist.csd.pm.pdp.proto.event.PMEvent;
+import gov.nist.csd.pm.pdp.resource.cache.DecisionCache;
+import gov.nist.csd.pm.pdp.resource.config.ResourcePDPConfig;
+import gov.nist.csd.pm.pdp.resource.policy.VersionedPolicy;
 import gov.nist.csd.pm.pdp.shared.eventstore.CurrentRevisionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 
 class PolicyEventSubscriptionListenerTest {
 
@@ -31,9 +43,19 @@ class PolicyEventSubscriptionListenerTest {
 		CurrentRevisionService currentRevisionService = new CurrentRevisionService();
 		currentRevisionService.set(5);
 
+		MemoryPAP secondary = new MemoryPAP();
+		VersionedPolicy policy = new VersionedPolicy(
+				new VersionedPolicy.Replica(pap, new PDP(pap)),
+				new VersionedPolicy.Replica(secondary, new PDP(secondary)),
+				List.of()
+		);
+		policy.resync(5);
+
 		PolicyEventSubscriptionListener listener = new PolicyEventSubscriptionListener(
-				pap,
-				currentRevisionService
+				policy,
+				currentRevisionService,
+				new DecisionCache(0, currentRevisionService),
+				new ResourcePDPConfig()
 		);
 
 		listener.onEvent(null, ResolvedEventMock.of(6, PMEvent.newBuilder()
@@ -48,6 +70,201 @@ class PolicyEventSubscriptionListenerTest {
 
 		assertEquals(6, currentRevisionService.get());
 		assertTrue(pap.query().graph().nodeExists(6));
+		assertTrue(secondary.query().graph().nodeExists(6));
+		assertEquals(6, policy.revision());
+	}
+
+	@Test
+	void handleEvents_PageIsAppliedAsOneTransaction() throws PMException {
+		MemoryPAP pap = new MemoryPAP();
+		pap.withIdGenerator((node, type) -> node.hashCode());
+		pap.executePML(new UserContext(0), """
+					create pc "pc1"
+					create oa "oa1" in ["pc1"]
+					""");
+
+		CurrentRevisionService currentRevisionService = new CurrentRevisionService();
+		currentRevisionService.set(5);
+
+		MemoryPAP secondary = new MemoryPAP();
+		VersionedPolicy policy = new VersionedPolicy(
+				new VersionedPolicy.Replica(pap, new PDP(pap)),
+				new VersionedPolicy.Replica(secondary, new PDP(secondary)),
+				List.of()
+		);
+		policy.resync(5);
+
+		PolicyEventSubscriptionListener listener = new PolicyEventSubscriptionListener(
+				policy,
+				currentRevisionService,
+				new DecisionCache(0, currentRevisionService),
+				new ResourcePDPConfig()
+		);
+
+		listener.handleEvents(List.of(
+				ResolvedEventMock.of(5, objectCreated(5, "already applied")),
+				ResolvedEventMock.of(6, objectCreated(6, "o1")),
+				ResolvedEventMock.of(7, objectCreated(7, "o2"))
+		));
+
+		assertEquals(7, currentRevisionService.get());
+		assertEquals(7, policy.revision());
+		assertFalse(pap.query().graph().nodeExists(5));
+		assertTrue(pap.query().graph().nodeExists(6));
+		assertTrue(pap.query().graph().nodeExists(7));
+		assertTrue(secondary.query().graph().nodeExists(7));
 	}
 
-}
\ No newline at end of file
+	@Test
+	void handleEvents_RuntimeExceptionApplyingPage_appliesEventsIndividually() throws PMException {
+		CurrentRevisionService currentRevisionService = new CurrentRevisionService();
+		currentRevisionService.set(5);
+
+		VersionedPolicy policy = mock(VersionedPolicy.class);
+		doThrow(new IllegalStateException("page failed"))
+				.when(policy).apply(argThat((List<PMEvent> events) -> events.size() > 1), anyLong());
+		doThrow(new IllegalStateException("event failed"))
+				.when(policy).apply(argThat((List<PMEvent> events) -> events.size() == 1), eq(7L));
+
+		PolicyEventSubscriptionListener listener = new PolicyEventSubscriptionListener(
+				policy,
+				currentRevisionService,
+				new DecisionCache(0, currentRevisionService),
+				new ResourcePDPConfig()
+		);
+
+		listener.handleEvents(List.of(
+				ResolvedEventMock.of(6, objectCreated(6, "o1")),
+				ResolvedEventMock.of(7, objectCreated(7, "o2")),
+				ResolvedEventMock.of(8, objectCreated(8, "o3"))
+		));
+
+		// the failed event is skipped and the subscription carries on as it does for a PMException
+		verify(policy).apply(List.of(objectCreated(6, "o1")), 6);
+		verify(policy).apply(List.of(objectCreated(8, "o3")), 8);
+		assertEquals(8, currentRevisionService.get());
+	}
+
+	@Test
+	void onEvent_PipelineAppliesEventsInOrderAndPublishesRevision() throws PMException, InterruptedException {
+		MemoryPAP pap = new MemoryPAP();
+		pap.withIdGenerator((node, type) -> node.hashCode());
+		pap.executePML(new UserContext(0), """
+					create pc "pc1"
+					create oa "oa1" in ["pc1"]
+					""");
+
+		CurrentRevisionService currentRevisionService = new CurrentRevisionService();
+		currentRevisionService.set(5);
+
+		MemoryPAP secondary = new MemoryPAP();
+		VersionedPolicy policy = new VersionedPolicy(
+				new VersionedPolicy.Replica(pap, new PDP(pap)),
+				new VersionedPolicy.Replica(secondary, new PDP(secondary)),
+				List.of()
+		);
+		policy.resync(5);
+
+		ResourcePDPConfig config = new ResourcePDPConfig();
+		config.setSubscriptionPipeline(true);
+		config.setSubscriptionDecodeThreads(2);
+		config.setSubscriptionQueueCapacity(100);
+		config.setSubscriptionBatchSize(10);
+
+		PolicyEventSubscriptionListener listener = new PolicyEventSubscriptionListener(
+				policy,
+				currentRevisionService,
+				new DecisionCache(0, currentRevisionService),
+				config
+		);
+
+		try {
+			for (int i = 6; i <= 20; i++) {
+				listener.onEvent(null, ResolvedEventMock.of(i, objectCreated(i, "o" + i)));
+			}
+
+			// redelivered by a resubscription before it was applied
+			listener.onEvent(null, ResolvedEventMock.of(20, objectCreated(20, "o20")));
+
+			assertTrue(currentRevisionService.awaitRevision(20, 5000));
+			for (int i = 6; i <= 20; i++) {
+				assertTrue(pap.query().graph().nodeExists(i));
+				assertTrue(secondary.query().graph().nodeExists(i));
+			}
+			assertEquals(20, policy.revision());
+		} finally {
+			listener.shutdown();
+		}
+	}
+
+	@Test
+	void onEvent_PipelineCountsOnlyAppliedEvents() throws PMException, InterruptedException {
+		MemoryPAP pap = new MemoryPAP();
+		pap.withIdGenerator((node, type) -> node.hashCode());
+		pap.executePML(new UserContext(0), """
+					create pc "pc1"
+					create oa "oa1" in ["pc1"]
+					""");
+
+		CurrentRevisionService currentRevisionService = new CurrentRevisionService();
+		currentRevisionService.set(5);
+
+		MemoryPAP secondary = new MemoryPAP();
+		VersionedPolicy policy = new VersionedPolicy(
+				new VersionedPolicy.Replica(pap, new PDP(pap)),
+				new VersionedPolicy.Replica(secondary, new PDP(secondary)),
+				List.of()
+		);
+		policy.resync(5);
+
+		ResourcePDPConfig config = new ResourcePDPConfig();
+		config.setSubscriptionPipeline(true);
+		config.setSubscriptionDecodeThreads(2);
+		config.setSubscriptionQueueCapacity(100);
+		config.setSubscriptionBatchSize(10);
+
+		PolicyEventSubscriptionListener listener = new PolicyEventSubscriptionListener(
+				policy,
+				currentRevisionService,
+				new DecisionCache(0, currentRevisionService),
+				config
+		);
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		listener.bindTo(registry);
+
+		try {
+			for (int i = 6; i <= 10; i++) {
+				// the event at revision 8 assigns the object to a node that does not exist
+				PMEvent event = i == 8
+						? PMEvent.newBuilder()
+								.setObjectCreated(ObjectCreated.newBuilder().setId(i).setName("o" + i).addDescendants(999))
+								.build()
+						: objectCreated(i, "o" + i);
+				listener.onEvent(null, ResolvedEventMock.of(i, event));
+			}
+
+			assertTrue(currentRevisionService.awaitRevision(10, 5000));
+			assertFalse(pap.query().graph().nodeExists(8));
+			assertEquals(4, eventCount(registry, "applied"));
+			assertEquals(1, eventCount(registry, "apply_failed"));
+		} finally {
+			listener.shutdown();
+		}
+	}
+
+	private static double eventCount(SimpleMeterRegistry registry, String result) {
+		return registry.get("pm.resource.subscription.events").tag("result", result).functionCounter().count();
+	}
+
+	private static PMEvent objectCreated(long id, String name) {
+		return PMEvent.newBuilder()
+				.setObjectCreated(
+						ObjectCreated.newBuilder()
+								.setId(id)
+								.setName(name)
+								.addAllDescendants(List.of((long) "oa1".hashCode()))
+								.build()
+				)
+				.build();
+	}
+}
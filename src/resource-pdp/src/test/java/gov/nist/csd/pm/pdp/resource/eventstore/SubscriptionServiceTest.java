@@ -5,8 +5,13 @@ import com.google.protobuf.InvalidProtocolBufferException;
 import gov.nist.csd.pm.core.common.exception.PMException;
 import gov.nist.csd.pm.core.impl.memory.pap.MemoryPAP;
 import gov.nist.csd.pm.core.pap.PAP;
+import gov.nist.csd.pm.core.pdp.PDP;
 import gov.nist.csd.pm.pdp.proto.event.PMEvent;
 import gov.nist.csd.pm.pdp.proto.event.PolicyClassCreated;
+import gov.nist.csd.pm.pdp.resource.config.ResourcePDPConfig;
+import gov.nist.csd.pm.pdp.resource.policy.PolicyCheckpoint;
+import gov.nist.csd.pm.pdp.resource.policy.VersionedPolicy;
+import gov.nist.csd.pm.pdp.resource.privilege.PrivilegeIndex;
 import gov.nist.csd.pm.pdp.shared.eventstore.CurrentRevisionService;
 import gov.nist.csd.pm.pdp.shared.eventstore.EventStoreConnectionManager;
 import gov.nist.csd.pm.pdp.shared.eventstore.EventStoreDBConfig;
@@ -17,13 +22,18 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -35,6 +45,7 @@ class SubscriptionServiceTest {
 		private EventStoreTestContainer eventStoreTestContainer;
 		private CurrentRevisionService currentRevisionService;
 		private PAP pap;
+		private VersionedPolicy policy;
 		private SnapshotService snapshotService;
 		private SubscriptionService subscriptionService;
 		private EventStoreConnectionManager eventStoreConnectionManager;
@@ -58,13 +69,23 @@ class SubscriptionServiceTest {
 			currentRevisionService = new CurrentRevisionService();
 			pap = new MemoryPAP();
 			pap.withIdGenerator((name, type) -> name.hashCode());
+			MemoryPAP secondary = new MemoryPAP();
 			snapshotService = new SnapshotService(config, eventStoreConnectionManager, pap, currentRevisionService);
+			policy = new VersionedPolicy(
+					new VersionedPolicy.Replica(pap, new PDP(pap)),
+					new VersionedPolicy.Replica(secondary, new PDP(secondary)),
+					List.of()
+			);
 			subscriptionService = new SubscriptionService(
 					eventStoreConnectionManager,
 					mockListener,
 					config,
 					snapshotService,
-					currentRevisionService
+					currentRevisionService,
+					new PrivilegeIndex(0, false),
+					policy,
+					new PolicyCheckpoint(policy, null, 0),
+					new ResourcePDPConfig()
 			);
 		}
 
@@ -92,7 +113,7 @@ class SubscriptionServiceTest {
 					.get();
 
 			subscriptionService.initSubscription();
-			verify(mockListener, times(1)).onEvent(any(), any());
+			verify(mockListener, times(1)).handleEvents(argThat(events -> events.size() == 1));
 		}
 
 		@Test
@@ -133,7 +154,55 @@ class SubscriptionServiceTest {
 					.get();
 
 			subscriptionService.initSubscription();
-			verify(mockListener, times(1)).onEvent(any(), any());
+			verify(mockListener, times(1)).handleEvents(argThat(events -> events.size() == 1));
+		}
+
+		@Test
+		void whenCheckpointExists_catchesUpFromCheckpointRevision(@TempDir Path dir) throws ExecutionException, InterruptedException, PMException, InvalidProtocolBufferException, TimeoutException, IOException {
+			for (String name : List.of("pc1", "pc2")) {
+				PMEvent pmEvent = PMEvent.newBuilder()
+						.setPolicyClassCreated(PolicyClassCreated.newBuilder()
+								.setId(name.hashCode())
+								.setName(name)
+								.build())
+						.build();
+				eventStoreConnectionManager.getOrInitClient()
+						.appendToStream(
+								config.getEventStream(),
+								EventData.builderAsBinary(
+										pmEvent.getDescriptorForType().getName(),
+										pmEvent.toByteArray()
+								).build()
+						)
+						.get();
+			}
+
+			PolicyCheckpoint checkpoint = new PolicyCheckpoint(policy, dir.resolve("policy.checkpoint").toString(), 60000);
+			pap.modify().graph().createPolicyClass("pc1");
+			policy.resync(0);
+			checkpoint.write();
+			pap.reset();
+
+			subscriptionService = new SubscriptionService(
+					eventStoreConnectionManager,
+					mockListener,
+					config,
+					snapshotService,
+					currentRevisionService,
+					new PrivilegeIndex(0, false),
+					policy,
+					checkpoint,
+					new ResourcePDPConfig()
+			);
+			subscriptionService.initSubscription();
+			checkpoint.shutdown();
+
+			assertEquals(0, currentRevisionService.get());
+			assertEquals(0, policy.revision());
+			assertTrue(pap.query().graph().nodeExists("pc1".hashCode()));
+			// loaded into the secondary copy as well, not copied from the primary
+			assertTrue(policy.paps().get(1).query().graph().nodeExists("pc1".hashCode()));
+			verify(mockListener, times(1)).handleEvents(argThat(events -> events.size() == 2));
 		}
 
 		@Test
@@ -182,7 +251,48 @@ class SubscriptionServiceTest {
 							.get();
 
 			Thread.sleep(30000);
-			verify(mockListener, times(2)).onEvent(any(), any());
+			verify(mockListener, times(1)).handleEvents(argThat(events -> events.size() == 1));
+			verify(mockListener, times(1)).onEvent(any(), any());
+		}
+
+		@Test
+		void whenManyEvents_catchesUpInPages() throws ExecutionException, InterruptedException, PMException, InvalidProtocolBufferException, TimeoutException {
+			ResourcePDPConfig resourcePDPConfig = new ResourcePDPConfig();
+			resourcePDPConfig.setCatchUpPageSize(2);
+			subscriptionService = new SubscriptionService(
+					eventStoreConnectionManager,
+					mockListener,
+					config,
+					snapshotService,
+					currentRevisionService,
+					new PrivilegeIndex(0, false),
+					policy,
+					new PolicyCheckpoint(policy, null, 0),
+					resourcePDPConfig
+			);
+
+			for (int i = 1; i <= 5; i++) {
+				PMEvent pmEvent = PMEvent.newBuilder()
+						.setPolicyClassCreated(PolicyClassCreated.newBuilder()
+								.setId(i)
+								.setName("pc" + i)
+								.build())
+						.build();
+				eventStoreConnectionManager.getOrInitClient()
+						.appendToStream(
+								config.getEventStream(),
+								EventData.builderAsBinary(
+										pmEvent.getDescriptorForType().getName(),
+										pmEvent.toByteArray()
+								).build()
+						)
+						.get();
+			}
+
+			subscriptionService.initSubscription();
+
+			verify(mockListener, times(2)).handleEvents(argThat(events -> events.size() == 2));
+			verify(mockListener, times(1)).handleEvents(argThat(events -> events.size() == 1));
 		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,113 @@
+package gov.nist.csd.pm.pdp.resource.policy;
+
+import gov.nist.csd.pm.core.common.exception.PMException;
+import gov.nist.csd.pm.core.impl.memory.pap.MemoryPAP;
+import gov.nist.csd.pm.core.pap.query.model.context.UserContext;
+import gov.nist.csd.pm.core.pdp.PDP;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PolicyCheckpointTest {
+
+	@TempDir
+	private Path dir;
+	private Path path;
+	private VersionedPolicy policy;
+
+	@BeforeEach
+	void setUp() throws PMException {
+		MemoryPAP primary = new MemoryPAP();
+		primary.withIdGenerator((name, type) -> name.hashCode());
+		primary.executePML(new UserContext(0), """
+				set resource access rights ["read", "write"]
+				create pc "pc1"
+				create ua "ua1" in ["pc1"]
+				create oa "oa1" in ["pc1"]
+				associate "ua1" and "oa1" with ["read"]
+				""");
+		MemoryPAP secondary = new MemoryPAP();
+
+		policy = new VersionedPolicy(
+				new VersionedPolicy.Replica(primary, new PDP(primary)),
+				new VersionedPolicy.Replica(secondary, new PDP(secondary)),
+				List.of()
+		);
+		policy.resync(5);
+
+		path = dir.resolve("policy.checkpoint");
+	}
+
+	@Test
+	void write_thenLoad_restoresPolicyAndRevision() throws IOException, PMException {
+		PolicyCheckpoint checkpoint = new PolicyCheckpoint(policy, path.toString(), 60000);
+		assertTrue(checkpoint.write());
+
+		MemoryPAP pap = new MemoryPAP();
+		assertEquals(5, new PolicyCheckpoint(policy, path.toString(), 60000).load(pap, 10));
+
+		assertTrue(pap.query().graph().nodeExists("oa1".hashCode()));
+		assertEquals(1, pap.query().graph().getAssociationsWithSource("ua1".hashCode()).size());
+		assertTrue(pap.query().operations().getResourceAccessRights().contains("write"));
+	}
+
+	@Test
+	void load_intoEachPap_restoresTheSamePolicy() throws IOException, PMException {
+		PolicyCheckpoint checkpoint = new PolicyCheckpoint(policy, path.toString(), 60000);
+		assertTrue(checkpoint.write());
+
+		MemoryPAP first = new MemoryPAP();
+		MemoryPAP second = new MemoryPAP();
+		assertEquals(5, new PolicyCheckpoint(policy, path.toString(), 60000).load(List.of(first, second), 10));
+
+		for (MemoryPAP pap : List.of(first, second)) {
+			assertTrue(pap.query().graph().nodeExists("oa1".hashCode()));
+			assertEquals(1, pap.query().graph().getAssociationsWithSource("ua1".hashCode()).size());
+		}
+	}
+
+	@Test
+	void write_revisionUnchanged_returnsFalse() throws IOException, PMException {
+		PolicyCheckpoint checkpoint = new PolicyCheckpoint(policy, path.toString(), 60000);
+
+		assertTrue(checkpoint.write());
+		assertFalse(checkpoint.write());
+	}
+
+	@Test
+	void load_missing_returnsMinusOne() {
+		PolicyCheckpoint checkpoint = new PolicyCheckpoint(policy, path.toString(), 60000);
+
+		assertEquals(-1, checkpoint.load(new MemoryPAP(), 10));
+	}
+
+	@Test
+	void load_damaged_returnsMinusOneAndLeavesPolicyEmpty() throws IOException, PMException {
+		new PolicyCheckpoint(policy, path.toString(), 60000).write();
+		try (FileChannel channel = FileChannel.open(path, WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[] {0x7f, 0x7f, 0x7f}), PolicyCheckpoint.HEADER_SIZE + 4);
+		}
+
+		MemoryPAP pap = new MemoryPAP();
+		assertEquals(-1, new PolicyCheckpoint(policy, path.toString(), 60000).load(pap, 10));
+		assertFalse(pap.query().graph().nodeExists("pc1".hashCode()));
+	}
+
+	@Test
+	void load_aheadOfEventStream_returnsMinusOne() throws IOException, PMException {
+		new PolicyCheckpoint(policy, path.toString(), 60000).write();
+
+		MemoryPAP pap = new MemoryPAP();
+		assertEquals(-1, new PolicyCheckpoint(policy, path.toString(), 60000).load(pap, 4));
+		assertFalse(pap.query().graph().nodeExists("pc1".hashCode()));
+	}
+}
@@ -0,0 +1,179 @@
+package gov.nist.csd.pm.pdp.resource.policy;
+
+import gov.nist.csd.pm.core.common.exception.PMException;
+import gov.nist.csd.pm.core.impl.memory.pap.MemoryPAP;
+import gov.nist.csd.pm.core.pap.query.model.context.UserContext;
+import gov.nist.csd.pm.core.pdp.PDP;
+import gov.nist.csd.pm.pdp.proto.event.PMEvent;
+import gov.nist.csd.pm.pdp.proto.event.PolicyClassCreated;
+import gov.nist.csd.pm.pdp.shared.eventstore.AppliedEventListener;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VersionedPolicyTest {
+
+	private MemoryPAP primary;
+	private MemoryPAP secondary;
+
+	@BeforeEach
+	void setUp() throws PMException {
+		primary = new MemoryPAP();
+		primary.withIdGenerator((name, type) -> name.hashCode());
+		primary.executePML(new UserContext(0), """
+				create pc "pc1"
+				""");
+		secondary = new MemoryPAP();
+	}
+
+	@Test
+	void resync_copiesPrimaryToSecondary() throws PMException {
+		VersionedPolicy policy = policy(List.of());
+
+		policy.resync(3);
+
+		assertTrue(secondary.query().graph().nodeExists("pc1".hashCode()));
+		assertEquals(3, policy.revision());
+	}
+
+	@Test
+	void apply_readerKeepsItsVersion_andWriterWaitsForIt() throws Exception {
+		VersionedPolicy policy = policy(List.of());
+		policy.resync(1);
+
+		VersionedPolicy.PolicyVersion held = policy.acquire();
+		assertEquals(1, held.revision());
+
+		CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+			try {
+				policy.apply(List.of(pcCreated(100, "pc2")), 2);
+			} catch (PMException e) {
+				throw new RuntimeException(e);
+			}
+		});
+
+		// the new version is published without waiting for the held version to be released
+		long deadline = System.currentTimeMillis() + 2000;
+		while (policy.revision() != 2 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertEquals(2, policy.revision());
+
+		assertFalse(held.pap().query().graph().nodeExists(100));
+		try (VersionedPolicy.PolicyVersion latest = policy.acquire()) {
+			assertEquals(2, latest.revision());
+			assertTrue(latest.pap().query().graph().nodeExists(100));
+		}
+
+		Thread.sleep(50);
+		assertFalse(writer.isDone());
+
+		held.close();
+		writer.get(2, TimeUnit.SECONDS);
+
+		assertTrue(primary.query().graph().nodeExists(100));
+		assertTrue(secondary.query().graph().nodeExists(100));
+		assertEquals(0, policy.activeReaders());
+	}
+
+	@Test
+	void apply_notifiesListenersWithRevisionBeforePublishing() throws Exception {
+		List<Long> seen = new ArrayList<>();
+		List<VersionedPolicy> holder = new ArrayList<>();
+		AppliedEventListener listener = new AppliedEventListener() {
+			@Override
+			public void onEventApplied(PMEvent event) {
+				fail("expected the revision");
+			}
+
+			@Override
+			public void onEventApplied(PMEvent event, long revision) {
+				// readers cannot acquire the new revision before the listener has seen it
+				seen.add(revision);
+				seen.add(holder.get(0).revision());
+			}
+		};
+
+		VersionedPolicy policy = policy(List.of(listener));
+		holder.add(policy);
+		policy.resync(1);
+
+		policy.apply(List.of(pcCreated(100, "pc2")), 2);
+
+		assertEquals(List.of(2L, 1L), seen);
+		assertEquals(2, policy.revision());
+		assertEquals(1, policy.versionsPublishedCount());
+	}
+
+	@Test
+	void apply_listenerFails_stillPublished() throws Exception {
+		VersionedPolicy policy = policy(List.of(event -> {
+			throw new IllegalStateException("listener");
+		}));
+		policy.resync(1);
+
+		assertDoesNotThrow(() -> policy.apply(List.of(pcCreated(100, "pc2")), 2));
+		assertEquals(2, policy.revision());
+		assertTrue(primary.query().graph().nodeExists(100));
+		assertTrue(secondary.query().graph().nodeExists(100));
+	}
+
+	@Test
+	void apply_drainedCopyFails_publishedWithoutThrowingAndCopyResynced() throws Exception {
+		VersionedPolicy policy = policy(List.of());
+		policy.resync(1);
+
+		// the drained primary already has the node, so the transaction fails on it after it was published
+		primary.executePML(new UserContext(0), """
+				create pc "pc2"
+				""");
+
+		assertDoesNotThrow(() -> policy.apply(List.of(pcCreated("pc2".hashCode(), "pc2")), 2));
+		assertEquals(2, policy.revision());
+		assertEquals(1, policy.versionsPublishedCount());
+
+		policy.apply(List.of(pcCreated(300, "pc3")), 3);
+
+		assertEquals(3, policy.revision());
+		assertTrue(primary.query().graph().nodeExists("pc2".hashCode()));
+		assertTrue(primary.query().graph().nodeExists(300));
+		assertTrue(secondary.query().graph().nodeExists("pc2".hashCode()));
+		assertTrue(secondary.query().graph().nodeExists(300));
+	}
+
+	@Test
+	void apply_standbyFails_nothingPublished() throws Exception {
+		VersionedPolicy policy = policy(List.of());
+		policy.resync(1);
+
+		assertThrows(PMException.class, () -> policy.apply(List.of(pcCreated("pc1".hashCode(), "pc1")), 2));
+		assertEquals(1, policy.revision());
+		assertEquals(0, policy.versionsPublishedCount());
+
+		policy.apply(List.of(pcCreated(300, "pc3")), 3);
+
+		assertEquals(3, policy.revision());
+		assertTrue(secondary.query().graph().nodeExists("pc1".hashCode()));
+		assertTrue(secondary.query().graph().nodeExists(300));
+	}
+
+	private VersionedPolicy policy(List<AppliedEventListener> listeners) {
+		return new VersionedPolicy(
+				new VersionedPolicy.Replica(primary, new PDP(primary)),
+				new VersionedPolicy.Replica(secondary, new PDP(secondary)),
+				listeners
+		);
+	}
+
+	private static PMEvent pcCreated(long id, String name) {
+		return PMEvent.newBuilder()
+				.setPolicyClassCreated(PolicyClassCreated.newBuilder().setId(id).setName(name).build())
+				.build();
+	}
+}
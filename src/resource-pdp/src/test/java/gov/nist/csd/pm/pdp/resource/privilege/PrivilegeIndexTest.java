@@ -0,0 +1,161 @@
+package gov.nist.csd.pm.pdp.resource.privilege;
+
+import gov.nist.csd.pm.core.common.exception.PMException;
+import gov.nist.csd.pm.core.impl.memory.pap.MemoryPAP;
+import gov.nist.csd.pm.core.pap.operation.accessright.AccessRightSet;
+import gov.nist.csd.pm.core.pap.query.model.context.UserContext;
+import gov.nist.csd.pm.pdp.proto.event.AssociationDeleted;
+import gov.nist.csd.pm.pdp.proto.event.ObjectAttributeCreated;
+import gov.nist.csd.pm.pdp.proto.event.PMEvent;
+import gov.nist.csd.pm.pdp.shared.auth.UserContextFromHeader;
+import gov.nist.csd.pm.pdp.shared.eventstore.PolicyEventHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrivilegeIndexTest {
+
+	private MemoryPAP pap;
+	private UserContextFromHeader.ResolvedUser u1;
+
+	@BeforeEach
+	void setUp() throws PMException {
+		pap = new MemoryPAP();
+		pap.withIdGenerator((node, type) -> node.hashCode());
+		pap.executePML(new UserContext(0), """
+					create pc "pc1"
+					create ua "ua1" in ["pc1"]
+					create oa "oa1" in ["pc1"]
+					create u "u1" in ["ua1"]
+					create o "o1" in ["oa1"]
+					
+					set resource access rights ["read"]
+					
+					associate "ua1" and "oa1" with ["read"]
+					""");
+
+		u1 = new UserContextFromHeader.ResolvedUser(
+				new UserContext(id("u1")),
+				null,
+				Set.of(id("u1")),
+				Set.of("u1")
+		);
+	}
+
+	@Test
+	void privileges_secondLookup_servedFromIndex() throws PMException {
+		PrivilegeIndex index = new PrivilegeIndex(10, false);
+
+		AccessRightSet first = index.privileges(pap, 1, u1, id("o1"));
+		AccessRightSet second = index.privileges(pap, 1, u1, id("o1"));
+
+		assertTrue(first.contains("read"));
+		assertEquals(first, second);
+		assertEquals(1, index.missCount());
+		assertEquals(1, index.hitCount());
+	}
+
+	@Test
+	void associationDeleted_invalidatesAffectedEntries() throws PMException {
+		PrivilegeIndex index = new PrivilegeIndex(10, false);
+		PolicyEventHandler handler = new PolicyEventHandler(pap, false, List.of(index));
+
+		assertTrue(index.privileges(pap, 1, u1, id("o1")).contains("read"));
+
+		handler.handleEvent(PMEvent.newBuilder()
+				                    .setAssociationDeleted(AssociationDeleted.newBuilder()
+						                                           .setUa(id("ua1"))
+						                                           .setTarget(id("oa1"))
+						                                           .build())
+				                    .build());
+
+		assertEquals(0, index.size());
+		assertFalse(index.privileges(pap, 1, u1, id("o1")).contains("read"));
+	}
+
+	@Test
+	void unrelatedEvent_keepsEntries() throws PMException {
+		PrivilegeIndex index = new PrivilegeIndex(10, false);
+		PolicyEventHandler handler = new PolicyEventHandler(pap, false, List.of(index));
+
+		index.privileges(pap, 1, u1, id("o1"));
+
+		handler.handleEvent(PMEvent.newBuilder()
+				                    .setObjectAttributeCreated(ObjectAttributeCreated.newBuilder()
+						                                               .setId(id("oa2"))
+						                                               .setName("oa2")
+						                                               .addDescendants(id("pc1"))
+						                                               .build())
+				                    .build());
+
+		assertEquals(1, index.size());
+		index.privileges(pap, 1, u1, id("o1"));
+		assertEquals(1, index.hitCount());
+	}
+
+	@Test
+	void rebuilding_computesFromGraphWithoutStoring() throws PMException {
+		PrivilegeIndex index = new PrivilegeIndex(10, false);
+		index.privileges(pap, 1, u1, id("o1"));
+
+		index.beginRebuild();
+		assertTrue(index.privileges(pap, 1, u1, id("o1")).contains("read"));
+		assertEquals(0, index.size());
+		assertEquals(1, index.fallbackCount());
+
+		index.endRebuild();
+		index.privileges(pap, 1, u1, id("o1"));
+		assertEquals(1, index.size());
+	}
+
+	@Test
+	void verify_hitReturnsIndexedPrivileges() throws PMException {
+		PrivilegeIndex index = new PrivilegeIndex(10, true);
+		index.privileges(pap, 1, u1, id("o1"));
+
+		// the association is removed without the index being told, the index has drifted from the graph
+		pap.executePML(new UserContext(0), """
+					dissociate "ua1" and "oa1"
+					""");
+
+		// the index's own answer is returned so the adjudicator compares it with the PDP decision
+		assertTrue(index.privileges(pap, 1, u1, id("o1")).contains("read"));
+		assertEquals(1, index.hitCount());
+		assertEquals(0, index.mismatchCount());
+	}
+
+	@Test
+	void computedAtOldRevisionAfterEvent_notStored() throws PMException {
+		PrivilegeIndex index = new PrivilegeIndex(10, false);
+
+		// the association is removed at revision 2 while a request still adjudicates against revision 1
+		index.onEventApplied(PMEvent.newBuilder()
+				                     .setAssociationDeleted(AssociationDeleted.newBuilder()
+						                                            .setUa(id("ua1"))
+						                                            .setTarget(id("oa1"))
+						                                            .build())
+				                     .build(), 2);
+
+		assertTrue(index.privileges(pap, 1, u1, id("o1")).contains("read"));
+		assertEquals(0, index.size());
+	}
+
+	@Test
+	void entryComputedAtLaterRevision_leftToThePDP() throws PMException {
+		PrivilegeIndex index = new PrivilegeIndex(10, false);
+		index.privileges(pap, 3, u1, id("o1"));
+
+		assertNull(index.privileges(pap, 2, u1, id("o1")));
+		assertEquals(1, index.staleCount());
+		assertNotNull(index.privileges(pap, 4, u1, id("o1")));
+		assertEquals(1, index.hitCount());
+	}
+
+	private static long id(String name) {
+		return name.hashCode();
+	}
+}
@@ -0,0 +1,174 @@
+package gov.nist.csd.pm.pdp.shared.auth;
+
+import gov.nist.csd.pm.core.common.exception.PMException;
+import gov.nist.csd.pm.core.pap.PAP;
+import gov.nist.csd.pm.core.pap.query.model.context.UserContext;
+import gov.nist.csd.pm.pdp.proto.event.PMEvent;
+import gov.nist.csd.pm.pdp.shared.eventstore.AppliedEventListener;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Bounded LRU cache of UserContexts resolved from the raw user context headers. An entry only depends on the ids of
+ * the nodes named in the headers, so it is dropped when one of those nodes is deleted or a node with one of those
+ * names is created. Every other policy change leaves the cache untouched.
+ *
+ * Each entry records the revision of the policy it was resolved against and is only returned for a lookup at that
+ * revision or a later one. A resolution is not stored if an invalidating event was applied after the revision it was
+ * resolved at, so a lookup on an old version of the policy cannot cache a user that a newer version deleted.
+ */
+public class UserContextCache implements AppliedEventListener, MeterBinder {
+
+    private final int maxSize;
+    private final LinkedHashMap<Key, Entry> entries;
+    // incremented on every invalidation so a resolution that raced with a policy change is not cached
+    private long generation;
+    // the latest revision an invalidating event was applied at
+    private long invalidatedAt;
+
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder invalidations;
+
+    /**
+     * @param maxSize the maximum number of resolved user contexts to hold. A value less than 1 disables the cache.
+     */
+    public UserContextCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.invalidations = new LongAdder();
+        this.invalidatedAt = -1;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > UserContextCache.this.maxSize;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    public UserContext get(PAP pap, long revision, String user, List<String> attrs, String process)
+            throws PMException {
+        return resolve(pap, revision, user, attrs, process).userContext();
+    }
+
+    /**
+     * Resolve the headers against the given policy, which is at the given revision.
+     */
+    public UserContextFromHeader.ResolvedUser resolve(PAP pap,
+                                                      long revision,
+                                                      String user,
+                                                      List<String> attrs,
+                                                      String process) throws PMException {
+        if (!isEnabled()) {
+            return UserContextFromHeader.resolve(pap, user, attrs, process);
+        }
+
+        Key key = new Key(user, attrs, process);
+        long gen;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            // an entry resolved at a later revision may name nodes the given policy does not have yet
+            if (entry != null && entry.revision() <= revision) {
+                hits.increment();
+                return entry.resolved();
+            }
+
+            misses.increment();
+            gen = generation;
+        }
+
+        UserContextFromHeader.ResolvedUser resolved = UserContextFromHeader.resolve(pap, user, attrs, process);
+
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (gen == generation && invalidatedAt <= revision && (entry == null || entry.revision() < revision)) {
+                entries.put(key, new Entry(resolved, revision));
+            }
+        }
+
+        return resolved;
+    }
+
+    @Override
+    public void onEventApplied(PMEvent event) {
+        onEventApplied(event, -1);
+    }
+
+    @Override
+    public void onEventApplied(PMEvent event, long revision) {
+        switch (event.getEventCase()) {
+            case NODE_DELETED -> {
+                long id = event.getNodeDeleted().getId();
+                invalidate(revision, resolved -> resolved.nodeIds().contains(id));
+            }
+            case POLICY_CLASS_CREATED -> nodeCreated(revision, event.getPolicyClassCreated().getName());
+            case USER_ATTRIBUTE_CREATED -> nodeCreated(revision, event.getUserAttributeCreated().getName());
+            case OBJECT_ATTRIBUTE_CREATED -> nodeCreated(revision, event.getObjectAttributeCreated().getName());
+            case USER_CREATED -> nodeCreated(revision, event.getUserCreated().getName());
+            case OBJECT_CREATED -> nodeCreated(revision, event.getObjectCreated().getName());
+            default -> {}
+        }
+    }
+
+    private void nodeCreated(long revision, String name) {
+        invalidate(revision, resolved -> resolved.nodeNames().contains(name));
+    }
+
+    private synchronized void invalidate(long revision, Predicate<UserContextFromHeader.ResolvedUser> predicate) {
+        generation++;
+        invalidatedAt = Math.max(invalidatedAt, revision);
+
+        int size = entries.size();
+        entries.values().removeIf(entry -> predicate.test(entry.resolved()));
+        invalidations.add(size - entries.size());
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long invalidationCount() {
+        return invalidations.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("pm.user.context.cache.requests", this, UserContextCache::hitCount)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("pm.user.context.cache.requests", this, UserContextCache::missCount)
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("pm.user.context.cache.invalidations", this, UserContextCache::invalidationCount)
+                .register(registry);
+        Gauge.builder("pm.user.context.cache.size", this, UserContextCache::size)
+                .register(registry);
+    }
+
+    private record Key(String user, List<String> attrs, String process) {
+    }
+
+    private record Entry(UserContextFromHeader.ResolvedUser resolved, long revision) {
+    }
+}
@@ -5,15 +5,36 @@ import gov.nist.csd.pm.core.pap.PAP;
 import gov.nist.csd.pm.core.pap.query.model.context.UserContext;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class UserContextFromHeader {
 
     public static UserContext get(PAP pap) throws PMException {
-        String user = UserContextInterceptor.getPmUserHeaderValue();
-        String process = UserContextInterceptor.getPmProcessHeaderValue();
-        List<String> attrs = UserContextInterceptor.getPmUserAttrsHeaderValue();
+        return resolve(
+                pap,
+                UserContextInterceptor.getPmUserHeaderValue(),
+                UserContextInterceptor.getPmUserAttrsHeaderValue(),
+                UserContextInterceptor.getPmProcessHeaderValue()
+        ).userContext();
+    }
+
+    /**
+     * Same as get(PAP) but returns the UserContext resolved from the cache if the same headers have already been
+     * resolved against the policy at the given revision, which must be the revision of the given policy.
+     */
+    public static UserContext get(PAP pap, long revision, UserContextCache cache) throws PMException {
+        return cache.get(
+                pap,
+                revision,
+                UserContextInterceptor.getPmUserHeaderValue(),
+                UserContextInterceptor.getPmUserAttrsHeaderValue(),
+                UserContextInterceptor.getPmProcessHeaderValue()
+        );
+    }
 
+    public static ResolvedUser resolve(PAP pap, String user, List<String> attrs, String process) throws PMException {
         if (user == null && attrs == null) {
             throw new IllegalArgumentException("user and attrs cannot both be null in request header");
         }
@@ -23,7 +44,8 @@ public class UserContextFromHeader {
         }
 
         if (user != null) {
-            return new UserContext(pap.query().graph().getNodeId(user), process);
+            long id = pap.query().graph().getNodeId(user);
+            return new ResolvedUser(new UserContext(id, process), process, Set.of(id), Set.of(user));
         }
 
         List<Long> attrIds = new ArrayList<>();
@@ -31,6 +53,12 @@ public class UserContextFromHeader {
             attrIds.add(pap.query().graph().getNodeId(attr));
         }
 
-        return new UserContext(attrIds, process);
+        return new ResolvedUser(new UserContext(attrIds, process), process, new HashSet<>(attrIds), new HashSet<>(attrs));
+    }
+
+    /**
+     * A UserContext, its process, and the ids and names of the nodes it was resolved from.
+     */
+    public record ResolvedUser(UserContext userContext, String process, Set<Long> nodeIds, Set<String> nodeNames) {
     }
 }
@@ -9,7 +9,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Component
 @GrpcGlobalServerInterceptor
@@ -27,8 +30,18 @@ public class UserContextInterceptor implements ServerInterceptor {
     public static final Context.Key<List<String>> PM_USER_ATTRS_CONTEXT_KEY = Context.key(PM_USER_ATTRS_KEY);
     public static final Context.Key<String> PM_PROCESS_CONTEXT_KEY = Context.key(PM_PROCESS_KEY);
 
+    // clients tend to send the same few attribute headers, so the most recently used parsed values are kept to avoid
+    // running Jackson per call
+    private static final int MAX_PARSED_ATTRS = 1024;
+
     private Logger logger = LoggerFactory.getLogger(UserContextInterceptor.class);
     private static ObjectMapper userAttrsMapper = new ObjectMapper();
+    private final Map<String, List<String>> parsedAttrs = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, List<String>> eldest) {
+            return size() > MAX_PARSED_ATTRS;
+        }
+    };
 
     @Override
     public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
@@ -41,12 +54,7 @@ public class UserContextInterceptor implements ServerInterceptor {
         String attrsStr = headers.get(PM_USER_ATTRS_METADATA_KEY);
         List<String> pmUserAttrsHeaderValue = null;
         if (attrsStr != null) {
-            try {
-                pmUserAttrsHeaderValue = userAttrsMapper.readValue(attrsStr, new TypeReference<>() {});
-            } catch (JsonProcessingException e) {
-                logger.error("error parsing user attributes in header", e);
-                throw new RuntimeException(e);
-            }
+            pmUserAttrsHeaderValue = parseAttrs(attrsStr);
         }
 
         logger.debug("user header values user={} attributes={} process={}", pmUserHeaderValue, pmUserAttrsHeaderValue, pmProcessHeaderValue);
@@ -67,6 +75,37 @@ public class UserContextInterceptor implements ServerInterceptor {
         return Contexts.interceptCall(context, call, headers, next);
     }
 
+    private List<String> parseAttrs(String attrsStr) {
+        List<String> attrs;
+        synchronized (parsedAttrs) {
+            attrs = parsedAttrs.get(attrsStr);
+        }
+
+        if (attrs != null) {
+            return attrs;
+        }
+
+        try {
+            attrs = userAttrsMapper.readValue(attrsStr, new TypeReference<>() {});
+        } catch (JsonProcessingException e) {
+            logger.error("error parsing user attributes in header", e);
+            throw new RuntimeException(e);
+        }
+
+        if (attrs == null) {
+            return null;
+        }
+
+        // the same list is shared by every call with this header
+        attrs = Collections.unmodifiableList(attrs);
+
+        synchronized (parsedAttrs) {
+            parsedAttrs.put(attrsStr, attrs);
+        }
+
+        return attrs;
+    }
+
     public static String getPmUserHeaderValue() {
         return PM_USER_CONTEXT_KEY.get();
     }
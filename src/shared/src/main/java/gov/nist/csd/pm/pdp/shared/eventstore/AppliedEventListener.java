@@ -0,0 +1,22 @@
+package gov.nist.csd.pm.pdp.shared.eventstore;
+
+import gov.nist.csd.pm.pdp.proto.event.PMEvent;
+
+/**
+ * Notified by PolicyEventHandler for each event after it has been committed to the local policy. Used to keep
+ * derived state, such as caches and indexes, in step with the policy.
+ */
+public interface AppliedEventListener {
+
+    void onEventApplied(PMEvent event);
+
+    /**
+     * Notified with the revision of the transaction the event was applied in. A versioned policy calls this before the
+     * revision is published, so a listener that stores state computed from a version of the policy can tell which
+     * revisions that state is still valid for.
+     */
+    default void onEventApplied(PMEvent event, long revision) {
+        onEventApplied(event);
+    }
+
+}
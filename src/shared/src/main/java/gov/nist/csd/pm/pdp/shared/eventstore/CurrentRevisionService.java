@@ -2,61 +2,131 @@ package gov.nist.csd.pm.pdp.shared.eventstore;
 
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Tracks the revision of the local policy. Callers waiting for a revision are held in a queue ordered by target
+ * revision, and each update completes only the waiters whose target it reached.
+ */
 @Service
 public class CurrentRevisionService {
 
 	private final AtomicLong currentRevision;
 	private final ReentrantLock lock;
-	private final Condition revisionUpdated;
+	private final PriorityQueue<Waiter> waiters;
 
 	public CurrentRevisionService() {
 		currentRevision = new AtomicLong(-1);
 		lock = new ReentrantLock();
-		revisionUpdated = lock.newCondition();
+		waiters = new PriorityQueue<>(Comparator.comparingLong(Waiter::targetRevision));
 	}
 
 	public void set(long revision) {
 		this.currentRevision.set(revision);
+
+		List<Waiter> reached = new ArrayList<>();
 		lock.lock();
 		try {
-			revisionUpdated.signalAll();
+			while (!waiters.isEmpty() && waiters.peek().targetRevision() <= revision) {
+				reached.add(waiters.poll());
+			}
 		} finally {
 			lock.unlock();
 		}
+
+		// complete outside the lock. Dependent stages run on this thread, the one applying the policy, so callers that
+		// do more than record the result continue on their own executor
+		for (Waiter waiter : reached) {
+			waiter.future().complete(true);
+		}
 	}
 
 	public long get() {
 		return currentRevision.get();
 	}
 
+	/**
+	 * Returns a future that completes with true once the current revision is at least targetRevision, or with false
+	 * if the timeout is reached first. Cancelling the future removes the waiter.
+	 */
+	public CompletableFuture<Boolean> revisionFuture(long targetRevision, long timeoutMs) {
+		if (currentRevision.get() >= targetRevision) {
+			return CompletableFuture.completedFuture(true);
+		}
+
+		Waiter waiter = new Waiter(targetRevision, new CompletableFuture<>());
+		lock.lock();
+		try {
+			// set() updates the revision before draining, so checking again under the lock cannot miss an update
+			if (currentRevision.get() >= targetRevision) {
+				return CompletableFuture.completedFuture(true);
+			}
+
+			waiters.add(waiter);
+		} finally {
+			lock.unlock();
+		}
+
+		// a cancelled waiter is removed on the cancelling thread
+		waiter.future().whenComplete((reached, e) -> {
+			if (e != null) {
+				remove(waiter);
+			}
+		});
+		CompletableFuture.delayedExecutor(timeoutMs, TimeUnit.MILLISECONDS).execute(() -> {
+			// not in the queue if set() already took it to complete
+			if (remove(waiter)) {
+				waiter.future().complete(false);
+			}
+		});
+
+		return waiter.future();
+	}
+
 	/**
 	 * Blocks until the current revision is at least targetRevision, or the timeout is reached.
 	 *
 	 * @return true if the target revision was reached, false if timed out.
 	 */
 	public boolean awaitRevision(long targetRevision, long timeoutMs) throws InterruptedException {
-		if (currentRevision.get() >= targetRevision) {
-			return true;
+		CompletableFuture<Boolean> future = revisionFuture(targetRevision, timeoutMs);
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			future.cancel(false);
+			throw e;
+		} catch (ExecutionException | CancellationException e) {
+			return false;
 		}
+	}
 
-		long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+	int waiterCount() {
 		lock.lock();
 		try {
-			while (currentRevision.get() < targetRevision) {
-				long remainingNanos = deadlineNanos - System.nanoTime();
-				if (remainingNanos <= 0) {
-					return false;
-				}
-				revisionUpdated.await(remainingNanos, TimeUnit.NANOSECONDS);
-			}
-			return true;
+			return waiters.size();
 		} finally {
 			lock.unlock();
 		}
 	}
+
+	private boolean remove(Waiter waiter) {
+		lock.lock();
+		try {
+			return waiters.remove(waiter);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private record Waiter(long targetRevision, CompletableFuture<Boolean> future) {
+	}
 }
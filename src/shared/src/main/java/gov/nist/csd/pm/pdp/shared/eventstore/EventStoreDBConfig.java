@@ -27,6 +27,23 @@ public class EventStoreDBConfig {
      */
     private int port;
 
+    /**
+     * Format new snapshots are written in, binary or json. Snapshots in either format can be restored.
+     */
+    private SnapshotFormat snapshotFormat = SnapshotFormat.BINARY;
+
+    /**
+     * Maximum size in bytes of a compressed snapshot chunk. Snapshots are written as gzip compressed chunks of at most
+     * this size followed by a manifest event. 0 writes each snapshot uncompressed as a single event.
+     */
+    private int snapshotChunkSize = 1024 * 1024;
+
+    /**
+     * Number of delta snapshots written between full snapshots. A delta holds only the nodes and prohibitions changed
+     * since the last full snapshot. 0 writes every snapshot in full.
+     */
+    private int snapshotDeltasPerBase;
+
     public EventStoreDBConfig() {
     }
 
@@ -57,6 +74,18 @@ public class EventStoreDBConfig {
         if (port == 0) {
             setPort(2113);
         }
+
+        if (snapshotFormat == null) {
+            setSnapshotFormat(SnapshotFormat.BINARY);
+        }
+
+        if (snapshotChunkSize < 0) {
+            setSnapshotChunkSize(0);
+        }
+
+        if (snapshotDeltasPerBase < 0) {
+            setSnapshotDeltasPerBase(0);
+        }
     }
 
     public String getEventStream() {
@@ -90,4 +119,28 @@ public class EventStoreDBConfig {
     public void setPort(int port) {
         this.port = port;
     }
+
+    public SnapshotFormat getSnapshotFormat() {
+        return snapshotFormat;
+    }
+
+    public void setSnapshotFormat(SnapshotFormat snapshotFormat) {
+        this.snapshotFormat = snapshotFormat;
+    }
+
+    public int getSnapshotChunkSize() {
+        return snapshotChunkSize;
+    }
+
+    public void setSnapshotChunkSize(int snapshotChunkSize) {
+        this.snapshotChunkSize = snapshotChunkSize;
+    }
+
+    public int getSnapshotDeltasPerBase() {
+        return snapshotDeltasPerBase;
+    }
+
+    public void setSnapshotDeltasPerBase(int snapshotDeltasPerBase) {
+        this.snapshotDeltasPerBase = snapshotDeltasPerBase;
+    }
 }
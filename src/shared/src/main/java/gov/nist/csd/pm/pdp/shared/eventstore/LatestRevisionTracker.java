@@ -9,6 +9,8 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
@@ -17,19 +19,27 @@ import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Subscribes to the EventStoreDB stream (from end) and tracks the latest known revision.
- * Does not process events — only records revision numbers for consistency checks.
+ * Does not process events — only records revision numbers, and when they were observed, for consistency checks.
  */
 @Service
 public class LatestRevisionTracker {
 
 	private static final Logger logger = LoggerFactory.getLogger(LatestRevisionTracker.class);
 
+	private static final int MAX_OBSERVED_REVISIONS = 4096;
+
 	private final EventStoreConnectionManager eventStoreConnectionManager;
 	private final EventStoreDBConfig eventStoreDBConfig;
 	private final AtomicLong latestRevision;
+	private final ConcurrentSkipListMap<Long, Long> observedAt;
+	// the size of observedAt, it is only changed on the subscription thread
+	private int observedCount;
+	// the latest revision the local policy was asked about, observed revisions up to it are pruned
+	private final AtomicLong appliedRevision;
 	private final Retry retry;
 
 	private volatile boolean initialized;
+	private volatile CompletableFuture<Void> initializedFuture;
 	private final ReentrantLock lock;
 	private final Condition initializedCondition;
 
@@ -38,7 +48,10 @@ public class LatestRevisionTracker {
 		this.eventStoreConnectionManager = eventStoreConnectionManager;
 		this.eventStoreDBConfig = eventStoreDBConfig;
 		this.latestRevision = new AtomicLong(-1);
+		this.observedAt = new ConcurrentSkipListMap<>();
+		this.appliedRevision = new AtomicLong(-1);
 		this.initialized = false;
+		this.initializedFuture = new CompletableFuture<>();
 		this.lock = new ReentrantLock();
 		this.initializedCondition = lock.newCondition();
 
@@ -86,6 +99,66 @@ public class LatestRevisionTracker {
 		return latestRevision.get();
 	}
 
+	/**
+	 * Returns a future that completes with the latest known revision once the tracker is initialized, without blocking
+	 * the caller. The future fails with a {@link TimeoutException} if the tracker is not initialized within
+	 * {@code timeoutMs} milliseconds.
+	 */
+	public CompletableFuture<Long> latestRevisionFuture(long timeoutMs) {
+		if (initialized) {
+			return CompletableFuture.completedFuture(latestRevision.get());
+		}
+
+		return initializedFuture
+				.thenApply(ignored -> latestRevision.get())
+				.orTimeout(timeoutMs, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Returns how long, in milliseconds, a policy at the given revision has been behind, measured from when the
+	 * tracker observed the first revision after it. Returns 0 if no later revision has been observed and
+	 * {@link Long#MAX_VALUE} if a later revision exists but when it was appended is unknown, e.g. it was appended
+	 * before the tracker started.
+	 */
+	public long stalenessMillis(long revision) {
+		// revisions at or before this one are applied and will not be asked about again, the subscription thread
+		// prunes them
+		appliedRevision.accumulateAndGet(revision, Math::max);
+
+		if (latestRevision.get() <= revision) {
+			return 0;
+		}
+
+		Long firstUnappliedAt = observedAt.get(revision + 1);
+		if (firstUnappliedAt == null) {
+			return Long.MAX_VALUE;
+		}
+
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - firstUnappliedAt);
+	}
+
+	/**
+	 * Record when a revision was observed. Only called on the subscription thread, which is the only thread that
+	 * changes observedAt.
+	 */
+	void observe(long revision) {
+		if (observedAt.putIfAbsent(revision, System.nanoTime()) == null) {
+			observedCount++;
+		}
+
+		long applied = appliedRevision.get();
+		while (observedCount > 0 && (observedCount > MAX_OBSERVED_REVISIONS || observedAt.firstKey() <= applied)) {
+			observedAt.pollFirstEntry();
+			observedCount--;
+		}
+
+		latestRevision.accumulateAndGet(revision, Math::max);
+	}
+
+	int observedCount() {
+		return observedCount;
+	}
+
 	private void startSubscriptionWithRetry() {
 		retry.executeRunnable(() -> {
 			try {
@@ -109,7 +182,7 @@ public class LatestRevisionTracker {
 					@Override
 					public void onEvent(Subscription subscription, ResolvedEvent event) {
 						long revision = event.getEvent().getRevision();
-						latestRevision.accumulateAndGet(revision, Math::max);
+						observe(revision);
 						logger.debug("Latest revision tracker updated to {}", revision);
 					}
 
@@ -117,6 +190,9 @@ public class LatestRevisionTracker {
 					public void onCancelled(Subscription subscription, Throwable exception) {
 						logger.warn("Latest revision tracker subscription cancelled", exception);
 						initialized = false;
+						if (initializedFuture.isDone()) {
+							initializedFuture = new CompletableFuture<>();
+						}
 						startSubscriptionWithRetry();
 					}
 				}, options)
@@ -126,6 +202,7 @@ public class LatestRevisionTracker {
 		readCurrentLatestRevision(stream);
 
 		initialized = true;
+		initializedFuture.complete(null);
 		lock.lock();
 		try {
 			initializedCondition.signalAll();
@@ -10,8 +10,10 @@ import gov.nist.csd.pm.pdp.proto.event.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class PolicyEventHandler {
 
@@ -19,30 +21,62 @@ public class PolicyEventHandler {
 
     private final PAP pap;
     private final boolean handleObligations;
+    private final List<AppliedEventListener> appliedEventListeners;
+    // a lock rather than the handler's monitor so a virtual thread waiting for it does not pin its carrier
+    private final ReentrantLock lock = new ReentrantLock();
 
     public PolicyEventHandler(PAP pap, boolean handleObligations) {
+        this(pap, handleObligations, List.of());
+    }
+
+    public PolicyEventHandler(PAP pap, boolean handleObligations, List<AppliedEventListener> appliedEventListeners) {
         this.pap = pap;
         this.handleObligations = handleObligations;
+        this.appliedEventListeners = appliedEventListeners;
     }
 
-    public synchronized void handleEvents(Iterable<PMEvent> events) throws PMException {
-        pap.beginTx();
+    public void handleEvents(Iterable<PMEvent> events) throws PMException {
+        lock.lock();
+        try {
+            pap.beginTx();
 
-        PolicyStore policyStore = pap.policyStore();
-        for (PMEvent e : events) {
-            handleEvent(e, policyStore);
-        }
+            PolicyStore policyStore = pap.policyStore();
+            List<PMEvent> applied = new ArrayList<>();
+            for (PMEvent e : events) {
+                handleEvent(e, policyStore);
+                applied.add(e);
+            }
 
-        pap.commit();
+            pap.commit();
+
+            for (PMEvent e : applied) {
+                notifyApplied(e);
+            }
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public synchronized void handleEvent(PMEvent event) throws PMException {
-        pap.beginTx();
+    public void handleEvent(PMEvent event) throws PMException {
+        lock.lock();
+        try {
+            pap.beginTx();
 
-        PolicyStore policyStore = pap.policyStore();
-        handleEvent(event, policyStore);
+            PolicyStore policyStore = pap.policyStore();
+            handleEvent(event, policyStore);
 
-        pap.commit();
+            pap.commit();
+
+            notifyApplied(event);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void notifyApplied(PMEvent event) {
+        for (AppliedEventListener listener : appliedEventListeners) {
+            listener.onEventApplied(event);
+        }
     }
 
     private void handleEvent(PMEvent pmEvent, PolicyStore policyStore) throws PMException {
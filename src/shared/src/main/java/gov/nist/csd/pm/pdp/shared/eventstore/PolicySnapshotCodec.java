@@ -0,0 +1,445 @@
+package gov.nist.csd.pm.pdp.shared.eventstore;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.WireFormat;
+import gov.nist.csd.pm.core.common.exception.PMException;
+import gov.nist.csd.pm.core.common.graph.node.Node;
+import gov.nist.csd.pm.core.common.graph.node.NodeType;
+import gov.nist.csd.pm.core.common.prohibition.NodeProhibition;
+import gov.nist.csd.pm.core.common.prohibition.ProcessProhibition;
+import gov.nist.csd.pm.core.common.prohibition.Prohibition;
+import gov.nist.csd.pm.core.pap.PAP;
+import gov.nist.csd.pm.core.pap.graph.Association;
+import gov.nist.csd.pm.core.pap.obligation.Obligation;
+import gov.nist.csd.pm.core.pap.operation.Operation;
+import gov.nist.csd.pm.core.pap.operation.accessright.AccessRightSet;
+import gov.nist.csd.pm.core.pap.pml.statement.PMLStatementSerializable;
+import gov.nist.csd.pm.core.pap.query.GraphQuery;
+import gov.nist.csd.pm.core.pap.store.PolicyStore;
+import gov.nist.csd.pm.pdp.proto.event.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Encodes a policy as a {@link PolicySnapshot} and restores it. The graph, which is the bulk of a policy, is written as
+ * a node table and edge lists that refer to nodes by index and is restored directly into the policy store without
+ * going through PML or the JSON deserializer. Prohibitions, operations and obligations are written as the events that
+ * create them and restored by the {@link PolicyEventHandler}.
+ *
+ * The snapshot is written and read a field at a time, so a snapshot streamed to and from chunks is never held in
+ * memory whole. Access rights are added to the dictionary as they are first used, and nodes are written before any
+ * edge that refers to them.
+ *
+ * A {@link SnapshotDelta} holds the current state of the nodes and prohibitions changed since a full snapshot and refers
+ * to nodes by id, as the nodes it refers to are not necessarily in it.
+ */
+public class PolicySnapshotCodec {
+
+    private PolicySnapshotCodec() {
+    }
+
+    public static PolicySnapshot encode(PAP pap) throws PMException {
+        ByteString.Output out = ByteString.newOutput();
+        try {
+            encode(pap, out);
+            return PolicySnapshot.parseFrom(out.toByteString());
+        } catch (IOException e) {
+            // not thrown writing to memory
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Write the policy to the output stream as a serialized {@link PolicySnapshot}. The stream is flushed, not closed.
+     */
+    public static void encode(PAP pap, OutputStream outputStream) throws PMException, IOException {
+        CodedOutputStream out = CodedOutputStream.newInstance(outputStream);
+        GraphQuery graph = pap.query().graph();
+
+        for (String accessRight : pap.query().operations().getResourceAccessRights()) {
+            out.writeString(PolicySnapshot.RESOURCE_ACCESS_RIGHTS_FIELD_NUMBER, accessRight);
+        }
+
+        Collection<Node> nodes = graph.search(NodeType.ANY, new HashMap<>());
+        Map<Long, Integer> indexes = new HashMap<>(nodes.size() * 2);
+        for (Node node : nodes) {
+            indexes.put(node.getId(), indexes.size());
+            out.writeMessage(PolicySnapshot.NODES_FIELD_NUMBER, toSnapshotNode(node));
+        }
+
+        Map<String, Integer> accessRights = new HashMap<>();
+        for (Node node : nodes) {
+            int ascendant = indexes.get(node.getId());
+            writeAssignments(out, ascendant, graph.getAdjacentDescendants(node.getId()), indexes);
+
+            if (node.getType() != NodeType.UA) {
+                continue;
+            }
+
+            for (Association association : graph.getAssociationsWithSource(node.getId())) {
+                SnapshotAssociation.Builder associationBuilder = SnapshotAssociation.newBuilder()
+                        .setUa(ascendant)
+                        .setTarget(indexes.get(association.target()));
+                for (String accessRight : association.arset()) {
+                    Integer index = accessRights.get(accessRight);
+                    if (index == null) {
+                        index = accessRights.size();
+                        accessRights.put(accessRight, index);
+                        out.writeString(PolicySnapshot.ACCESS_RIGHTS_FIELD_NUMBER, accessRight);
+                    }
+
+                    associationBuilder.addAccessRights(index);
+                }
+
+                out.writeMessage(PolicySnapshot.ASSOCIATIONS_FIELD_NUMBER, associationBuilder.build());
+            }
+        }
+
+        for (Prohibition prohibition : pap.query().prohibitions().getProhibitions()) {
+            out.writeMessage(PolicySnapshot.PROHIBITIONS_FIELD_NUMBER, toProhibitionCreated(prohibition));
+        }
+
+        // operations that are not defined in PML are registered by plugins on startup and are not part of the policy
+        for (Operation<?> operation : pap.query().operations().getOperations()) {
+            if (operation instanceof PMLStatementSerializable pmlStmtsOperation) {
+                out.writeMessage(PolicySnapshot.OPERATIONS_FIELD_NUMBER, OperationCreated.newBuilder()
+                        .setPml(pmlStmtsOperation.toFormattedString(0))
+                        .build());
+            }
+        }
+
+        for (Obligation obligation : pap.query().obligations().getObligations()) {
+            out.writeMessage(PolicySnapshot.OBLIGATIONS_FIELD_NUMBER, ObligationCreated.newBuilder()
+                    .setAuthor(obligation.getAuthorId())
+                    .setPml(obligation.toString())
+                    .build());
+        }
+
+        out.flush();
+    }
+
+    /**
+     * Restore the snapshot into the PAP, which is expected to be empty. The graph is restored in one transaction and
+     * the rest of the policy in a second one.
+     */
+    public static void decode(PolicySnapshot snapshot, PAP pap) throws PMException {
+        try {
+            decode(snapshot.toByteString().newInput(), pap);
+        } catch (IOException e) {
+            // not thrown reading from memory
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Restore a serialized {@link PolicySnapshot} read from the input stream into the PAP, which is expected to be
+     * empty. Nodes and edges are created as they are read.
+     */
+    public static void decode(InputStream inputStream, PAP pap) throws PMException, IOException {
+        decode(CodedInputStream.newInstance(inputStream), pap);
+    }
+
+    /**
+     * Restore a serialized {@link PolicySnapshot} held in the buffer into the PAP, which is expected to be empty. The
+     * buffer is read in place, a memory mapped file is not copied onto the heap first.
+     */
+    public static void decode(ByteBuffer buffer, PAP pap) throws PMException, IOException {
+        decode(CodedInputStream.newInstance(buffer), pap);
+    }
+
+    private static void decode(CodedInputStream in, PAP pap) throws PMException, IOException {
+        ExtensionRegistryLite registry = ExtensionRegistryLite.getEmptyRegistry();
+
+        List<String> accessRights = new ArrayList<>();
+        AccessRightSet resourceAccessRights = new AccessRightSet();
+        long[] ids = new long[1024];
+        int nodeCount = 0;
+        int ascendant = -1;
+        List<PMEvent> events = new ArrayList<>();
+
+        pap.beginTx();
+        try {
+            PolicyStore policyStore = pap.policyStore();
+
+            int tag;
+            while ((tag = in.readTag()) != 0) {
+                // the size limit applies to the whole stream, snapshots can be larger
+                in.resetSizeCounter();
+
+                switch (WireFormat.getTagFieldNumber(tag)) {
+                    case PolicySnapshot.ACCESS_RIGHTS_FIELD_NUMBER -> accessRights.add(in.readString());
+                    case PolicySnapshot.RESOURCE_ACCESS_RIGHTS_FIELD_NUMBER -> resourceAccessRights.add(in.readString());
+                    case PolicySnapshot.NODES_FIELD_NUMBER -> {
+                        SnapshotNode node = in.readMessage(SnapshotNode.parser(), registry);
+                        policyStore.graph().createNode(node.getId(), node.getName(), NodeType.valueOf(node.getType().name()));
+                        if (node.getPropertiesCount() > 0) {
+                            policyStore.graph().setNodeProperties(node.getId(), node.getPropertiesMap());
+                        }
+
+                        if (nodeCount == ids.length) {
+                            ids = Arrays.copyOf(ids, ids.length * 2);
+                        }
+                        ids[nodeCount++] = node.getId();
+                    }
+                    case PolicySnapshot.ASSIGNMENTS_FIELD_NUMBER -> {
+                        // packed or not, the values are pairs of ascendant and descendant
+                        if (WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+                            int limit = in.pushLimit(in.readRawVarint32());
+                            while (in.getBytesUntilLimit() > 0) {
+                                ascendant = readAssignment(in.readInt32(), ascendant, ids, policyStore);
+                            }
+                            in.popLimit(limit);
+                        } else {
+                            ascendant = readAssignment(in.readInt32(), ascendant, ids, policyStore);
+                        }
+                    }
+                    case PolicySnapshot.ASSOCIATIONS_FIELD_NUMBER -> {
+                        SnapshotAssociation association = in.readMessage(SnapshotAssociation.parser(), registry);
+                        AccessRightSet arset = new AccessRightSet();
+                        for (int index : association.getAccessRightsList()) {
+                            arset.add(accessRights.get(index));
+                        }
+
+                        policyStore.graph().createAssociation(ids[association.getUa()], ids[association.getTarget()], arset);
+                    }
+                    // written in the order they are created in, operations before the obligations that can call them
+                    case PolicySnapshot.PROHIBITIONS_FIELD_NUMBER -> events.add(PMEvent.newBuilder()
+                            .setProhibitionCreated(in.readMessage(ProhibitionCreated.parser(), registry))
+                            .build());
+                    case PolicySnapshot.OPERATIONS_FIELD_NUMBER -> events.add(PMEvent.newBuilder()
+                            .setOperationCreated(in.readMessage(OperationCreated.parser(), registry))
+                            .build());
+                    case PolicySnapshot.OBLIGATIONS_FIELD_NUMBER -> events.add(PMEvent.newBuilder()
+                            .setObligationCreated(in.readMessage(ObligationCreated.parser(), registry))
+                            .build());
+                    default -> in.skipField(tag);
+                }
+            }
+
+            policyStore.operations().setResourceAccessRights(resourceAccessRights);
+            pap.commit();
+        } catch (PMException | IOException | RuntimeException e) {
+            pap.rollback();
+            throw e;
+        }
+
+        if (!events.isEmpty()) {
+            new PolicyEventHandler(pap, true).handleEvents(events);
+        }
+    }
+
+    /**
+     * Encode the current state of the changed nodes and prohibitions as a delta on top of the full snapshot at
+     * baseRevision. Nodes and prohibitions that no longer exist are written as deleted.
+     */
+    public static SnapshotDelta encodeDelta(PAP pap, long baseRevision, Collection<Long> nodes,
+                                            Collection<String> prohibitions) throws PMException {
+        SnapshotDelta.Builder builder = SnapshotDelta.newBuilder()
+                .setBaseRevision(baseRevision);
+        GraphQuery graph = pap.query().graph();
+
+        for (long id : nodes) {
+            if (!graph.nodeExists(id)) {
+                builder.addDeletedNodes(id);
+                continue;
+            }
+
+            Node node = graph.getNodeById(id);
+            builder.addNodes(toSnapshotNode(node));
+
+            Collection<Long> descendants = graph.getAdjacentDescendants(id);
+            if (!descendants.isEmpty()) {
+                builder.addAssignments(AssignmentCreated.newBuilder()
+                        .setAscendant(id)
+                        .addAllDescendants(descendants));
+            }
+
+            if (node.getType() == NodeType.UA) {
+                for (Association association : graph.getAssociationsWithSource(id)) {
+                    builder.addAssociations(AssociationCreated.newBuilder()
+                            .setUa(id)
+                            .setTarget(association.target())
+                            .addAllArset(association.arset()));
+                }
+            }
+        }
+
+        Map<String, Prohibition> current = new HashMap<>();
+        for (Prohibition prohibition : pap.query().prohibitions().getProhibitions()) {
+            current.put(prohibition.getName(), prohibition);
+        }
+
+        for (String name : prohibitions) {
+            Prohibition prohibition = current.get(name);
+            if (prohibition == null) {
+                builder.addDeletedProhibitions(name);
+            } else {
+                builder.addProhibitions(toProhibitionCreated(prohibition));
+            }
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Apply a delta to the PAP, which holds its base snapshot. The outgoing edges of every changed node are replaced
+     * and changed prohibitions are recreated. Nodes and prohibitions created and deleted again since the base are not
+     * in it and are skipped.
+     */
+    public static void applyDelta(SnapshotDelta delta, PAP pap) throws PMException {
+        GraphQuery graph = pap.query().graph();
+
+        Set<String> prohibitionNames = new HashSet<>();
+        for (Prohibition prohibition : pap.query().prohibitions().getProhibitions()) {
+            prohibitionNames.add(prohibition.getName());
+        }
+
+        pap.beginTx();
+        try {
+            PolicyStore policyStore = pap.policyStore();
+
+            List<String> changedProhibitions = new ArrayList<>(delta.getDeletedProhibitionsList());
+            for (ProhibitionCreated prohibitionCreated : delta.getProhibitionsList()) {
+                changedProhibitions.add(prohibitionCreated.getName());
+            }
+            for (String name : changedProhibitions) {
+                if (prohibitionNames.contains(name)) {
+                    policyStore.prohibitions().deleteProhibition(name);
+                }
+            }
+
+            List<Long> changedNodes = new ArrayList<>(delta.getDeletedNodesList());
+            for (SnapshotNode node : delta.getNodesList()) {
+                changedNodes.add(node.getId());
+            }
+            for (long id : changedNodes) {
+                if (!graph.nodeExists(id)) {
+                    continue;
+                }
+
+                for (long descendant : graph.getAdjacentDescendants(id)) {
+                    policyStore.graph().deleteAssignment(id, descendant);
+                }
+
+                if (graph.getNodeById(id).getType() == NodeType.UA) {
+                    for (Association association : graph.getAssociationsWithSource(id)) {
+                        policyStore.graph().deleteAssociation(id, association.target());
+                    }
+                }
+            }
+
+            for (long id : delta.getDeletedNodesList()) {
+                if (graph.nodeExists(id)) {
+                    policyStore.graph().deleteNode(id);
+                }
+            }
+
+            for (SnapshotNode node : delta.getNodesList()) {
+                if (!graph.nodeExists(node.getId())) {
+                    policyStore.graph().createNode(node.getId(), node.getName(), NodeType.valueOf(node.getType().name()));
+                }
+
+                policyStore.graph().setNodeProperties(node.getId(), node.getPropertiesMap());
+            }
+
+            for (AssignmentCreated assignmentCreated : delta.getAssignmentsList()) {
+                for (long descendant : assignmentCreated.getDescendantsList()) {
+                    policyStore.graph().createAssignment(assignmentCreated.getAscendant(), descendant);
+                }
+            }
+
+            for (AssociationCreated associationCreated : delta.getAssociationsList()) {
+                policyStore.graph().createAssociation(
+                        associationCreated.getUa(),
+                        associationCreated.getTarget(),
+                        new AccessRightSet(associationCreated.getArsetList())
+                );
+            }
+
+            pap.commit();
+        } catch (PMException | RuntimeException e) {
+            pap.rollback();
+            throw e;
+        }
+
+        List<PMEvent> events = new ArrayList<>();
+        for (ProhibitionCreated prohibitionCreated : delta.getProhibitionsList()) {
+            events.add(PMEvent.newBuilder().setProhibitionCreated(prohibitionCreated).build());
+        }
+
+        if (!events.isEmpty()) {
+            new PolicyEventHandler(pap, true).handleEvents(events);
+        }
+    }
+
+    private static SnapshotNode toSnapshotNode(Node node) {
+        return SnapshotNode.newBuilder()
+                .setId(node.getId())
+                .setName(node.getName())
+                .setType(SnapshotNode.Type.valueOf(node.getType().name()))
+                .putAllProperties(node.getProperties())
+                .build();
+    }
+
+    /**
+     * Returns the index of the ascendant still waiting for its descendant, or -1 once the assignment is created.
+     */
+    private static int readAssignment(int index, int ascendant, long[] ids, PolicyStore policyStore) throws PMException {
+        if (ascendant < 0) {
+            return index;
+        }
+
+        policyStore.graph().createAssignment(ids[ascendant], ids[index]);
+        return -1;
+    }
+
+    private static void writeAssignments(CodedOutputStream out, int ascendant, Collection<Long> descendants,
+                                         Map<Long, Integer> indexes) throws IOException {
+        if (descendants.isEmpty()) {
+            return;
+        }
+
+        int[] values = new int[descendants.size() * 2];
+        int size = 0;
+        int i = 0;
+        for (long descendant : descendants) {
+            values[i++] = ascendant;
+            values[i++] = indexes.get(descendant);
+            size += CodedOutputStream.computeInt32SizeNoTag(values[i - 2])
+                    + CodedOutputStream.computeInt32SizeNoTag(values[i - 1]);
+        }
+
+        // one packed run per ascendant, runs of the same field are concatenated when read
+        out.writeTag(PolicySnapshot.ASSIGNMENTS_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        out.writeUInt32NoTag(size);
+        for (int value : values) {
+            out.writeInt32NoTag(value);
+        }
+    }
+
+    private static ProhibitionCreated toProhibitionCreated(Prohibition prohibition) {
+        ProhibitionCreated.Builder builder = ProhibitionCreated.newBuilder()
+                .setName(prohibition.getName())
+                .addAllArset(prohibition.getAccessRightSet())
+                .setIsConjunctive(prohibition.isConjunctive())
+                .addAllInclusionSet(prohibition.getInclusionSet())
+                .addAllExclusionSet(prohibition.getExclusionSet());
+
+        switch (prohibition) {
+            case NodeProhibition nodeProhibition -> builder.setNode(nodeProhibition.getNodeId());
+            case ProcessProhibition processProhibition -> builder
+                    .setNode(processProhibition.getUserId())
+                    .setProcess(processProhibition.getProcess());
+            default -> throw new IllegalArgumentException("unknown prohibition type " + prohibition.getClass());
+        }
+
+        return builder.build();
+    }
+}
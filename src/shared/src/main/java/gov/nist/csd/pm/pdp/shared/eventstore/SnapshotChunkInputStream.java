@@ -0,0 +1,114 @@
+package gov.nist.csd.pm.pdp.shared.eventstore;
+
+import com.eventstore.dbclient.EventStoreDBClient;
+import com.eventstore.dbclient.ReadStreamOptions;
+import com.eventstore.dbclient.ResolvedEvent;
+import gov.nist.csd.pm.pdp.proto.event.PMSnapshotChunk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Reads the chunks of a snapshot from the snapshot stream as one stream of bytes. Chunks are read a few at a time as
+ * they are consumed, so only those are held in memory.
+ */
+class SnapshotChunkInputStream extends InputStream {
+
+    private static final int PAGE_SIZE = 4;
+
+    private final EventStoreDBClient client;
+    private final String stream;
+    private final long firstChunkRevision;
+    private final int count;
+    private final long revision;
+    private final Deque<PMSnapshotChunk> page;
+    private int next;
+    private InputStream current;
+
+    /**
+     * @param firstChunkRevision the stream revision of the first chunk event.
+     * @param count the number of chunks.
+     * @param revision the policy revision of the snapshot, every chunk must belong to it.
+     */
+    SnapshotChunkInputStream(EventStoreDBClient client, String stream, long firstChunkRevision, int count, long revision) {
+        this.client = client;
+        this.stream = stream;
+        this.firstChunkRevision = firstChunkRevision;
+        this.count = count;
+        this.revision = revision;
+        this.page = new ArrayDeque<>(PAGE_SIZE);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!nextChunkIfDrained()) {
+            return -1;
+        }
+
+        return current.read();
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        if (!nextChunkIfDrained()) {
+            return -1;
+        }
+
+        return current.read(b, off, len);
+    }
+
+    /**
+     * Returns false once every chunk has been read.
+     */
+    private boolean nextChunkIfDrained() throws IOException {
+        while (current == null || current.available() == 0) {
+            if (next == count) {
+                return false;
+            }
+
+            if (page.isEmpty()) {
+                readPage();
+            }
+
+            PMSnapshotChunk chunk = page.poll();
+            if (chunk.getRevision() != revision || chunk.getIndex() != next) {
+                throw new IOException("expected chunk " + next + " of the snapshot at revision " + revision +
+                        " but found chunk " + chunk.getIndex() + " of the snapshot at revision " + chunk.getRevision());
+            }
+
+            current = chunk.getData().newInput();
+            next++;
+        }
+
+        return true;
+    }
+
+    private void readPage() throws IOException {
+        ReadStreamOptions options = ReadStreamOptions.get()
+                .forwards()
+                .fromRevision(firstChunkRevision + next)
+                .maxCount(Math.min(PAGE_SIZE, count - next));
+
+        try {
+            for (ResolvedEvent event : client.readStream(stream, options).get().getEvents()) {
+                page.add(PMSnapshotChunk.parseFrom(event.getOriginalEvent().getEventData()));
+            }
+        } catch (ExecutionException e) {
+            throw new IOException("could not read snapshot chunk " + next, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted reading snapshot chunk " + next, e);
+        }
+
+        if (page.isEmpty()) {
+            throw new IOException("snapshot chunk " + next + " of the snapshot at revision " + revision + " is missing");
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package gov.nist.csd.pm.pdp.shared.eventstore;
+
+import com.eventstore.dbclient.EventData;
+import com.eventstore.dbclient.EventStoreDBClient;
+import com.google.protobuf.ByteString;
+import gov.nist.csd.pm.pdp.proto.event.PMSnapshotChunk;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Appends the bytes written to it to the snapshot stream as PMSnapshotChunk events of at most chunkSize bytes. A chunk
+ * is appended as soon as it is full, so only one chunk is held in memory. The last chunk is appended on close.
+ */
+class SnapshotChunkOutputStream extends OutputStream {
+
+    static final String CHUNK_EVENT_TYPE = "PMSnapshotChunk";
+
+    private final EventStoreDBClient client;
+    private final String stream;
+    private final long revision;
+    private final byte[] buffer;
+    private int position;
+    private int chunks;
+    private long bytes;
+
+    SnapshotChunkOutputStream(EventStoreDBClient client, String stream, long revision, int chunkSize) {
+        this.client = client;
+        this.stream = stream;
+        this.revision = revision;
+        this.buffer = new byte[chunkSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        buffer[position++] = (byte) b;
+        if (position == buffer.length) {
+            appendChunk();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = Math.min(len, buffer.length - position);
+            System.arraycopy(b, off, buffer, position, n);
+            position += n;
+            off += n;
+            len -= n;
+
+            if (position == buffer.length) {
+                appendChunk();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        appendChunk();
+    }
+
+    int chunkCount() {
+        return chunks;
+    }
+
+    long byteCount() {
+        return bytes;
+    }
+
+    private void appendChunk() throws IOException {
+        if (position == 0) {
+            return;
+        }
+
+        PMSnapshotChunk chunk = PMSnapshotChunk.newBuilder()
+                .setRevision(revision)
+                .setIndex(chunks)
+                .setData(ByteString.copyFrom(buffer, 0, position))
+                .build();
+        EventData eventData = EventData.builderAsBinary(CHUNK_EVENT_TYPE, chunk.toByteArray()).build();
+
+        try {
+            client.appendToStream(stream, eventData).get();
+        } catch (ExecutionException e) {
+            throw new IOException("could not append snapshot chunk " + chunks, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted appending snapshot chunk " + chunks, e);
+        }
+
+        chunks++;
+        bytes += position;
+        position = 0;
+    }
+}
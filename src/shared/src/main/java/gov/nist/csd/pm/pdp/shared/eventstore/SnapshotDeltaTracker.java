@@ -0,0 +1,84 @@
+package gov.nist.csd.pm.pdp.shared.eventstore;
+
+import gov.nist.csd.pm.pdp.proto.event.PMEvent;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Records the nodes and prohibitions changed by applied events since the last full snapshot, so the next snapshot can
+ * be written as a delta on top of it. A change a delta cannot express, to obligations, operations or resource access
+ * rights, makes the next snapshot a full one.
+ */
+class SnapshotDeltaTracker implements AppliedEventListener {
+
+    private final Set<Long> nodes;
+    private final Set<String> prohibitions;
+    private long baseRevision;
+    private int deltasSinceBase;
+    private boolean requiresBase;
+
+    SnapshotDeltaTracker() {
+        this.nodes = new HashSet<>();
+        this.prohibitions = new HashSet<>();
+        this.baseRevision = -1;
+        this.requiresBase = true;
+    }
+
+    @Override
+    public synchronized void onEventApplied(PMEvent event) {
+        switch (event.getEventCase()) {
+            case POLICY_CLASS_CREATED -> nodes.add(event.getPolicyClassCreated().getId());
+            case USER_ATTRIBUTE_CREATED -> nodes.add(event.getUserAttributeCreated().getId());
+            case OBJECT_ATTRIBUTE_CREATED -> nodes.add(event.getObjectAttributeCreated().getId());
+            case USER_CREATED -> nodes.add(event.getUserCreated().getId());
+            case OBJECT_CREATED -> nodes.add(event.getObjectCreated().getId());
+            case ASSIGNMENT_CREATED -> nodes.add(event.getAssignmentCreated().getAscendant());
+            case ASSIGNMENT_DELETED -> nodes.add(event.getAssignmentDeleted().getAscendant());
+            case ASSOCIATION_CREATED -> nodes.add(event.getAssociationCreated().getUa());
+            case ASSOCIATION_DELETED -> nodes.add(event.getAssociationDeleted().getUa());
+            case NODE_DELETED -> nodes.add(event.getNodeDeleted().getId());
+            case NODE_PROPERTIES_SET -> nodes.add(event.getNodePropertiesSet().getId());
+            case PROHIBITION_CREATED -> prohibitions.add(event.getProhibitionCreated().getName());
+            case PROHIBITION_DELETED -> prohibitions.add(event.getProhibitionDeleted().getName());
+            case OBLIGATION_CREATED, OBLIGATION_DELETED, OPERATION_CREATED, OPERATION_DELETED,
+                 RESOURCE_ACCESS_RIGHTS_SET -> requiresBase = true;
+            case EVENT_NOT_SET -> {
+            }
+        }
+    }
+
+    /**
+     * Returns the changes to write as the next delta, or null if the next snapshot must be a full one: there is no
+     * base yet, the base is deltasPerBase deltas old, or there was a change a delta cannot express.
+     */
+    synchronized Changes nextDelta(int deltasPerBase) {
+        if (requiresBase || baseRevision < 0 || deltasSinceBase >= deltasPerBase) {
+            return null;
+        }
+
+        deltasSinceBase++;
+        return new Changes(baseRevision, Set.copyOf(nodes), Set.copyOf(prohibitions));
+    }
+
+    /**
+     * Start tracking changes from a full snapshot at the given revision. Called while the policy cannot change.
+     */
+    synchronized void baseStarted(long revision) {
+        nodes.clear();
+        prohibitions.clear();
+        baseRevision = revision;
+        deltasSinceBase = 0;
+        requiresBase = false;
+    }
+
+    /**
+     * The full snapshot could not be written, deltas cannot be written on top of it.
+     */
+    synchronized void baseFailed() {
+        requiresBase = true;
+    }
+
+    record Changes(long baseRevision, Set<Long> nodes, Set<String> prohibitions) {
+    }
+}
@@ -0,0 +1,17 @@
+package gov.nist.csd.pm.pdp.shared.eventstore;
+
+/**
+ * The format new snapshots are written in. Snapshots in either format can be restored.
+ */
+public enum SnapshotFormat {
+
+    /**
+     * The policy serialized to JSON by the PAP.
+     */
+    JSON,
+
+    /**
+     * The policy encoded as a {@link gov.nist.csd.pm.pdp.proto.event.PolicySnapshot}, see {@link PolicySnapshotCodec}.
+     */
+    BINARY
+}
@@ -1,28 +1,45 @@
 package gov.nist.csd.pm.pdp.shared.eventstore;
 
 import com.eventstore.dbclient.*;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.InvalidProtocolBufferException;
 import gov.nist.csd.pm.core.common.exception.PMException;
 import gov.nist.csd.pm.core.pap.PAP;
 import gov.nist.csd.pm.core.pap.serialization.json.JSONDeserializer;
 import gov.nist.csd.pm.core.pap.serialization.json.JSONSerializer;
 import gov.nist.csd.pm.pdp.proto.event.PMSnapshot;
+import gov.nist.csd.pm.pdp.proto.event.SnapshotChunks;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Predicate;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 @Service
 public class SnapshotService {
 
     private static final Logger logger = LoggerFactory.getLogger(SnapshotService.class);
 
+    static final String SNAPSHOT_EVENT_TYPE = "PMSnapshot";
+    private static final int SCAN_PAGE_SIZE = 32;
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_CAPTURE_ATTEMPTS = 3;
+
     private final EventStoreDBConfig eventStoreDBConfig;
     private final PAP pap;
     private final EventStoreConnectionManager eventStoreConnectionManager;
     private final CurrentRevisionService currentRevision;
+    private final SnapshotDeltaTracker deltaTracker;
 
     public SnapshotService(EventStoreDBConfig eventStoreDBConfig,
                            EventStoreConnectionManager eventStoreConnectionManager,
@@ -32,26 +49,245 @@ public class SnapshotService {
         this.eventStoreConnectionManager = eventStoreConnectionManager;
         this.pap = pap;
         this.currentRevision = currentRevision;
+        this.deltaTracker = new SnapshotDeltaTracker();
     }
 
-    public void snapshot() throws PMException, ExecutionException, InterruptedException {
-        long revision;
-        String json;
+    /**
+     * Events applied to the policy must be passed to this listener for snapshots to be written as deltas.
+     */
+    public AppliedEventListener deltaTracker() {
+        return deltaTracker;
+    }
 
+    /**
+     * Write a snapshot of the policy at the current revision, captured while holding the PAP's monitor. See
+     * {@link #snapshot(PAP)}.
+     */
+    public SnapshotResult snapshot() throws PMException, ExecutionException, InterruptedException {
+        return snapshot(null);
+    }
+
+    /**
+     * Write a snapshot of the policy at the current revision. Callers applying events must hold the PAP's monitor while
+     * they apply an event and set the current revision, so a policy read under the monitor is at the current revision.
+     * A delta is encoded under the monitor, it only reads the changed nodes and prohibitions.
+     *
+     * A full snapshot is captured from capturePap when it is given: a PAP over the same policy whose reads do not join
+     * the transactions events are applied in. The monitor is held only to read the revision, the policy is encoded in
+     * a read transaction of capturePap, and the revision is checked again under the monitor. The read transaction is
+     * not isolated from later commits, so if events were applied in the meantime the capture is repeated at the new
+     * revision, and after three attempts it is made under the monitor. Without capturePap the
+     * policy is captured under the monitor and events are held back while it is encoded.
+     *
+     * When the snapshot is chunked the policy is compressed as it is encoded so only the compressed policy is held in
+     * memory. Appending it to the snapshot stream happens after the monitor is released.
+     *
+     * @param capturePap the PAP to capture full snapshots from, or null to capture them from the PAP under its monitor.
+     */
+    public SnapshotResult snapshot(PAP capturePap) throws PMException, ExecutionException, InterruptedException {
+        EventStoreDBClient client = eventStoreConnectionManager.getOrInitClient();
+        PMSnapshot.Builder builder = PMSnapshot.newBuilder();
+        ByteString base = null;
+
+        long start = System.nanoTime();
+        synchronized (pap) {
+            builder.setRevision(currentRevision.get());
+
+            SnapshotDeltaTracker.Changes changes = deltaTracker.nextDelta(eventStoreDBConfig.getSnapshotDeltasPerBase());
+            if (changes != null) {
+                builder.setDelta(PolicySnapshotCodec.encodeDelta(
+                        pap, changes.baseRevision(), changes.nodes(), changes.prohibitions()));
+            } else {
+                deltaTracker.baseStarted(builder.getRevision());
+                if (capturePap == null) {
+                    try {
+                        base = capture(pap);
+                    } catch (PMException | RuntimeException e) {
+                        deltaTracker.baseFailed();
+                        throw e;
+                    }
+                }
+            }
+        }
+        long captureNanos = System.nanoTime() - start;
+
+        if (!builder.hasDelta() && base == null) {
+            CaptureResult captured;
+            try {
+                captured = captureConsistent(capturePap, builder.getRevision());
+            } catch (PMException | RuntimeException e) {
+                deltaTracker.baseFailed();
+                throw e;
+            }
+
+            builder.setRevision(captured.revision());
+            base = captured.policy();
+            captureNanos += captured.heldNanos();
+        }
+
+        PMSnapshot pmSnapshot;
+        byte[] eventBytes;
+        long chunkBytes = 0;
+        try {
+            ByteString binary = null;
+            if (base != null) {
+                if (eventStoreDBConfig.getSnapshotChunkSize() > 0) {
+                    SnapshotChunks chunks = writeChunks(client, builder.getRevision(), base);
+                    builder.setChunks(chunks);
+                    chunkBytes = chunks.getCompressedSize();
+                } else if (eventStoreDBConfig.getSnapshotFormat() == SnapshotFormat.JSON) {
+                    builder.setJson(base.toStringUtf8());
+                } else {
+                    binary = base;
+                }
+            }
+
+            // the snapshot event is written after its chunks so readers never see a partly written snapshot
+            pmSnapshot = builder.build();
+            eventBytes = binary == null ? pmSnapshot.toByteArray() : withBinary(pmSnapshot, binary);
+            EventData eventData = EventData.builderAsBinary(SNAPSHOT_EVENT_TYPE, eventBytes).build();
+            client.appendToStream(eventStoreDBConfig.getSnapshotStream(), eventData)
+                    .get();
+        } catch (ExecutionException | InterruptedException | RuntimeException e) {
+            if (base != null) {
+                deltaTracker.baseFailed();
+            }
+
+            throw e;
+        }
+
+        if (pmSnapshot.hasDelta()) {
+            logger.info("wrote delta snapshot at revision {} on the base at revision {} ({} changed nodes)",
+                    pmSnapshot.getRevision(), pmSnapshot.getDelta().getBaseRevision(),
+                    pmSnapshot.getDelta().getNodesCount() + pmSnapshot.getDelta().getDeletedNodesCount());
+        }
+
+        return new SnapshotResult(
+                pmSnapshot.getRevision(),
+                pmSnapshot.hasDelta(),
+                eventBytes.length + chunkBytes,
+                captureNanos,
+                System.nanoTime() - start
+        );
+    }
+
+    /**
+     * Capture the whole policy from capturePap at a revision no event is applied after until the capture is done. The
+     * delta tracker is restarted at every revision a capture is attempted at.
+     *
+     * @return the captured policy, its revision, and the time the PAP's monitor was held.
+     */
+    private CaptureResult captureConsistent(PAP capturePap, long revision) throws PMException {
+        long heldNanos = 0;
+        for (int attempt = 1; attempt <= MAX_CAPTURE_ATTEMPTS; attempt++) {
+            ByteString policy;
+            capturePap.beginTx();
+            try {
+                policy = capture(capturePap);
+            } finally {
+                capturePap.rollback();
+            }
+
+            long start = System.nanoTime();
+            synchronized (pap) {
+                long current = currentRevision.get();
+                if (current == revision) {
+                    return new CaptureResult(revision, policy, heldNanos + System.nanoTime() - start);
+                }
+
+                // events were applied while the policy was read, it may hold some of them
+                logger.debug("policy moved from revision {} to {} during snapshot capture attempt {}",
+                        revision, current, attempt);
+                revision = current;
+                deltaTracker.baseStarted(revision);
+            }
+            heldNanos += System.nanoTime() - start;
+        }
+
+        logger.info("policy changed during {} snapshot capture attempts, capturing it holding the PAP's monitor",
+                MAX_CAPTURE_ATTEMPTS);
+        long start = System.nanoTime();
         synchronized (pap) {
             revision = currentRevision.get();
-            json = pap.serialize(new JSONSerializer());
+            deltaTracker.baseStarted(revision);
+            ByteString policy = capture(pap);
+            return new CaptureResult(revision, policy, heldNanos + System.nanoTime() - start);
         }
+    }
 
-        PMSnapshot pmSnapshot = PMSnapshot.newBuilder()
-                .setJson(json)
-                .setRevision(revision)
-                .build();
-        EventData eventData = EventData.builderAsBinary("PMSnapshot", pmSnapshot.toByteArray()).build();
+    private record CaptureResult(long revision, ByteString policy, long heldNanos) {
+    }
+
+    /**
+     * Encode the whole policy in the configured format, compressed if the snapshot is chunked. The policy is compressed
+     * as it is encoded, at the fastest level, rather than copied first.
+     */
+    private ByteString capture(PAP source) throws PMException {
+        ByteString.Output out = ByteString.newOutput();
+        try (OutputStream policyOut = eventStoreDBConfig.getSnapshotChunkSize() > 0
+                ? new FastGZIPOutputStream(out)
+                : out) {
+            if (eventStoreDBConfig.getSnapshotFormat() == SnapshotFormat.JSON) {
+                policyOut.write(source.serialize(new JSONSerializer()).getBytes(StandardCharsets.UTF_8));
+            } else {
+                PolicySnapshotCodec.encode(source, policyOut);
+            }
+        } catch (IOException e) {
+            // not thrown writing to memory
+            throw new IllegalStateException(e);
+        }
+
+        return out.toByteString();
+    }
+
+    /**
+     * The serialized snapshot with the policy as its binary field. The policy was written by the codec as a serialized
+     * PolicySnapshot, which is the wire form of the field's value, so it is appended as is instead of being parsed into
+     * the message and serialized again.
+     */
+    private static byte[] withBinary(PMSnapshot pmSnapshot, ByteString policy) {
+        byte[] bytes = new byte[pmSnapshot.getSerializedSize()
+                + CodedOutputStream.computeBytesSize(PMSnapshot.BINARY_FIELD_NUMBER, policy)];
+        CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+        try {
+            pmSnapshot.writeTo(out);
+            out.writeBytes(PMSnapshot.BINARY_FIELD_NUMBER, policy);
+            out.checkNoSpaceLeft();
+        } catch (IOException e) {
+            // not thrown writing to an array of the exact size
+            throw new IllegalStateException(e);
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Append the compressed policy as chunks to the snapshot stream, appending each as it fills.
+     */
+    private SnapshotChunks writeChunks(EventStoreDBClient client, long revision, ByteString compressedPolicy)
+            throws ExecutionException, InterruptedException {
+        SnapshotFormat format = eventStoreDBConfig.getSnapshotFormat();
+        SnapshotChunkOutputStream chunks = new SnapshotChunkOutputStream(
+                client,
+                eventStoreDBConfig.getSnapshotStream(),
+                revision,
+                eventStoreDBConfig.getSnapshotChunkSize()
+        );
+
+        try (chunks) {
+            compressedPolicy.writeTo(chunks);
+        } catch (IOException e) {
+            throw failure(e);
+        }
+
+        logger.info("wrote {} snapshot at revision {} as {} chunks ({} bytes)",
+                format.name().toLowerCase(), revision, chunks.chunkCount(), chunks.byteCount());
 
-        eventStoreConnectionManager.getOrInitClient()
-                .appendToStream(eventStoreDBConfig.getSnapshotStream(), eventData)
-                .get();
+        return SnapshotChunks.newBuilder()
+                .setFormat(format == SnapshotFormat.JSON ? SnapshotChunks.Format.JSON : SnapshotChunks.Format.BINARY)
+                .setCount(chunks.chunkCount())
+                .setCompressedSize(chunks.byteCount())
+                .build();
     }
 
     /**
@@ -60,36 +296,161 @@ public class SnapshotService {
      */
     public long restoreLatestSnapshot() throws PMException, ExecutionException, InterruptedException,
             InvalidProtocolBufferException {
-        ReadStreamOptions options = ReadStreamOptions.get()
-                .backwards()
-                .maxCount(1)
-                .fromEnd();
+        EventStoreDBClient client = eventStoreConnectionManager.getOrInitClient();
 
-        ReadResult readResult = eventStoreConnectionManager.getOrInitClient()
-                .readStream(eventStoreDBConfig.getSnapshotStream(), options)
-                .get();
-
-        List<ResolvedEvent> events = readResult.getEvents();
-        if (events.isEmpty()) {
+        SnapshotEvent latest = findSnapshotEvent(client, -1, snapshot -> true);
+        if (latest == null) {
             // return -1 to signify there are no events -- 0 represents the first event
             currentRevision.set(-1);
             return -1;
         }
 
-        ResolvedEvent first = events.getFirst();
-        RecordedEvent originalEvent = first.getOriginalEvent();
-        byte[] eventData = originalEvent.getEventData();
-        PMSnapshot pmSnapshot = PMSnapshot.parseFrom(eventData);
+        // a delta is restored on top of its base, the latest full snapshot before it at the base revision
+        PMSnapshot pmSnapshot = latest.snapshot();
+        SnapshotEvent base = latest;
+        if (pmSnapshot.hasDelta()) {
+            long baseRevision = pmSnapshot.getDelta().getBaseRevision();
+            base = findSnapshotEvent(client, latest.eventRevision() - 1,
+                    snapshot -> !snapshot.hasDelta() && snapshot.getRevision() == baseRevision);
+            if (base == null) {
+                throw new PMException("base snapshot at revision " + baseRevision + " of the delta snapshot at revision "
+                        + pmSnapshot.getRevision() + " not found");
+            }
+        }
 
-        // restore policy
+        // restore policy, snapshots written before the binary format only have the json field
+        long start = System.nanoTime();
         synchronized (pap) {
             pap.reset();
-            pap.deserialize(pmSnapshot.getJson(), new JSONDeserializer());
+
+            PMSnapshot baseSnapshot = base.snapshot();
+            switch (baseSnapshot.getPolicyCase()) {
+                case BINARY -> PolicySnapshotCodec.decode(baseSnapshot.getBinary(), pap);
+                case CHUNKS -> readChunks(client, base.eventRevision(), baseSnapshot);
+                default -> pap.deserialize(baseSnapshot.getJson(), new JSONDeserializer());
+            }
+
+            if (pmSnapshot.hasDelta()) {
+                PolicySnapshotCodec.applyDelta(pmSnapshot.getDelta(), pap);
+            }
         }
 
+        logger.info("restored {} snapshot at revision {} in {}ms",
+                pmSnapshot.getPolicyCase().name().toLowerCase(), pmSnapshot.getRevision(),
+                (System.nanoTime() - start) / 1_000_000);
+
         // set current revision to snapshot revision
         currentRevision.set(pmSnapshot.getRevision());
 
         return pmSnapshot.getRevision();
     }
+
+    /**
+     * The chunks of a snapshot are the events immediately before its snapshot event. They are read, decompressed and
+     * applied a few at a time.
+     */
+    private void readChunks(EventStoreDBClient client, long snapshotEventRevision, PMSnapshot pmSnapshot)
+            throws PMException, ExecutionException, InterruptedException {
+        SnapshotChunks chunks = pmSnapshot.getChunks();
+        SnapshotChunkInputStream chunkInputStream = new SnapshotChunkInputStream(
+                client,
+                eventStoreDBConfig.getSnapshotStream(),
+                snapshotEventRevision - chunks.getCount(),
+                chunks.getCount(),
+                pmSnapshot.getRevision()
+        );
+
+        try (InputStream in = new GZIPInputStream(chunkInputStream, GZIP_BUFFER_SIZE)) {
+            if (chunks.getFormat() == SnapshotChunks.Format.JSON) {
+                pap.deserialize(new String(in.readAllBytes(), StandardCharsets.UTF_8), new JSONDeserializer());
+            } else {
+                PolicySnapshotCodec.decode(in, pap);
+            }
+        } catch (IOException e) {
+            throw failure(e);
+        }
+    }
+
+    /**
+     * The latest snapshot event at or before the given stream revision, or the end of the stream if it is negative,
+     * that matches the filter. The chunks of snapshots are skipped, including those of a snapshot that was not
+     * completed. Returns null if there is none.
+     */
+    private SnapshotEvent findSnapshotEvent(EventStoreDBClient client, long fromRevision, Predicate<PMSnapshot> filter)
+            throws ExecutionException, InterruptedException, InvalidProtocolBufferException {
+        ReadStreamOptions options = ReadStreamOptions.get()
+                .backwards()
+                .maxCount(SCAN_PAGE_SIZE);
+        options = fromRevision < 0 ? options.fromEnd() : options.fromRevision(fromRevision);
+
+        while (true) {
+            List<ResolvedEvent> events = client.readStream(eventStoreDBConfig.getSnapshotStream(), options)
+                    .get()
+                    .getEvents();
+
+            for (ResolvedEvent event : events) {
+                RecordedEvent recordedEvent = event.getOriginalEvent();
+                if (!SNAPSHOT_EVENT_TYPE.equals(recordedEvent.getEventType())) {
+                    continue;
+                }
+
+                PMSnapshot snapshot = PMSnapshot.parseFrom(recordedEvent.getEventData());
+                if (filter.test(snapshot)) {
+                    return new SnapshotEvent(recordedEvent.getRevision(), snapshot);
+                }
+            }
+
+            if (events.size() < SCAN_PAGE_SIZE) {
+                return null;
+            }
+
+            long next = events.getLast().getOriginalEvent().getRevision() - 1;
+            if (next < 0) {
+                return null;
+            }
+
+            options = ReadStreamOptions.get()
+                    .backwards()
+                    .maxCount(SCAN_PAGE_SIZE)
+                    .fromRevision(next);
+        }
+    }
+
+    /**
+     * Chunk streams wrap event store failures in an IOException, unwrap them. An interrupt is rethrown, anything else,
+     * such as a corrupt chunk, is returned as an ExecutionException.
+     */
+    private static ExecutionException failure(IOException e) throws InterruptedException {
+        if (e.getCause() instanceof ExecutionException executionException) {
+            return executionException;
+        } else if (e.getCause() instanceof InterruptedException interruptedException) {
+            throw interruptedException;
+        }
+
+        return new ExecutionException(e);
+    }
+
+    private record SnapshotEvent(long eventRevision, PMSnapshot snapshot) {
+    }
+
+    /**
+     * Compresses at the fastest level, the policy is compressed while events are held back.
+     */
+    private static final class FastGZIPOutputStream extends GZIPOutputStream {
+
+        private FastGZIPOutputStream(OutputStream out) throws IOException {
+            super(out, GZIP_BUFFER_SIZE);
+            def.setLevel(Deflater.BEST_SPEED);
+        }
+    }
+
+    /**
+     * A written snapshot.
+     *
+     * @param bytes the size of the snapshot event and its chunks.
+     * @param captureNanos the time the PAP's monitor was held, events were held back for as long.
+     * @param totalNanos the time taken to write the snapshot, including captureNanos.
+     */
+    public record SnapshotResult(long revision, boolean delta, long bytes, long captureNanos, long totalNanos) {
+    }
 }
@@ -0,0 +1,27 @@
+package gov.nist.csd.pm.pdp.shared.grpc;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "pm.pdp.grpc")
+public class GrpcServerConfig {
+
+    /**
+     * Run each gRPC call on its own virtual thread instead of the gRPC server's default cached thread pool.
+     */
+    private boolean virtualThreads;
+
+    public GrpcServerConfig() {
+    }
+
+    public GrpcServerConfig(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+}
@@ -0,0 +1,81 @@
+package gov.nist.csd.pm.pdp.shared.grpc;
+
+import io.grpc.ServerBuilder;
+import net.devh.boot.grpc.server.serverfactory.GrpcServerConfigurer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sets the executor gRPC calls are run on. When virtual threads are enabled every call, including the interceptors
+ * that wait for revision consistency, runs on a new virtual thread so calls blocked on the event store, Neo4j, or a
+ * revision wait do not hold a platform thread.
+ *
+ * {@link #callExecutor()} is the executor calls resumed outside of gRPC are run on, e.g. a call the revision
+ * consistency interceptor deferred until the local policy caught up. It is the server executor when virtual threads
+ * are enabled, and otherwise a cached pool like the gRPC default, so resumed calls never run on the thread that
+ * applied the policy.
+ *
+ * On Java 21 a virtual thread that blocks while holding, or waiting for, an object monitor pins its carrier thread. The
+ * locks calls can wait on for long, the versioned policy's write lock, the event handler's lock, the adjudication
+ * stream and deferred call state, are ReentrantLocks for that reason. The PAP's monitor, held while events are applied,
+ * appended with apply-on-append, or captured for a snapshot, is only entered by the write sequencer, subscription,
+ * batch flush and snapshot threads, which are platform threads; calls wait for those on futures. The remaining
+ * monitors guard short in-memory updates of the caches and indexes. There is no benchmark of virtual against platform
+ * call threads yet, so virtual threads are off by default.
+ */
+@Component
+public class GrpcServerExecutorConfigurer implements GrpcServerConfigurer {
+
+    private static final Logger logger = LoggerFactory.getLogger(GrpcServerExecutorConfigurer.class);
+
+    private final GrpcServerConfig grpcServerConfig;
+    private ExecutorService executor;
+
+    public GrpcServerExecutorConfigurer(GrpcServerConfig grpcServerConfig) {
+        this.grpcServerConfig = grpcServerConfig;
+    }
+
+    @Override
+    public void accept(ServerBuilder<?> serverBuilder) {
+        if (!grpcServerConfig.isVirtualThreads()) {
+            return;
+        }
+
+        serverBuilder.executor(callExecutor());
+
+        logger.info("gRPC server calls will run on virtual threads");
+    }
+
+    public synchronized Executor callExecutor() {
+        if (executor != null) {
+            return executor;
+        }
+
+        if (grpcServerConfig.isVirtualThreads()) {
+            executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("grpc-vt-", 0).factory());
+        } else {
+            AtomicInteger threads = new AtomicInteger();
+            executor = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "grpc-call-" + threads.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        return executor;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package gov.nist.csd.pm.pdp.shared.interceptor;
+
+import java.util.Locale;
+
+/**
+ * How current the local policy must be before a request is served, chosen per request with the x-pm-consistency
+ * header.
+ */
+public enum ConsistencyLevel {
+
+    /**
+     * Wait until the local policy is caught up with the latest revision in the event store.
+     */
+    STRONG,
+
+    /**
+     * Serve if the local policy is at most a number of revisions, or a number of milliseconds, behind the event store,
+     * otherwise wait until it is.
+     */
+    BOUNDED,
+
+    /**
+     * Serve at the local revision without waiting.
+     */
+    EVENTUAL;
+
+    public String tag() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Parse a header value, ignoring case.
+     *
+     * @throws IllegalArgumentException if the value is not a consistency level.
+     */
+    public static ConsistencyLevel parse(String value) {
+        return ConsistencyLevel.valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -3,43 +3,128 @@ package gov.nist.csd.pm.pdp.shared.interceptor;
 import gov.nist.csd.pm.pdp.shared.eventstore.CurrentRevisionService;
 import gov.nist.csd.pm.pdp.shared.eventstore.LatestRevisionTracker;
 import io.grpc.*;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * gRPC interceptor that ensures strong consistency by checking that the local
- * policy state is caught up with EventStoreDB before processing requests.
+ * gRPC interceptor that ensures consistency by checking that the local policy state is current enough before
+ * processing requests. A request chooses how current with the x-pm-consistency header:
+ * <ul>
+ *     <li>strong: wait until the local policy is caught up with the latest revision in EventStoreDB.</li>
+ *     <li>bounded: serve if the local policy is at most x-pm-max-revision-lag revisions behind, or has been behind for
+ *     at most x-pm-max-staleness-ms milliseconds, otherwise wait until it is within the revision bound. Either header
+ *     can be omitted to use the configured bound.</li>
+ *     <li>eventual: serve at the local revision without waiting.</li>
+ * </ul>
+ * A request carrying the x-pm-min-revision header, e.g. the x-pm-revision trailer returned by an admin write, first
+ * waits until the local policy reaches that revision. Without x-pm-consistency such a request is then served, as is any
+ * request when waitForLatestRevision is disabled; otherwise the default is strong.
+ *
+ * Waiting does not hold a thread. The interceptor waits for the latest revision and registers for the target revision
+ * with the {@link CurrentRevisionService} without blocking, and starts the call on the call executor when the local
+ * policy reaches it, buffering anything gRPC delivers for the call in the meantime. The call is never run on the thread
+ * that applied the revision.
  */
-public class RevisionConsistencyInterceptor implements ServerInterceptor {
+public class RevisionConsistencyInterceptor implements ServerInterceptor, MeterBinder {
+
+    public static final String MIN_REVISION_KEY = "x-pm-min-revision";
+    public static final Metadata.Key<String> MIN_REVISION_METADATA_KEY =
+            Metadata.Key.of(MIN_REVISION_KEY, Metadata.ASCII_STRING_MARSHALLER);
+    public static final String CONSISTENCY_KEY = "x-pm-consistency";
+    public static final Metadata.Key<String> CONSISTENCY_METADATA_KEY =
+            Metadata.Key.of(CONSISTENCY_KEY, Metadata.ASCII_STRING_MARSHALLER);
+    public static final String MAX_REVISION_LAG_KEY = "x-pm-max-revision-lag";
+    public static final Metadata.Key<String> MAX_REVISION_LAG_METADATA_KEY =
+            Metadata.Key.of(MAX_REVISION_LAG_KEY, Metadata.ASCII_STRING_MARSHALLER);
+    public static final String MAX_STALENESS_KEY = "x-pm-max-staleness-ms";
+    public static final Metadata.Key<String> MAX_STALENESS_METADATA_KEY =
+            Metadata.Key.of(MAX_STALENESS_KEY, Metadata.ASCII_STRING_MARSHALLER);
 
     private static final Logger logger = LoggerFactory.getLogger(RevisionConsistencyInterceptor.class);
 
     private final long timeout;
     private final Set<String> excludedMethods;
+    private final boolean waitForLatestRevision;
+    private final long boundedMaxRevisionLag;
+    private final long boundedMaxStaleness;
     private final CurrentRevisionService currentRevisionService;
     private final LatestRevisionTracker latestRevisionTracker;
+    private final Executor callExecutor;
+    private final Map<ConsistencyLevel, LevelStats> stats;
 
     public RevisionConsistencyInterceptor(long timeout,
                                           Set<String> excludedMethods,
+                                          boolean waitForLatestRevision,
+                                          long boundedMaxRevisionLag,
+                                          long boundedMaxStaleness,
                                           CurrentRevisionService currentRevisionService,
-                                          LatestRevisionTracker latestRevisionTracker) {
+                                          LatestRevisionTracker latestRevisionTracker,
+                                          Executor callExecutor) {
         this.timeout = timeout;
         this.excludedMethods = excludedMethods;
+        this.waitForLatestRevision = waitForLatestRevision;
+        this.boundedMaxRevisionLag = boundedMaxRevisionLag;
+        this.boundedMaxStaleness = boundedMaxStaleness;
         this.currentRevisionService = currentRevisionService;
         this.latestRevisionTracker = latestRevisionTracker;
+        this.callExecutor = callExecutor;
+        this.stats = new EnumMap<>(ConsistencyLevel.class);
+        for (ConsistencyLevel level : ConsistencyLevel.values()) {
+            stats.put(level, new LevelStats());
+        }
     }
 
+    /**
+     * Deferred calls are started on a new virtual thread.
+     */
     public RevisionConsistencyInterceptor(long timeout,
+                                          Set<String> excludedMethods,
+                                          boolean waitForLatestRevision,
+                                          long boundedMaxRevisionLag,
+                                          long boundedMaxStaleness,
                                           CurrentRevisionService currentRevisionService,
                                           LatestRevisionTracker latestRevisionTracker) {
-        this.timeout = timeout;
-        this.excludedMethods = new HashSet<>();
-        this.currentRevisionService = currentRevisionService;
-        this.latestRevisionTracker = latestRevisionTracker;
+        this(timeout, excludedMethods, waitForLatestRevision, boundedMaxRevisionLag, boundedMaxStaleness,
+             currentRevisionService, latestRevisionTracker, Thread::startVirtualThread);
+    }
+
+    public RevisionConsistencyInterceptor(long timeout,
+                                          Set<String> excludedMethods,
+                                          boolean waitForLatestRevision,
+                                          CurrentRevisionService currentRevisionService,
+                                          LatestRevisionTracker latestRevisionTracker) {
+        this(timeout, excludedMethods, waitForLatestRevision, 0, 0, currentRevisionService, latestRevisionTracker);
+    }
+
+    public RevisionConsistencyInterceptor(long timeout,
+                                          Set<String> excludedMethods,
+                                          CurrentRevisionService currentRevisionService,
+                                          LatestRevisionTracker latestRevisionTracker) {
+        this(timeout, excludedMethods, true, currentRevisionService, latestRevisionTracker);
+    }
+
+    public RevisionConsistencyInterceptor(long timeout,
+                                          CurrentRevisionService currentRevisionService,
+                                          LatestRevisionTracker latestRevisionTracker) {
+        this(timeout, new HashSet<>(), true, currentRevisionService, latestRevisionTracker);
     }
 
     @Override
@@ -53,44 +138,299 @@ public class RevisionConsistencyInterceptor implements ServerInterceptor {
             return next.startCall(call, headers);
         }
 
-	    try {
-		    if (!ensureCaughtUp()) {
-		        logger.warn("revision consistency check failed for {}", fullMethodName);
-		        call.close(
-		                Status.UNAVAILABLE.withDescription("current revision is stale, and server timed out catching up"),
-		                new Metadata()
-		        );
-		        return new ServerCall.Listener<>() {};
-		    }
-	    } catch (InterruptedException e) {
-            logger.warn("interrupted ensuring revision caught up for {}", fullMethodName);
-            Thread.currentThread().interrupt();
+        Long minRevision;
+        ConsistencyLevel level;
+        long maxRevisionLag;
+        long maxStaleness;
+        try {
+            minRevision = longHeader(headers, MIN_REVISION_METADATA_KEY);
+            level = consistencyLevel(headers, minRevision != null);
+            maxRevisionLag = orDefault(longHeader(headers, MAX_REVISION_LAG_METADATA_KEY), boundedMaxRevisionLag);
+            maxStaleness = orDefault(longHeader(headers, MAX_STALENESS_METADATA_KEY), boundedMaxStaleness);
+        } catch (IllegalArgumentException e) {
+            call.close(Status.INVALID_ARGUMENT.withDescription(e.getMessage()), new Metadata());
+            return new ServerCall.Listener<>() {};
+        }
+
+        long start = System.nanoTime();
+        DeferredListener<ReqT> listener = new DeferredListener<>();
+        CompletableFuture<Boolean> caughtUp = targetRevision(level, minRevision, maxRevisionLag, maxStaleness)
+                .thenCompose(targetRevision -> listener.waitFor(
+                        currentRevisionService.revisionFuture(targetRevision, timeout)))
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                    if (cause instanceof TimeoutException) {
+                        logger.warn("Latest revision tracker not initialized within timeout");
+                    }
+
+                    return false;
+                });
+
+        // the common case, no waiting needed
+        if (caughtUp.isDone()) {
+            return recordOutcome(call, level, fullMethodName, caughtUp.join(), start)
+                    ? next.startCall(call, headers)
+                    : new ServerCall.Listener<>() {};
+        }
+
+        // release the thread and start the call on the call executor when the local policy reaches the target revision
+        Context context = Context.current();
+        caughtUp.whenCompleteAsync((reached, e) -> context.run(() -> {
+            if (call.isCancelled()) {
+                stats.get(level).record(false, System.nanoTime() - start);
+                return;
+            }
+
+            if (recordOutcome(call, level, fullMethodName, Boolean.TRUE.equals(reached), start)) {
+                listener.setDelegate(next.startCall(call, headers));
+            }
+        }), callExecutor);
+
+        return listener;
+    }
+
+    /**
+     * The revision the local policy must reach before the call can start, or -1 if it can start now. Completes once
+     * the latest revision is known, which does not block the caller.
+     */
+    private CompletableFuture<Long> targetRevision(ConsistencyLevel level,
+                                                   Long minRevision,
+                                                   long maxRevisionLag,
+                                                   long maxStaleness) {
+        long target = minRevision != null ? minRevision : -1;
+
+        if (level == ConsistencyLevel.EVENTUAL) {
+            return CompletableFuture.completedFuture(target);
+        }
+
+        return latestRevisionTracker.latestRevisionFuture(timeout)
+                .thenApply(latestRevision -> targetRevision(level, target, latestRevision, maxRevisionLag, maxStaleness));
+    }
+
+    private long targetRevision(ConsistencyLevel level,
+                                long target,
+                                long latestRevision,
+                                long maxRevisionLag,
+                                long maxStaleness) {
+        long localRevision = currentRevisionService.get();
+
+        if (level == ConsistencyLevel.STRONG) {
+            if (localRevision < latestRevision) {
+                logger.debug("Local revision {} < eventstore latest {}, waiting up to {}ms", localRevision, latestRevision, timeout);
+            }
+
+            return Math.max(target, latestRevision);
+        }
+
+        if (latestRevision - localRevision <= maxRevisionLag
+                || latestRevisionTracker.stalenessMillis(localRevision) <= maxStaleness) {
+            return target;
+        }
+
+        logger.debug("Local revision {} is more than {} revisions and {}ms behind eventstore latest {}, waiting up to {}ms",
+                localRevision, maxRevisionLag, maxStaleness, latestRevision, timeout);
+        return Math.max(target, latestRevision - maxRevisionLag);
+    }
+
+    /**
+     * Records the outcome of the check and closes the call if the local policy did not catch up.
+     *
+     * @return true if the call should be started.
+     */
+    private boolean recordOutcome(ServerCall<?, ?> call,
+                                  ConsistencyLevel level,
+                                  String fullMethodName,
+                                  boolean caughtUp,
+                                  long start) {
+        stats.get(level).record(caughtUp, System.nanoTime() - start);
+
+        if (!caughtUp) {
+            logger.warn("{} revision consistency check failed for {}", level.tag(), fullMethodName);
             call.close(
-                    Status.UNAVAILABLE.withDescription("current revision is stale, and server errored catching up"),
+                    Status.UNAVAILABLE.withDescription("current revision is stale, and server timed out catching up"),
                     new Metadata()
             );
-            return new ServerCall.Listener<>() {};
-	    }
+        }
 
-	    return next.startCall(call, headers);
+        return caughtUp;
     }
 
-    private boolean ensureCaughtUp() throws InterruptedException {
-        long latestRevision;
+    private ConsistencyLevel consistencyLevel(Metadata headers, boolean hasMinRevision) {
+        String value = headers.get(CONSISTENCY_METADATA_KEY);
+        if (value == null || value.isBlank()) {
+            return hasMinRevision || !waitForLatestRevision ? ConsistencyLevel.EVENTUAL : ConsistencyLevel.STRONG;
+        }
+
         try {
-            latestRevision = latestRevisionTracker.get(timeout);
-        } catch (TimeoutException e) {
-            logger.warn("Latest revision tracker not initialized within timeout");
-            return false;
+            return ConsistencyLevel.parse(value);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(CONSISTENCY_KEY + " must be one of strong, bounded, or eventual");
         }
+    }
 
-        long localRevision = currentRevisionService.get();
+    private static Long longHeader(Metadata headers, Metadata.Key<String> key) {
+        String value = headers.get(key);
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key.name() + " must be a number");
+        }
+    }
+
+    private static long orDefault(Long value, long defaultValue) {
+        return value != null ? value : defaultValue;
+    }
+
+    public long servedCount(ConsistencyLevel level) {
+        return stats.get(level).served.sum();
+    }
+
+    public long rejectedCount(ConsistencyLevel level) {
+        return stats.get(level).rejected.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (ConsistencyLevel level : ConsistencyLevel.values()) {
+            LevelStats levelStats = stats.get(level);
+            FunctionTimer.builder("pm.consistency.wait", levelStats,
+                            s -> s.served.sum() + s.rejected.sum(),
+                            s -> s.waitNanos.sum(),
+                            TimeUnit.NANOSECONDS)
+                    .tag("level", level.tag())
+                    .register(registry);
+            FunctionCounter.builder("pm.consistency.requests", levelStats, s -> s.served.sum())
+                    .tag("level", level.tag())
+                    .tag("result", "served")
+                    .register(registry);
+            FunctionCounter.builder("pm.consistency.requests", levelStats, s -> s.rejected.sum())
+                    .tag("level", level.tag())
+                    .tag("result", "rejected")
+                    .register(registry);
+        }
+    }
+
+    /**
+     * Holds the events gRPC delivers for a call while it waits for the local policy to catch up, and replays them, in
+     * order and in the context they were delivered in, to the listener returned when the call is started. A call
+     * cancelled before it is started stops waiting and drops what was held for it.
+     */
+    private static final class DeferredListener<ReqT> extends ServerCall.Listener<ReqT> {
 
-        if (localRevision >= latestRevision) {
-            return true;
+        // the held events, which can run the whole call, are replayed holding it, a lock rather than a monitor does
+        // not pin the virtual thread they run on
+        private final ReentrantLock lock = new ReentrantLock();
+        private List<Runnable> pending;
+        private ServerCall.Listener<ReqT> delegate;
+        private boolean cancelled;
+        private CompletableFuture<Boolean> waiting;
+
+        private DeferredListener() {
+            this.pending = new ArrayList<>();
+        }
+
+        private CompletableFuture<Boolean> waitFor(CompletableFuture<Boolean> caughtUp) {
+            lock.lock();
+            try {
+                waiting = caughtUp;
+                if (cancelled) {
+                    caughtUp.cancel(false);
+                }
+
+                return caughtUp;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void setDelegate(ServerCall.Listener<ReqT> delegate) {
+            lock.lock();
+            try {
+                this.delegate = delegate;
+                if (cancelled) {
+                    // cancelled after the check that the call was still live, the started call still has to see it
+                    delegate.onCancel();
+                } else {
+                    for (Runnable event : pending) {
+                        event.run();
+                    }
+                }
+                pending = null;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void dispatch(Runnable event) {
+            lock.lock();
+            try {
+                if (delegate == null) {
+                    if (!cancelled) {
+                        pending.add(Context.current().wrap(event));
+                    }
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            event.run();
+        }
+
+        @Override
+        public void onMessage(ReqT message) {
+            dispatch(() -> delegate.onMessage(message));
+        }
+
+        @Override
+        public void onHalfClose() {
+            dispatch(() -> delegate.onHalfClose());
+        }
+
+        @Override
+        public void onCancel() {
+            lock.lock();
+            try {
+                if (delegate == null) {
+                    // stop waiting, the call is not started once the client has gone
+                    cancelled = true;
+                    pending.clear();
+                    if (waiting != null) {
+                        waiting.cancel(false);
+                    }
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            delegate.onCancel();
+        }
+
+        @Override
+        public void onComplete() {
+            dispatch(() -> delegate.onComplete());
         }
 
-        logger.debug("Local revision {} < eventstore latest {}, waiting up to {}ms", localRevision, latestRevision, timeout);
-        return currentRevisionService.awaitRevision(latestRevision, timeout);
+        @Override
+        public void onReady() {
+            dispatch(() -> delegate.onReady());
+        }
+    }
+
+    private static final class LevelStats {
+
+        private final LongAdder served = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+
+        private void record(boolean consistent, long nanos) {
+            (consistent ? served : rejected).increment();
+            waitNanos.add(nanos);
+        }
     }
 }
@@ -0,0 +1,56 @@
+package gov.nist.csd.pm.pdp.shared.interceptor;
+
+import io.grpc.*;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Returns the policy revision a call wrote, or was served at, in the x-pm-revision trailer. Handlers record the
+ * revision with {@link #recordRevision(long)} on a thread the call's gRPC Context is attached to. A client can send the
+ * value back in the x-pm-min-revision header of a later request to read its own writes.
+ */
+@Component
+@GrpcGlobalServerInterceptor
+public class RevisionTokenInterceptor implements ServerInterceptor {
+
+    public static final String REVISION_KEY = "x-pm-revision";
+    public static final Metadata.Key<String> REVISION_METADATA_KEY =
+            Metadata.Key.of(REVISION_KEY, Metadata.ASCII_STRING_MARSHALLER);
+
+    private static final Context.Key<AtomicLong> REVISION_CONTEXT_KEY = Context.key(REVISION_KEY);
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+            ServerCall<ReqT, RespT> call,
+            Metadata headers,
+            ServerCallHandler<ReqT, RespT> next) {
+        AtomicLong revision = new AtomicLong(-1);
+
+        ServerCall<ReqT, RespT> tokenCall = new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+            @Override
+            public void close(Status status, Metadata trailers) {
+                long r = revision.get();
+                if (r >= 0) {
+                    trailers.put(REVISION_METADATA_KEY, Long.toString(r));
+                }
+
+                super.close(status, trailers);
+            }
+        };
+
+        Context context = Context.current().withValue(REVISION_CONTEXT_KEY, revision);
+        return Contexts.interceptCall(context, tokenCall, headers, next);
+    }
+
+    /**
+     * Record a revision for the current call. The highest revision recorded is returned to the client.
+     */
+    public static void recordRevision(long revision) {
+        AtomicLong holder = REVISION_CONTEXT_KEY.get();
+        if (holder != null) {
+            holder.accumulateAndGet(revision, Math::max);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package gov.nist.csd.pm.pdp.shared.auth;
+
+import gov.nist.csd.pm.core.pap.PAP;
+import gov.nist.csd.pm.core.pap.query.model.context.UserContext;
+import gov.nist.csd.pm.pdp.proto.event.NodeDeleted;
+import gov.nist.csd.pm.pdp.proto.event.PMEvent;
+import gov.nist.csd.pm.pdp.proto.event.UserAttributeCreated;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserContextCacheTest {
+
+	@Mock(answer = Answers.RETURNS_DEEP_STUBS) private PAP pap;
+
+	private UserContextCache cache;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		cache = new UserContextCache(10);
+		lenient().when(pap.query().graph().getNodeId("u1")).thenReturn(1L);
+		lenient().when(pap.query().graph().getNodeId("ua1")).thenReturn(2L);
+		lenient().when(pap.query().graph().getNodeId("ua2")).thenReturn(3L);
+	}
+
+	@Test
+	void get_sameHeaders_resolvedOnce() throws Exception {
+		UserContext first = cache.get(pap, 1, "u1", null, null);
+		UserContext second = cache.get(pap, 1, "u1", null, null);
+
+		assertSame(first, second);
+		assertEquals(1, cache.hitCount());
+		assertEquals(1, cache.missCount());
+		verify(pap.query().graph(), times(1)).getNodeId("u1");
+	}
+
+	@Test
+	void nodeDeleted_invalidatesOnlyEntriesUsingTheNode() throws Exception {
+		cache.get(pap, 1, "u1", null, null);
+		cache.get(pap, 1, null, List.of("ua1", "ua2"), null);
+
+		cache.onEventApplied(PMEvent.newBuilder()
+				                     .setNodeDeleted(NodeDeleted.newBuilder().setId(3).build())
+				                     .build(), 2);
+
+		assertEquals(1, cache.size());
+		assertEquals(1, cache.invalidationCount());
+
+		cache.get(pap, 1, "u1", null, null);
+		assertEquals(1, cache.hitCount());
+	}
+
+	@Test
+	void nodeCreated_invalidatesEntriesUsingTheName() throws Exception {
+		cache.get(pap, 1, null, List.of("ua1"), null);
+
+		cache.onEventApplied(PMEvent.newBuilder()
+				                     .setUserAttributeCreated(UserAttributeCreated.newBuilder().setId(4).setName("ua1").build())
+				                     .build());
+
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	void resolvedAtOldRevisionAfterInvalidation_notCached() throws Exception {
+		// the user is deleted at revision 2 while a request is still adjudicating against revision 1
+		cache.onEventApplied(PMEvent.newBuilder()
+				                     .setNodeDeleted(NodeDeleted.newBuilder().setId(1).build())
+				                     .build(), 2);
+
+		cache.get(pap, 1, "u1", null, null);
+
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	void entryResolvedAtLaterRevision_notReturnedForEarlierRevision() throws Exception {
+		cache.get(pap, 5, "u1", null, null);
+		cache.get(pap, 4, "u1", null, null);
+		cache.get(pap, 6, "u1", null, null);
+
+		assertEquals(1, cache.hitCount());
+		assertEquals(2, cache.missCount());
+		verify(pap.query().graph(), times(2)).getNodeId("u1");
+	}
+
+	@Test
+	void nullUserAndAttrs_throwsAndIsNotCached() {
+		assertThrows(IllegalArgumentException.class, () -> cache.get(pap, 1, null, null, null));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	void disabled_alwaysResolves() throws Exception {
+		cache = new UserContextCache(0);
+
+		cache.get(pap, 1, "u1", null, null);
+		cache.get(pap, 1, "u1", null, null);
+
+		assertEquals(0, cache.size());
+		verify(pap.query().graph(), times(2)).getNodeId("u1");
+	}
+}
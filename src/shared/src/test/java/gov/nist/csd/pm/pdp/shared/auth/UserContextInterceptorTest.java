@@ -4,6 +4,7 @@ import io.grpc.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static gov.nist.csd.pm.pdp.shared.auth.UserContextInterceptor.*;
@@ -66,6 +67,24 @@ class UserContextInterceptorTest {
 		assertThrows(RuntimeException.class, () -> interceptor.interceptCall(new NoopServerCall<>(), headers, handler));
 	}
 
+	@Test
+	void interceptCall_sameAttrsHeader_reusesParsedValue() {
+		Metadata headers = new Metadata();
+		headers.put(PM_USER_ATTRS_METADATA_KEY, "[\"a\", \"b\"]");
+
+		List<List<String>> seen = new ArrayList<>();
+		ServerCallHandler<String, String> handler = (call1, headers1) -> {
+			seen.add(UserContextInterceptor.getPmUserAttrsHeaderValue());
+			return new ServerCall.Listener<>() {};
+		};
+
+		interceptor.interceptCall(new NoopServerCall<>(), headers, handler);
+		interceptor.interceptCall(new NoopServerCall<>(), headers, handler);
+
+		assertEquals(List.of("a", "b"), seen.get(0));
+		assertSame(seen.get(0), seen.get(1));
+	}
+
 	private static class NoopServerCall<ReqT, RespT> extends ServerCall<ReqT, RespT> {
 		@Override public void request(int numMessages) {}
 		@Override public void sendHeaders(Metadata headers) {}
@@ -3,6 +3,7 @@ package gov.nist.csd.pm.pdp.shared.eventstore;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -89,4 +90,44 @@ class CurrentRevisionServiceTest {
         // default is -1, so target of -1 should match
         assertTrue(service.awaitRevision(-1, 1000));
     }
+
+    @Test
+    void revisionFuture_set_completesOnlyReachedWaiters() {
+        service.set(5);
+
+        CompletableFuture<Boolean> six = service.revisionFuture(6, 5000);
+        CompletableFuture<Boolean> ten = service.revisionFuture(10, 5000);
+
+        service.set(7);
+
+        assertTrue(six.isDone());
+        assertTrue(six.join());
+        assertFalse(ten.isDone());
+        assertEquals(1, service.waiterCount());
+
+        service.set(10);
+
+        assertTrue(ten.join());
+        assertEquals(0, service.waiterCount());
+    }
+
+    @Test
+    void revisionFuture_timeout_completesFalseAndRemovesWaiter() {
+        service.set(5);
+
+        CompletableFuture<Boolean> future = service.revisionFuture(10, 50);
+
+        assertFalse(future.join());
+        assertEquals(0, service.waiterCount());
+    }
+
+    @Test
+    void revisionFuture_cancelled_removesWaiter() {
+        service.set(5);
+
+        CompletableFuture<Boolean> future = service.revisionFuture(10, 5000);
+        future.cancel(false);
+
+        assertEquals(0, service.waiterCount());
+    }
 }
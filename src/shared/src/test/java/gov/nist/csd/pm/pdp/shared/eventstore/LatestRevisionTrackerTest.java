@@ -3,12 +3,18 @@ package gov.nist.csd.pm.pdp.shared.eventstore;
 import org.junit.jupiter.api.Test;
 
 import java.lang.reflect.Field;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.mock;
 
 class LatestRevisionTrackerTest {
@@ -93,6 +99,72 @@ class LatestRevisionTrackerTest {
         initializer.join();
     }
 
+    @Test
+    void latestRevisionFuture_failsWithTimeout_whenNotInitialized() {
+        LatestRevisionTracker tracker = createTracker();
+
+        CompletableFuture<Long> future = tracker.latestRevisionFuture(50);
+
+        assertFalse(future.isDone(), "the caller is not blocked while the tracker initializes");
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, e.getCause());
+    }
+
+    @Test
+    void latestRevisionFuture_completes_whenInitializedMidWait() throws Exception {
+        LatestRevisionTracker tracker = createTracker();
+
+        CompletableFuture<Long> future = tracker.latestRevisionFuture(5000);
+        assertFalse(future.isDone());
+
+        tracker.observe(7);
+        setInitialized(tracker, true);
+        Field futureField = LatestRevisionTracker.class.getDeclaredField("initializedFuture");
+        futureField.setAccessible(true);
+        ((CompletableFuture<?>) futureField.get(tracker)).complete(null);
+
+        assertEquals(7, future.get(1, TimeUnit.SECONDS));
+        assertEquals(7, tracker.latestRevisionFuture(50).join());
+    }
+
+    @Test
+    void stalenessMillis_measuredFromFirstUnappliedRevision() {
+        LatestRevisionTracker tracker = createTracker();
+
+        tracker.observe(5);
+        tracker.observe(6);
+
+        long staleness = tracker.stalenessMillis(4);
+        assertTrue(staleness >= 0 && staleness < Long.MAX_VALUE);
+        assertEquals(0, tracker.stalenessMillis(6));
+    }
+
+    @Test
+    void stalenessMillis_unobservedRevision_isUnknown() {
+        LatestRevisionTracker tracker = createTracker();
+
+        tracker.observe(5);
+
+        assertEquals(Long.MAX_VALUE, tracker.stalenessMillis(2));
+    }
+
+    @Test
+    void stalenessMillis_doesNotPrune_observePrunesAppliedRevisions() {
+        LatestRevisionTracker tracker = createTracker();
+
+        for (long revision = 1; revision <= 5; revision++) {
+            tracker.observe(revision);
+        }
+
+        assertTrue(tracker.stalenessMillis(3) < Long.MAX_VALUE);
+        assertEquals(5, tracker.observedCount());
+
+        // the next event prunes the revisions up to the one the local policy was asked about
+        tracker.observe(6);
+        assertEquals(3, tracker.observedCount());
+        assertTrue(tracker.stalenessMillis(3) < Long.MAX_VALUE);
+    }
+
     private void setInitialized(LatestRevisionTracker tracker, boolean value) throws Exception {
         Field initializedField = LatestRevisionTracker.class.getDeclaredField("initialized");
         initializedField.setAccessible(true);
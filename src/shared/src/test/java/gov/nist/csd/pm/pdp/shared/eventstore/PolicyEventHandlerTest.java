@@ -8,6 +8,7 @@ import gov.nist.csd.pm.pdp.proto.event.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
@@ -87,6 +88,41 @@ class PolicyEventHandlerTest {
 		verify(graph).deleteNode(1L);
 	}
 
+	@Test
+	void handleEvents_notifiesListenersAfterCommit() throws Exception {
+		AppliedEventListener listener = mock(AppliedEventListener.class);
+		handler = new PolicyEventHandler(pap, true, List.of(listener));
+
+		PMEvent e1 = PMEvent.newBuilder()
+				.setNodeDeleted(NodeDeleted.newBuilder().setId(1).build())
+				.build();
+		PMEvent e2 = PMEvent.newBuilder()
+				.setNodeDeleted(NodeDeleted.newBuilder().setId(2).build())
+				.build();
+
+		handler.handleEvents(List.of(e1, e2));
+
+		InOrder inOrder = inOrder(pap, listener);
+		inOrder.verify(pap).commit();
+		inOrder.verify(listener).onEventApplied(e1);
+		inOrder.verify(listener).onEventApplied(e2);
+	}
+
+	@Test
+	void handleEvent_failure_doesNotNotifyListeners() throws Exception {
+		AppliedEventListener listener = mock(AppliedEventListener.class);
+		handler = new PolicyEventHandler(pap, true, List.of(listener));
+
+		doThrow(new PMException("test exception")).when(graph).deleteNode(1L);
+
+		PMEvent e = PMEvent.newBuilder()
+				.setNodeDeleted(NodeDeleted.newBuilder().setId(1).build())
+				.build();
+
+		assertThrows(PMException.class, () -> handler.handleEvent(e));
+		verify(listener, never()).onEventApplied(any());
+	}
+
 	@Test
 	void assignmentCreated_createsAssignments() throws Exception {
 		PMEvent event = PMEvent.newBuilder()
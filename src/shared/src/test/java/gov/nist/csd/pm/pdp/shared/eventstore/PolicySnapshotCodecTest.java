@@ -0,0 +1,165 @@
+package gov.nist.csd.pm.pdp.shared.eventstore;
+
+import gov.nist.csd.pm.core.common.exception.PMException;
+import gov.nist.csd.pm.core.common.graph.node.NodeType;
+import gov.nist.csd.pm.core.impl.memory.pap.MemoryPAP;
+import gov.nist.csd.pm.core.pap.operation.accessright.AccessRightSet;
+import gov.nist.csd.pm.core.pap.query.model.context.UserContext;
+import gov.nist.csd.pm.core.pap.serialization.json.JSONDeserializer;
+import gov.nist.csd.pm.core.pap.serialization.json.JSONSerializer;
+import gov.nist.csd.pm.pdp.proto.event.PolicySnapshot;
+import gov.nist.csd.pm.pdp.proto.event.SnapshotDelta;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PolicySnapshotCodecTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(PolicySnapshotCodecTest.class);
+
+	@Test
+	void encodeDecode_restoresPolicy() throws PMException {
+		MemoryPAP pap = new MemoryPAP();
+		pap.executePML(new UserContext(0), """
+				create pc "pc1"
+				create ua "ua1" in ["pc1"]
+				create oa "oa1" in ["pc1"]
+				create oa "oa2" in ["pc1"]
+				create u "u1" in ["ua1"]
+				create o "o1" in ["oa1", "oa2"]
+
+				set resource access rights ["read", "write"]
+
+				associate "ua1" and "oa1" with ["read", "write"]
+				associate "ua1" and "oa2" with ["read"]
+				""");
+		long u1 = pap.query().graph().getNodeId("u1");
+		long oa2 = pap.query().graph().getNodeId("oa2");
+		pap.modify().graph().setNodeProperties(oa2, Map.of("a", "b"));
+		pap.modify().prohibitions().createNodeProhibition(
+				"deny-u1", u1, new AccessRightSet("write"), Set.of(oa2), Set.of(), false);
+
+		PolicySnapshot snapshot = PolicySnapshotCodec.encode(pap);
+		MemoryPAP restored = new MemoryPAP();
+		PolicySnapshotCodec.decode(parse(snapshot.toByteArray()), restored);
+
+		assertEquals(pap.query().graph().search(NodeType.ANY, new HashMap<>()),
+				restored.query().graph().search(NodeType.ANY, new HashMap<>()));
+		assertEquals(pap.query().operations().getResourceAccessRights(),
+				restored.query().operations().getResourceAccessRights());
+		assertEquals(Set.copyOf(pap.query().graph().getAdjacentDescendants(pap.query().graph().getNodeId("o1"))),
+				Set.copyOf(restored.query().graph().getAdjacentDescendants(restored.query().graph().getNodeId("o1"))));
+		assertEquals(Set.copyOf(pap.query().graph().getAssociationsWithSource(pap.query().graph().getNodeId("ua1"))),
+				Set.copyOf(restored.query().graph().getAssociationsWithSource(restored.query().graph().getNodeId("ua1"))));
+		assertEquals(Map.of("a", "b"), restored.query().graph().getNodeById(oa2).getProperties());
+		assertEquals(1, restored.query().prohibitions().getProhibitions().size());
+		assertEquals(2, snapshot.getAccessRightsCount());
+	}
+
+	@Test
+	void encode_largerPolicy_smallerThanJson() throws PMException {
+		MemoryPAP pap = new MemoryPAP();
+		pap.executePML(new UserContext(0), """
+				create pc "pc1"
+				create ua "ua1" in ["pc1"]
+				create u "u1" in ["ua1"]
+				set resource access rights ["read", "write"]
+				""");
+		long pc1 = pap.query().graph().getNodeId("pc1");
+		long ua1 = pap.query().graph().getNodeId("ua1");
+		for (int i = 0; i < 100; i++) {
+			long oa = pap.modify().graph().createObjectAttribute("oa" + i, List.of(pc1));
+			pap.modify().graph().associate(ua1, oa, new AccessRightSet("read", "write"));
+			for (int j = 0; j < 50; j++) {
+				pap.modify().graph().createObject("o" + i + "-" + j, List.of(oa));
+			}
+		}
+
+		String json = pap.serialize(new JSONSerializer());
+		byte[] binary = PolicySnapshotCodec.encode(pap).toByteArray();
+
+		long start = System.nanoTime();
+		MemoryPAP fromJson = new MemoryPAP();
+		fromJson.deserialize(json, new JSONDeserializer());
+		long jsonNanos = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		MemoryPAP fromBinary = new MemoryPAP();
+		PolicySnapshotCodec.decode(parse(binary), fromBinary);
+		long binaryNanos = System.nanoTime() - start;
+
+		int jsonBytes = json.getBytes(StandardCharsets.UTF_8).length;
+		logger.info("json snapshot {} bytes restored in {}ms, binary snapshot {} bytes restored in {}ms",
+				jsonBytes, jsonNanos / 1_000_000, binary.length, binaryNanos / 1_000_000);
+
+		assertTrue(binary.length < jsonBytes);
+		assertEquals(fromJson.query().graph().search(NodeType.ANY, new HashMap<>()),
+				fromBinary.query().graph().search(NodeType.ANY, new HashMap<>()));
+	}
+
+	@Test
+	void applyDelta_onBase_matchesPolicy() throws PMException {
+		MemoryPAP pap = new MemoryPAP();
+		pap.executePML(new UserContext(0), """
+				create pc "pc1"
+				create ua "ua1" in ["pc1"]
+				create oa "oa1" in ["pc1"]
+				create u "u1" in ["ua1"]
+				create o "o1" in ["oa1"]
+
+				set resource access rights ["read"]
+
+				associate "ua1" and "oa1" with ["read"]
+				""");
+		PolicySnapshot base = PolicySnapshotCodec.encode(pap);
+
+		pap.executePML(new UserContext(0), """
+				create oa "oa2" in ["pc1"]
+				""");
+		long ua1 = pap.query().graph().getNodeId("ua1");
+		long u1 = pap.query().graph().getNodeId("u1");
+		long oa1 = pap.query().graph().getNodeId("oa1");
+		long oa2 = pap.query().graph().getNodeId("oa2");
+		long o1 = pap.query().graph().getNodeId("o1");
+		pap.modify().graph().associate(ua1, oa2, new AccessRightSet("read"));
+		pap.modify().graph().deleteNode(o1);
+		long o2 = pap.modify().graph().createObject("o2", List.of(oa2));
+		pap.modify().graph().setNodeProperties(oa1, Map.of("a", "b"));
+		pap.modify().prohibitions().createNodeProhibition(
+				"deny-u1", u1, new AccessRightSet("read"), Set.of(oa2), Set.of(), false);
+
+		SnapshotDelta delta = PolicySnapshotCodec.encodeDelta(
+				pap, 0, List.of(ua1, oa1, oa2, o1, o2), List.of("deny-u1"));
+		assertEquals(List.of(o1), delta.getDeletedNodesList());
+
+		MemoryPAP restored = new MemoryPAP();
+		PolicySnapshotCodec.decode(base, restored);
+		PolicySnapshotCodec.applyDelta(delta, restored);
+
+		assertEquals(pap.query().graph().search(NodeType.ANY, new HashMap<>()),
+				restored.query().graph().search(NodeType.ANY, new HashMap<>()));
+		assertEquals(Set.copyOf(pap.query().graph().getAssociationsWithSource(ua1)),
+				Set.copyOf(restored.query().graph().getAssociationsWithSource(ua1)));
+		assertEquals(Set.copyOf(pap.query().graph().getAdjacentDescendants(o2)),
+				Set.copyOf(restored.query().graph().getAdjacentDescendants(o2)));
+		assertFalse(restored.query().graph().nodeExists("o1"));
+		assertEquals(Map.of("a", "b"), restored.query().graph().getNodeById(oa1).getProperties());
+		assertEquals(1, restored.query().prohibitions().getProhibitions().size());
+	}
+
+	private static PolicySnapshot parse(byte[] bytes) {
+		try {
+			return PolicySnapshot.parseFrom(bytes);
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package gov.nist.csd.pm.pdp.shared.eventstore;
+
+import gov.nist.csd.pm.pdp.proto.event.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotDeltaTrackerTest {
+
+	@Test
+	void nextDelta_noBase_returnsNull() {
+		SnapshotDeltaTracker tracker = new SnapshotDeltaTracker();
+
+		assertNull(tracker.nextDelta(5));
+	}
+
+	@Test
+	void nextDelta_afterBase_returnsChangesSinceBase() {
+		SnapshotDeltaTracker tracker = new SnapshotDeltaTracker();
+		tracker.onEventApplied(PMEvent.newBuilder()
+				.setObjectCreated(ObjectCreated.newBuilder().setId(1).setName("o1").addDescendants(2))
+				.build());
+		tracker.baseStarted(10);
+
+		tracker.onEventApplied(PMEvent.newBuilder()
+				.setAssignmentCreated(AssignmentCreated.newBuilder().setAscendant(3).addDescendants(4))
+				.build());
+		tracker.onEventApplied(PMEvent.newBuilder()
+				.setAssociationDeleted(AssociationDeleted.newBuilder().setUa(5).setTarget(6))
+				.build());
+		tracker.onEventApplied(PMEvent.newBuilder()
+				.setProhibitionDeleted(ProhibitionDeleted.newBuilder().setName("p1"))
+				.build());
+
+		SnapshotDeltaTracker.Changes changes = tracker.nextDelta(5);
+		assertEquals(10, changes.baseRevision());
+		assertEquals(Set.of(3L, 5L), changes.nodes());
+		assertEquals(Set.of("p1"), changes.prohibitions());
+
+		// deltas are cumulative since the base
+		tracker.onEventApplied(PMEvent.newBuilder()
+				.setNodeDeleted(NodeDeleted.newBuilder().setId(7))
+				.build());
+		assertEquals(Set.of(3L, 5L, 7L), tracker.nextDelta(5).nodes());
+	}
+
+	@Test
+	void nextDelta_afterDeltasPerBase_returnsNull() {
+		SnapshotDeltaTracker tracker = new SnapshotDeltaTracker();
+		tracker.baseStarted(10);
+
+		assertNotNull(tracker.nextDelta(2));
+		assertNotNull(tracker.nextDelta(2));
+		assertNull(tracker.nextDelta(2));
+	}
+
+	@Test
+	void nextDelta_obligationChanged_returnsNull() {
+		SnapshotDeltaTracker tracker = new SnapshotDeltaTracker();
+		tracker.baseStarted(10);
+
+		tracker.onEventApplied(PMEvent.newBuilder()
+				.setObligationDeleted(ObligationDeleted.newBuilder().setName("o1"))
+				.build());
+
+		assertNull(tracker.nextDelta(5));
+	}
+
+	@Test
+	void nextDelta_baseFailed_returnsNull() {
+		SnapshotDeltaTracker tracker = new SnapshotDeltaTracker();
+		tracker.baseStarted(10);
+		tracker.baseFailed();
+
+		assertNull(tracker.nextDelta(5));
+	}
+}
@@ -1,5 +1,6 @@
 package gov.nist.csd.pm.pdp.shared.eventstore;
 
+import com.eventstore.dbclient.EventData;
 import com.eventstore.dbclient.EventStoreDBClient;
 import com.eventstore.dbclient.ReadResult;
 import com.eventstore.dbclient.ReadStreamOptions;
@@ -11,12 +12,17 @@ import gov.nist.csd.pm.core.impl.memory.pap.MemoryPAP;
 import gov.nist.csd.pm.core.pap.query.GraphQuery;
 import gov.nist.csd.pm.core.pap.query.model.context.UserContext;
 import gov.nist.csd.pm.core.pap.serialization.json.JSONDeserializer;
+import gov.nist.csd.pm.pdp.proto.event.NodeDeleted;
+import gov.nist.csd.pm.pdp.proto.event.ObjectCreated;
+import gov.nist.csd.pm.pdp.proto.event.PMEvent;
 import gov.nist.csd.pm.pdp.proto.event.PMSnapshot;
+import gov.nist.csd.pm.pdp.proto.event.PMSnapshotChunk;
 import gov.nist.csd.pm.pdp.sharedtest.EventStoreTestContainer;
 import org.junit.jupiter.api.Test;
 
 import java.util.HashMap;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -45,6 +51,8 @@ class SnapshotServiceTest {
 					eventStoreTestContainer.getHost(),
 					eventStoreTestContainer.getPort()
 			);
+			config.setSnapshotFormat(SnapshotFormat.JSON);
+			config.setSnapshotChunkSize(0);
 
 			EventStoreConnectionManager eventStoreConnectionManager = new EventStoreConnectionManager(config);
 
@@ -55,7 +63,10 @@ class SnapshotServiceTest {
 					new CurrentRevisionService()
 			);
 
-			snapshotService.snapshot();
+			SnapshotService.SnapshotResult result = snapshotService.snapshot();
+			assertEquals(-1, result.revision());
+			assertFalse(result.delta());
+			assertTrue(result.bytes() > 0);
 
 			// get from snapshot stream and deserialize
 			EventStoreDBClient client = eventStoreConnectionManager.getOrInitClient();
@@ -76,6 +87,73 @@ class SnapshotServiceTest {
 		}
 	}
 
+	@Test
+	void snapshot_withCapturePap_recapturesWhenPolicyMovesDuringCapture() throws PMException, ExecutionException, InterruptedException, InvalidProtocolBufferException {
+		try (EventStoreTestContainer eventStoreTestContainer = new EventStoreTestContainer()) {
+			eventStoreTestContainer.start();
+
+			String pml = """
+					create pc "pc1"
+					create ua "ua1" in ["pc1"]
+					create oa "oa1" in ["pc1"]
+					create u "u1" in ["ua1"]
+					create o "o1" in ["oa1"]
+					""";
+			MemoryPAP pap = new MemoryPAP();
+			pap.executePML(new UserContext(0), pml);
+
+			CurrentRevisionService currentRevision = new CurrentRevisionService();
+			currentRevision.set(3);
+
+			// reads the same policy in its own transactions, an event is applied while the first capture reads it
+			MemoryPAP capturePap = new MemoryPAP() {
+				private int captures;
+
+				@Override
+				public void beginTx() throws PMException {
+					super.beginTx();
+					if (captures++ == 0) {
+						currentRevision.set(4);
+					}
+				}
+			};
+			capturePap.executePML(new UserContext(0), pml);
+
+			EventStoreDBConfig config = new EventStoreDBConfig(
+					"test-events",
+					"test-snapshots",
+					eventStoreTestContainer.getHost(),
+					eventStoreTestContainer.getPort()
+			);
+			config.setSnapshotFormat(SnapshotFormat.JSON);
+			config.setSnapshotChunkSize(0);
+
+			EventStoreConnectionManager eventStoreConnectionManager = new EventStoreConnectionManager(config);
+			SnapshotService snapshotService = new SnapshotService(
+					config,
+					eventStoreConnectionManager,
+					pap,
+					currentRevision
+			);
+
+			SnapshotService.SnapshotResult result = snapshotService.snapshot(capturePap);
+			assertEquals(4, result.revision());
+			assertFalse(result.delta());
+
+			ReadResult readResult = eventStoreConnectionManager.getOrInitClient().readStream(
+					config.getSnapshotStream(),
+					ReadStreamOptions.get().fromStart()
+			).get();
+			PMSnapshot pmSnapshot = PMSnapshot.parseFrom(readResult.getEvents().getFirst().getEvent().getEventData());
+			assertEquals(4, pmSnapshot.getRevision());
+
+			MemoryPAP snapshotPAP = new MemoryPAP();
+			snapshotPAP.deserialize(pmSnapshot.getJson(), new JSONDeserializer());
+			assertEquals(pap.query().graph().search(NodeType.ANY, new HashMap<>()),
+					snapshotPAP.query().graph().search(NodeType.ANY, new HashMap<>()));
+		}
+	}
+
 	@Test
 	void  snapshot_whenEventStoreIsUnavailable_exceptionThrown() throws PMException, ExecutionException, InterruptedException, InvalidProtocolBufferException {
 		// create test event store container
@@ -158,4 +236,224 @@ class SnapshotServiceTest {
 		}
 	}
 
-}
\ No newline at end of file
+	@Test
+	void snapshot_binaryFormat_Success() throws PMException, ExecutionException, InterruptedException, InvalidProtocolBufferException {
+		try (EventStoreTestContainer eventStoreTestContainer = new EventStoreTestContainer()) {
+			eventStoreTestContainer.start();
+
+			MemoryPAP pap = new MemoryPAP();
+			pap.executePML(new UserContext(0), """
+					create pc "pc1"
+					create ua "ua1" in ["pc1"]
+					create oa "oa1" in ["pc1"]
+					create u "u1" in ["ua1"]
+					create o "o1" in ["oa1"]
+					""");
+
+			EventStoreDBConfig config = new EventStoreDBConfig(
+					"test-events",
+					"test-snapshots",
+					eventStoreTestContainer.getHost(),
+					eventStoreTestContainer.getPort()
+			);
+			config.setSnapshotChunkSize(0);
+			EventStoreConnectionManager eventStoreConnectionManager = new EventStoreConnectionManager(config);
+
+			SnapshotService snapshotService = new SnapshotService(
+					config,
+					eventStoreConnectionManager,
+					pap,
+					new CurrentRevisionService()
+			);
+
+			snapshotService.snapshot();
+
+			ReadResult readResult = eventStoreConnectionManager.getOrInitClient().readStream(
+					config.getSnapshotStream(),
+					ReadStreamOptions.get().fromStart()
+			).get();
+			PMSnapshot pmSnapshot = PMSnapshot.parseFrom(readResult.getEvents().getFirst().getEvent().getEventData());
+			assertEquals(PMSnapshot.PolicyCase.BINARY, pmSnapshot.getPolicyCase());
+
+			MemoryPAP snapshotPAP = new MemoryPAP();
+			PolicySnapshotCodec.decode(pmSnapshot.getBinary(), snapshotPAP);
+			assertEquals(pap.query().graph().search(NodeType.ANY, new HashMap<>()),
+					snapshotPAP.query().graph().search(NodeType.ANY, new HashMap<>()));
+		}
+	}
+
+	@Test
+	void restoreLatestSnapshot_jsonAfterBinary_restoresEither() throws PMException, ExecutionException, InterruptedException, InvalidProtocolBufferException {
+		try (EventStoreTestContainer eventStoreTestContainer = new EventStoreTestContainer()) {
+			eventStoreTestContainer.start();
+
+			MemoryPAP pap = new MemoryPAP();
+			pap.executePML(new UserContext(0), """
+					create pc "pc1"
+					create ua "ua1" in ["pc1"]
+					create oa "oa1" in ["pc1"]
+					create u "u1" in ["ua1"]
+					create o "o1" in ["oa1"]
+					""");
+
+			EventStoreDBConfig config = new EventStoreDBConfig(
+					"test-events",
+					"test-snapshots",
+					eventStoreTestContainer.getHost(),
+					eventStoreTestContainer.getPort()
+			);
+			EventStoreConnectionManager eventStoreConnectionManager = new EventStoreConnectionManager(config);
+			CurrentRevisionService currentRevisionService = new CurrentRevisionService();
+			SnapshotService snapshotService = new SnapshotService(
+					config,
+					eventStoreConnectionManager,
+					pap,
+					currentRevisionService
+			);
+
+			currentRevisionService.set(1);
+			snapshotService.snapshot();
+			snapshotService.restoreLatestSnapshot();
+			assertTrue(pap.query().graph().nodeExists("o1"));
+
+			pap.modify().graph().deleteNode(pap.query().graph().getNodeId("o1"));
+			currentRevisionService.set(2);
+			config.setSnapshotFormat(SnapshotFormat.JSON);
+			snapshotService.snapshot();
+			pap.modify().graph().createObject("o1", List.of(pap.query().graph().getNodeId("oa1")));
+
+			snapshotService.restoreLatestSnapshot();
+
+			assertTrue(pap.query().graph().nodeExists("oa1"));
+			assertFalse(pap.query().graph().nodeExists("o1"));
+			assertEquals(2, currentRevisionService.get());
+		}
+	}
+
+	@Test
+	void restoreLatestSnapshot_chunked_Success() throws PMException, ExecutionException, InterruptedException, InvalidProtocolBufferException {
+		try (EventStoreTestContainer eventStoreTestContainer = new EventStoreTestContainer()) {
+			eventStoreTestContainer.start();
+
+			MemoryPAP pap = new MemoryPAP();
+			pap.executePML(new UserContext(0), """
+					create pc "pc1"
+					create ua "ua1" in ["pc1"]
+					create oa "oa1" in ["pc1"]
+					create u "u1" in ["ua1"]
+					create o "o1" in ["oa1"]
+					set resource access rights ["read"]
+					associate "ua1" and "oa1" with ["read"]
+					""");
+
+			EventStoreDBConfig config = new EventStoreDBConfig(
+					"test-events",
+					"test-snapshots",
+					eventStoreTestContainer.getHost(),
+					eventStoreTestContainer.getPort()
+			);
+			config.setSnapshotChunkSize(64);
+			EventStoreConnectionManager eventStoreConnectionManager = new EventStoreConnectionManager(config);
+			CurrentRevisionService currentRevisionService = new CurrentRevisionService();
+			SnapshotService snapshotService = new SnapshotService(
+					config,
+					eventStoreConnectionManager,
+					pap,
+					currentRevisionService
+			);
+			currentRevisionService.set(3);
+
+			snapshotService.snapshot();
+
+			EventStoreDBClient client = eventStoreConnectionManager.getOrInitClient();
+			List<ResolvedEvent> events = client.readStream(config.getSnapshotStream(), ReadStreamOptions.get().fromStart())
+					.get()
+					.getEvents();
+			PMSnapshot pmSnapshot = PMSnapshot.parseFrom(events.getLast().getEvent().getEventData());
+			assertEquals(PMSnapshot.PolicyCase.CHUNKS, pmSnapshot.getPolicyCase());
+			assertTrue(pmSnapshot.getChunks().getCount() > 1);
+			assertEquals(pmSnapshot.getChunks().getCount() + 1, events.size());
+
+			// chunks of a snapshot that was never completed are skipped
+			PMSnapshotChunk orphan = PMSnapshotChunk.newBuilder().setRevision(4).setIndex(0).build();
+			client.appendToStream(
+					config.getSnapshotStream(),
+					EventData.builderAsBinary("PMSnapshotChunk", orphan.toByteArray()).build()
+			).get();
+
+			MemoryPAP restored = new MemoryPAP();
+			CurrentRevisionService restoredRevision = new CurrentRevisionService();
+			new SnapshotService(config, eventStoreConnectionManager, restored, restoredRevision).restoreLatestSnapshot();
+
+			assertEquals(3, restoredRevision.get());
+			assertEquals(pap.query().graph().search(NodeType.ANY, new HashMap<>()),
+					restored.query().graph().search(NodeType.ANY, new HashMap<>()));
+			assertEquals(Set.copyOf(pap.query().graph().getAssociationsWithSource(pap.query().graph().getNodeId("ua1"))),
+					Set.copyOf(restored.query().graph().getAssociationsWithSource(restored.query().graph().getNodeId("ua1"))));
+		}
+	}
+
+	@Test
+	void restoreLatestSnapshot_delta_restoresBaseAndDelta() throws PMException, ExecutionException, InterruptedException, InvalidProtocolBufferException {
+		try (EventStoreTestContainer eventStoreTestContainer = new EventStoreTestContainer()) {
+			eventStoreTestContainer.start();
+
+			MemoryPAP pap = new MemoryPAP();
+			pap.executePML(new UserContext(0), """
+					create pc "pc1"
+					create ua "ua1" in ["pc1"]
+					create oa "oa1" in ["pc1"]
+					create u "u1" in ["ua1"]
+					create o "o1" in ["oa1"]
+					""");
+
+			EventStoreDBConfig config = new EventStoreDBConfig(
+					"test-events",
+					"test-snapshots",
+					eventStoreTestContainer.getHost(),
+					eventStoreTestContainer.getPort()
+			);
+			config.setSnapshotDeltasPerBase(5);
+			EventStoreConnectionManager eventStoreConnectionManager = new EventStoreConnectionManager(config);
+			CurrentRevisionService currentRevisionService = new CurrentRevisionService();
+			SnapshotService snapshotService = new SnapshotService(
+					config,
+					eventStoreConnectionManager,
+					pap,
+					currentRevisionService
+			);
+			PolicyEventHandler handler = new PolicyEventHandler(pap, true, List.of(snapshotService.deltaTracker()));
+
+			currentRevisionService.set(1);
+			snapshotService.snapshot();
+
+			long oa1 = pap.query().graph().getNodeId("oa1");
+			handler.handleEvent(PMEvent.newBuilder()
+					.setObjectCreated(ObjectCreated.newBuilder().setId(100).setName("o2").addDescendants(oa1))
+					.build());
+			handler.handleEvent(PMEvent.newBuilder()
+					.setNodeDeleted(NodeDeleted.newBuilder().setId(pap.query().graph().getNodeId("o1")))
+					.build());
+			currentRevisionService.set(3);
+			snapshotService.snapshot();
+
+			List<ResolvedEvent> events = eventStoreConnectionManager.getOrInitClient()
+					.readStream(config.getSnapshotStream(), ReadStreamOptions.get().fromStart())
+					.get()
+					.getEvents();
+			PMSnapshot latest = PMSnapshot.parseFrom(events.getLast().getEvent().getEventData());
+			assertEquals(PMSnapshot.PolicyCase.DELTA, latest.getPolicyCase());
+			assertEquals(1, latest.getDelta().getBaseRevision());
+
+			MemoryPAP restored = new MemoryPAP();
+			CurrentRevisionService restoredRevision = new CurrentRevisionService();
+			new SnapshotService(config, eventStoreConnectionManager, restored, restoredRevision).restoreLatestSnapshot();
+
+			assertEquals(3, restoredRevision.get());
+			assertTrue(restored.query().graph().nodeExists("o2"));
+			assertFalse(restored.query().graph().nodeExists("o1"));
+			assertEquals(pap.query().graph().search(NodeType.ANY, new HashMap<>()),
+					restored.query().graph().search(NodeType.ANY, new HashMap<>()));
+		}
+	}
+}
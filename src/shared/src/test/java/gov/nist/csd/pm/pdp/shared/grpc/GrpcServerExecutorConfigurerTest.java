@@ -0,0 +1,72 @@
+package gov.nist.csd.pm.pdp.shared.grpc;
+
+import io.grpc.ServerBuilder;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class GrpcServerExecutorConfigurerTest {
+
+    @Test
+    void accept_whenVirtualThreadsDisabled_keepsDefaultExecutor() {
+        ServerBuilder<?> serverBuilder = mock(ServerBuilder.class);
+        GrpcServerExecutorConfigurer configurer = new GrpcServerExecutorConfigurer(new GrpcServerConfig(false));
+
+        configurer.accept(serverBuilder);
+
+        verify(serverBuilder, never()).executor(any());
+    }
+
+    @Test
+    void accept_whenVirtualThreadsEnabled_runsCallsOnVirtualThreads() throws Exception {
+        ServerBuilder<?> serverBuilder = mock(ServerBuilder.class);
+        GrpcServerExecutorConfigurer configurer = new GrpcServerExecutorConfigurer(new GrpcServerConfig(true));
+
+        configurer.accept(serverBuilder);
+
+        ArgumentCaptor<Executor> captor = ArgumentCaptor.forClass(Executor.class);
+        verify(serverBuilder).executor(captor.capture());
+
+        CompletableFuture<Thread> thread = new CompletableFuture<>();
+        captor.getValue().execute(() -> thread.complete(Thread.currentThread()));
+
+        Thread executedOn = thread.get(1, TimeUnit.SECONDS);
+        assertTrue(executedOn.isVirtual());
+        assertTrue(executedOn.getName().startsWith("grpc-vt-"));
+
+        configurer.shutdown();
+    }
+
+    @Test
+    void callExecutor_whenVirtualThreadsEnabled_isTheServerExecutor() {
+        ServerBuilder<?> serverBuilder = mock(ServerBuilder.class);
+        GrpcServerExecutorConfigurer configurer = new GrpcServerExecutorConfigurer(new GrpcServerConfig(true));
+
+        configurer.accept(serverBuilder);
+
+        verify(serverBuilder).executor(configurer.callExecutor());
+
+        configurer.shutdown();
+    }
+
+    @Test
+    void callExecutor_whenVirtualThreadsDisabled_runsOnPlatformThreads() throws Exception {
+        GrpcServerExecutorConfigurer configurer = new GrpcServerExecutorConfigurer(new GrpcServerConfig(false));
+
+        CompletableFuture<Thread> thread = new CompletableFuture<>();
+        configurer.callExecutor().execute(() -> thread.complete(Thread.currentThread()));
+
+        Thread executedOn = thread.get(1, TimeUnit.SECONDS);
+        assertFalse(executedOn.isVirtual());
+        assertTrue(executedOn.getName().startsWith("grpc-call-"));
+
+        configurer.shutdown();
+    }
+}
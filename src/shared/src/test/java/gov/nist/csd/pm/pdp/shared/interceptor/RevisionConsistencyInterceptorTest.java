@@ -6,14 +6,24 @@ import io.grpc.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.lang.reflect.Field;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class RevisionConsistencyInterceptorTest {
@@ -26,7 +36,7 @@ class RevisionConsistencyInterceptorTest {
         currentRevisionService = new CurrentRevisionService();
         latestRevisionTracker = mock(LatestRevisionTracker.class);
         // Default: tracker is initialized and returns -1
-        when(latestRevisionTracker.get(anyLong())).thenReturn(-1L);
+        when(latestRevisionTracker.latestRevisionFuture(anyLong())).thenReturn(CompletableFuture.completedFuture(-1L));
     }
 
     @Test
@@ -57,7 +67,7 @@ class RevisionConsistencyInterceptorTest {
         excluded.add("test.Service/excludedMethod");
 
         currentRevisionService.set(10);
-        when(latestRevisionTracker.get(anyLong())).thenReturn(10L);
+        when(latestRevisionTracker.latestRevisionFuture(anyLong())).thenReturn(CompletableFuture.completedFuture(10L));
 
         RevisionConsistencyInterceptor interceptor = new RevisionConsistencyInterceptor(
                 1000, excluded, currentRevisionService, latestRevisionTracker
@@ -79,7 +89,7 @@ class RevisionConsistencyInterceptorTest {
     @Test
     void interceptCall_localRevisionCaughtUp_proceedsWithCall() throws InterruptedException, TimeoutException {
         currentRevisionService.set(15);
-        when(latestRevisionTracker.get(anyLong())).thenReturn(10L);
+        when(latestRevisionTracker.latestRevisionFuture(anyLong())).thenReturn(CompletableFuture.completedFuture(10L));
 
         RevisionConsistencyInterceptor interceptor = new RevisionConsistencyInterceptor(
                 1000, currentRevisionService, latestRevisionTracker
@@ -101,15 +111,15 @@ class RevisionConsistencyInterceptorTest {
     @Test
     void interceptCall_localRevisionBehindButCatchesUp_proceedsWithCall() throws InterruptedException, TimeoutException {
         currentRevisionService.set(5);
-        when(latestRevisionTracker.get(anyLong())).thenReturn(10L);
+        when(latestRevisionTracker.latestRevisionFuture(anyLong())).thenReturn(CompletableFuture.completedFuture(10L));
 
         RevisionConsistencyInterceptor interceptor = new RevisionConsistencyInterceptor(
                 1000, currentRevisionService, latestRevisionTracker
         );
 
-        AtomicBoolean handlerCalled = new AtomicBoolean(false);
+        CountDownLatch handlerCalled = new CountDownLatch(1);
         ServerCallHandler<String, String> handler = (call, headers) -> {
-            handlerCalled.set(true);
+            handlerCalled.countDown();
             return new ServerCall.Listener<>() {};
         };
 
@@ -133,14 +143,14 @@ class RevisionConsistencyInterceptorTest {
             Thread.currentThread().interrupt();
         }
 
-        assertTrue(handlerCalled.get(), "Handler should be called after catching up");
+        assertTrue(handlerCalled.await(1, TimeUnit.SECONDS), "Handler should be called after catching up");
         assertNull(call.closedStatus, "Call should not be closed after catching up");
     }
 
     @Test
     void interceptCall_timeoutWaitingForCatchUp_closesCallWithUnavailable() throws InterruptedException, TimeoutException {
         currentRevisionService.set(5);
-        when(latestRevisionTracker.get(anyLong())).thenReturn(100L);
+        when(latestRevisionTracker.latestRevisionFuture(anyLong())).thenReturn(CompletableFuture.completedFuture(100L));
 
         RevisionConsistencyInterceptor interceptor = new RevisionConsistencyInterceptor(
                 50, currentRevisionService, latestRevisionTracker
@@ -156,6 +166,7 @@ class RevisionConsistencyInterceptorTest {
         interceptor.interceptCall(call, new Metadata(), handler);
 
         assertFalse(handlerCalled.get(), "Handler should not be called on timeout");
+        call.awaitClosed();
         assertNotNull(call.closedStatus, "Call should be closed on timeout");
         assertEquals(Status.Code.UNAVAILABLE, call.closedStatus.getCode());
         assertTrue(call.closedStatus.getDescription().contains("stale"));
@@ -164,7 +175,7 @@ class RevisionConsistencyInterceptorTest {
     @Test
     void interceptCall_trackerNotInitialized_closesCallWithUnavailable() throws InterruptedException, TimeoutException {
         // tracker.get(timeout) throws TimeoutException when not initialized within timeout
-        when(latestRevisionTracker.get(anyLong())).thenThrow(new TimeoutException("Latest revision tracker not initialized within timeout"));
+        when(latestRevisionTracker.latestRevisionFuture(anyLong())).thenReturn(CompletableFuture.failedFuture(new TimeoutException("Latest revision tracker not initialized within timeout")));
 
         RevisionConsistencyInterceptor interceptor = new RevisionConsistencyInterceptor(
                 50, currentRevisionService, latestRevisionTracker
@@ -186,7 +197,7 @@ class RevisionConsistencyInterceptorTest {
 
     @Test
     void interceptCall_trackerBecomesInitialized_proceedsWithCall() throws InterruptedException, TimeoutException {
-        when(latestRevisionTracker.get(anyLong())).thenReturn(10L);
+        when(latestRevisionTracker.latestRevisionFuture(anyLong())).thenReturn(CompletableFuture.completedFuture(10L));
         currentRevisionService.set(10);
 
         RevisionConsistencyInterceptor interceptor = new RevisionConsistencyInterceptor(
@@ -209,7 +220,7 @@ class RevisionConsistencyInterceptorTest {
     @Test
     void interceptCall_emptyEventStream_proceedsWithCall() throws InterruptedException, TimeoutException {
         currentRevisionService.set(-1);
-        when(latestRevisionTracker.get(anyLong())).thenReturn(-1L);
+        when(latestRevisionTracker.latestRevisionFuture(anyLong())).thenReturn(CompletableFuture.completedFuture(-1L));
 
         RevisionConsistencyInterceptor interceptor = new RevisionConsistencyInterceptor(
                 1000, currentRevisionService, latestRevisionTracker
@@ -231,7 +242,7 @@ class RevisionConsistencyInterceptorTest {
     @Test
     void constructor_withoutExcludedMethods_createsEmptySet() throws InterruptedException, TimeoutException {
         currentRevisionService.set(10);
-        when(latestRevisionTracker.get(anyLong())).thenReturn(10L);
+        when(latestRevisionTracker.latestRevisionFuture(anyLong())).thenReturn(CompletableFuture.completedFuture(10L));
 
         RevisionConsistencyInterceptor interceptor = new RevisionConsistencyInterceptor(
                 1000, currentRevisionService, latestRevisionTracker
@@ -277,7 +288,7 @@ class RevisionConsistencyInterceptorTest {
     @Test
     void interceptCall_localRevisionExactlyMatchesLatest_proceedsWithCall() throws InterruptedException, TimeoutException {
         currentRevisionService.set(42);
-        when(latestRevisionTracker.get(anyLong())).thenReturn(42L);
+        when(latestRevisionTracker.latestRevisionFuture(anyLong())).thenReturn(CompletableFuture.completedFuture(42L));
 
         RevisionConsistencyInterceptor interceptor = new RevisionConsistencyInterceptor(
                 1000, currentRevisionService, latestRevisionTracker
@@ -295,9 +306,309 @@ class RevisionConsistencyInterceptorTest {
         assertTrue(handlerCalled.get(), "Handler should be called when revisions match exactly");
     }
 
+    @Test
+    void interceptCall_minRevisionHeader_waitsForMinRevisionNotLatest() throws InterruptedException, TimeoutException {
+        currentRevisionService.set(5);
+        when(latestRevisionTracker.latestRevisionFuture(anyLong())).thenReturn(CompletableFuture.completedFuture(100L));
+
+        RevisionConsistencyInterceptor interceptor = new RevisionConsistencyInterceptor(
+                50, currentRevisionService, latestRevisionTracker
+        );
+
+        AtomicBoolean handlerCalled = new AtomicBoolean(false);
+        ServerCallHandler<String, String> handler = (call, headers) -> {
+            handlerCalled.set(true);
+            return new ServerCall.Listener<>() {};
+        };
+
+        Metadata headers = new Metadata();
+        headers.put(RevisionConsistencyInterceptor.MIN_REVISION_METADATA_KEY, "5");
+
+        TestServerCall<String, String> call = new TestServerCall<>("test.Service/method");
+        interceptor.interceptCall(call, headers, handler);
+
+        assertTrue(handlerCalled.get(), "Handler should be called once the min revision is reached");
+        assertNull(call.closedStatus);
+        verify(latestRevisionTracker, never()).latestRevisionFuture(anyLong());
+    }
+
+    @Test
+    void interceptCall_minRevisionNotReached_closesCallWithUnavailable() throws InterruptedException {
+        currentRevisionService.set(5);
+
+        RevisionConsistencyInterceptor interceptor = new RevisionConsistencyInterceptor(
+                50, currentRevisionService, latestRevisionTracker
+        );
+
+        AtomicBoolean handlerCalled = new AtomicBoolean(false);
+        ServerCallHandler<String, String> handler = (call, headers) -> {
+            handlerCalled.set(true);
+            return new ServerCall.Listener<>() {};
+        };
+
+        Metadata headers = new Metadata();
+        headers.put(RevisionConsistencyInterceptor.MIN_REVISION_METADATA_KEY, "6");
+
+        TestServerCall<String, String> call = new TestServerCall<>("test.Service/method");
+        interceptor.interceptCall(call, headers, handler);
+
+        assertFalse(handlerCalled.get());
+        call.awaitClosed();
+        assertEquals(Status.Code.UNAVAILABLE, call.closedStatus.getCode());
+    }
+
+    @Test
+    void interceptCall_invalidMinRevision_closesCallWithInvalidArgument() {
+        RevisionConsistencyInterceptor interceptor = new RevisionConsistencyInterceptor(
+                50, currentRevisionService, latestRevisionTracker
+        );
+
+        Metadata headers = new Metadata();
+        headers.put(RevisionConsistencyInterceptor.MIN_REVISION_METADATA_KEY, "abc");
+
+        TestServerCall<String, String> call = new TestServerCall<>("test.Service/method");
+        interceptor.interceptCall(call, headers, (c, h) -> new ServerCall.Listener<>() {});
+
+        assertEquals(Status.Code.INVALID_ARGUMENT, call.closedStatus.getCode());
+    }
+
+    @Test
+    void interceptCall_noMinRevisionAndLatestWaitDisabled_proceedsAtLocalRevision() throws InterruptedException, TimeoutException {
+        currentRevisionService.set(5);
+        when(latestRevisionTracker.latestRevisionFuture(anyLong())).thenReturn(CompletableFuture.completedFuture(100L));
+
+        RevisionConsistencyInterceptor interceptor = new RevisionConsistencyInterceptor(
+                50, new HashSet<>(), false, currentRevisionService, latestRevisionTracker
+        );
+
+        AtomicBoolean handlerCalled = new AtomicBoolean(false);
+        ServerCallHandler<String, String> handler = (call, headers) -> {
+            handlerCalled.set(true);
+            return new ServerCall.Listener<>() {};
+        };
+
+        TestServerCall<String, String> call = new TestServerCall<>("test.Service/method");
+        interceptor.interceptCall(call, new Metadata(), handler);
+
+        assertTrue(handlerCalled.get());
+        assertNull(call.closedStatus);
+        verify(latestRevisionTracker, never()).latestRevisionFuture(anyLong());
+    }
+
+    @Test
+    void interceptCall_eventualConsistency_proceedsWithoutCheckingLatest() throws InterruptedException, TimeoutException {
+        currentRevisionService.set(5);
+        when(latestRevisionTracker.latestRevisionFuture(anyLong())).thenReturn(CompletableFuture.completedFuture(100L));
+
+        RevisionConsistencyInterceptor interceptor = new RevisionConsistencyInterceptor(
+                50, currentRevisionService, latestRevisionTracker
+        );
+
+        Metadata headers = new Metadata();
+        headers.put(RevisionConsistencyInterceptor.CONSISTENCY_METADATA_KEY, "eventual");
+
+        AtomicBoolean handlerCalled = new AtomicBoolean(false);
+        TestServerCall<String, String> call = new TestServerCall<>("test.Service/method");
+        interceptor.interceptCall(call, headers, (c, h) -> {
+            handlerCalled.set(true);
+            return new ServerCall.Listener<>() {};
+        });
+
+        assertTrue(handlerCalled.get());
+        assertNull(call.closedStatus);
+        assertEquals(1, interceptor.servedCount(ConsistencyLevel.EVENTUAL));
+        verify(latestRevisionTracker, never()).latestRevisionFuture(anyLong());
+    }
+
+    @Test
+    void interceptCall_boundedWithinRevisionLag_proceedsWithoutWaiting() throws InterruptedException, TimeoutException {
+        currentRevisionService.set(8);
+        when(latestRevisionTracker.latestRevisionFuture(anyLong())).thenReturn(CompletableFuture.completedFuture(10L));
+
+        RevisionConsistencyInterceptor interceptor = new RevisionConsistencyInterceptor(
+                50, new HashSet<>(), true, 0, 0, currentRevisionService, latestRevisionTracker
+        );
+
+        Metadata headers = new Metadata();
+        headers.put(RevisionConsistencyInterceptor.CONSISTENCY_METADATA_KEY, "bounded");
+        headers.put(RevisionConsistencyInterceptor.MAX_REVISION_LAG_METADATA_KEY, "2");
+
+        AtomicBoolean handlerCalled = new AtomicBoolean(false);
+        TestServerCall<String, String> call = new TestServerCall<>("test.Service/method");
+        interceptor.interceptCall(call, headers, (c, h) -> {
+            handlerCalled.set(true);
+            return new ServerCall.Listener<>() {};
+        });
+
+        assertTrue(handlerCalled.get());
+        assertNull(call.closedStatus);
+        assertEquals(1, interceptor.servedCount(ConsistencyLevel.BOUNDED));
+    }
+
+    @Test
+    void interceptCall_boundedWithinStaleness_proceedsWithoutWaiting() throws InterruptedException, TimeoutException {
+        currentRevisionService.set(5);
+        when(latestRevisionTracker.latestRevisionFuture(anyLong())).thenReturn(CompletableFuture.completedFuture(10L));
+        when(latestRevisionTracker.stalenessMillis(5)).thenReturn(100L);
+
+        RevisionConsistencyInterceptor interceptor = new RevisionConsistencyInterceptor(
+                50, new HashSet<>(), true, 0, 300, currentRevisionService, latestRevisionTracker
+        );
+
+        Metadata headers = new Metadata();
+        headers.put(RevisionConsistencyInterceptor.CONSISTENCY_METADATA_KEY, "BOUNDED");
+
+        AtomicBoolean handlerCalled = new AtomicBoolean(false);
+        TestServerCall<String, String> call = new TestServerCall<>("test.Service/method");
+        interceptor.interceptCall(call, headers, (c, h) -> {
+            handlerCalled.set(true);
+            return new ServerCall.Listener<>() {};
+        });
+
+        assertTrue(handlerCalled.get());
+        assertNull(call.closedStatus);
+    }
+
+    @Test
+    void interceptCall_boundedOutsideBothBounds_closesCallWithUnavailable() throws InterruptedException, TimeoutException {
+        currentRevisionService.set(5);
+        when(latestRevisionTracker.latestRevisionFuture(anyLong())).thenReturn(CompletableFuture.completedFuture(10L));
+        when(latestRevisionTracker.stalenessMillis(5)).thenReturn(1000L);
+
+        RevisionConsistencyInterceptor interceptor = new RevisionConsistencyInterceptor(
+                50, new HashSet<>(), true, 0, 300, currentRevisionService, latestRevisionTracker
+        );
+
+        Metadata headers = new Metadata();
+        headers.put(RevisionConsistencyInterceptor.CONSISTENCY_METADATA_KEY, "bounded");
+        headers.put(RevisionConsistencyInterceptor.MAX_REVISION_LAG_METADATA_KEY, "2");
+        headers.put(RevisionConsistencyInterceptor.MAX_STALENESS_METADATA_KEY, "100");
+
+        AtomicBoolean handlerCalled = new AtomicBoolean(false);
+        TestServerCall<String, String> call = new TestServerCall<>("test.Service/method");
+        interceptor.interceptCall(call, headers, (c, h) -> {
+            handlerCalled.set(true);
+            return new ServerCall.Listener<>() {};
+        });
+
+        assertFalse(handlerCalled.get());
+        call.awaitClosed();
+        assertEquals(Status.Code.UNAVAILABLE, call.closedStatus.getCode());
+        assertEquals(1, interceptor.rejectedCount(ConsistencyLevel.BOUNDED));
+    }
+
+    @Test
+    void interceptCall_unknownConsistencyLevel_closesCallWithInvalidArgument() {
+        RevisionConsistencyInterceptor interceptor = new RevisionConsistencyInterceptor(
+                50, currentRevisionService, latestRevisionTracker
+        );
+
+        Metadata headers = new Metadata();
+        headers.put(RevisionConsistencyInterceptor.CONSISTENCY_METADATA_KEY, "sometimes");
+
+        TestServerCall<String, String> call = new TestServerCall<>("test.Service/method");
+        interceptor.interceptCall(call, headers, (c, h) -> new ServerCall.Listener<>() {});
+
+        assertEquals(Status.Code.INVALID_ARGUMENT, call.closedStatus.getCode());
+    }
+
+    @Test
+    void interceptCall_behind_returnsWithoutBlockingAndStartsCallWhenCaughtUp() throws InterruptedException {
+        currentRevisionService.set(5);
+        when(latestRevisionTracker.latestRevisionFuture(anyLong())).thenReturn(CompletableFuture.completedFuture(10L));
+
+        Set<Thread> callThreads = ConcurrentHashMap.newKeySet();
+        Executor callExecutor = command -> {
+            Thread thread = new Thread(command);
+            callThreads.add(thread);
+            thread.start();
+        };
+        RevisionConsistencyInterceptor interceptor = new RevisionConsistencyInterceptor(
+                5000, new HashSet<>(), true, 0, 0, currentRevisionService, latestRevisionTracker, callExecutor
+        );
+
+        List<String> delivered = new CopyOnWriteArrayList<>();
+        List<Thread> deliveredOn = new CopyOnWriteArrayList<>();
+        CountDownLatch halfClosed = new CountDownLatch(1);
+        ServerCallHandler<String, String> handler = (call, headers) -> new ServerCall.Listener<>() {
+            @Override
+            public void onMessage(String message) {
+                delivered.add(message);
+                deliveredOn.add(Thread.currentThread());
+            }
+
+            @Override
+            public void onHalfClose() {
+                delivered.add("halfClose");
+                deliveredOn.add(Thread.currentThread());
+                halfClosed.countDown();
+            }
+        };
+
+        TestServerCall<String, String> call = new TestServerCall<>("test.Service/method");
+        ServerCall.Listener<String> listener = interceptor.interceptCall(call, new Metadata(), handler);
+
+        // delivered before the call is started
+        listener.onMessage("request");
+        listener.onHalfClose();
+        assertTrue(delivered.isEmpty());
+
+        currentRevisionService.set(10);
+
+        assertTrue(halfClosed.await(1, TimeUnit.SECONDS));
+        assertEquals(List.of("request", "halfClose"), delivered);
+        // replayed on the call executor, not on the thread that applied the revision
+        assertFalse(deliveredOn.contains(Thread.currentThread()));
+        assertTrue(callThreads.containsAll(deliveredOn));
+        assertNull(call.closedStatus);
+        assertEquals(1, interceptor.servedCount(ConsistencyLevel.STRONG));
+    }
+
+    @Test
+    void interceptCall_cancelledWhileWaiting_dropsBufferedEventsAndNeverStarts() throws Exception {
+        currentRevisionService.set(5);
+        when(latestRevisionTracker.latestRevisionFuture(anyLong())).thenReturn(CompletableFuture.completedFuture(10L));
+
+        RevisionConsistencyInterceptor interceptor = new RevisionConsistencyInterceptor(
+                5000, currentRevisionService, latestRevisionTracker
+        );
+
+        AtomicBoolean handlerCalled = new AtomicBoolean(false);
+        ServerCallHandler<String, String> handler = (call, headers) -> {
+            handlerCalled.set(true);
+            return new ServerCall.Listener<>() {};
+        };
+
+        TestServerCall<String, String> call = new TestServerCall<>("test.Service/method");
+        ServerCall.Listener<String> listener = interceptor.interceptCall(call, new Metadata(), handler);
+
+        listener.onMessage("request");
+        call.cancelled = true;
+        listener.onCancel();
+
+        Field pendingField = listener.getClass().getDeclaredField("pending");
+        pendingField.setAccessible(true);
+        assertTrue(((List<?>) pendingField.get(listener)).isEmpty());
+
+        // the cancelled call stops waiting, so reaching the revision does not start it
+        long deadline = System.currentTimeMillis() + 1000;
+        while (interceptor.rejectedCount(ConsistencyLevel.STRONG) == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, interceptor.rejectedCount(ConsistencyLevel.STRONG));
+
+        currentRevisionService.set(10);
+        listener.onHalfClose();
+
+        assertFalse(handlerCalled.get());
+        assertNull(call.closedStatus);
+    }
+
     private static class TestServerCall<ReqT, RespT> extends ServerCall<ReqT, RespT> {
         private final String fullMethodName;
-        Status closedStatus;
+        private final CountDownLatch closed = new CountDownLatch(1);
+        volatile Status closedStatus;
+        volatile boolean cancelled;
 
         TestServerCall(String fullMethodName) {
             this.fullMethodName = fullMethodName;
@@ -315,11 +626,16 @@ class RevisionConsistencyInterceptorTest {
         @Override
         public void close(Status status, Metadata trailers) {
             this.closedStatus = status;
+            closed.countDown();
+        }
+
+        void awaitClosed() throws InterruptedException {
+            assertTrue(closed.await(1, TimeUnit.SECONDS), "Call should be closed");
         }
 
         @Override
         public boolean isCancelled() {
-            return false;
+            return cancelled;
         }
 
         @Override
@@ -0,0 +1,77 @@
+package gov.nist.csd.pm.pdp.shared.interceptor;
+
+import io.grpc.*;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class RevisionTokenInterceptorTest {
+
+    @Test
+    void close_afterRevisionsRecorded_addsHighestRevisionTrailer() {
+        RevisionTokenInterceptor interceptor = new RevisionTokenInterceptor();
+        TestServerCall call = new TestServerCall();
+
+        interceptor.interceptCall(call, new Metadata(), (c, headers) -> {
+            RevisionTokenInterceptor.recordRevision(7);
+            RevisionTokenInterceptor.recordRevision(5);
+            c.close(Status.OK, new Metadata());
+            return new ServerCall.Listener<>() {};
+        });
+
+        assertEquals("7", call.trailers.get(RevisionTokenInterceptor.REVISION_METADATA_KEY));
+    }
+
+    @Test
+    void close_withoutRevision_addsNoTrailer() {
+        RevisionTokenInterceptor interceptor = new RevisionTokenInterceptor();
+        TestServerCall call = new TestServerCall();
+
+        interceptor.interceptCall(call, new Metadata(), (c, headers) -> {
+            c.close(Status.OK, new Metadata());
+            return new ServerCall.Listener<>() {};
+        });
+
+        assertNull(call.trailers.get(RevisionTokenInterceptor.REVISION_METADATA_KEY));
+    }
+
+    @Test
+    void recordRevision_outsideCall_isIgnored() {
+        assertDoesNotThrow(() -> RevisionTokenInterceptor.recordRevision(1));
+    }
+
+    private static class TestServerCall extends ServerCall<String, String> {
+        Metadata trailers;
+
+        @Override
+        public void request(int numMessages) {}
+
+        @Override
+        public void sendHeaders(Metadata headers) {}
+
+        @Override
+        public void sendMessage(String message) {}
+
+        @Override
+        public void close(Status status, Metadata trailers) {
+            this.trailers = trailers;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public MethodDescriptor<String, String> getMethodDescriptor() {
+            return MethodDescriptor.<String, String>newBuilder()
+                    .setType(MethodDescriptor.MethodType.UNARY)
+                    .setFullMethodName("test.Service/method")
+                    .setRequestMarshaller(mock(MethodDescriptor.Marshaller.class))
+                    .setResponseMarshaller(mock(MethodDescriptor.Marshaller.class))
+                    .build();
+        }
+    }
+}